@@ -0,0 +1,84 @@
+package io.jmix.editor.helium.tools;
+
+import java.io.BufferedReader;
+import java.util.Collections;
+
+/**
+ * Creates theme variables managers and synthetic theme files for the benchmarks.
+ */
+public class BenchmarkThemes {
+
+    public static final String DARK_MODE = "dark";
+    public static final String COLOR_TEMPLATE = DARK_MODE + "Template0";
+
+    protected static final int UPLOAD_SEED = 100;
+
+    /**
+     * The number of variables per module.
+     */
+    protected static final int MODULE_SIZE = 50;
+
+    /**
+     * Creates a theme variables manager without the Spring context.
+     *
+     * @return a manager without theme variables
+     */
+    public static ThemeVariablesManager createManager() {
+        return ThemeFixtures.createManager();
+    }
+
+    /**
+     * Creates a theme variables manager with the variables of the given synthetic theme.
+     *
+     * @param lines the approximate number of lines of the theme file
+     * @return a manager
+     */
+    public static ThemeVariablesManager createManager(int lines) {
+        return ThemeFixtures.createManager(generateTheme(lines));
+    }
+
+    public static BufferedReader reader(String text) {
+        return ThemeFixtures.reader(text);
+    }
+
+    /**
+     * Creates a generator of a theme with the light and {@code dark} modes and a color template for each
+     * of them. Every second variable refers to the previous one with {@code var()}.
+     *
+     * @param lines the approximate number of lines
+     * @return a generator
+     */
+    public static SyntheticThemeGenerator createGenerator(int lines) {
+        SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+        generator.setBaseThemeModes(Collections.singletonList(DARK_MODE));
+        generator.setVariablesPerModule(MODULE_SIZE);
+        generator.setVarChainDepth(1);
+        // about 3.4 lines per variable with these settings
+        generator.setModuleCount(Math.max(lines * 10 / 34 / MODULE_SIZE, 1));
+        return generator;
+    }
+
+    public static String generateTheme(int lines) {
+        return createGenerator(lines).generate();
+    }
+
+    /**
+     * Generates an uploaded file overriding all variables of the theme generated by {@link #generateTheme(int)}.
+     *
+     * @param lines the approximate number of lines of the theme
+     * @return the uploaded file text
+     */
+    public static String generateUpload(int lines) {
+        SyntheticThemeGenerator generator = createGenerator(lines);
+
+        StringBuilder builder = new StringBuilder(generator.getVariableCount() * 40);
+        for (int module = 0; module < generator.getModuleCount(); module++) {
+            builder.append("  /* ").append(generator.getModuleName(module)).append(" */\n");
+            for (int i = 0; i < generator.getVariablesPerModule(); i++) {
+                builder.append("  ").append(generator.getVariableName(module, i)).append(": ")
+                        .append(generator.getColor(module * MODULE_SIZE + i, UPLOAD_SEED)).append(";\n");
+            }
+        }
+        return builder.toString();
+    }
+}
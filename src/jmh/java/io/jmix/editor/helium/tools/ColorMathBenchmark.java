@@ -0,0 +1,38 @@
+package io.jmix.editor.helium.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Color computations used to derive dependent theme variables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorMathBenchmark {
+
+    @Param({"#0055A6", "#FDB42B", "#FFFFFF"})
+    public String color;
+
+    @Param({"10"})
+    public int percent;
+
+    @Benchmark
+    public String darken() {
+        return ThemeVariableUtils.darken(color, percent);
+    }
+
+    @Benchmark
+    public String lighten() {
+        return ThemeVariableUtils.lighten(color, percent);
+    }
+
+    @Benchmark
+    public String convertHexToRGB() {
+        return ThemeVariableUtils.convertHexToRGB(color);
+    }
+}
@@ -0,0 +1,59 @@
+package io.jmix.editor.helium.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Derivation of a dark template from a light one, the same as the main screen does on every change
+ * of a light template. The light values are the values of the light template of the theme or, in the worst
+ * case, a value for every theme variable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DarkModeDerivationBenchmark {
+
+    protected static final String LIGHT_TEMPLATE = Templates.LIGHT + "Template0";
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    @Param({"true", "false"})
+    public boolean allVariables;
+
+    protected ThemeDarkModeDeriver deriver;
+    protected ThemeVariableOverrides lightValues;
+
+    @Setup
+    public void setup() {
+        SyntheticThemeGenerator generator = BenchmarkThemes.createGenerator(lines);
+        ThemeModel model = ThemeFixtures.createManager(generator.generate()).getModel();
+        deriver = model.getDarkModeDeriver();
+        if (deriver == null) {
+            throw new IllegalStateException("Theme has no light and dark base theme modes");
+        }
+
+        if (allVariables) {
+            lightValues = new ThemeVariableOverrides();
+            for (ThemeVariable themeVariable : model.getThemeVariables()) {
+                int ordinal = themeVariable.getOrdinal();
+                lightValues.put(ordinal, generator.getColor(ordinal, BenchmarkThemes.UPLOAD_SEED));
+            }
+        } else {
+            Template template = model.getTemplate(LIGHT_TEMPLATE);
+            if (template == null) {
+                throw new IllegalStateException("Template not found: " + LIGHT_TEMPLATE);
+            }
+            lightValues = deriver.getTemplateValues(template);
+        }
+    }
+
+    @Benchmark
+    public ThemeVariableOverrides derive() {
+        return deriver.derive(lightValues);
+    }
+}
@@ -0,0 +1,46 @@
+package io.jmix.editor.helium.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of the downloaded theme variables text, the same as the main screen does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThemeExportBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int modifiedVariables;
+
+    @Param({"true", "false"})
+    public boolean defaultThemeMode;
+
+    protected List<ModifiedThemeVariableDetails> themeVariableDetailsList;
+
+    @Setup
+    public void setup() {
+        SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+        int modules = Math.max(modifiedVariables / generator.getVariablesPerModule(), 1);
+
+        themeVariableDetailsList = new ArrayList<>(modifiedVariables);
+        for (int i = modifiedVariables - 1; i >= 0; i--) {
+            int module = i % modules;
+            themeVariableDetailsList.add(new ModifiedThemeVariableDetails(generator.getVariableName(module, i),
+                    generator.getModuleName(module), generator.getColor(i, 0)));
+        }
+    }
+
+    @Benchmark
+    public String generateText() {
+        return ThemeExportUtils.generateText(BenchmarkThemes.DARK_MODE, defaultThemeMode,
+                ThemeExportUtils.sort(themeVariableDetailsList));
+    }
+}
@@ -0,0 +1,45 @@
+package io.jmix.editor.helium.tools;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of theme files and uploaded theme variables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThemeParsingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    protected String themeText;
+    protected String uploadText;
+    protected ThemeVariablesManager manager;
+
+    @Setup
+    public void setup() {
+        themeText = BenchmarkThemes.generateTheme(lines);
+        uploadText = BenchmarkThemes.generateUpload(lines);
+        manager = BenchmarkThemes.createManager(lines);
+    }
+
+    @Benchmark
+    public void parseThemeVariables(Blackhole blackhole) {
+        ThemeVariablesManager themeVariablesManager = BenchmarkThemes.createManager();
+        themeVariablesManager.parseThemeVariables(BenchmarkThemes.reader(themeText));
+        blackhole.consume(themeVariablesManager.getThemeVariables());
+    }
+
+    @Benchmark
+    public List<ModifiedThemeVariableDetails> parseUploadedThemeVariables() {
+        return manager.parseUploadedThemeVariables(BenchmarkThemes.reader(uploadText));
+    }
+}
@@ -0,0 +1,46 @@
+package io.jmix.editor.helium.tools;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of theme variable details for all variables of a theme across the template chain:
+ * a color template, its base theme mode and the default light template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThemeResolutionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    @Param({Templates.LIGHT, BenchmarkThemes.DARK_MODE, BenchmarkThemes.COLOR_TEMPLATE})
+    public String templateName;
+
+    protected List<ThemeVariable> themeVariables;
+    protected Template template;
+
+    @Setup
+    public void setup() {
+        ThemeVariablesManager manager = BenchmarkThemes.createManager(lines);
+        themeVariables = manager.getThemeVariables();
+        template = manager.getTemplates().stream()
+                .filter(t -> templateName.equals(t.getName()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Template not found: " + templateName));
+    }
+
+    @Benchmark
+    public void getThemeVariableDetails(Blackhole blackhole) {
+        for (ThemeVariable themeVariable : themeVariables) {
+            blackhole.consume(themeVariable.getThemeVariableDetails(template));
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package io.jmix.editor.helium.tools;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Runs many concurrent editor sessions against one shared {@link ThemeVariablesManager} and reports
+ * per-operation latency, heap per session, GC pressure and throughput for each session count.
+ * <p>
+ * Arguments, all optional:
+ * <ul>
+ *     <li>{@code --sessions=1,2,4,8,16,32,64} - session counts to run</li>
+ *     <li>{@code --operations=200} - operations per session</li>
+ *     <li>{@code --theme=path} - a theme file, by default a synthetic theme is generated</li>
+ *     <li>{@code --modules=20} - modules of the synthetic theme</li>
+ * </ul>
+ * The process exits with code 1 if the shared theme variables are changed by the sessions.
+ */
+public class EditorLoadTest {
+
+    protected static final String[] COLORS = {"#D13F3F", "#2A8463", "#0055A6", "#FDB42B", "#5440AC"};
+
+    protected static final String OPEN = "open";
+    protected static final String SWITCH_TEMPLATE = "switchTemplate";
+    protected static final String CHANGE_COLOR = "changeColor";
+    protected static final String DOWNLOAD = "download";
+
+    protected static final List<String> OPERATIONS = Arrays.asList(OPEN, SWITCH_TEMPLATE, CHANGE_COLOR, DOWNLOAD);
+
+    protected final ThemeVariablesManager themeVariablesManager;
+    protected final List<ThemeVariable> changedThemeVariables;
+    protected final int operationsPerSession;
+
+    public EditorLoadTest(ThemeVariablesManager themeVariablesManager, int operationsPerSession) {
+        this.themeVariablesManager = themeVariablesManager;
+        this.operationsPerSession = operationsPerSession;
+
+        // variables with dependent variables produce the cascades
+        Template lightTemplate = themeVariablesManager.getTemplates().get(0);
+        this.changedThemeVariables = themeVariablesManager.getThemeVariables().stream()
+                .filter(themeVariable -> !themeVariablesManager.getChildThemeVariables(themeVariable.getName(), lightTemplate).isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+
+        ThemeVariablesManager manager = createManager(options);
+        EditorLoadTest loadTest = new EditorLoadTest(manager,
+                Integer.parseInt(options.getOrDefault("operations", "200")));
+
+        String fingerprint = fingerprint(manager);
+        System.out.printf("Theme: %d variables, %d templates, %d variables with dependent variables%n%n",
+                manager.getThemeVariables().size(), manager.getTemplates().size(), loadTest.changedThemeVariables.size());
+
+        List<Integer> sessionCounts = Arrays.stream(options.getOrDefault("sessions", "1,2,4,8,16,32,64").split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+
+        Result previousResult = null;
+        for (int sessionCount : sessionCounts) {
+            Result result = loadTest.run(sessionCount);
+            result.print(previousResult);
+            previousResult = result;
+        }
+
+        if (!fingerprint.equals(fingerprint(manager))) {
+            System.err.println("Shared theme variables were changed by the sessions");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the given number of sessions concurrently, one thread per session.
+     *
+     * @param sessionCount the number of sessions
+     * @return the result
+     * @throws InterruptedException if interrupted
+     */
+    public Result run(int sessionCount) throws InterruptedException, ExecutionException {
+        long heapBefore = SessionFootprint.usedHeapAfterGc();
+        GcSnapshot gcBefore = GcSnapshot.take();
+
+        ExecutorService executor = Executors.newFixedThreadPool(sessionCount);
+        CyclicBarrier barrier = new CyclicBarrier(sessionCount);
+        List<Future<SessionResult>> futures = new ArrayList<>();
+        List<SimulatedEditorSession> sessions = Collections.synchronizedList(new ArrayList<>());
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < sessionCount; i++) {
+            long seed = i;
+            futures.add(executor.submit(() -> runSession(seed, barrier, sessions)));
+        }
+
+        Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+        OPERATIONS.forEach(operation -> latencies.put(operation, new LatencyRecorder()));
+        long allocatedBytes = 0;
+        long javaScriptExecutions = 0;
+        for (Future<SessionResult> future : futures) {
+            SessionResult sessionResult = future.get();
+            sessionResult.latencies.forEach((operation, recorder) -> latencies.get(operation).addAll(recorder));
+            allocatedBytes += Math.max(sessionResult.allocatedBytes, 0);
+            javaScriptExecutions += sessionResult.javaScriptExecutions;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        GcSnapshot gcAfter = GcSnapshot.take();
+        // the sessions are still referenced, so the difference is the heap they retain
+        long heapPerSession = (SessionFootprint.usedHeapAfterGc() - heapBefore) / sessionCount;
+        long estimatedSizePerSession = (long) sessions.stream()
+                .mapToLong(SimulatedEditorSession::estimateSize)
+                .average()
+                .orElse(0);
+
+        return new Result(sessionCount, latencies, durationNanos, heapPerSession, estimatedSizePerSession,
+                allocatedBytes, javaScriptExecutions, gcAfter.count - gcBefore.count, gcAfter.timeMillis - gcBefore.timeMillis);
+    }
+
+    protected SessionResult runSession(long seed, CyclicBarrier barrier, List<SimulatedEditorSession> sessions)
+            throws Exception {
+        Random random = new Random(seed);
+        SessionResult result = new SessionResult();
+        OPERATIONS.forEach(operation -> result.latencies.put(operation, new LatencyRecorder()));
+        List<Template> templates = themeVariablesManager.getTemplates();
+
+        barrier.await();
+        long startAllocatedBytes = SessionFootprint.currentThreadAllocatedBytes();
+
+        SimulatedEditorSession session = new SimulatedEditorSession(themeVariablesManager);
+        measure(result, OPEN, session::open);
+        sessions.add(session);
+
+        for (int i = 0; i < operationsPerSession; i++) {
+            int operation = random.nextInt(100);
+            if (operation < 10) {
+                Template template = templates.get(random.nextInt(templates.size()));
+                measure(result, SWITCH_TEMPLATE, () -> session.switchTemplate(template));
+            } else if (operation < 95 && !changedThemeVariables.isEmpty()) {
+                ThemeVariable themeVariable = changedThemeVariables.get(random.nextInt(changedThemeVariables.size()));
+                String color = COLORS[random.nextInt(COLORS.length)];
+                measure(result, CHANGE_COLOR, () -> session.changeColor(themeVariable, color));
+            } else {
+                measure(result, DOWNLOAD, session::download);
+            }
+        }
+
+        result.allocatedBytes = SessionFootprint.allocatedBytesSince(startAllocatedBytes);
+        result.javaScriptExecutions = session.getClient().getExecutions();
+        return result;
+    }
+
+    protected void measure(SessionResult result, String operation, Runnable runnable) {
+        long startNanos = System.nanoTime();
+        runnable.run();
+        result.latencies.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    protected static ThemeVariablesManager createManager(Map<String, String> options) throws IOException {
+        String theme = options.get("theme");
+        if (theme != null) {
+            ThemeVariablesManager manager = ThemeFixtures.createManager();
+            manager.parseThemeVariables(new BufferedReader(new FileReader(theme)));
+            return manager;
+        }
+
+        SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+        generator.setModuleCount(Integer.parseInt(options.getOrDefault("modules", "20")));
+        generator.setVarChainDepth(2);
+        return ThemeFixtures.createManager(generator);
+    }
+
+    /**
+     * @return all values of the shared theme variables
+     */
+    protected static String fingerprint(ThemeVariablesManager manager) {
+        StringBuilder builder = new StringBuilder();
+        for (ThemeVariable themeVariable : manager.getThemeVariables()) {
+            for (Template template : manager.getTemplates()) {
+                ThemeVariableDetails details = themeVariable.getDetailsMap().get(template);
+                if (details != null) {
+                    builder.append(themeVariable.getName()).append('/').append(template.getName())
+                            .append('=').append(details.getValue()).append('\n');
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    protected static class SessionResult {
+
+        protected Map<String, LatencyRecorder> latencies = new HashMap<>();
+        protected long allocatedBytes;
+        protected long javaScriptExecutions;
+    }
+
+    protected static class GcSnapshot {
+
+        protected long count;
+        protected long timeMillis;
+
+        protected static GcSnapshot take() {
+            GcSnapshot snapshot = new GcSnapshot();
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.count += Math.max(bean.getCollectionCount(), 0);
+                snapshot.timeMillis += Math.max(bean.getCollectionTime(), 0);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Result of one session count.
+     */
+    public static class Result {
+
+        protected final int sessionCount;
+        protected final Map<String, LatencyRecorder> latencies;
+        protected final long durationNanos;
+        protected final long heapPerSession;
+        protected final long estimatedSizePerSession;
+        protected final long allocatedBytes;
+        protected final long javaScriptExecutions;
+        protected final long gcCount;
+        protected final long gcTimeMillis;
+
+        public Result(int sessionCount, Map<String, LatencyRecorder> latencies, long durationNanos,
+                      long heapPerSession, long estimatedSizePerSession, long allocatedBytes,
+                      long javaScriptExecutions, long gcCount, long gcTimeMillis) {
+            this.sessionCount = sessionCount;
+            this.latencies = latencies;
+            this.durationNanos = durationNanos;
+            this.heapPerSession = heapPerSession;
+            this.estimatedSizePerSession = estimatedSizePerSession;
+            this.allocatedBytes = allocatedBytes;
+            this.javaScriptExecutions = javaScriptExecutions;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+        }
+
+        public double getThroughput() {
+            long operations = latencies.values().stream()
+                    .mapToLong(LatencyRecorder::getCount)
+                    .sum();
+            return operations / (durationNanos / 1_000_000_000d);
+        }
+
+        /**
+         * Prints the result. The node is considered saturated when doubling the sessions adds
+         * less than 10% of throughput.
+         *
+         * @param previousResult the result of the previous session count or {@code null}
+         */
+        public void print(Result previousResult) {
+            double durationSeconds = durationNanos / 1_000_000_000d;
+            System.out.printf("Sessions: %d, duration: %.2f s, throughput: %.1f ops/s%s%n", sessionCount,
+                    durationSeconds, getThroughput(),
+                    previousResult != null && getThroughput() < previousResult.getThroughput() * 1.1
+                            ? " (saturated)"
+                            : "");
+            System.out.printf("  %-16s %8s %10s %10s %10s%n", "Operation", "Count", "p50 ms", "p95 ms", "p99 ms");
+            latencies.forEach((operation, recorder) -> System.out.printf("  %-16s %8d %10.2f %10.2f %10.2f%n",
+                    operation, recorder.getCount(), recorder.getPercentileMillis(50),
+                    recorder.getPercentileMillis(95), recorder.getPercentileMillis(99)));
+            System.out.printf("  Heap per session: %.1f KB (estimated state %.1f KB)%n",
+                    heapPerSession / 1024d, estimatedSizePerSession / 1024d);
+            System.out.printf("  Allocation rate: %.1f MB/s, JavaScript executions: %d%n",
+                    allocatedBytes / (1024d * 1024d) / durationSeconds, javaScriptExecutions);
+            System.out.printf("  GC: %d collections, %d ms (%.1f%% of wall time)%n%n",
+                    gcCount, gcTimeMillis, gcTimeMillis / 10d / durationSeconds);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.jmix.editor.helium.tools;
+
+import java.util.Arrays;
+
+/**
+ * Collects operation latencies of one thread.
+ */
+public class LatencyRecorder {
+
+    protected long[] nanos = new long[256];
+    protected int size;
+
+    public void record(long durationNanos) {
+        if (size == nanos.length) {
+            nanos = Arrays.copyOf(nanos, size * 2);
+        }
+        nanos[size++] = durationNanos;
+    }
+
+    public void addAll(LatencyRecorder recorder) {
+        for (int i = 0; i < recorder.size; i++) {
+            record(recorder.nanos[i]);
+        }
+    }
+
+    public int getCount() {
+        return size;
+    }
+
+    /**
+     * @param percentile a percentile from 0 to 100
+     * @return the latency in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(nanos, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000d;
+    }
+}
@@ -0,0 +1,201 @@
+package io.jmix.editor.helium.tools;
+
+import io.jmix.editor.helium.components.themevariablefield.ThemeVariableEditorState;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Editor session driven without a browser. Each theme variable is edited by the same
+ * {@link ThemeVariableEditorState} as the theme variable fields, and the session keeps the changed values
+ * in {@link ThemeSessionValues} and updates the dependent theme variables as the main screen does.
+ * JavaScript that would be sent to the client is counted by {@link Client}.
+ */
+public class SimulatedEditorSession {
+
+    protected final ThemeVariablesManager themeVariablesManager;
+    protected final Client client = new Client();
+
+    protected ThemeModel model;
+    protected ThemeSessionValues sessionValues;
+    protected Template currentTemplate;
+
+    /**
+     * Editor states of the theme variables, by ordinal.
+     */
+    protected ThemeVariableEditorState[] editorStates;
+    protected boolean updatingChildThemeVariables;
+
+    public SimulatedEditorSession(ThemeVariablesManager themeVariablesManager) {
+        this.themeVariablesManager = themeVariablesManager;
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Opens the editor with the default light template.
+     */
+    public void open() {
+        model = themeVariablesManager.getModel();
+        sessionValues = new ThemeSessionValues(model);
+        editorStates = new ThemeVariableEditorState[model.getThemeVariables().size()];
+        for (ThemeVariable themeVariable : model.getThemeVariables()) {
+            ThemeVariableEditorState editorState = new ThemeVariableEditorState(themeVariable,
+                    new SessionView(themeVariable));
+            // the main screen listens to the field after it shows the default template
+            editorState.setColorValueByTemplate(themeVariable.getDefaultColorTemplate());
+            editorStates[themeVariable.getOrdinal()] = editorState;
+        }
+
+        currentTemplate = model.getTemplates().get(0);
+        updateFieldsByColorTemplate(currentTemplate);
+    }
+
+    public void switchTemplate(Template template) {
+        if (!Objects.equals(currentTemplate, template)) {
+            currentTemplate = template;
+            sessionValues.clear();
+        }
+        updateFieldsByColorTemplate(template);
+    }
+
+    /**
+     * Changes a color as the user does and updates the dependent theme variables.
+     *
+     * @param themeVariable a theme variable
+     * @param value         a new color
+     */
+    public void changeColor(ThemeVariable themeVariable, String value) {
+        editorStates[themeVariable.getOrdinal()].setValue(value);
+    }
+
+    /**
+     * @return the downloaded text
+     */
+    public String download() {
+        List<ModifiedThemeVariableDetails> modifiedThemeVariablesList = new ArrayList<>();
+        ThemeExportUtils.collectModifiedThemeVariables(model, sessionValues.getUserValues(),
+                modifiedThemeVariablesList);
+        ThemeExportUtils.collectModifiedThemeVariables(model, sessionValues.getTemplateValues(),
+                modifiedThemeVariablesList);
+
+        return ThemeExportUtils.generateText(currentTemplate.getName(), true,
+                ThemeExportUtils.sort(modifiedThemeVariablesList));
+    }
+
+    /**
+     * @return the approximate number of bytes retained by the session state
+     */
+    public long estimateSize() {
+        long size = 16 + 16 + (long) editorStates.length * 4;
+        for (ThemeVariableEditorState editorState : editorStates) {
+            // the state, its view and the shown strings
+            size += 48 + 16;
+            size += estimateSize(editorState.getValue());
+            if (!Objects.equals(editorState.getInputPrompt(), editorState.getValue())) {
+                size += estimateSize(editorState.getInputPrompt());
+            }
+            if (!Objects.equals(editorState.getColorValue(), editorState.getValue())) {
+                size += estimateSize(editorState.getColorValue());
+            }
+        }
+        return size + sessionValues.getUserValues().estimateSize() + sessionValues.getTemplateValues().estimateSize();
+    }
+
+    protected long estimateSize(@Nullable String value) {
+        return value != null ? 40 + value.length() : 0;
+    }
+
+    protected void updateFieldsByColorTemplate(Template template) {
+        for (ThemeVariableEditorState editorState : editorStates) {
+            editorState.setColorValueByTemplate(template);
+        }
+    }
+
+    protected void onColorValueChange(ThemeVariable themeVariable, @Nullable String value, boolean isBaseThemeMode) {
+        if (currentTemplate == null) {
+            // the editor is being opened
+            return;
+        }
+
+        sessionValues.put(themeVariable.getOrdinal(), value, isBaseThemeMode);
+        if (isBaseThemeMode && !updatingChildThemeVariables) {
+            updatingChildThemeVariables = true;
+            try {
+                model.visitChildThemeVariables(themeVariable.getName(), value, currentTemplate,
+                        (child, parentValue) -> editorStates[child.getOrdinal()].setColorValueByParent(parentValue));
+            } finally {
+                updatingChildThemeVariables = false;
+            }
+        }
+    }
+
+    /**
+     * Stand-in for a theme variable field. Sends the JavaScript to the {@link Client} and notifies
+     * the session about the applied values, the shown state is kept by {@link ThemeVariableEditorState}.
+     */
+    protected class SessionView implements ThemeVariableEditorState.View {
+
+        protected final ThemeVariable themeVariable;
+
+        public SessionView(ThemeVariable themeVariable) {
+            this.themeVariable = themeVariable;
+        }
+
+        @Override
+        public void showValue(@Nullable String value, boolean defaultValue) {
+            // nothing to show
+        }
+
+        @Override
+        public void showInputPrompt(@Nullable String inputPrompt) {
+            // nothing to show
+        }
+
+        @Override
+        public void showColorValue(@Nullable String colorValue) {
+            // nothing to show
+        }
+
+        @Override
+        public void showModified(boolean modified) {
+            // nothing to show
+        }
+
+        @Override
+        public void executeJavaScript(String script) {
+            client.execute(script);
+        }
+
+        @Override
+        public void colorValueApplied(@Nullable String value, boolean isBaseThemeMode) {
+            onColorValueChange(themeVariable, value, isBaseThemeMode);
+        }
+    }
+
+    /**
+     * Stand-in for the browser. Counts the JavaScript that would be sent.
+     */
+    public static class Client {
+
+        protected long executions;
+        protected long payloadSize;
+
+        public void execute(String script) {
+            executions++;
+            payloadSize += script.length();
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public long getPayloadSize() {
+            return payloadSize;
+        }
+    }
+}
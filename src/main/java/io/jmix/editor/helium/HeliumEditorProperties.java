@@ -4,6 +4,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConstructorBinding;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
+import java.time.Duration;
 import java.util.Set;
 
 @ConfigurationProperties(prefix = "helium.editor")
@@ -14,10 +15,121 @@ public class HeliumEditorProperties {
 
     protected String themeVariablesFilePath;
 
+    /**
+     * Time after which the content of a preview tab that is not visited is released. Zero disables releasing.
+     */
+    protected Duration previewTabReleaseTimeout;
+
+    /**
+     * The number of sample entities shared by the component samples of all sessions.
+     */
+    protected int sampleDataSize;
+
+    /**
+     * The number of synthetic entities loaded page by page into the table and grid samples.
+     * Zero binds the samples to the shared sample data instead.
+     */
+    protected int largeSampleDataSize;
+
+    /**
+     * Whether the editor shows the button that runs the theme change benchmark.
+     */
+    protected boolean benchmarkEnabled;
+
+    /**
+     * Whether each color change made by the user is traced and the trace is logged in JSON
+     * by the {@code io.jmix.editor.helium.tools.CascadeTrace} logger.
+     */
+    protected boolean cascadeTraceEnabled;
+
+    /**
+     * Whether the retained heap of each editor session is measured and logged by the main screen.
+     * The measurement runs full garbage collections, so it is meant for a test server only.
+     */
+    protected boolean sessionFootprintEnabled;
+
+    /**
+     * Delay after which the changes made by the user are saved as a theme draft. Changes made during
+     * the delay are saved together. Zero disables drafts.
+     */
+    protected Duration draftSaveDelay;
+
+    /**
+     * Time after which a theme draft that is not changed is deleted. Zero keeps drafts forever.
+     */
+    protected Duration draftRetention;
+
+    /**
+     * The number of theme versions between full snapshots. The versions in between are stored
+     * as deltas against the previous version.
+     */
+    protected int versionSnapshotInterval;
+
+    /**
+     * The number of the latest theme versions kept per theme and template. Older versions are deleted
+     * up to the snapshot the kept versions are restored from. Zero keeps all versions.
+     */
+    protected int versionHistorySize;
+
+    /**
+     * Whether the browser derives the colors of dependent theme variables itself. The server then sends only
+     * the changed values and keeps its state in sync without sending the derived values back.
+     * The color math of the browser is the same as {@link io.jmix.editor.helium.tools.ThemeVariableUtils},
+     * so the previewed values are the exported ones.
+     */
+    protected boolean clientColorDerivationEnabled;
+
+    /**
+     * Whether colors are picked by the browser color input. Dragging the color is previewed by the browser
+     * together with the dependent theme variables, so the dependency graph is sent to the browser even if
+     * {@link #clientColorDerivationEnabled} is disabled. The color is sent to the server when the input is closed.
+     */
+    protected boolean clientColorPickerEnabled;
+
+    /**
+     * Whether theme variables are edited in a single tree grid grouped by module instead of a field
+     * per theme variable. The grid renders only the visible rows on the client.
+     */
+    protected boolean gridEditorEnabled;
+
+    /**
+     * The maximum number of value changes kept by the undo history of a session. The oldest changes are
+     * dropped when the history is full.
+     */
+    protected int editHistorySize;
+
     public HeliumEditorProperties(@DefaultValue("TokenList") Set<String> excludedThemeVariableModules,
-                                  @DefaultValue("helium/helium.scss") String themeVariablesFilePath) {
+                                  @DefaultValue("helium/helium.scss") String themeVariablesFilePath,
+                                  @DefaultValue("0s") Duration previewTabReleaseTimeout,
+                                  @DefaultValue("10") int sampleDataSize,
+                                  @DefaultValue("0") int largeSampleDataSize,
+                                  @DefaultValue("false") boolean benchmarkEnabled,
+                                  @DefaultValue("false") boolean cascadeTraceEnabled,
+                                  @DefaultValue("false") boolean sessionFootprintEnabled,
+                                  @DefaultValue("2s") Duration draftSaveDelay,
+                                  @DefaultValue("90d") Duration draftRetention,
+                                  @DefaultValue("20") int versionSnapshotInterval,
+                                  @DefaultValue("200") int versionHistorySize,
+                                  @DefaultValue("true") boolean clientColorDerivationEnabled,
+                                  @DefaultValue("false") boolean clientColorPickerEnabled,
+                                  @DefaultValue("false") boolean gridEditorEnabled,
+                                  @DefaultValue("1000") int editHistorySize) {
         this.excludedThemeVariableModules = excludedThemeVariableModules;
         this.themeVariablesFilePath = themeVariablesFilePath;
+        this.previewTabReleaseTimeout = previewTabReleaseTimeout;
+        this.sampleDataSize = sampleDataSize;
+        this.largeSampleDataSize = largeSampleDataSize;
+        this.benchmarkEnabled = benchmarkEnabled;
+        this.cascadeTraceEnabled = cascadeTraceEnabled;
+        this.sessionFootprintEnabled = sessionFootprintEnabled;
+        this.draftSaveDelay = draftSaveDelay;
+        this.draftRetention = draftRetention;
+        this.versionSnapshotInterval = versionSnapshotInterval;
+        this.versionHistorySize = versionHistorySize;
+        this.clientColorDerivationEnabled = clientColorDerivationEnabled;
+        this.clientColorPickerEnabled = clientColorPickerEnabled;
+        this.gridEditorEnabled = gridEditorEnabled;
+        this.editHistorySize = editHistorySize;
     }
 
     public Set<String> getExcludedThemeVariableModules() {
@@ -27,4 +139,60 @@ public class HeliumEditorProperties {
     public String getThemeVariablesFilePath() {
         return themeVariablesFilePath;
     }
+
+    public Duration getPreviewTabReleaseTimeout() {
+        return previewTabReleaseTimeout;
+    }
+
+    public int getSampleDataSize() {
+        return sampleDataSize;
+    }
+
+    public int getLargeSampleDataSize() {
+        return largeSampleDataSize;
+    }
+
+    public boolean isBenchmarkEnabled() {
+        return benchmarkEnabled;
+    }
+
+    public boolean isCascadeTraceEnabled() {
+        return cascadeTraceEnabled;
+    }
+
+    public boolean isSessionFootprintEnabled() {
+        return sessionFootprintEnabled;
+    }
+
+    public Duration getDraftSaveDelay() {
+        return draftSaveDelay;
+    }
+
+    public Duration getDraftRetention() {
+        return draftRetention;
+    }
+
+    public int getVersionSnapshotInterval() {
+        return versionSnapshotInterval;
+    }
+
+    public int getVersionHistorySize() {
+        return versionHistorySize;
+    }
+
+    public boolean isClientColorDerivationEnabled() {
+        return clientColorDerivationEnabled;
+    }
+
+    public boolean isClientColorPickerEnabled() {
+        return clientColorPickerEnabled;
+    }
+
+    public boolean isGridEditorEnabled() {
+        return gridEditorEnabled;
+    }
+
+    public int getEditHistorySize() {
+        return editHistorySize;
+    }
 }
@@ -0,0 +1,26 @@
+package io.jmix.editor.helium.components.themevariablefield;
+
+import io.jmix.editor.helium.tools.Template;
+import io.jmix.editor.helium.tools.ThemeVariable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Editor of the color value of one theme variable: either a {@link ThemeVariableField} or
+ * a row of the theme variables grid, see {@link ThemeVariableGridRow}.
+ */
+public interface ThemeVariableEditor {
+
+    @Nullable
+    ThemeVariable getValue();
+
+    void setColorValueByTemplate(Template template);
+
+    void setColorValueByParent(String parentColorValue);
+
+    void setColorValue(String value);
+
+    void restoreColorValue(String value, boolean isBaseThemeMode);
+
+    void restoreDefaultValue();
+}
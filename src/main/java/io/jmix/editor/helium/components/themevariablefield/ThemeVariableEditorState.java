@@ -0,0 +1,423 @@
+package io.jmix.editor.helium.components.themevariablefield;
+
+import io.jmix.editor.helium.jfr.JavaScriptBatchEvent;
+import io.jmix.editor.helium.tools.*;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * State of the editor of one theme variable and the rules that change it, shared by {@link ThemeVariableField}
+ * and {@link ThemeVariableGridRow}.
+ * <p>
+ * The state is the text of the value field, its input prompt, the color and whether the value can be reset.
+ * The value is either set by the user, taken from the current template or derived from the parent theme
+ * variable, see {@link ThemeVariableDetails#deriveValue(String)}. The state is shown and the applied values
+ * are sent to the client by a {@link View}, so the editors differ only in rendering.
+ */
+public class ThemeVariableEditorState {
+
+    public static final String SET_THEME_VARIABLE_VOID = "setThemeVariable('%s', '%s')";
+    public static final String APPLY_THEME_VARIABLE_VOID = "applyThemeVariable('%s', '%s')";
+    public static final String REMOVE_THEME_VARIABLE_VOID = "removeThemeVariable('%s')";
+
+    protected final ThemeVariable themeVariable;
+    protected final View view;
+
+    protected Template currentTemplate;
+    protected String parentValue;
+
+    /**
+     * The text of the value field, {@code null} if the value is not set by the user.
+     */
+    protected String value;
+    protected String inputPrompt;
+    protected String colorValue;
+
+    /**
+     * Whether the browser derives the values of the dependent theme variables, see {@link #setClientDerivationEnabled(boolean)}.
+     */
+    protected boolean clientDerivationEnabled;
+    protected boolean updatingByParent;
+
+    public ThemeVariableEditorState(ThemeVariable themeVariable, View view) {
+        this.themeVariable = themeVariable;
+        this.view = view;
+    }
+
+    public ThemeVariable getThemeVariable() {
+        return themeVariable;
+    }
+
+    @Nullable
+    public String getValue() {
+        return value;
+    }
+
+    @Nullable
+    public String getInputPrompt() {
+        return inputPrompt;
+    }
+
+    /**
+     * @return the shown color or {@code null} if the value is transparent
+     */
+    @Nullable
+    public String getColorValue() {
+        return colorValue;
+    }
+
+    public boolean isClientDerivationEnabled() {
+        return clientDerivationEnabled;
+    }
+
+    /**
+     * Sets whether the browser derives the values of the dependent theme variables. If enabled, a value set
+     * by the user is applied by the browser together with the dependent values, and the dependent values
+     * computed by {@link #setColorValueByParent(String)} are not sent to the browser.
+     *
+     * @param clientDerivationEnabled whether the browser derives the dependent values
+     */
+    public void setClientDerivationEnabled(boolean clientDerivationEnabled) {
+        this.clientDerivationEnabled = clientDerivationEnabled;
+    }
+
+    /**
+     * Shows the value of the theme variable in a template unless it is already shown.
+     *
+     * @param template a template
+     */
+    public void setColorValueByTemplate(Template template) {
+        currentTemplate = template;
+
+        ThemeVariableDetails details = themeVariable.getThemeVariableDetails(template);
+        if (details == null) {
+            return;
+        }
+
+        if (!Objects.equals(details.getTemplateValue(template), ThemeVariableUtils.getColorString(colorValue))) {
+            parentValue = null;
+            reset(details);
+        }
+    }
+
+    /**
+     * Derives the value from a new value of the parent theme variable.
+     *
+     * @param parentColorValue a value of the parent or {@code null} if the parent is reset
+     */
+    public void setColorValueByParent(@Nullable String parentColorValue) {
+        try (CascadeTrace.Span ignored = CascadeTrace.span(CascadeTrace.SET_COLOR_VALUE_BY_PARENT,
+                themeVariable.getName(), parentColorValue)) {
+            updatingByParent = true;
+            updateColorValueByParent(parentColorValue);
+        } finally {
+            updatingByParent = false;
+        }
+    }
+
+    /**
+     * Sets the text of the value field as if it is typed by the user.
+     *
+     * @param value a color value or {@code null} to use the template or parent value
+     */
+    public void setValue(@Nullable String value) {
+        if (Objects.equals(this.value, value)) {
+            return;
+        }
+
+        this.value = value;
+        view.showValue(value, false);
+        onValueChange(value);
+    }
+
+    /**
+     * Shows a value restored from a draft. Unlike {@link #setValue(String)} and
+     * {@link #setColorValueByParent(String)}, the state neither executes JavaScript nor notifies
+     * the view about applied values, the caller applies the restored values to the client itself.
+     *
+     * @param value           a color value
+     * @param isBaseThemeMode {@code true} if the value is set by the user,
+     *                        {@code false} if it is computed from the parent theme variable
+     */
+    public void restoreColorValue(String value, boolean isBaseThemeMode) {
+        setColorValue(value);
+
+        if (isBaseThemeMode) {
+            parentValue = null;
+
+            this.value = value;
+            view.showValue(value, false);
+            view.showModified(true);
+        } else {
+            parentValue = value;
+
+            if (inputPrompt == null || !inputPrompt.startsWith("var(")) {
+                setInputPrompt(value);
+                setSilentlyValue(value);
+            }
+        }
+    }
+
+    /**
+     * Shows the template value of a theme variable that is not overridden anymore. Like
+     * {@link #restoreColorValue(String, boolean)}, the state neither executes JavaScript nor notifies
+     * the view about applied values.
+     */
+    public void restoreDefaultValue() {
+        ThemeVariableDetails details = themeVariable.getThemeVariableDetails(currentTemplate);
+        if (details == null) {
+            return;
+        }
+
+        parentValue = null;
+
+        String templateValue = details.getTemplateValue(currentTemplate);
+        setColorValue(ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(templateValue)
+                ? templateValue
+                : ThemeVariableUtils.getColorString(templateValue));
+
+        view.showModified(false);
+        setInputPrompt(details.getPlaceHolder());
+        setSilentlyValue(details.getPlaceHolder());
+    }
+
+    /**
+     * Resets the value to the template or parent value.
+     */
+    public void reset() {
+        reset(themeVariable.getThemeVariableDetails(currentTemplate));
+    }
+
+    protected void updateColorValueByParent(@Nullable String parentColorValue) {
+        ThemeVariableDetails details = themeVariable.getThemeVariableDetails(currentTemplate);
+
+        if (parentColorValue == null) {
+            parentColorValue = details.getTemplateValue(currentTemplate);
+            parentValue = null;
+
+            if (isColorTemplateValue()) {
+                setThemeVariable(parentColorValue, false);
+            } else {
+                removeThemeVariable();
+            }
+        } else {
+            String derivedValue = deriveValue(details, parentColorValue);
+            if (derivedValue != null) {
+                parentColorValue = derivedValue;
+                setThemeVariable(parentColorValue, true);
+            }
+            parentValue = parentColorValue;
+        }
+
+        setValue(null);
+        setColorValue(parentColorValue);
+
+        if (inputPrompt == null || !inputPrompt.startsWith("var(")) {
+            setInputPrompt(parentColorValue);
+            setSilentlyValue(parentColorValue);
+        }
+    }
+
+    @Nullable
+    protected String deriveValue(ThemeVariableDetails details, String parentColorValue) {
+        if (details.getColorModifierPercent() == null
+                || ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(parentColorValue)) {
+            return details.deriveValue(parentColorValue);
+        }
+
+        String operation = details.isDarkened() ? CascadeTrace.DARKEN : CascadeTrace.LIGHTEN;
+        try (CascadeTrace.Span span = CascadeTrace.span(operation, themeVariable.getName(), parentColorValue)) {
+            String derivedValue = details.deriveValue(parentColorValue);
+            span.setResult(derivedValue);
+            return derivedValue;
+        }
+    }
+
+    protected void onValueChange(@Nullable String newValue) {
+        String value = newValue;
+        if (value == null) {
+            if (parentValue != null) {
+                value = parentValue;
+            } else if (themeVariable.getThemeVariableDetails(currentTemplate) != null) {
+                value = themeVariable.getThemeVariableDetails(currentTemplate).getTemplateValue(currentTemplate);
+            }
+        }
+
+        if (!ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(value)) {
+            value = ThemeVariableUtils.getColorString(value);
+        }
+
+        setColorValue(value);
+
+        boolean valueIsNull = newValue == null;
+        view.showModified(!valueIsNull);
+
+        if (valueIsNull && parentValue == null) {
+            removeThemeVariable();
+        } else {
+            setThemeVariable(value, true);
+        }
+    }
+
+    protected void reset(ThemeVariableDetails details) {
+        if (inputPrompt != null &&
+                !inputPrompt.equals(details.getPlaceHolder())) {
+            removeThemeVariable();
+        }
+
+        setValue(null);
+
+        String templateValue = details.getTemplateValue(currentTemplate);
+        String value = parentValue != null
+                ? parentValue
+                : ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(templateValue)
+                ? templateValue
+                : ThemeVariableUtils.getColorString(templateValue);
+
+        setColorValue(value);
+
+        if (isColorTemplateValue()) {
+            setThemeVariable(value, false);
+        }
+
+        if (parentValue == null) {
+            setInputPrompt(details.getPlaceHolder());
+            setSilentlyValue(details.getPlaceHolder());
+        }
+    }
+
+    /**
+     * @return whether the value is declared by the current template that inherits a base theme mode
+     */
+    protected boolean isColorTemplateValue() {
+        return currentTemplate != null
+                && currentTemplate.getParent() != null
+                && themeVariable.hasColorTemplate(currentTemplate);
+    }
+
+    /**
+     * Shows a template or parent value in the value field without applying it.
+     */
+    protected void setSilentlyValue(String value) {
+        this.value = value;
+        view.showValue(value, true);
+    }
+
+    protected void setInputPrompt(String inputPrompt) {
+        this.inputPrompt = inputPrompt;
+        view.showInputPrompt(inputPrompt);
+    }
+
+    protected void setColorValue(String value) {
+        colorValue = ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(value) ? null : value;
+        view.showColorValue(colorValue);
+    }
+
+    protected void setThemeVariable(String value, boolean isBaseThemeMode) {
+        try (CascadeTrace.Span ignored = CascadeTrace.span(CascadeTrace.SET_THEME_VARIABLE,
+                themeVariable.getName(), value)) {
+            if (clientDerivationEnabled && isBaseThemeMode) {
+                // the browser derives the dependent values, so the values derived here are not sent
+                if (!updatingByParent) {
+                    JavaScriptBatchEvent event = new JavaScriptBatchEvent();
+                    event.begin();
+
+                    String script = String.format(APPLY_THEME_VARIABLE_VOID, themeVariable.getName(), value);
+                    view.executeJavaScript(script);
+                    commitJavaScriptBatchEvent(event, script, null);
+                }
+
+                view.colorValueApplied(value, true);
+                return;
+            }
+
+            JavaScriptBatchEvent event = new JavaScriptBatchEvent();
+            event.begin();
+
+            String script = String.format(SET_THEME_VARIABLE_VOID, themeVariable.getName(), value);
+            view.executeJavaScript(script);
+            String rgbScript = null;
+
+            if (themeVariable.isRgbUsed()) {
+                rgbScript = String.format(SET_THEME_VARIABLE_VOID,
+                        themeVariable.getName() + ThemeVariableField.RGB_POSTFIX,
+                        ThemeVariableUtils.convertHexToRGB(value));
+                view.executeJavaScript(rgbScript);
+            }
+
+            commitJavaScriptBatchEvent(event, script, rgbScript);
+
+            view.colorValueApplied(value, isBaseThemeMode);
+        }
+    }
+
+    protected void removeThemeVariable() {
+        try (CascadeTrace.Span ignored = CascadeTrace.span(CascadeTrace.REMOVE_THEME_VARIABLE,
+                themeVariable.getName(), null)) {
+            JavaScriptBatchEvent event = new JavaScriptBatchEvent();
+            event.begin();
+
+            String script = String.format(REMOVE_THEME_VARIABLE_VOID, themeVariable.getName());
+            view.executeJavaScript(script);
+            String rgbScript = null;
+
+            if (themeVariable.isRgbUsed()) {
+                rgbScript = String.format(REMOVE_THEME_VARIABLE_VOID,
+                        themeVariable.getName() + ThemeVariableField.RGB_POSTFIX);
+                view.executeJavaScript(rgbScript);
+            }
+
+            commitJavaScriptBatchEvent(event, script, rgbScript);
+
+            view.colorValueApplied(null, true);
+        }
+    }
+
+    protected void commitJavaScriptBatchEvent(JavaScriptBatchEvent event, String script, @Nullable String rgbScript) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.variable = themeVariable.getName();
+            event.count = rgbScript != null ? 2 : 1;
+            event.payloadLength = script.length() + (rgbScript != null ? rgbScript.length() : 0);
+            event.commit();
+        }
+    }
+
+    /**
+     * Shows the state of a theme variable editor and sends the applied values to the client.
+     */
+    public interface View {
+
+        /**
+         * Shows the text of the value field. The view must not apply the shown value.
+         *
+         * @param value        a value
+         * @param defaultValue {@code true} if the value is the template or parent value,
+         *                     {@code false} if it is set by the user
+         */
+        void showValue(@Nullable String value, boolean defaultValue);
+
+        void showInputPrompt(@Nullable String inputPrompt);
+
+        /**
+         * @param colorValue a color or {@code null} if the value is transparent
+         */
+        void showColorValue(@Nullable String colorValue);
+
+        /**
+         * @param modified whether the value is set by the user and can be reset
+         */
+        void showModified(boolean modified);
+
+        void executeJavaScript(String script);
+
+        /**
+         * Called when a value is applied to the client.
+         *
+         * @param value           the applied value or {@code null} if the value is removed
+         * @param isBaseThemeMode {@code false} if the value is taken from a color template
+         */
+        void colorValueApplied(@Nullable String value, boolean isBaseThemeMode);
+    }
+}
@@ -10,14 +10,17 @@ import io.jmix.ui.component.validation.Validator;
 import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Objects;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 @CompositeDescriptor("theme-variable-field.xml")
 public class ThemeVariableField extends CompositeComponent<Form>
         implements Field<ThemeVariable>,
         CompositeWithIcon,
-        HasInputPrompt {
+        HasInputPrompt,
+        ThemeVariableEditor {
 
     public static final String NAME = "themeVariableField";
 
@@ -25,8 +28,10 @@ public class ThemeVariableField extends CompositeComponent<Form>
 
     protected static final String VALUE_FIELD_DEFAULT_VALUE_STYLENAME = "default-value";
 
-    protected static final String SET_THEME_VARIABLE_VOID = "setThemeVariable('%s', '%s')";
-    protected static final String REMOVE_THEME_VARIABLE_VOID = "removeThemeVariable('%s')";
+    protected static final String MEASURE_STYLE_RECALCULATION_FUNCTION = "measureStyleRecalculation";
+
+    protected static final String STYLE_RECALCULATED_CALLBACK = "onStyleRecalculated";
+    protected static final String COLOR_COMMITTED_CALLBACK = "onColorCommitted";
 
     // Inner components
     protected Label<String> captionField;
@@ -38,8 +43,17 @@ public class ThemeVariableField extends CompositeComponent<Form>
     protected JavaScript javaScript;
 
     protected ThemeVariable themeVariable;
-    protected Template currentTemplate;
-    protected String parentValue;
+    protected ThemeVariableEditorState state;
+
+    /**
+     * Whether the browser derives the values of the dependent theme variables, see {@link #setClientDerivationEnabled(boolean)}.
+     */
+    protected boolean clientDerivationEnabled;
+
+    /**
+     * Whether the color is picked by the browser color input, see {@link #setClientColorPickerEnabled(boolean)}.
+     */
+    protected boolean clientColorPickerEnabled;
 
     protected Subscription valueFieldSubscription;
 
@@ -56,6 +70,7 @@ public class ThemeVariableField extends CompositeComponent<Form>
 
         initColorValueField();
         initValueField();
+        initJsComponent();
         refreshJavaScriptComponent();
         initResetBtn();
     }
@@ -69,6 +84,14 @@ public class ThemeVariableField extends CompositeComponent<Form>
     @Override
     public void setValue(@Nullable ThemeVariable themeVariable) {
         this.themeVariable = themeVariable;
+        state = new ThemeVariableEditorState(themeVariable, new FieldView());
+        state.setClientDerivationEnabled(clientDerivationEnabled);
+
+        String name = themeVariable.getName();
+        setCaption(name);
+        setDescription(name);
+
+        updateJsComponentState();
         setColorValueByTemplate(themeVariable.getDefaultColorTemplate());
     }
 
@@ -244,91 +267,143 @@ public class ThemeVariableField extends CompositeComponent<Form>
         return null;
     }
 
+    @Override
     public void setColorValueByTemplate(Template template) {
-        if (themeVariable == null) {
+        if (state == null) {
             return;
         }
 
-        currentTemplate = template;
-
-        ThemeVariableDetails details = getThemeVariableDetailsByTemplate(template);
-        if (details == null) {
-            return;
-        }
-
-        if (details.getParentThemeVariable() != null
-                && !details.isCommentDependence()) {
-            details.setValue(details.getParentThemeVariable().getThemeVariableDetails(template).getValue());
-        }
-
-        if (!Objects.equals(details.getValue(), ThemeVariableUtils.getColorString(colorValueField.getValue()))) {
-            parentValue = null;
-            reset(details);
-        }
+        state.setColorValueByTemplate(template);
     }
 
+    @Override
     public void setColorValueByParent(String parentColorValue) {
-        ThemeVariableDetails details = getThemeVariableDetailsByTemplate(currentTemplate);
+        state.setColorValueByParent(parentColorValue);
+    }
 
-        if (parentColorValue == null) {
-            parentColorValue = details.getValue();
-            parentValue = null;
+    @Override
+    public void setColorValue(String value) {
+        state.setValue(value);
+    }
 
-            if (currentTemplate != null
-                    && currentTemplate.getParent() != null
-                    && themeVariable.hasColorTemplate(currentTemplate)) {
-                setThemeVariable(parentColorValue, false);
-            } else {
-                removeThemeVariable();
-            }
-        } else {
-            String colorModifier = details.getColorModifier();
-            if ((colorModifier == null && details.isCommentDependence()) ||
-                    ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(parentColorValue)) {
-                setThemeVariable(parentColorValue, true);
-            } else if (colorModifier != null) {
-                String colorModifierValue = details.getColorModifierValue();
-                if (colorModifierValue != null) {
-                    int percent = Integer.parseInt(colorModifierValue.substring(0, colorModifierValue.length() - 1));
-                    parentColorValue = colorModifier.equals("d")
-                            ? ThemeVariableUtils.darken(parentColorValue, percent)
-                            : ThemeVariableUtils.lighten(parentColorValue, percent);
-
-                    setThemeVariable(parentColorValue, true);
-                }
-            }
-            parentValue = parentColorValue;
-        }
+    public boolean isClientDerivationEnabled() {
+        return clientDerivationEnabled;
+    }
 
-        valueField.setValue(null);
-        if (ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(parentColorValue)) {
-            colorValueField.setValue(null);
-        } else {
-            colorValueField.setValue(parentColorValue);
+    /**
+     * Sets whether the browser derives the values of the dependent theme variables. If enabled, a value set
+     * by the user is applied by the browser together with the dependent values, and the dependent values
+     * computed by {@link #setColorValueByParent(String)} are not sent to the browser.
+     *
+     * @param clientDerivationEnabled whether the browser derives the dependent values
+     */
+    public void setClientDerivationEnabled(boolean clientDerivationEnabled) {
+        this.clientDerivationEnabled = clientDerivationEnabled;
+        if (state != null) {
+            state.setClientDerivationEnabled(clientDerivationEnabled);
         }
+    }
 
-        String placeHolder = valueField.getInputPrompt();
-        if (!placeHolder.startsWith("var(")) {
-            setInputPrompt(parentColorValue);
-            setSilentlyValueFieldValue(parentColorValue);
-        }
+    public boolean isClientColorPickerEnabled() {
+        return clientColorPickerEnabled;
     }
 
-    public void setColorValue(String value) {
-        valueField.setValue(value);
+    /**
+     * Sets whether the color is picked by the browser color input instead of the color picker popup.
+     * While the color is dragged, the browser previews it and the dependent colors without server requests.
+     * The color is sent to the server and applied as a value set by the user when the input is closed.
+     *
+     * @param clientColorPickerEnabled whether the browser color input is used
+     */
+    public void setClientColorPickerEnabled(boolean clientColorPickerEnabled) {
+        this.clientColorPickerEnabled = clientColorPickerEnabled;
+        colorValueField.setVisible(!clientColorPickerEnabled);
+        updateJsComponentState();
+    }
+
+    /**
+     * Shows a value restored from a draft, see {@link ThemeVariableEditorState#restoreColorValue(String, boolean)}.
+     */
+    @Override
+    public void restoreColorValue(String value, boolean isBaseThemeMode) {
+        state.restoreColorValue(value, isBaseThemeMode);
+    }
+
+    /**
+     * Shows the template value of a theme variable that is not overridden anymore,
+     * see {@link ThemeVariableEditorState#restoreDefaultValue()}.
+     */
+    @Override
+    public void restoreDefaultValue() {
+        state.restoreDefaultValue();
     }
 
     public Subscription addColorValueChangeListener(Consumer<ValueChangeEvent<String>> listener) {
         return getEventHub().subscribe(ValueChangeEvent.class, (Consumer) listener);
     }
 
+    /**
+     * Adds a listener that is notified about each JavaScript executed by the field.
+     *
+     * @param listener a listener
+     * @return a subscription
+     */
+    public Subscription addJavaScriptExecutionListener(Consumer<JavaScriptExecutionEvent> listener) {
+        return getEventHub().subscribe(JavaScriptExecutionEvent.class, listener);
+    }
+
+    /**
+     * Adds a listener that is notified when the client reports the style recalculation time requested by
+     * {@link #measureStyleRecalculation(String)}.
+     *
+     * @param listener a listener
+     * @return a subscription
+     */
+    public Subscription addStyleRecalculationListener(Consumer<StyleRecalculationEvent> listener) {
+        return getEventHub().subscribe(StyleRecalculationEvent.class, listener);
+    }
+
+    /**
+     * Requests the client to apply pending style changes and report the time it took.
+     *
+     * @param measurementId an id that is passed back in {@link StyleRecalculationEvent}
+     */
+    public void measureStyleRecalculation(String measurementId) {
+        jsComponent.callFunction(MEASURE_STYLE_RECALCULATION_FUNCTION, measurementId);
+    }
+
     public void refreshJavaScriptComponent() {
         javaScript = JavaScript.getCurrent();
         javaScript.execute(jsComponent.getInitFunctionName() + "()");
     }
 
+    protected void initJsComponent() {
+        jsComponent.addFunction(STYLE_RECALCULATED_CALLBACK, callbackEvent ->
+                publish(StyleRecalculationEvent.class, new StyleRecalculationEvent(this,
+                        callbackEvent.getArguments().getString(0),
+                        callbackEvent.getArguments().getNumber(1))));
+        jsComponent.addFunction(COLOR_COMMITTED_CALLBACK, callbackEvent ->
+                setColorValue(callbackEvent.getArguments().getString(0)));
+    }
+
+    protected void updateJsComponentState() {
+        if (themeVariable == null) {
+            return;
+        }
+
+        Map<String, Object> state = new HashMap<>();
+        state.put("name", themeVariable.getName());
+        state.put("picker", clientColorPickerEnabled);
+        state.put("value", colorValueField.getValue());
+        jsComponent.setState(state);
+    }
+
     protected void initColorValueField() {
         colorValueField.addValueChangeListener(valueChangeEvent -> {
+            if (clientColorPickerEnabled) {
+                updateJsComponentState();
+            }
+
             if (valueChangeEvent.isUserOriginated()) {
                 valueField.setValue(ThemeVariableUtils.getColorString(valueChangeEvent.getValue()));
             }
@@ -340,116 +415,121 @@ public class ThemeVariableField extends CompositeComponent<Form>
     }
 
     protected void onValueFieldValueChange(HasValue.ValueChangeEvent<String> event) {
-        String value = event.getValue();
-        if (value == null) {
-            if (parentValue != null) {
-                value = parentValue;
-            } else if (themeVariable.getThemeVariableDetails(currentTemplate) != null) {
-                value = themeVariable.getThemeVariableDetails(currentTemplate).getValue();
-            }
-        }
-
-        if (!ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(value)) {
-            value = ThemeVariableUtils.getColorString(value);
-        }
-
-        if (ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(value)) {
-            colorValueField.setValue(null);
-        } else {
-            colorValueField.setValue(value);
-        }
-
-        boolean valueIsNull = event.getValue() == null;
-        resetBtn.setEnabled(!valueIsNull);
-
-        if (valueIsNull && parentValue == null) {
-            removeThemeVariable();
-        } else {
-            setThemeVariable(value, true);
-        }
-
-        valueField.removeStyleName(VALUE_FIELD_DEFAULT_VALUE_STYLENAME);
+        state.setValue(event.getValue());
     }
 
     protected void initResetBtn() {
-        resetBtn.addClickListener(clickEvent -> {
-            ThemeVariableDetails details = getThemeVariableDetailsByTemplate(currentTemplate);
-            reset(details);
-        });
+        resetBtn.addClickListener(clickEvent -> state.reset());
     }
 
-    protected ThemeVariableDetails getThemeVariableDetailsByTemplate(Template template) {
-        return themeVariable.getThemeVariableDetails(template);
+    protected void fireValueChangeEvent(@Nullable String value, boolean isBaseThemeMode) {
+        ValueChangeEvent<String> valueChangeEvent = new ValueChangeEvent<>(valueField, value, value, isBaseThemeMode);
+        publish(ValueChangeEvent.class, valueChangeEvent);
     }
 
-    protected void reset(ThemeVariableDetails details) {
-        if (getInputPrompt() != null &&
-                !getInputPrompt().equals(details.getPlaceHolder())) {
-            removeThemeVariable();
+    protected void executeJavaScript(String script) {
+        javaScript.execute(script);
+
+        if (getEventHub().hasSubscriptions(JavaScriptExecutionEvent.class)) {
+            publish(JavaScriptExecutionEvent.class, new JavaScriptExecutionEvent(this, script));
         }
+    }
 
-        String name = themeVariable.getName();
-        setCaption(name);
-        setDescription(name);
+    /**
+     * Shows the state of the field in the inner components.
+     */
+    protected class FieldView implements ThemeVariableEditorState.View {
 
-        valueField.setValue(null);
+        @Override
+        public void showValue(@Nullable String value, boolean defaultValue) {
+            valueFieldSubscription.remove();
 
-        String value = parentValue != null
-                ? parentValue
-                : ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(details.getValue())
-                ? details.getValue()
-                : ThemeVariableUtils.getColorString(details.getValue());
+            if (defaultValue) {
+                valueField.addStyleName(VALUE_FIELD_DEFAULT_VALUE_STYLENAME);
+            } else {
+                valueField.removeStyleName(VALUE_FIELD_DEFAULT_VALUE_STYLENAME);
+            }
+            valueField.setValue(value);
 
-        if (value.equals(ThemeVariablesManager.TRANSPARENT_COLOR_VALUE)) {
-            colorValueField.setValue(null);
-        } else {
-            colorValueField.setValue(value);
+            valueFieldSubscription = valueField.addValueChangeListener(ThemeVariableField.this::onValueFieldValueChange);
         }
 
-        if (currentTemplate != null
-                && currentTemplate.getParent() != null
-                && themeVariable.hasColorTemplate(currentTemplate)) {
-            setThemeVariable(value, false);
+        @Override
+        public void showInputPrompt(@Nullable String inputPrompt) {
+            setInputPrompt(inputPrompt);
         }
 
-        if (parentValue == null) {
-            setInputPrompt(details.getPlaceHolder());
-            setSilentlyValueFieldValue(details.getPlaceHolder());
+        @Override
+        public void showColorValue(@Nullable String colorValue) {
+            colorValueField.setValue(colorValue);
         }
-    }
 
-    protected void setSilentlyValueFieldValue(String value) {
-        valueFieldSubscription.remove();
+        @Override
+        public void showModified(boolean modified) {
+            resetBtn.setEnabled(modified);
+        }
 
-        valueField.addStyleName(VALUE_FIELD_DEFAULT_VALUE_STYLENAME);
-        valueField.setValue(value);
+        @Override
+        public void executeJavaScript(String script) {
+            ThemeVariableField.this.executeJavaScript(script);
+        }
 
-        valueFieldSubscription = valueField.addValueChangeListener(this::onValueFieldValueChange);
+        @Override
+        public void colorValueApplied(@Nullable String value, boolean isBaseThemeMode) {
+            fireValueChangeEvent(value, isBaseThemeMode);
+        }
     }
 
-    protected void setThemeVariable(String value, boolean isBaseThemeMode) {
-        javaScript.execute(String.format(SET_THEME_VARIABLE_VOID, themeVariable.getName(), value));
+    /**
+     * Event sent when the field executes JavaScript on the client.
+     */
+    public static class JavaScriptExecutionEvent extends EventObject {
+
+        protected final String script;
+
+        public JavaScriptExecutionEvent(ThemeVariableField source, String script) {
+            super(source);
+            this.script = script;
+        }
 
-        if (themeVariable.isRgbUsed()) {
-            javaScript.execute(String.format(SET_THEME_VARIABLE_VOID, themeVariable.getName() + RGB_POSTFIX,
-                    ThemeVariableUtils.convertHexToRGB(value)));
+        @Override
+        public ThemeVariableField getSource() {
+            return (ThemeVariableField) super.getSource();
         }
 
-        fireValueChangeEvent(value, isBaseThemeMode);
+        public String getScript() {
+            return script;
+        }
     }
 
-    protected void removeThemeVariable() {
-        javaScript.execute(String.format(REMOVE_THEME_VARIABLE_VOID, themeVariable.getName()));
+    /**
+     * Event sent when the client reports the style recalculation time.
+     */
+    public static class StyleRecalculationEvent extends EventObject {
+
+        protected final String measurementId;
+        protected final double duration;
 
-        if (themeVariable.isRgbUsed()) {
-            javaScript.execute(String.format(REMOVE_THEME_VARIABLE_VOID, themeVariable.getName() + RGB_POSTFIX));
+        public StyleRecalculationEvent(ThemeVariableField source, String measurementId, double duration) {
+            super(source);
+            this.measurementId = measurementId;
+            this.duration = duration;
         }
 
-        fireValueChangeEvent(null, true);
-    }
+        @Override
+        public ThemeVariableField getSource() {
+            return (ThemeVariableField) super.getSource();
+        }
 
-    protected void fireValueChangeEvent(@Nullable String value, boolean isBaseThemeMode) {
-        ValueChangeEvent<String> valueChangeEvent = new ValueChangeEvent<>(valueField, value, value, isBaseThemeMode);
-        publish(ValueChangeEvent.class, valueChangeEvent);
+        public String getMeasurementId() {
+            return measurementId;
+        }
+
+        /**
+         * @return style recalculation time in milliseconds
+         */
+        public double getDuration() {
+            return duration;
+        }
     }
 }
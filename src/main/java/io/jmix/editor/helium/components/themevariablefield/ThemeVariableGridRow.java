@@ -0,0 +1,142 @@
+package io.jmix.editor.helium.components.themevariablefield;
+
+import io.jmix.editor.helium.entity.ThemeVariableItem;
+import io.jmix.editor.helium.tools.*;
+
+import javax.annotation.Nullable;
+import java.util.function.Consumer;
+
+/**
+ * Theme variable editor shown as a row of the theme variables grid.
+ * <p>
+ * The row keeps the same {@link ThemeVariableEditorState} as {@link ThemeVariableField} and shows it in
+ * the {@link ThemeVariableItem} displayed by the grid, so a row has no components of its own.
+ */
+public class ThemeVariableGridRow implements ThemeVariableEditor {
+
+    protected final ThemeVariable themeVariable;
+    protected final ThemeVariableItem item;
+    protected final Consumer<String> javaScriptExecutor;
+    protected final ColorValueChangeListener colorValueChangeListener;
+    protected final ThemeVariableEditorState state;
+
+    public ThemeVariableGridRow(ThemeVariable themeVariable, ThemeVariableItem item,
+                                Consumer<String> javaScriptExecutor,
+                                ColorValueChangeListener colorValueChangeListener) {
+        this.themeVariable = themeVariable;
+        this.item = item;
+        this.javaScriptExecutor = javaScriptExecutor;
+        this.colorValueChangeListener = colorValueChangeListener;
+        this.state = new ThemeVariableEditorState(themeVariable, new RowView());
+
+        item.setName(themeVariable.getName());
+        item.setModified(false);
+        setColorValueByTemplate(themeVariable.getDefaultColorTemplate());
+    }
+
+    @Override
+    public ThemeVariable getValue() {
+        return themeVariable;
+    }
+
+    public ThemeVariableItem getItem() {
+        return item;
+    }
+
+    /**
+     * @param clientDerivationEnabled whether the browser derives the dependent values,
+     *                                see {@link ThemeVariableEditorState#setClientDerivationEnabled(boolean)}
+     */
+    public void setClientDerivationEnabled(boolean clientDerivationEnabled) {
+        state.setClientDerivationEnabled(clientDerivationEnabled);
+    }
+
+    @Override
+    public void setColorValueByTemplate(Template template) {
+        state.setColorValueByTemplate(template);
+    }
+
+    @Override
+    public void setColorValueByParent(String parentColorValue) {
+        state.setColorValueByParent(parentColorValue);
+    }
+
+    /**
+     * Sets the text of the value cell as if it is typed by the user.
+     *
+     * @param value a color value or {@code null} to use the template or parent value
+     */
+    @Override
+    public void setColorValue(@Nullable String value) {
+        state.setValue(value);
+    }
+
+    @Override
+    public void restoreColorValue(String value, boolean isBaseThemeMode) {
+        state.restoreColorValue(value, isBaseThemeMode);
+    }
+
+    @Override
+    public void restoreDefaultValue() {
+        state.restoreDefaultValue();
+    }
+
+    /**
+     * Resets the value to the template or parent value, the same as the reset button of {@link ThemeVariableField}.
+     */
+    public void reset() {
+        state.reset();
+    }
+
+    /**
+     * Shows the state of the row in the grid item.
+     */
+    protected class RowView implements ThemeVariableEditorState.View {
+
+        @Override
+        public void showValue(@Nullable String value, boolean defaultValue) {
+            item.setDefaultValue(defaultValue);
+            item.setValue(value);
+        }
+
+        @Override
+        public void showInputPrompt(@Nullable String inputPrompt) {
+            // the value cell shows the input prompt as a default value
+        }
+
+        @Override
+        public void showColorValue(@Nullable String colorValue) {
+            item.setColor(colorValue);
+        }
+
+        @Override
+        public void showModified(boolean modified) {
+            item.setModified(modified);
+        }
+
+        @Override
+        public void executeJavaScript(String script) {
+            javaScriptExecutor.accept(script);
+        }
+
+        @Override
+        public void colorValueApplied(@Nullable String value, boolean isBaseThemeMode) {
+            colorValueChangeListener.colorValueChanged(ThemeVariableGridRow.this, value, isBaseThemeMode);
+        }
+    }
+
+    /**
+     * Listener notified when the row applies a color value, the same as the color value change listener
+     * of {@link ThemeVariableField}.
+     */
+    @FunctionalInterface
+    public interface ColorValueChangeListener {
+
+        /**
+         * @param row             the row
+         * @param value           the applied value or {@code null} if the value is removed
+         * @param isBaseThemeMode {@code false} if the value is taken from a color template
+         */
+        void colorValueChanged(ThemeVariableGridRow row, @Nullable String value, boolean isBaseThemeMode);
+    }
+}
@@ -0,0 +1,131 @@
+package io.jmix.editor.helium.entity;
+
+import io.jmix.core.entity.annotation.JmixGeneratedValue;
+import io.jmix.core.metamodel.annotation.JmixEntity;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Theme variables changed by a user in a color template, stored between sessions.
+ * <p>
+ * {@link #overrides} are the values set by the user, {@link #derivedOverrides} are the values of
+ * the dependent theme variables computed from them, so a draft is restored without recomputing them.
+ * <p>
+ * The changes are stored as serialized {@link io.jmix.editor.helium.tools.ThemeVariableOverrides}
+ * addressed by theme variable ordinals, so the draft is valid only for the theme model with
+ * the same {@link #modelChecksum}.
+ */
+@JmixEntity
+@Table(name = "HELIUM_THEME_DRAFT", indexes = {
+        @Index(name = "IDX_HELIUM_THEME_DRAFT_KEY", columnList = "DRAFT_KEY, TEMPLATE_NAME", unique = true)
+})
+@Entity(name = "helium_ThemeDraft")
+public class ThemeDraft {
+
+    @JmixGeneratedValue
+    @Column(name = "ID", nullable = false)
+    @Id
+    private UUID id;
+
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private Integer version;
+
+    @Column(name = "DRAFT_KEY", nullable = false, length = 36)
+    private String draftKey;
+
+    @Column(name = "BASE_THEME_MODE")
+    private String baseThemeMode;
+
+    @Column(name = "TEMPLATE_NAME", nullable = false)
+    private String templateName;
+
+    @Column(name = "MODEL_CHECKSUM")
+    private Integer modelChecksum;
+
+    @Lob
+    @Column(name = "OVERRIDES")
+    private byte[] overrides;
+
+    @Lob
+    @Column(name = "DERIVED_OVERRIDES")
+    private byte[] derivedOverrides;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "UPDATED_AT")
+    private Date updatedAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public String getDraftKey() {
+        return draftKey;
+    }
+
+    public void setDraftKey(String draftKey) {
+        this.draftKey = draftKey;
+    }
+
+    public String getBaseThemeMode() {
+        return baseThemeMode;
+    }
+
+    public void setBaseThemeMode(String baseThemeMode) {
+        this.baseThemeMode = baseThemeMode;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public void setTemplateName(String templateName) {
+        this.templateName = templateName;
+    }
+
+    public Integer getModelChecksum() {
+        return modelChecksum;
+    }
+
+    public void setModelChecksum(Integer modelChecksum) {
+        this.modelChecksum = modelChecksum;
+    }
+
+    public byte[] getOverrides() {
+        return overrides;
+    }
+
+    public void setOverrides(byte[] overrides) {
+        this.overrides = overrides;
+    }
+
+    public byte[] getDerivedOverrides() {
+        return derivedOverrides;
+    }
+
+    public void setDerivedOverrides(byte[] derivedOverrides) {
+        this.derivedOverrides = derivedOverrides;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
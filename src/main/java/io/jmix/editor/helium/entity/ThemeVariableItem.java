@@ -0,0 +1,83 @@
+package io.jmix.editor.helium.entity;
+
+import io.jmix.core.entity.annotation.JmixId;
+import io.jmix.core.metamodel.annotation.InstanceName;
+import io.jmix.core.metamodel.annotation.JmixEntity;
+
+/**
+ * Row of the theme variables grid: a module or a theme variable of the module.
+ */
+@JmixEntity(name = "helium_ThemeVariableItem")
+public class ThemeVariableItem {
+    @JmixId
+    private String id;
+
+    @InstanceName
+    private String name;
+
+    private String value;
+
+    private Boolean defaultValue;
+
+    private String color;
+
+    private Boolean modified;
+
+    private ThemeVariableItem parent;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public Boolean getDefaultValue() {
+        return defaultValue;
+    }
+
+    public void setDefaultValue(Boolean defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public Boolean getModified() {
+        return modified;
+    }
+
+    public void setModified(Boolean modified) {
+        this.modified = modified;
+    }
+
+    public ThemeVariableItem getParent() {
+        return parent;
+    }
+
+    public void setParent(ThemeVariableItem parent) {
+        this.parent = parent;
+    }
+}
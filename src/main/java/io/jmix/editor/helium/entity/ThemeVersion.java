@@ -0,0 +1,126 @@
+package io.jmix.editor.helium.entity;
+
+import io.jmix.core.entity.annotation.JmixGeneratedValue;
+import io.jmix.core.metamodel.annotation.JmixEntity;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Saved version of a theme.
+ * <p>
+ * The {@link #data} is a serialized {@link io.jmix.editor.helium.tools.ThemeVariableOverridesDelta} against
+ * the previous version of the same theme and theme model or, for a {@link #snapshot}, against the base
+ * theme model. A version is restored from the nearest snapshot and the deltas after it.
+ */
+@JmixEntity
+@Table(name = "HELIUM_THEME_VERSION", indexes = {
+        @Index(name = "IDX_HELIUM_THEME_VERSION_KEY", columnList = "THEME_KEY, MODEL_CHECKSUM, VERSION_NUMBER", unique = true)
+})
+@Entity(name = "helium_ThemeVersion")
+public class ThemeVersion {
+
+    @JmixGeneratedValue
+    @Column(name = "ID", nullable = false)
+    @Id
+    private UUID id;
+
+    @Column(name = "THEME_KEY", nullable = false, length = 300)
+    private String themeKey;
+
+    @Column(name = "MODEL_CHECKSUM", nullable = false)
+    private Integer modelChecksum;
+
+    @Column(name = "VERSION_NUMBER", nullable = false)
+    private Integer versionNumber;
+
+    @Column(name = "BASE_THEME_MODE")
+    private String baseThemeMode;
+
+    @Column(name = "TEMPLATE_NAME")
+    private String templateName;
+
+    @Column(name = "SNAPSHOT", nullable = false)
+    private Boolean snapshot = false;
+
+    @Lob
+    @Column(name = "DATA_")
+    private byte[] data;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "CREATED_AT")
+    private Date createdAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getThemeKey() {
+        return themeKey;
+    }
+
+    public void setThemeKey(String themeKey) {
+        this.themeKey = themeKey;
+    }
+
+    public Integer getModelChecksum() {
+        return modelChecksum;
+    }
+
+    public void setModelChecksum(Integer modelChecksum) {
+        this.modelChecksum = modelChecksum;
+    }
+
+    public Integer getVersionNumber() {
+        return versionNumber;
+    }
+
+    public void setVersionNumber(Integer versionNumber) {
+        this.versionNumber = versionNumber;
+    }
+
+    public String getBaseThemeMode() {
+        return baseThemeMode;
+    }
+
+    public void setBaseThemeMode(String baseThemeMode) {
+        this.baseThemeMode = baseThemeMode;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public void setTemplateName(String templateName) {
+        this.templateName = templateName;
+    }
+
+    public Boolean getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(Boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
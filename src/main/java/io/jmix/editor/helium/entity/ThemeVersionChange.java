@@ -0,0 +1,90 @@
+package io.jmix.editor.helium.entity;
+
+import io.jmix.core.entity.annotation.JmixGeneratedValue;
+import io.jmix.core.metamodel.annotation.JmixEntity;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+/**
+ * Index entry of a theme variable changed in a {@link ThemeVersion}. The value is {@code null}
+ * if the theme variable is reset to its template value.
+ */
+@JmixEntity
+@Table(name = "HELIUM_THEME_VERSION_CHANGE", indexes = {
+        @Index(name = "IDX_HELIUM_THEME_VERSION_CHANGE_VARIABLE",
+                columnList = "THEME_KEY, MODEL_CHECKSUM, VARIABLE_NAME, VERSION_NUMBER"),
+        @Index(name = "IDX_HELIUM_THEME_VERSION_CHANGE_VERSION",
+                columnList = "THEME_KEY, MODEL_CHECKSUM, VERSION_NUMBER")
+})
+@Entity(name = "helium_ThemeVersionChange")
+public class ThemeVersionChange {
+
+    @JmixGeneratedValue
+    @Column(name = "ID", nullable = false)
+    @Id
+    private UUID id;
+
+    @Column(name = "THEME_KEY", nullable = false, length = 300)
+    private String themeKey;
+
+    @Column(name = "MODEL_CHECKSUM", nullable = false)
+    private Integer modelChecksum;
+
+    @Column(name = "VERSION_NUMBER", nullable = false)
+    private Integer versionNumber;
+
+    @Column(name = "VARIABLE_NAME", nullable = false)
+    private String variableName;
+
+    @Column(name = "VALUE_")
+    private String value;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getThemeKey() {
+        return themeKey;
+    }
+
+    public void setThemeKey(String themeKey) {
+        this.themeKey = themeKey;
+    }
+
+    public Integer getModelChecksum() {
+        return modelChecksum;
+    }
+
+    public void setModelChecksum(Integer modelChecksum) {
+        this.modelChecksum = modelChecksum;
+    }
+
+    public Integer getVersionNumber() {
+        return versionNumber;
+    }
+
+    public void setVersionNumber(Integer versionNumber) {
+        this.versionNumber = versionNumber;
+    }
+
+    public String getVariableName() {
+        return variableName;
+    }
+
+    public void setVariableName(String variableName) {
+        this.variableName = variableName;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
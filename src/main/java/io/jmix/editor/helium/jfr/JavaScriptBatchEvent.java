@@ -0,0 +1,33 @@
+package io.jmix.editor.helium.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event of JavaScript sent to the client to apply a theme variable.
+ * <p>
+ * A batch is the scripts executed for one theme variable by one change: the script that sets or removes
+ * the value and, if the theme variable has an {@code _rgb} companion, the script for the companion.
+ * The values of several theme variables changed together are sent by the screen and are not recorded here.
+ */
+@Name(JavaScriptBatchEvent.NAME)
+@Label("JavaScript Batch")
+@Category({"Helium Editor", "Preview"})
+@Description("JavaScript executed by a theme variable field to set or remove a theme variable")
+@StackTrace(false)
+public class JavaScriptBatchEvent extends Event {
+
+    public static final String NAME = "io.jmix.editor.helium.JavaScriptBatch";
+
+    @Label("Variable")
+    public String variable;
+
+    @Label("Scripts")
+    public int count;
+
+    /**
+     * The total length of the scripts in characters, not in bytes sent to the client.
+     */
+    @Label("Payload Length")
+    @Description("Total length of the scripts in characters")
+    public long payloadLength;
+}
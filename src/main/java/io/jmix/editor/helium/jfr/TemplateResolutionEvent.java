@@ -0,0 +1,33 @@
+package io.jmix.editor.helium.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event of resolving theme variable details for a color template.
+ */
+@Name(TemplateResolutionEvent.NAME)
+@Label("Template Resolution")
+@Category({"Helium Editor", "Theme"})
+@Description("Resolution of theme variable values for a color template")
+@StackTrace(false)
+public class TemplateResolutionEvent extends Event {
+
+    public static final String NAME = "io.jmix.editor.helium.TemplateResolution";
+
+    public static final String FIELDS_UPDATE = "fieldsUpdate";
+    public static final String CHILDREN_LOOKUP = "childrenLookup";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Template")
+    public String template;
+
+    @Label("Variable")
+    @Description("The parent theme variable of the children lookup")
+    public String variable;
+
+    @Label("Variables")
+    @Description("Number of theme variables resolved in one pass")
+    public int variables;
+}
@@ -0,0 +1,30 @@
+package io.jmix.editor.helium.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event of parsing a theme file.
+ */
+@Name(ThemeParseEvent.NAME)
+@Label("Theme Parse")
+@Category({"Helium Editor", "Theme"})
+@Description("Parsing of theme variables from a theme file")
+@StackTrace(false)
+public class ThemeParseEvent extends Event {
+
+    public static final String NAME = "io.jmix.editor.helium.ThemeParse";
+
+    @Label("File")
+    public String file;
+
+    @Label("Lines")
+    public int lines;
+
+    @Label("Variables")
+    @Description("Number of theme variables added by the file")
+    public int variables;
+
+    @Label("Templates")
+    @Description("Number of color templates added by the file")
+    public int templates;
+}
@@ -1,44 +1,88 @@
 package io.jmix.editor.helium.screen.main;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinService;
 import com.vaadin.ui.JavaScript;
+import io.jmix.core.Metadata;
+import io.jmix.editor.helium.HeliumEditorProperties;
+import io.jmix.editor.helium.components.themevariablefield.ThemeVariableEditor;
 import io.jmix.editor.helium.components.themevariablefield.ThemeVariableField;
+import io.jmix.editor.helium.components.themevariablefield.ThemeVariableGridRow;
+import io.jmix.editor.helium.entity.ThemeVariableItem;
+import io.jmix.editor.helium.jfr.TemplateResolutionEvent;
 import io.jmix.editor.helium.screen.download.DownloadScreen;
+import io.jmix.editor.helium.screen.samples.ComponentSamplesFragment;
 import io.jmix.editor.helium.screen.upload.UploadScreen;
 import io.jmix.editor.helium.tools.*;
 import io.jmix.ui.AppUI;
 import io.jmix.ui.Dialogs;
+import io.jmix.ui.Fragments;
+import io.jmix.ui.Notifications;
 import io.jmix.ui.ScreenBuilders;
 import io.jmix.ui.UiComponents;
 import io.jmix.ui.action.DialogAction;
+import io.jmix.ui.app.inputdialog.DialogOutcome;
+import io.jmix.ui.app.inputdialog.InputParameter;
 import io.jmix.ui.component.*;
 import io.jmix.ui.event.UIRefreshEvent;
+import io.jmix.ui.model.CollectionContainer;
 import io.jmix.ui.navigation.Route;
 import io.jmix.ui.screen.*;
 import io.jmix.ui.theme.ThemeVariantsManager;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 
+import javax.annotation.Nullable;
+import javax.servlet.http.Cookie;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static io.jmix.editor.helium.components.themevariablefield.ThemeVariableField.RGB_POSTFIX;
 
 @UiController("helium_MainScreen")
 @UiDescriptor("main-screen.xml")
 @Route(path = "main", root = true)
 public class MainScreen extends Screen implements Window.HasWorkArea {
 
-    protected static final String BASIC_MODULE_NAME = "Basic";
-    protected static final String COMMON_MODULE_NAME = "Common";
+    protected static final String BASIC_MODULE_NAME = ThemeExportUtils.BASIC_MODULE_NAME;
+    protected static final String COMMON_MODULE_NAME = ThemeExportUtils.COMMON_MODULE_NAME;
     protected static final String GROUPBOX_PADDING_LESS_STYLENAME = "padding-less";
     protected static final String GROUPBOX_POSTFIX = "-box";
     protected static final String THEME_VARIABLE_FIELD_POSTFIX = "-field";
+    protected static final String CUSTOM_TEMPLATE_POSTFIX = "-custom";
+    protected static final String DARK_TEMPLATE_POSTFIX = "-dark";
 
     protected static final String MAIN_CLASSNAME = "v-app helium appui";
     protected static final String OVERLAY_CLASSNAME = "v-app helium appui v-overlay-container";
 
+    protected static final String SET_THEME_VARIABLES_VOID = "setThemeVariables({%s})";
+    protected static final String REMOVE_THEME_VARIABLES_VOID = "removeThemeVariables([%s])";
+    protected static final String SET_DEPENDENCY_GRAPH_VOID = "setDependencyGraph('%s', %s)";
+    protected static final String USE_DEPENDENCY_GRAPH_VOID = "useDependencyGraph('%s')";
+    protected static final String MEASURE_STYLE_RECALCULATION_FUNCTION = "measureStyleRecalculation";
+    protected static final String STYLE_RECALCULATED_CALLBACK = "onStyleRecalculated";
+
+    protected static final String GRID_VALUE_COLUMN = "value";
+    protected static final String GRID_SWATCH_COLUMN = "swatch";
+    protected static final String GRID_RESET_COLUMN = "reset";
+    protected static final String GRID_DEFAULT_VALUE_STYLENAME = "default-value";
+    protected static final String GRID_SWATCH_HTML = "<span class=\"theme-variable-swatch\" style=\"background-color: %s\"></span>";
+    protected static final Pattern GRID_SWATCH_COLOR_PATTERN = Pattern.compile("#[0-9A-Fa-f]{3,8}");
+
+    protected static final String DRAFT_KEY_COOKIE = "helium_draft";
+    protected static final int DRAFT_KEY_COOKIE_MAX_AGE = 60 * 60 * 24 * 365;
+
+    protected static final List<String> BENCHMARK_COLORS =
+            Arrays.asList("#D13F3F", "#2A8463", "#0055A6", "#FDB42B", "#5440AC");
+
+    private static final Logger log = LoggerFactory.getLogger(MainScreen.class);
+    private static final Logger traceLog = LoggerFactory.getLogger(CascadeTrace.class);
+
     @Autowired
     protected AppWorkArea workArea;
     @Autowired
@@ -47,12 +91,42 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
     protected ComboBox<Template> templateField;
     @Autowired
     protected ScrollBoxLayout settingsPanel;
+    @Autowired
+    protected Button saveTemplateBtn;
+    @Autowired
+    protected Button undoBtn;
+    @Autowired
+    protected Button redoBtn;
+    @Autowired
+    protected Button transformBtn;
+    @Autowired
+    protected Button deriveDarkBtn;
+    @Autowired
+    protected Button benchmarkBtn;
+    @Autowired
+    protected CheckBox advancedModeValue;
+    @Autowired
+    protected VBoxLayout gridEditorBox;
+    @Autowired
+    protected JavaScriptComponent gridJsComponent;
+    @Autowired
+    protected io.jmix.ui.component.Timer benchmarkTimeoutTimer;
+    @Autowired
+    protected TreeDataGrid<ThemeVariableItem> themeVariablesGrid;
+    @Autowired
+    protected CollectionContainer<ThemeVariableItem> themeVariablesDc;
 
     @Autowired
     protected Dialogs dialogs;
     @Autowired
+    protected Notifications notifications;
+    @Autowired
     protected UiComponents uiComponents;
     @Autowired
+    protected Fragments fragments;
+    @Autowired
+    protected Metadata metadata;
+    @Autowired
     protected ScreenBuilders screenBuilders;
     @Autowired
     protected ThemeVariantsManager variantsManager;
@@ -60,19 +134,185 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
     protected MessageBundle messageBundle;
     @Autowired
     protected ThemeVariablesManager themeVariablesManager;
+    @Autowired
+    protected HeliumEditorProperties heliumEditorProperties;
+    @Autowired
+    protected EditorMetrics editorMetrics;
+    @Autowired
+    protected ThemeDraftManager themeDraftManager;
+
+    /**
+     * The theme variables snapshot used by the session for its whole life.
+     */
+    protected ThemeModel themeModel;
 
-    protected List<ModifiedThemeVariableDetails> modifiedThemeVariables = new ArrayList<>();
-    protected List<ModifiedThemeVariableDetails> modifiedColorTemplateThemeVariables = new ArrayList<>();
+    /**
+     * The values changed in the session and the color templates saved by the user.
+     */
+    protected ThemeSessionValues sessionValues;
     protected Template currentTemplate;
     protected Template customTemplate = new Template(Templates.CUSTOM);
 
+    /**
+     * Dark template derived from the light template {@link #darkTemplateSource}, derived again on every change
+     * of the light template.
+     */
+    protected CustomTemplate darkTemplate;
+    protected Template darkTemplateSource;
+
+    /**
+     * Theme variable fields or grid rows by theme variable name, in the order of the theme variables.
+     */
+    protected Map<String, ThemeVariableEditor> themeVariableEditors = new LinkedHashMap<>();
+
+    /**
+     * All items of the theme variables grid: each module followed by its theme variables.
+     */
+    protected List<ThemeVariableItem> themeVariableItems = new ArrayList<>();
+
+    /**
+     * The theme variables found by the search field, {@code null} if the search field is empty.
+     */
+    protected ThemeVariableSearchIndex.Result searchResult;
+
+    /**
+     * Undo and redo history of the changed values.
+     */
+    protected ThemeEditHistory editHistory;
+
+    /**
+     * The nesting depth of the color changes made by the user, the values changed inside are recorded
+     * as one step of the edit history.
+     */
+    protected int editDepth;
+
+    /**
+     * Whether a step of the edit history is being applied, the changes it causes are not recorded.
+     */
+    protected boolean applyingEditHistory;
+
+    /**
+     * Whether the dependent theme variables of a changed theme variable are being updated. Their changes do not
+     * update the dependent theme variables again, all of them are updated from their immediate parents at once.
+     */
+    protected boolean updatingChildThemeVariables;
+
+    /**
+     * The key of the theme drafts of the browser, {@code null} if drafts are disabled or nothing is saved yet.
+     */
+    protected String draftKey;
+
+    /**
+     * Whether the latest draft is being restored, the values it sets are not saved again.
+     */
+    protected boolean resumingDraft;
+
+    /**
+     * Whether the browser derives dependent colors, for all changes or only while the color picker is dragged.
+     * Enabled after the theme variable fields are created.
+     */
+    protected boolean clientDependencyGraphEnabled;
+
+    /**
+     * Names of the templates whose dependency graphs are sent to the browser.
+     */
+    protected Set<String> clientDependencyGraphs = new HashSet<>();
+
+    protected ComponentSamplesFragment componentSamples;
+
+    protected long editorPanelRetainedBytes = SessionFootprint.UNKNOWN;
+    protected long samplePreviewRetainedBytes = SessionFootprint.UNKNOWN;
+
+    protected ThemeChangeBenchmark benchmark;
+
     @Subscribe
     public void onInit(InitEvent event) {
+        themeModel = themeVariablesManager.getModel();
+        sessionValues = new ThemeSessionValues(themeModel);
+        editHistory = new ThemeEditHistory(heliumEditorProperties.getEditHistorySize());
+
+        long usedHeapBytes = measureUsedHeap();
+        initComponentSamples();
+        samplePreviewRetainedBytes = SessionFootprint.retainedBytesSince(usedHeapBytes);
+
+        usedHeapBytes = measureUsedHeap();
         initColorTemplates();
-        initThemeVariablesFields();
+        if (heliumEditorProperties.isGridEditorEnabled()) {
+            initThemeVariablesGrid();
+        } else {
+            settingsPanel.remove(gridEditorBox);
+            initThemeVariablesFields();
+        }
+        editorPanelRetainedBytes = SessionFootprint.retainedBytesSince(usedHeapBytes);
+
+        clientDependencyGraphEnabled = heliumEditorProperties.isClientColorDerivationEnabled()
+                || heliumEditorProperties.isClientColorPickerEnabled();
+        updateClientDependencyGraph();
 
         updateAdvancedBoxesVisible(false);
         updateMainScreenStyleName();
+
+        if (themeDraftManager.isEnabled()) {
+            String key = getDraftKey();
+            if (key != null) {
+                resumingDraft = true;
+                try {
+                    resumeDraft(key);
+                } finally {
+                    resumingDraft = false;
+                }
+                draftKey = key;
+            }
+        }
+
+        benchmarkBtn.setVisible(heliumEditorProperties.isBenchmarkEnabled());
+    }
+
+    @Subscribe
+    public void onAfterShow(AfterShowEvent event) {
+        log.debug("Main screen is shown, {}", getSessionFootprint());
+    }
+
+    /**
+     * Returns the retained sizes of the editor parts if {@link HeliumEditorProperties#isSessionFootprintEnabled()}
+     * and the estimated size of the changed values. The preview tabs that are built later are counted
+     * while they are shown or kept.
+     *
+     * @return the session footprint
+     */
+    public SessionFootprint getSessionFootprint() {
+        long previewTabsRetainedBytes = componentSamples.getPreviewTabsRetainedBytes();
+        long samplePreviewBytes = samplePreviewRetainedBytes == SessionFootprint.UNKNOWN
+                || previewTabsRetainedBytes == SessionFootprint.UNKNOWN
+                ? SessionFootprint.UNKNOWN
+                : samplePreviewRetainedBytes + previewTabsRetainedBytes;
+        return new SessionFootprint(editorPanelRetainedBytes, samplePreviewBytes,
+                sessionValues.getUserValues().estimateSize() + sessionValues.getTemplateValues().estimateSize());
+    }
+
+    /**
+     * @return the used heap after a garbage collection or {@link SessionFootprint#UNKNOWN}
+     * if the session footprint is not measured
+     */
+    protected long measureUsedHeap() {
+        return heliumEditorProperties.isSessionFootprintEnabled()
+                ? SessionFootprint.usedHeapAfterGc()
+                : SessionFootprint.UNKNOWN;
+    }
+
+    /**
+     * Creates the component samples in the screen controller instead of the descriptor,
+     * so that their retained size can be measured.
+     */
+    protected void initComponentSamples() {
+        componentSamples = fragments.create(this, ComponentSamplesFragment.class);
+
+        Fragment fragment = componentSamples.getFragment();
+        fragment.setId("componentSamples");
+
+        VBoxLayout initialLayout = workArea.getInitialLayout();
+        initialLayout.add(fragment);
+        initialLayout.expand(fragment);
     }
 
     @Override
@@ -88,12 +328,17 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
                         ((ThemeVariableField) component).refreshJavaScriptComponent();
                     }
                 });
+        if (heliumEditorProperties.isGridEditorEnabled()) {
+            refreshGridJavaScriptComponent();
+        }
+
+        clientDependencyGraphs.clear();
+        updateClientDependencyGraph();
 
         updateMainScreenStyleName();
 
-        JavaScript javaScript = JavaScript.getCurrent();
         getModifiedThemeVariables()
-                .forEach(modifiedThemeVariableDetails -> javaScript.execute(String.format(
+                .forEach(modifiedThemeVariableDetails -> executeJavaScript(String.format(
                         "Array.from(document.getElementsByClassName('helium')).forEach(function (element) {element.style.setProperty('%s', '%s')})",
                         modifiedThemeVariableDetails.getName(),
                         modifiedThemeVariableDetails.getValue())));
@@ -101,6 +346,10 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
 
     @Subscribe("baseThemeModeField")
     public void onBaseThemeModeFieldValueChange(HasValue.ValueChangeEvent<Template> event) {
+        deriveDarkBtn.setEnabled(event.getValue() != null
+                && Templates.LIGHT.equals(event.getValue().getName())
+                && themeModel.getDarkModeDeriver() != null);
+
         if (event.isUserOriginated()) {
             if (customTemplate.equals(templateField.getValue())
                     && event.isUserOriginated()) {
@@ -116,6 +365,8 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
         if (customTemplate.equals(event.getPrevValue())
                 && event.isUserOriginated()) {
             showConfirmationDialog(templateField, event.getValue(), event.getPrevValue());
+        } else if (event.getValue() instanceof CustomTemplate) {
+            activateCustomTemplate((CustomTemplate) event.getValue());
         } else if (!customTemplate.equals(event.getValue())) {
             updateColorTemplate(event.getValue());
         }
@@ -131,8 +382,7 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
                     .withActions(
                             new DialogAction(DialogAction.Type.OK)
                                     .withHandler(actionPerformEvent -> {
-                                        modifiedThemeVariables = new ArrayList<>();
-                                        modifiedColorTemplateThemeVariables = new ArrayList<>();
+                                        sessionValues.clear();
                                         updateFieldsByColorTemplate(baseThemeModeField.getValue());
                                         resetValues();
                                     }),
@@ -144,6 +394,89 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
         }
     }
 
+    @Subscribe("saveTemplateBtn")
+    public void onSaveTemplateBtnClick(Button.ClickEvent event) {
+        dialogs.createInputDialog(this)
+                .withCaption(messageBundle.getMessage("saveTemplateDialog.caption"))
+                .withParameter(InputParameter.stringParameter("name")
+                        .withCaption(messageBundle.getMessage("saveTemplateDialog.name"))
+                        .withRequired(true))
+                .withValidator(context -> isTemplateNameUsed(context.getValue("name"))
+                        ? ValidationErrors.of(messageBundle.getMessage("saveTemplateDialog.nameUsed"))
+                        : ValidationErrors.none())
+                .withCloseListener(closeEvent -> {
+                    if (closeEvent.closedWith(DialogOutcome.OK)) {
+                        saveCustomTemplate(closeEvent.getValue("name"));
+                    }
+                })
+                .show();
+    }
+
+    @Subscribe("undoBtn")
+    public void onUndoBtnClick(Button.ClickEvent event) {
+        applyEditHistoryStep(true);
+    }
+
+    @Subscribe("redoBtn")
+    public void onRedoBtnClick(Button.ClickEvent event) {
+        applyEditHistoryStep(false);
+    }
+
+    @Subscribe("transformBtn")
+    public void onTransformBtnClick(Button.ClickEvent event) {
+        dialogs.createInputDialog(this)
+                .withCaption(messageBundle.getMessage("transformDialog.caption"))
+                .withParameters(
+                        InputParameter.enumParameter("operation", ColorTransformOperation.class)
+                                .withCaption(messageBundle.getMessage("transformDialog.operation"))
+                                .withDefaultValue(ColorTransformOperation.ROTATE_HUE)
+                                .withRequired(true),
+                        InputParameter.intParameter("amount")
+                                .withCaption(messageBundle.getMessage("transformDialog.amount"))
+                                .withRequired(true),
+                        InputParameter.stringParameter("color")
+                                .withCaption(messageBundle.getMessage("transformDialog.color")))
+                .withValidator(context -> context.getValue("operation") == ColorTransformOperation.TINT
+                        && ThemeColorTransform.packTintColor(context.getValue("color"))
+                        == ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                        ? ValidationErrors.of(messageBundle.getMessage("transformDialog.colorInvalid"))
+                        : ValidationErrors.none())
+                .withCloseListener(closeEvent -> {
+                    if (closeEvent.closedWith(DialogOutcome.OK)) {
+                        Integer amount = closeEvent.getValue("amount");
+                        transformThemeVariables(ThemeColorTransform.create(closeEvent.getValue("operation"),
+                                amount != null ? amount : 0, closeEvent.getValue("color")));
+                    }
+                })
+                .show();
+    }
+
+    @Subscribe("deriveDarkBtn")
+    public void onDeriveDarkBtnClick(Button.ClickEvent event) {
+        ThemeDarkModeDeriver deriver = themeModel.getDarkModeDeriver();
+        if (deriver == null) {
+            return;
+        }
+
+        Template source = getDarkTemplateSource();
+        if (darkTemplate == null || darkTemplateSource != source) {
+            darkTemplate = new CustomTemplate(getUniqueTemplateName(source.getName() + DARK_TEMPLATE_POSTFIX),
+                    deriver.getDarkThemeMode(), new ThemeVariableOverrides());
+            darkTemplateSource = source;
+            sessionValues.getCustomTemplates().add(darkTemplate);
+        }
+        updateDarkTemplate();
+
+        if (sessionValues.getActiveCustomTemplate() != null || sessionValues.getUserValues().isEmpty()) {
+            // the light values are kept by the theme or by the saved template, so the dark one is previewed at once
+            activateCustomTemplate(darkTemplate);
+        } else {
+            notifications.create(Notifications.NotificationType.HUMANIZED)
+                    .withCaption(messageBundle.formatMessage("deriveDarkNotification", darkTemplate.getName()))
+                    .show();
+        }
+    }
+
     @Subscribe("downloadBtn")
     public void onDownloadBtnClick(Button.ClickEvent event) {
         screenBuilders.screen(this)
@@ -176,32 +509,189 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
                         UploadScreen uploadScreen = afterScreenCloseEvent.getSource();
                         baseThemeModeField.setValue(uploadScreen.getBaseThemeMode());
                         resetValues();
-                        applyUploadedThemeVariables(uploadScreen.getUploadedThemeVariables());
+                        List<CustomTemplate> uploadedTemplates = loadUploadedTemplates(uploadScreen.getUploadedTemplates());
+                        if (uploadScreen.getUploadedThemeVariables().isEmpty() && !uploadedTemplates.isEmpty()) {
+                            activateCustomTemplate(uploadedTemplates.get(0));
+                        } else {
+                            applyUploadedThemeVariables(uploadScreen.getUploadedThemeVariables());
+                        }
                     }
                 })
                 .show();
     }
 
+    /**
+     * Loads the uploaded template blocks as custom templates at once. A template stores the uploaded values
+     * as they are, without running the dependency cascade, the {@code _rgb} values are derived when
+     * the template is applied.
+     *
+     * @param uploadedTemplates uploaded template blocks
+     * @return created custom templates
+     */
+    protected List<CustomTemplate> loadUploadedTemplates(List<UploadedTemplate> uploadedTemplates) {
+        List<CustomTemplate> templates = new ArrayList<>();
+        for (UploadedTemplate uploadedTemplate : uploadedTemplates) {
+            ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+            for (ModifiedThemeVariableDetails details : uploadedTemplate.getThemeVariables()) {
+                ThemeVariable themeVariable = themeModel.getThemeVariable(details.getName());
+                if (themeVariable != null && details.getValue() != null) {
+                    overrides.put(themeVariable.getOrdinal(), details.getValue());
+                }
+            }
+
+            CustomTemplate template = new CustomTemplate(getUploadedTemplateName(uploadedTemplate),
+                    uploadedTemplate.getParent(), overrides);
+            sessionValues.getCustomTemplates().add(template);
+            templates.add(template);
+        }
+
+        if (!templates.isEmpty()) {
+            updateTemplateFieldOptions(baseThemeModeField.getValue());
+        }
+        return templates;
+    }
+
+    /**
+     * Returns an unused name for an uploaded template: the name of the block if the theme has no such template,
+     * otherwise the name with the {@code -custom} postfix.
+     *
+     * @param uploadedTemplate an uploaded template block
+     * @return a template name
+     */
+    protected String getUploadedTemplateName(UploadedTemplate uploadedTemplate) {
+        String name = uploadedTemplate.getTemplateName() != null && uploadedTemplate.getTemplate() == null
+                ? uploadedTemplate.getTemplateName()
+                : uploadedTemplate.getParent().getName() + CUSTOM_TEMPLATE_POSTFIX;
+        return getUniqueTemplateName(name);
+    }
+
+    protected String getUniqueTemplateName(String name) {
+        String uniqueName = name;
+        for (int i = 2; isTemplateNameUsed(uniqueName); i++) {
+            uniqueName = name + "-" + i;
+        }
+        return uniqueName;
+    }
+
     protected void applyUploadedThemeVariables(List<ModifiedThemeVariableDetails> uploadedThemeVariables) {
         if (uploadedThemeVariables != null
                 && !uploadedThemeVariables.isEmpty()) {
-            uploadedThemeVariables.forEach(uploadedThemeVariableDetails -> {
-                ThemeVariableField themeVariableField =
-                        (ThemeVariableField) settingsPanel.getComponent(uploadedThemeVariableDetails.getName() + THEME_VARIABLE_FIELD_POSTFIX);
-                if (themeVariableField != null) {
-                    themeVariableField.setColorValue(uploadedThemeVariableDetails.getValue());
-                }
-            });
+            // the uploaded values are undone as one step
+            beginEdit();
+            try {
+                uploadedThemeVariables.forEach(uploadedThemeVariableDetails -> {
+                    ThemeVariableEditor themeVariableEditor = getThemeVariableEditor(uploadedThemeVariableDetails.getName());
+                    if (themeVariableEditor != null) {
+                        themeVariableEditor.setColorValue(uploadedThemeVariableDetails.getValue());
+                    }
+                });
+            } finally {
+                endEdit();
+            }
+        }
+    }
+
+    @Subscribe("benchmarkBtn")
+    public void onBenchmarkBtnClick(Button.ClickEvent event) {
+        if (customTemplate.equals(templateField.getValue())) {
+            dialogs.createOptionDialog()
+                    .withCaption(messageBundle.getMessage("warningNotification.caption"))
+                    .withContentMode(ContentMode.HTML)
+                    .withMessage(messageBundle.getMessage("warningNotification.message"))
+                    .withActions(
+                            new DialogAction(DialogAction.Type.OK)
+                                    .withHandler(actionPerformedEvent -> runBenchmark()),
+                            new DialogAction(DialogAction.Type.CANCEL)
+                    )
+                    .show();
+        } else {
+            runBenchmark();
         }
     }
 
     @Subscribe("advancedModeValue")
     public void onAdvancedModeValueValueChange(HasValue.ValueChangeEvent<Boolean> event) {
-        updateAdvancedBoxesVisible(event.getValue() != null ? event.getValue() : false);
+        // search results include all modules
+        if (searchResult == null) {
+            updateAdvancedBoxesVisible(event.getValue() != null ? event.getValue() : false);
+        }
+    }
+
+    @Subscribe("searchField")
+    public void onSearchFieldTextChange(TextInputField.TextChangeEvent event) {
+        filterThemeVariables(event.getText());
+    }
+
+    /**
+     * Shows only the theme variables matching the query. Each keystroke is looked up in the search index
+     * of the theme model and only the fields or grid rows whose visibility changes are updated.
+     *
+     * @param query a search query, a blank query shows all theme variables
+     */
+    protected void filterThemeVariables(String query) {
+        ThemeVariableSearchIndex.Result result = themeModel.getSearchIndex().search(query, currentTemplate,
+                Arrays.asList(sessionValues.getUserValues(), sessionValues.getTemplateValues()), searchResult);
+        searchResult = result;
+
+        if (heliumEditorProperties.isGridEditorEnabled()) {
+            if (result == null) {
+                updateAdvancedBoxesVisible(Boolean.TRUE.equals(advancedModeValue.getValue()));
+            } else {
+                filterThemeVariablesGrid(result);
+            }
+            return;
+        }
+
+        for (Component component : settingsPanel.getOwnComponents()) {
+            if (component instanceof GroupBoxLayout) {
+                GroupBoxLayout groupBoxLayout = (GroupBoxLayout) component;
+                boolean groupBoxVisible = false;
+                for (Component fieldComponent : groupBoxLayout.getOwnComponents()) {
+                    ThemeVariable themeVariable = ((ThemeVariableField) fieldComponent).getValue();
+                    boolean visible = result == null
+                            || (themeVariable != null && result.matches(themeVariable.getOrdinal()));
+                    if (fieldComponent.isVisible() != visible) {
+                        fieldComponent.setVisible(visible);
+                    }
+                    groupBoxVisible |= visible;
+                }
+
+                groupBoxLayout.setVisible(groupBoxVisible);
+                if (result != null && groupBoxVisible) {
+                    groupBoxLayout.setExpanded(true);
+                }
+            }
+        }
+
+        if (result == null) {
+            updateAdvancedBoxesVisible(Boolean.TRUE.equals(advancedModeValue.getValue()));
+        }
+    }
+
+    protected void filterThemeVariablesGrid(ThemeVariableSearchIndex.Result result) {
+        List<ThemeVariableItem> items = new ArrayList<>();
+        List<ThemeVariableItem> groupItems = new ArrayList<>();
+        for (ThemeVariableItem item : themeVariableItems) {
+            ThemeVariableEditor themeVariableEditor = item.getParent() != null
+                    ? getThemeVariableEditor(item.getId())
+                    : null;
+            if (themeVariableEditor != null
+                    && themeVariableEditor.getValue() != null
+                    && result.matches(themeVariableEditor.getValue().getOrdinal())) {
+                if (groupItems.isEmpty() || groupItems.get(groupItems.size() - 1) != item.getParent()) {
+                    groupItems.add(item.getParent());
+                    items.add(item.getParent());
+                }
+                items.add(item);
+            }
+        }
+
+        themeVariablesDc.setItems(items);
+        themeVariablesGrid.expand(groupItems);
     }
 
     protected void initColorTemplates() {
-        List<Template> templates = themeVariablesManager.getTemplates();
+        List<Template> templates = themeModel.getTemplates();
         List<Template> baseThemeModes = templates.stream()
                 .filter(template -> template.getParent() == null)
                 .collect(Collectors.toList());
@@ -217,11 +707,117 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
     }
 
     protected void updateTemplateField(Template colorTemplate) {
-        List<Template> colorTemplatesValues = themeVariablesManager.getTemplates().stream()
+        updateTemplateFieldOptions(colorTemplate);
+        templateField.setValue(colorTemplate);
+    }
+
+    protected void updateTemplateFieldOptions(Template colorTemplate) {
+        List<Template> colorTemplatesValues = themeModel.getTemplates().stream()
                 .filter(template -> Objects.equals(colorTemplate, template.getParent()) || Objects.equals(colorTemplate, template))
                 .collect(Collectors.toList());
+        sessionValues.getCustomTemplates().stream()
+                .filter(template -> Objects.equals(colorTemplate, template.getBaseThemeMode()))
+                .forEach(colorTemplatesValues::add);
         templateField.setOptionsList(colorTemplatesValues);
-        templateField.setValue(colorTemplate);
+    }
+
+    protected boolean isTemplateNameUsed(@Nullable String name) {
+        return Templates.CUSTOM.equals(name)
+                || themeModel.getTemplate(name) != null
+                || sessionValues.getCustomTemplates().stream().anyMatch(template -> template.getName().equals(name));
+    }
+
+    /**
+     * Saves the changed values as a custom template inheriting from the current template. The values changed
+     * in an unsaved custom template are moved to the new template, the values of a saved one are copied.
+     *
+     * @param name a template name
+     */
+    protected void saveCustomTemplate(String name) {
+        CustomTemplate template = sessionValues.saveCustomTemplate(name, currentTemplate);
+
+        updateTemplateFieldOptions(baseThemeModeField.getValue());
+        templateField.setValue(template);
+    }
+
+    /**
+     * Switches to a saved custom template, see
+     * {@link ThemeSessionValues#activateCustomTemplate(CustomTemplate, Template)}. If the template inherits from
+     * the current template, only the values changed in the previous or in the new template are updated and sent
+     * to the client in one call, otherwise the parent template is applied first as on a usual template switch.
+     *
+     * @param template a custom template
+     */
+    protected void activateCustomTemplate(CustomTemplate template) {
+        if (template == sessionValues.getActiveCustomTemplate()) {
+            return;
+        }
+
+        Template baseThemeMode = template.getBaseThemeMode();
+        if (!baseThemeMode.equals(baseThemeModeField.getValue())) {
+            baseThemeModeField.setValue(baseThemeMode);
+            updateTemplateFieldOptions(baseThemeMode);
+        }
+        if (!template.getParent().equals(currentTemplate)) {
+            updateColorTemplate(template.getParent());
+        }
+
+        BitSet changedOrdinals = sessionValues.activateCustomTemplate(template, currentTemplate);
+        restoreChangedThemeVariables(changedOrdinals);
+        templateField.setValue(template);
+
+        clearEditHistory();
+        scheduleDraftSave();
+    }
+
+    /**
+     * Shows and applies the current values of theme variables whose values are changed by switching
+     * the values changed by the user, see {@link ThemeSessionValues#updateTemplateValues(BitSet, Template)}.
+     *
+     * @param ordinals the ordinals of theme variables
+     */
+    protected void restoreUserValues(BitSet ordinals) {
+        sessionValues.updateTemplateValues(ordinals, currentTemplate);
+        restoreChangedThemeVariables(ordinals);
+    }
+
+    protected Template getEditedTemplate() {
+        CustomTemplate activeCustomTemplate = sessionValues.getActiveCustomTemplate();
+        if (activeCustomTemplate != null) {
+            return activeCustomTemplate;
+        }
+
+        return sessionValues.getUserValues().isEmpty()
+                ? currentTemplate
+                : customTemplate;
+    }
+
+    protected Template getDarkTemplateSource() {
+        CustomTemplate activeCustomTemplate = sessionValues.getActiveCustomTemplate();
+        return activeCustomTemplate != null
+                ? activeCustomTemplate
+                : currentTemplate;
+    }
+
+    /**
+     * Derives the values of the dark template again if its light template is edited. The values are replaced
+     * in the overrides of the template, so the template is up to date when it is selected. During a change
+     * of the user the template is derived once by {@link #endEdit()}, not per value changed by the cascade.
+     */
+    protected void updateDarkTemplate() {
+        if (darkTemplate == null
+                || editDepth > 0
+                || darkTemplateSource != getDarkTemplateSource()) {
+            return;
+        }
+
+        ThemeDarkModeDeriver deriver = themeModel.getDarkModeDeriver();
+        ThemeVariableOverrides lightValues = deriver.getTemplateValues(currentTemplate);
+        lightValues.putAll(sessionValues.getUserValues());
+
+        ThemeVariableOverrides overrides = darkTemplate.getOverrides();
+        overrides.clear();
+        overrides.putAll(deriver.derive(lightValues));
     }
 
     @Install(to = "baseThemeModeField", subject = "optionCaptionProvider")
@@ -265,6 +861,7 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
 
             ThemeVariableField field = createThemeVariableField(themeVariable);
             ((GroupBoxLayout) groupBoxLayout).add(field);
+            themeVariableEditors.put(themeVariable.getName(), field);
         }
 
         advancedGroupBoxLayouts.stream()
@@ -273,7 +870,7 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
     }
 
     protected List<ThemeVariable> getDefaultThemeVariables() {
-        return themeVariablesManager.getThemeVariables();
+        return themeModel.getThemeVariables();
     }
 
     protected GroupBoxLayout createGroupBoxLayout(String id) {
@@ -292,25 +889,323 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
         ThemeVariableField themeVariableField = uiComponents.create(ThemeVariableField.NAME);
         themeVariableField.setValue(themeVariable);
         themeVariableField.setId(themeVariable.getName() + THEME_VARIABLE_FIELD_POSTFIX);
+        themeVariableField.setClientDerivationEnabled(heliumEditorProperties.isClientColorDerivationEnabled());
+        themeVariableField.setClientColorPickerEnabled(heliumEditorProperties.isClientColorPickerEnabled());
+
+        themeVariableField.addColorValueChangeListener(valueChangeEvent ->
+                onColorValueChange(themeVariable, valueChangeEvent.getValue(), valueChangeEvent.isUserOriginated()));
+        themeVariableField.addJavaScriptExecutionListener(javaScriptExecutionEvent ->
+                recordEditorJavaScriptExecution(javaScriptExecutionEvent.getScript()));
+        themeVariableField.addStyleRecalculationListener(this::onStyleRecalculation);
 
-        themeVariableField.addColorValueChangeListener(valueChangeEvent -> {
-            boolean isBaseThemeMode = valueChangeEvent.isUserOriginated();
-            updateThemeVariable(themeVariable.getName(), valueChangeEvent.getValue(), themeVariable.getModule(), isBaseThemeMode);
+        return themeVariableField;
+    }
 
-            if (themeVariable.isRgbUsed()) {
-                updateThemeVariable(themeVariable.getName() + RGB_POSTFIX,
-                        ThemeVariableUtils.convertHexToRGB(valueChangeEvent.getValue()),
-                        themeVariable.getModule(),
-                        isBaseThemeMode);
+    protected void onColorValueChange(ThemeVariable themeVariable, @Nullable String value, boolean isBaseThemeMode) {
+        // the changes of the dependent theme variables are measured as a part of the change of the user
+        boolean userChange = isBaseThemeMode && editDepth == 0;
+        Timer.Sample sample = userChange ? editorMetrics.start() : null;
+        CascadeTrace trace = userChange
+                && heliumEditorProperties.isCascadeTraceEnabled()
+                && CascadeTrace.current() == null
+                ? CascadeTrace.start(themeVariable.getName(), value, currentTemplate.getName())
+                : null;
+        if (isBaseThemeMode) {
+            beginEdit();
+        }
+        try {
+            updateThemeVariable(themeVariable, value, isBaseThemeMode);
+
+            templateField.setValue(getEditedTemplate());
+        } finally {
+            if (isBaseThemeMode) {
+                endEdit();
+            }
+            if (trace != null) {
+                trace.finish();
+                traceLog.info(trace.toJson());
             }
+        }
 
-            Template newTemplate = modifiedThemeVariables.isEmpty()
-                    ? currentTemplate
-                    : customTemplate;
-            templateField.setValue(newTemplate);
+        if (sample != null) {
+            editorMetrics.recordColorChange(sample, currentTemplate, themeVariable.getModule());
+        }
+    }
+
+    /**
+     * Starts a color change made by the user. The values changed until the matching {@link #endEdit()}
+     * are recorded as one step of the edit history.
+     */
+    protected void beginEdit() {
+        if (editDepth++ == 0 && !applyingEditHistory) {
+            editHistory.beginStep();
+        }
+    }
+
+    protected void endEdit() {
+        if (--editDepth == 0) {
+            updateEditHistoryButtons();
+            // the dependent values changed by the cascade are saved and derived once per change of the user
+            scheduleDraftSave();
+            updateDarkTemplate();
+        }
+    }
+
+    protected boolean isEditRecorded() {
+        return editDepth > 0 && !applyingEditHistory;
+    }
+
+    protected void recordEdit(int ordinal, boolean isBaseThemeMode, @Nullable String oldValue,
+                              @Nullable String newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            editHistory.record(ordinal, isBaseThemeMode, oldValue, newValue, getEditHistoryTemplate());
+        }
+    }
+
+    protected int getEditHistoryTemplate() {
+        return themeModel.getTemplates().indexOf(currentTemplate);
+    }
+
+    protected void clearEditHistory() {
+        editHistory.clear();
+        updateEditHistoryButtons();
+    }
+
+    protected void updateEditHistoryButtons() {
+        int template = getEditHistoryTemplate();
+        undoBtn.setEnabled(editHistory.canUndo(template));
+        redoBtn.setEnabled(editHistory.canRedo(template));
+    }
+
+    /**
+     * Undoes or redoes a step of the edit history. The step contains the dependent values too, so the values
+     * are put into the overrides and shown by the editors without running the dependency cascade, and
+     * are sent to the client in one call like the values of a resumed draft.
+     *
+     * @param undo {@code true} to undo the last step, {@code false} to redo the last undone step
+     */
+    protected void applyEditHistoryStep(boolean undo) {
+        BitSet changedOrdinals = sessionValues.applyEditHistoryStep(editHistory, getEditHistoryTemplate(), undo);
+        if (changedOrdinals == null) {
+            return;
+        }
+
+        applyingEditHistory = true;
+        try {
+            restoreChangedThemeVariables(changedOrdinals);
+
+            templateField.setValue(getEditedTemplate());
+        } finally {
+            applyingEditHistory = false;
+        }
+
+        updateEditHistoryButtons();
+        scheduleDraftSave();
+        updateDarkTemplate();
+    }
+
+    /**
+     * Transforms the colors of the theme variables found by the search or of all theme variables if nothing
+     * is searched, see {@link ThemeSessionValues#transform}. The changes are recorded as one step of the edit
+     * history and are sent to the client in one call.
+     *
+     * @param transform a color transformation
+     */
+    protected void transformThemeVariables(ThemeColorTransform transform) {
+        ThemeVariableOverrides changedValues = sessionValues.transform(transform, currentTemplate, searchResult);
+        if (changedValues.isEmpty()) {
+            return;
+        }
+
+        BitSet changedOrdinals = new BitSet(themeModel.getThemeVariables().size());
+        beginEdit();
+        try {
+            changedValues.ordinals().forEach(ordinal -> {
+                updateModifiedThemeVariables(ordinal, changedValues.get(ordinal), true);
+                changedOrdinals.set(ordinal);
+            });
+            restoreChangedThemeVariables(changedOrdinals);
+
+            templateField.setValue(getEditedTemplate());
+        } finally {
+            endEdit();
+        }
+    }
+
+    /**
+     * Shows the current values of the changed theme variables in the editors and sends them to the client:
+     * the overridden values in one call and the removed ones in another.
+     *
+     * @param ordinals the ordinals of the changed theme variables
+     */
+    protected void restoreChangedThemeVariables(BitSet ordinals) {
+        ThemeVariableOverrides restoredOverrides = new ThemeVariableOverrides();
+        List<String> removedVariables = new ArrayList<>();
+
+        ordinals.stream().forEach(ordinal -> {
+            ThemeVariable themeVariable = themeModel.getThemeVariable(ordinal);
+            ThemeVariableEditor themeVariableEditor = getThemeVariableEditor(themeVariable.getName());
+
+            if (sessionValues.getUserValues().contains(ordinal)) {
+                String value = sessionValues.getUserValues().get(ordinal);
+                restoredOverrides.put(ordinal, value);
+                if (themeVariableEditor != null) {
+                    themeVariableEditor.restoreColorValue(value, true);
+                }
+            } else if (sessionValues.getTemplateValues().contains(ordinal)) {
+                String value = sessionValues.getTemplateValues().get(ordinal);
+                restoredOverrides.put(ordinal, value);
+                if (themeVariableEditor != null) {
+                    themeVariableEditor.restoreDefaultValue();
+                    themeVariableEditor.restoreColorValue(value, false);
+                }
+            } else {
+                removedVariables.add(String.format("'%s'", themeVariable.getName()));
+                if (themeVariable.isRgbUsed()) {
+                    removedVariables.add(String.format("'%s'", themeVariable.getName() + ThemeVariableField.RGB_POSTFIX));
+                }
+                if (themeVariableEditor != null) {
+                    themeVariableEditor.restoreDefaultValue();
+                }
+            }
         });
 
-        return themeVariableField;
+        if (!restoredOverrides.isEmpty()) {
+            List<ModifiedThemeVariableDetails> restoredThemeVariables = new ArrayList<>();
+            collectModifiedThemeVariables(restoredOverrides, restoredThemeVariables);
+            String variables = restoredThemeVariables.stream()
+                    .map(details -> String.format("'%s': '%s'", details.getName(), details.getValue()))
+                    .collect(Collectors.joining(", "));
+            executeJavaScript(String.format(SET_THEME_VARIABLES_VOID, variables));
+        }
+        if (!removedVariables.isEmpty()) {
+            executeJavaScript(String.format(REMOVE_THEME_VARIABLES_VOID, String.join(", ", removedVariables)));
+        }
+    }
+
+    protected void recordEditorJavaScriptExecution(String script) {
+        editorMetrics.recordJavaScriptExecution(EditorMetrics.JAVASCRIPT_SOURCE_FIELD, script);
+        if (benchmark != null) {
+            benchmark.recordJavaScriptExecution(script);
+        }
+    }
+
+    /**
+     * Creates a grid row for each theme variable instead of the fields. The rows are grouped by module
+     * in the same order as the group boxes of the fields.
+     */
+    protected void initThemeVariablesGrid() {
+        refreshGridJavaScriptComponent();
+        gridJsComponent.addFunction(STYLE_RECALCULATED_CALLBACK, callbackEvent ->
+                onStyleRecalculation(callbackEvent.getArguments().getString(0),
+                        callbackEvent.getArguments().getNumber(1)));
+
+        Map<String, List<ThemeVariableItem>> itemsByModule = new HashMap<>();
+        for (ThemeVariable themeVariable : getDefaultThemeVariables()) {
+            List<ThemeVariableItem> moduleItems = itemsByModule.computeIfAbsent(themeVariable.getModule(),
+                    module -> new ArrayList<>(Collections.singletonList(createGroupItem(module))));
+
+            ThemeVariableItem item = metadata.create(ThemeVariableItem.class);
+            item.setId(themeVariable.getName());
+            item.setParent(moduleItems.get(0));
+            moduleItems.add(item);
+
+            ThemeVariableGridRow row = new ThemeVariableGridRow(themeVariable, item, this::executeEditorJavaScript,
+                    (source, value, isBaseThemeMode) -> onColorValueChange(themeVariable, value, isBaseThemeMode));
+            row.setClientDerivationEnabled(heliumEditorProperties.isClientColorDerivationEnabled());
+            themeVariableEditors.put(themeVariable.getName(), row);
+        }
+
+        itemsByModule.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, List<ThemeVariableItem>>>comparingInt(entry ->
+                                BASIC_MODULE_NAME.equals(entry.getKey()) ? 0 : COMMON_MODULE_NAME.equals(entry.getKey()) ? 1 : 2)
+                        .thenComparing(entry -> entry.getValue().get(0).getId()))
+                .forEach(entry -> themeVariableItems.addAll(entry.getValue()));
+
+        themeVariablesGrid.addGeneratedColumn(GRID_SWATCH_COLUMN, new DataGrid.ColumnGenerator<ThemeVariableItem, String>() {
+            @Override
+            public String getValue(DataGrid.ColumnGeneratorEvent<ThemeVariableItem> event) {
+                return getSwatchHtml(event.getItem());
+            }
+
+            @Override
+            public Class<String> getType() {
+                return String.class;
+            }
+        }, 1).setRenderer(themeVariablesGrid.createRenderer(DataGrid.HtmlRenderer.class));
+
+        DataGrid.ClickableTextRenderer<ThemeVariableItem> resetRenderer =
+                themeVariablesGrid.createRenderer(DataGrid.ClickableTextRenderer.class);
+        resetRenderer.setRendererClickListener(clickEvent -> {
+            ThemeVariableEditor themeVariableEditor = getThemeVariableEditor(clickEvent.getItem().getId());
+            if (themeVariableEditor instanceof ThemeVariableGridRow) {
+                ((ThemeVariableGridRow) themeVariableEditor).reset();
+            }
+        });
+        themeVariablesGrid.addGeneratedColumn(GRID_RESET_COLUMN, new DataGrid.ColumnGenerator<ThemeVariableItem, String>() {
+            @Override
+            public String getValue(DataGrid.ColumnGeneratorEvent<ThemeVariableItem> event) {
+                return Boolean.TRUE.equals(event.getItem().getModified())
+                        ? messageBundle.getMessage("themeVariablesGrid.reset")
+                        : null;
+            }
+
+            @Override
+            public Class<String> getType() {
+                return String.class;
+            }
+        }).setRenderer(resetRenderer);
+
+        themeVariablesGrid.getColumnNN(GRID_VALUE_COLUMN).setStyleProvider(item ->
+                Boolean.TRUE.equals(item.getDefaultValue()) ? GRID_DEFAULT_VALUE_STYLENAME : null);
+    }
+
+    protected ThemeVariableItem createGroupItem(String module) {
+        ThemeVariableItem item = metadata.create(ThemeVariableItem.class);
+        item.setId(module.toLowerCase() + GROUPBOX_POSTFIX);
+        item.setName(module);
+        return item;
+    }
+
+    @Nullable
+    protected String getSwatchHtml(ThemeVariableItem item) {
+        if (item.getParent() == null) {
+            return null;
+        }
+
+        String color = item.getColor() != null && GRID_SWATCH_COLOR_PATTERN.matcher(item.getColor()).matches()
+                ? item.getColor()
+                : ThemeVariablesManager.TRANSPARENT_COLOR_VALUE;
+        return String.format(GRID_SWATCH_HTML, color);
+    }
+
+    /**
+     * Applies the value edited in the grid the same way as a value typed into a theme variable field.
+     */
+    @Subscribe("themeVariablesGrid")
+    public void onThemeVariablesGridEditorPostCommit(DataGrid.EditorPostCommitEvent<ThemeVariableItem> event) {
+        ThemeVariableItem item = event.getItem();
+        ThemeVariableEditor themeVariableEditor = getThemeVariableEditor(item.getId());
+        if (themeVariableEditor instanceof ThemeVariableGridRow) {
+            themeVariableEditor.setColorValue(Strings.emptyToNull(item.getValue()));
+        } else {
+            // modules have no value
+            item.setValue(null);
+        }
+    }
+
+    protected void refreshGridJavaScriptComponent() {
+        JavaScript.getCurrent().execute(gridJsComponent.getInitFunctionName() + "()");
+    }
+
+    protected void executeEditorJavaScript(String script) {
+        JavaScript.getCurrent().execute(script);
+        recordEditorJavaScriptExecution(script);
+    }
+
+    @Nullable
+    protected ThemeVariableEditor getThemeVariableEditor(String variableName) {
+        return themeVariableEditors.get(variableName);
     }
 
     protected void showConfirmationDialog(OptionsField<Template, Template> optionsField, Template value, Template prevValue) {
@@ -321,8 +1216,12 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
                 .withActions(
                         new DialogAction(DialogAction.Type.OK)
                                 .withHandler(actionPerformedEvent -> {
-                                    updateTemplateField(value);
-                                    updateColorTemplate(value);
+                                    if (value instanceof CustomTemplate) {
+                                        activateCustomTemplate((CustomTemplate) value);
+                                    } else {
+                                        updateTemplateField(value);
+                                        updateColorTemplate(value);
+                                    }
                                 }),
                         new DialogAction(DialogAction.Type.CANCEL)
                                 .withHandler(actionPerformedEvent -> optionsField.setValue(prevValue))
@@ -331,16 +1230,51 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
     }
 
     protected void updateColorTemplate(Template newTemplate) {
+        Timer.Sample sample = editorMetrics.start();
+        BitSet detachedOrdinals = sessionValues.getActiveCustomTemplate() != null
+                ? sessionValues.detachCustomTemplate()
+                : null;
         if (!customTemplate.equals(newTemplate)
                 && !currentTemplate.equals(newTemplate)) {
             currentTemplate = newTemplate;
 
-            modifiedThemeVariables = new ArrayList<>();
-            modifiedColorTemplateThemeVariables = new ArrayList<>();
+            sessionValues.clear();
         }
 
         updateMainScreenStyleName();
         updateFieldsByColorTemplate(newTemplate);
+        updateClientDependencyGraph();
+
+        if (detachedOrdinals != null) {
+            // the values of the custom template are not reset by the template if they are the same
+            restoreUserValues(detachedOrdinals);
+        }
+
+        if (editDepth == 0 && !applyingEditHistory) {
+            // the template is switched or reset, not restored by a change of the user
+            clearEditHistory();
+        }
+
+        editorMetrics.recordTemplateSwitch(sample, newTemplate);
+        scheduleDraftSave();
+    }
+
+    /**
+     * Sends the dependency graph of the current template to the browser once per page load.
+     * A graph that is already sent is only selected.
+     */
+    protected void updateClientDependencyGraph() {
+        if (!clientDependencyGraphEnabled) {
+            return;
+        }
+
+        String templateName = currentTemplate.getName();
+        if (clientDependencyGraphs.add(templateName)) {
+            executeJavaScript(String.format(SET_DEPENDENCY_GRAPH_VOID, templateName,
+                    themeModel.getClientDependencyGraph(currentTemplate)));
+        } else {
+            executeJavaScript(String.format(USE_DEPENDENCY_GRAPH_VOID, templateName));
+        }
     }
 
     protected void updateMainScreenStyleName() {
@@ -355,172 +1289,371 @@ public class MainScreen extends Screen implements Window.HasWorkArea {
     }
 
     protected void updateMainScreenClassName(String mainClassName, String baseThemeMode) {
-        JavaScript.getCurrent()
-                .execute(String.format("document.getElementsByClassName('%s')[0].className = '%s %s'",
-                        mainClassName, mainClassName, baseThemeMode));
+        executeJavaScript(String.format("document.getElementsByClassName('%s')[0].className = '%s %s'",
+                mainClassName, mainClassName, baseThemeMode));
     }
 
     protected void resetValues() {
         templateField.setValue(baseThemeModeField.getValue());
-        modifiedThemeVariables.clear();
+        sessionValues.getUserValues().clear();
         updateMainScreenStyleName();
+        clearEditHistory();
+        scheduleDraftSave();
     }
 
     protected void updateAdvancedBoxesVisible(boolean value) {
+        if (heliumEditorProperties.isGridEditorEnabled()) {
+            String basicGroupId = BASIC_MODULE_NAME.toLowerCase() + GROUPBOX_POSTFIX;
+            themeVariablesDc.setItems(value
+                    ? themeVariableItems
+                    : themeVariableItems.stream()
+                    .filter(item -> basicGroupId.equals(item.getParent() != null ? item.getParent().getId() : item.getId()))
+                    .collect(Collectors.toList()));
+
+            ThemeVariableItem basicGroupItem = themeVariablesDc.getItemOrNull(basicGroupId);
+            if (basicGroupItem != null) {
+                themeVariablesGrid.expand(basicGroupItem);
+            }
+            return;
+        }
+
         settingsPanel.getOwnComponentsStream()
                 .skip(3) // skip Screen defaults and Basic groupboxes
                 .forEach(component -> component.setVisible(value));
     }
 
     protected void updateFieldsByColorTemplate(Template templateValue) {
-        settingsPanel.getComponents()
-                .forEach(component -> {
-                    if (component instanceof ThemeVariableField) {
-                        ((ThemeVariableField) component).setColorValueByTemplate(templateValue);
-                    }
-                });
+        TemplateResolutionEvent event = new TemplateResolutionEvent();
+        event.begin();
+
+        int fieldCount = 0;
+        for (ThemeVariableEditor themeVariableEditor : themeVariableEditors.values()) {
+            themeVariableEditor.setColorValueByTemplate(templateValue);
+            fieldCount++;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = TemplateResolutionEvent.FIELDS_UPDATE;
+            event.template = templateValue.getName();
+            event.variables = fieldCount;
+            event.commit();
+        }
     }
 
-    protected void updateThemeVariable(String themeVariableName, String value, String module, boolean isBaseThemeMode) {
-        updateModifiedThemeVariables(themeVariableName, value, module, isBaseThemeMode);
-        if (isBaseThemeMode) {
-            updateChildThemeVariables(themeVariableName, value);
+    protected void updateThemeVariable(ThemeVariable themeVariable, String value, boolean isBaseThemeMode) {
+        updateModifiedThemeVariables(themeVariable.getOrdinal(), value, isBaseThemeMode);
+        if (isBaseThemeMode && !updatingChildThemeVariables) {
+            Timer.Sample sample = editorMetrics.start();
+            int childrenCount = updateChildThemeVariables(themeVariable.getName(), value);
+            editorMetrics.recordChildrenUpdate(sample, currentTemplate, themeVariable.getModule(), childrenCount);
         }
     }
 
-    protected void updateModifiedThemeVariables(String themeVariableName, String value, String module, boolean isBaseThemeMode) {
-        if (value == null) {
-            removeModifiedThemeVariableDetails(themeVariableName, modifiedThemeVariables);
-            removeModifiedThemeVariableDetails(themeVariableName, modifiedColorTemplateThemeVariables);
-        } else {
-            if (isBaseThemeMode) {
-                addModifiedThemeVariableDetails(themeVariableName, value, module, modifiedThemeVariables);
-                removeModifiedThemeVariableDetails(themeVariableName, modifiedColorTemplateThemeVariables);
-            } else {
-                addModifiedThemeVariableDetails(themeVariableName, value, module, modifiedColorTemplateThemeVariables);
-                removeModifiedThemeVariableDetails(themeVariableName, modifiedThemeVariables);
-            }
+    protected void updateModifiedThemeVariables(int ordinal, String value, boolean isBaseThemeMode) {
+        boolean recorded = isEditRecorded();
+        String oldValue = recorded ? sessionValues.getUserValues().get(ordinal) : null;
+        String oldColorTemplateValue = recorded ? sessionValues.getTemplateValues().get(ordinal) : null;
+
+        sessionValues.put(ordinal, value, isBaseThemeMode);
+
+        if (recorded) {
+            recordEdit(ordinal, true, oldValue, sessionValues.getUserValues().get(ordinal));
+            recordEdit(ordinal, false, oldColorTemplateValue, sessionValues.getTemplateValues().get(ordinal));
         }
     }
 
-    protected void removeModifiedThemeVariableDetails(String name, List<ModifiedThemeVariableDetails> modifiedThemeVariableDetails) {
-        if (modifiedThemeVariableDetails != null) {
-            modifiedThemeVariableDetails.stream()
-                    .filter(details -> details.getName().equals(name))
-                    .findFirst()
-                    .ifPresent(modifiedThemeVariableDetails::remove);
+    /**
+     * Updates the theme variables that depend on a changed theme variable, each from the value of its immediate
+     * parent, see {@link ThemeModel#visitChildThemeVariables(String, String, Template, java.util.function.BiConsumer)}.
+     *
+     * @param variableName a changed theme variable name
+     * @param value        a new value or {@code null} if the value is reset
+     * @return the number of the dependent theme variables
+     */
+    protected int updateChildThemeVariables(String variableName, @Nullable String value) {
+        try (CascadeTrace.Span span = CascadeTrace.span(CascadeTrace.UPDATE_CHILD_THEME_VARIABLES, variableName, value)) {
+            TemplateResolutionEvent event = new TemplateResolutionEvent();
+            event.begin();
+            List<ThemeVariable> childrenThemeVariables = new ArrayList<>();
+            List<String> parentValues = new ArrayList<>();
+            themeModel.visitChildThemeVariables(variableName, value, currentTemplate, (themeVariable, parentValue) -> {
+                childrenThemeVariables.add(themeVariable);
+                parentValues.add(parentValue);
+            });
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = TemplateResolutionEvent.CHILDREN_LOOKUP;
+                event.template = currentTemplate.getName();
+                event.variable = variableName;
+                event.variables = getDefaultThemeVariables().size();
+                event.commit();
+            }
+            span.setResult(childrenThemeVariables.size() + " children");
+
+            updatingChildThemeVariables = true;
+            try {
+                for (int i = 0; i < childrenThemeVariables.size(); i++) {
+                    ThemeVariableEditor themeVariableEditor =
+                            getThemeVariableEditor(childrenThemeVariables.get(i).getName());
+                    if (themeVariableEditor != null) {
+                        themeVariableEditor.setColorValueByParent(parentValues.get(i));
+                    }
+                }
+            } finally {
+                updatingChildThemeVariables = false;
+            }
+            return childrenThemeVariables.size();
         }
     }
 
-    protected void addModifiedThemeVariableDetails(String name, String value, String module, List<ModifiedThemeVariableDetails> modifiedThemeVariableDetails) {
-        if (modifiedThemeVariableDetails != null) {
-            ModifiedThemeVariableDetails existingDetails = modifiedThemeVariableDetails.stream()
-                    .filter(details -> details.getName().equals(name))
-                    .findFirst()
-                    .orElse(null);
+    protected String generateDownloadText() {
+        Timer.Sample sample = editorMetrics.start();
+        Template baseThemeMode = baseThemeModeField.getValue();
+        List<ModifiedThemeVariableDetails> modifiedThemeVariablesList = getModifiedThemeVariables();
+        String text = ThemeExportUtils.generateText(baseThemeMode.getName(),
+                variantsManager.getDefaultThemeMode().equals(baseThemeMode.getName()),
+                modifiedThemeVariablesList);
 
-            if (existingDetails != null) {
-                int index = modifiedThemeVariableDetails.indexOf(existingDetails);
-                existingDetails.setValue(value);
-                modifiedThemeVariableDetails.set(index, existingDetails);
-            } else {
-                existingDetails = new ModifiedThemeVariableDetails(name, module, value);
-                modifiedThemeVariableDetails.add(existingDetails);
+        editorMetrics.recordExport(sample, baseThemeMode, modifiedThemeVariablesList.size());
+        return text;
+    }
+
+    protected List<ModifiedThemeVariableDetails> getModifiedThemeVariables() {
+        List<ModifiedThemeVariableDetails> modifiedThemeVariablesList = new ArrayList<>();
+        collectModifiedThemeVariables(sessionValues.getUserValues(), modifiedThemeVariablesList);
+        collectModifiedThemeVariables(sessionValues.getTemplateValues(), modifiedThemeVariablesList);
+
+        return ThemeExportUtils.sort(modifiedThemeVariablesList);
+    }
+
+    /**
+     * Returns the draft key stored in the browser cookie.
+     *
+     * @return the draft key or {@code null} if the browser has no saved drafts
+     */
+    @Nullable
+    protected String getDraftKey() {
+        VaadinRequest request = VaadinService.getCurrentRequest();
+        if (request != null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (DRAFT_KEY_COOKIE.equals(cookie.getName())
+                        && cookie.getValue() != null
+                        && cookie.getValue().matches("[0-9a-f-]{36}")) {
+                    return cookie.getValue();
+                }
             }
         }
+        return null;
     }
 
-    protected void updateChildThemeVariables(String variableName, String value) {
-        List<ThemeVariable> childrenThemeVariables = getChildrenThemeVariables(variableName);
+    /**
+     * Generates a draft key and stores it in the browser cookie. The key is created when the first draft
+     * is saved, so the cookie is not set for the visitors that change nothing.
+     *
+     * @return the draft key
+     */
+    protected String createDraftKey() {
+        String key = UUID.randomUUID().toString();
+        VaadinResponse response = VaadinService.getCurrentResponse();
+        if (response != null) {
+            Cookie cookie = new Cookie(DRAFT_KEY_COOKIE, key);
+            cookie.setMaxAge(DRAFT_KEY_COOKIE_MAX_AGE);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        return key;
+    }
+
+    /**
+     * Restores the latest draft. The template of the draft is applied as usual, the changed values are
+     * shown by the fields without running the dependency cascade and are sent to the client in one call.
+     *
+     * @param draftKey a draft key
+     */
+    protected void resumeDraft(String draftKey) {
+        ThemeDraftManager.Draft draft = themeDraftManager.loadLatest(draftKey);
+        if (draft == null
+                || draft.getModelChecksum() != themeModel.getChecksum()) {
+            return;
+        }
+
+        Template baseThemeMode = themeModel.getTemplate(draft.getBaseThemeMode());
+        Template template = themeModel.getTemplate(draft.getTemplateName());
+        if (baseThemeMode == null || template == null) {
+            return;
+        }
+
+        baseThemeModeField.setValue(baseThemeMode);
+        updateTemplateField(baseThemeMode);
+        templateField.setValue(template);
+
+        ThemeVariableOverrides overrides = draft.getThemeVariableOverrides();
+        ThemeVariableOverrides derivedOverrides = draft.getDerivedThemeVariableOverrides();
+        if (overrides.isEmpty() && derivedOverrides.isEmpty()) {
+            return;
+        }
+
+        sessionValues.restore(overrides, derivedOverrides);
+        restoreFieldValues(overrides, true);
+        restoreFieldValues(derivedOverrides, false);
+
+        String variables = getModifiedThemeVariables().stream()
+                .map(details -> String.format("'%s': '%s'", details.getName(), details.getValue()))
+                .collect(Collectors.joining(", "));
+        executeJavaScript(String.format(SET_THEME_VARIABLES_VOID, variables));
+
+        templateField.setValue(customTemplate);
+    }
 
-        childrenThemeVariables.forEach(themeVariable -> {
-            ThemeVariableField themeVariableField =
-                    (ThemeVariableField) settingsPanel.getComponent(themeVariable.getName() + THEME_VARIABLE_FIELD_POSTFIX);
-            if (themeVariableField != null) {
-                themeVariableField.setColorValueByParent(value);
+    protected void restoreFieldValues(ThemeVariableOverrides overrides, boolean isBaseThemeMode) {
+        overrides.ordinals().forEach(ordinal -> {
+            ThemeVariable themeVariable = themeModel.getThemeVariable(ordinal);
+            ThemeVariableEditor themeVariableEditor = getThemeVariableEditor(themeVariable.getName());
+            if (themeVariableEditor != null) {
+                themeVariableEditor.restoreColorValue(overrides.get(ordinal), isBaseThemeMode);
             }
         });
     }
 
-    protected List<ThemeVariable> getChildrenThemeVariables(String variableName) {
-        List<ThemeVariable> childrenThemeVariables = new ArrayList<>();
-        for (ThemeVariable themeVariable : getDefaultThemeVariables()) {
-            ThemeVariableDetails themeVariableDetails = themeVariable.getThemeVariableDetails(currentTemplate);
-
-            if (themeVariableDetails != null) {
-                ThemeVariable parentThemeVariable = themeVariableDetails.getParentThemeVariable();
-                if (parentThemeVariable != null
-                        && variableName.equals(parentThemeVariable.getName())) {
-                    childrenThemeVariables.add(themeVariable);
-                    childrenThemeVariables.addAll(getChildrenThemeVariables(themeVariable.getName()));
-                }
+    /**
+     * Schedules saving of the current values as a draft. During a change of the user the draft is scheduled
+     * once by {@link #endEdit()}, not per value changed by the cascade.
+     */
+    protected void scheduleDraftSave() {
+        if (!themeDraftManager.isEnabled()
+                || benchmark != null
+                || resumingDraft
+                || editDepth > 0) {
+            return;
+        }
+
+        if (draftKey == null) {
+            if (sessionValues.getUserValues().isEmpty()
+                    && currentTemplate.equals(baseThemeModeField.getValue())) {
+                // nothing to restore
+                return;
             }
+            draftKey = createDraftKey();
         }
-        return childrenThemeVariables;
+        themeDraftManager.scheduleSave(new ThemeDraftManager.Draft(draftKey,
+                baseThemeModeField.getValue().getName(), currentTemplate.getName(), themeModel.getChecksum(),
+                sessionValues.getUserValues(), sessionValues.getTemplateValues()));
     }
 
-    protected String generateDownloadText() {
-        StringBuilder builder = new StringBuilder();
-        boolean isDefaultThemeMode = variantsManager.getDefaultThemeMode().equals(baseThemeModeField.getValue().getName());
-        if (!isDefaultThemeMode) {
-            builder.append(".")
-                    .append(baseThemeModeField.getValue().getName())
-                    .append(" {\n");
+    protected void executeJavaScript(String script) {
+        JavaScript.getCurrent().execute(script);
+        editorMetrics.recordJavaScriptExecution(EditorMetrics.JAVASCRIPT_SOURCE_SCREEN, script);
+
+        if (benchmark != null) {
+            benchmark.recordJavaScriptExecution(script);
         }
+    }
 
-        List<ModifiedThemeVariableDetails> modifiedThemeVariablesList = getModifiedThemeVariables();
+    /**
+     * Applies template switches and color changes of the Basic variables through the same paths as user
+     * changes, measures each of them and restores the initial template.
+     */
+    protected void runBenchmark() {
+        Template initialTemplate = baseThemeModeField.getValue();
+        List<Template> templates = templateField.getOptions().getOptions()
+                .filter(template -> !customTemplate.equals(template)
+                        && !(template instanceof CustomTemplate))
+                .collect(Collectors.toList());
+        List<ThemeVariableEditor> basicEditors = themeVariableEditors.values().stream()
+                .filter(editor -> editor.getValue() != null
+                        && BASIC_MODULE_NAME.equals(editor.getValue().getModule()))
+                .collect(Collectors.toList());
 
-        String module = null;
-        boolean firstModule = true;
-        for (ModifiedThemeVariableDetails details : modifiedThemeVariablesList) {
-            if (!details.getModule().equals(module)) {
-                if (firstModule) {
-                    firstModule = false;
-                } else {
-                    builder.append("\n");
-                }
+        resetValues();
+        updateColorTemplate(initialTemplate);
 
-                module = details.getModule();
-                builder.append("  /* ")
-                        .append(module)
-                        .append(" */")
-                        .append("\n");
-            }
+        benchmark = new ThemeChangeBenchmark();
+        for (Template template : templates) {
+            runBenchmarkStep("Template " + template.getName(), () -> templateField.setValue(template));
+        }
 
-            if (!isDefaultThemeMode) {
-                builder.append("  ");
-            }
+        int colorIndex = 0;
+        for (ThemeVariableEditor editor : basicEditors) {
+            String color = BENCHMARK_COLORS.get(colorIndex++ % BENCHMARK_COLORS.size());
+            runBenchmarkStep(editor.getValue().getName() + " " + color, () -> editor.setColorValue(color));
+        }
+
+        runBenchmarkStep("Reset", () -> {
+            sessionValues.clear();
+            updateFieldsByColorTemplate(initialTemplate);
+            resetValues();
+        });
+
+        log.info("Theme change benchmark finished on the server:\n{}", benchmark.getSummary());
+        // the benchmark is finished without the client results if the client does not report them
+        benchmarkTimeoutTimer.stop();
+        benchmarkTimeoutTimer.start();
+    }
 
-            builder.append(details.getName())
-                    .append(": ")
-                    .append(details.getValue())
-                    .append(";\n");
+    protected void runBenchmarkStep(String name, Runnable step) {
+        String stepId = benchmark.startStep(name);
+        try {
+            step.run();
+        } finally {
+            benchmark.finishStep();
         }
 
-        if (!isDefaultThemeMode) {
-            builder.append("}");
+        if (heliumEditorProperties.isGridEditorEnabled()) {
+            gridJsComponent.callFunction(MEASURE_STYLE_RECALCULATION_FUNCTION, stepId);
+            return;
         }
-        return builder.toString();
+
+        settingsPanel.getComponents().stream()
+                .filter(component -> component instanceof ThemeVariableField)
+                .findFirst()
+                .ifPresent(field -> ((ThemeVariableField) field).measureStyleRecalculation(stepId));
     }
 
-    protected List<ModifiedThemeVariableDetails> getModifiedThemeVariables() {
-        return Stream.of(modifiedThemeVariables, modifiedColorTemplateThemeVariables)
-                .flatMap(Collection::stream)
-                .sorted(Comparator.comparing(ModifiedThemeVariableDetails::getModule, (module1, module2) -> {
-                    if (COMMON_MODULE_NAME.equals(module1) && !COMMON_MODULE_NAME.equals(module2)) {
-                        return BASIC_MODULE_NAME.equals(module2)
-                                ? 1
-                                : -1;
-                    }
+    protected void onStyleRecalculation(ThemeVariableField.StyleRecalculationEvent event) {
+        onStyleRecalculation(event.getMeasurementId(), event.getDuration());
+    }
 
-                    if (COMMON_MODULE_NAME.equals(module2) && !COMMON_MODULE_NAME.equals(module1)) {
-                        return BASIC_MODULE_NAME.equals(module1)
-                                ? -1
-                                : 1;
-                    }
+    protected void onStyleRecalculation(String measurementId, double duration) {
+        if (benchmark == null) {
+            return;
+        }
 
-                    return module1.compareTo(module2);
-                }).thenComparing(ModifiedThemeVariableDetails::getName))
-                .collect(Collectors.toList());
+        benchmark.recordStyleRecalculation(measurementId, duration);
+        if (benchmark.isComplete()) {
+            finishBenchmark();
+        }
+    }
+
+    @Subscribe("benchmarkTimeoutTimer")
+    public void onBenchmarkTimeoutTimerTimerAction(io.jmix.ui.component.Timer.TimerActionEvent event) {
+        if (benchmark != null) {
+            log.warn("Theme change benchmark is finished without the client results of some steps");
+            finishBenchmark();
+        }
+    }
+
+    /**
+     * Shows the results of the benchmark and resumes saving drafts. The steps not reported by the client
+     * are shown without the client time.
+     */
+    protected void finishBenchmark() {
+        benchmarkTimeoutTimer.stop();
+        String summary = benchmark.getSummary();
+        benchmark = null;
+
+        log.info("Theme change benchmark results:\n{}", summary);
+        dialogs.createMessageDialog()
+                .withCaption(messageBundle.getMessage("benchmarkResult.caption"))
+                .withContentMode(ContentMode.PREFORMATTED)
+                .withMessage(summary)
+                .withWidth("800px")
+                .show();
+    }
+
+    protected void collectModifiedThemeVariables(ThemeVariableOverrides overrides,
+                                                 List<ModifiedThemeVariableDetails> modifiedThemeVariablesList) {
+        ThemeExportUtils.collectModifiedThemeVariables(themeModel, overrides, modifiedThemeVariablesList);
     }
 }
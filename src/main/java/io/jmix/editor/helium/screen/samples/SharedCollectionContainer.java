@@ -0,0 +1,27 @@
+package io.jmix.editor.helium.screen.samples;
+
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.ui.model.impl.CollectionContainerImpl;
+
+/**
+ * Collection container for entities shared between UI sessions.
+ * <p>
+ * The entities are never modified, so the container does not subscribe to their property changes.
+ * Otherwise, every session would register its listeners in the same shared entities.
+ */
+public class SharedCollectionContainer<E> extends CollectionContainerImpl<E> {
+
+    public SharedCollectionContainer(MetaClass metaClass) {
+        super(metaClass);
+    }
+
+    @Override
+    protected void attachListener(E entity) {
+        // do nothing
+    }
+
+    @Override
+    protected void detachListener(E entity) {
+        // do nothing
+    }
+}
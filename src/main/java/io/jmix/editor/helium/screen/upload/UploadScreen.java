@@ -3,6 +3,7 @@ package io.jmix.editor.helium.screen.upload;
 import io.jmix.editor.helium.tools.ModifiedThemeVariableDetails;
 import io.jmix.editor.helium.tools.Template;
 import io.jmix.editor.helium.tools.ThemeVariablesManager;
+import io.jmix.editor.helium.tools.UploadedTemplate;
 import io.jmix.ui.WindowParam;
 import io.jmix.ui.component.Button;
 import io.jmix.ui.component.HasValue;
@@ -43,10 +44,26 @@ public class UploadScreen extends Screen {
 
     protected List<ModifiedThemeVariableDetails> uploadedThemeVariables = new ArrayList<>();
 
+    /**
+     * Uploaded blocks of templates and of other base theme modes than the selected one.
+     */
+    protected List<UploadedTemplate> uploadedTemplates = new ArrayList<>();
+
+    /**
+     * @return the theme variables uploaded for the selected base theme mode
+     */
     public List<ModifiedThemeVariableDetails> getUploadedThemeVariables() {
         return uploadedThemeVariables;
     }
 
+    /**
+     * @return the uploaded blocks of templates and of other base theme modes, the values of each block
+     * are to be loaded as a custom template
+     */
+    public List<UploadedTemplate> getUploadedTemplates() {
+        return uploadedTemplates;
+    }
+
     public Template getBaseThemeMode() {
         return baseThemeModeField.getValue();
     }
@@ -69,25 +86,58 @@ public class UploadScreen extends Screen {
     @Subscribe("textArea")
     protected void onTextAreaValueChange(HasValue.ValueChangeEvent<String> event) {
         if (event.isUserOriginated()) {
-            if (event.getValue() == null) {
-                uploadedThemeVariables.clear();
-            } else {
+            uploadedThemeVariables = new ArrayList<>();
+            uploadedTemplates = new ArrayList<>();
+
+            if (event.getValue() != null) {
                 BufferedReader reader = new BufferedReader(new StringReader(event.getValue()));
-                uploadedThemeVariables = themeVariablesManager.parseUploadedThemeVariables(reader);
+                List<UploadedTemplate> templates = themeVariablesManager.parseUploadedTemplates(reader);
+
+                // the declarations outside of blocks or the first base theme mode block are applied
+                // to the selected base theme mode as before, the other blocks become custom templates
+                UploadedTemplate mainTemplate = templates.stream()
+                        .filter(template -> template.getBaseThemeMode() == null)
+                        .findFirst()
+                        .orElse(templates.stream()
+                                .filter(template -> template.getTemplateName() == null)
+                                .findFirst()
+                                .orElse(null));
+                for (UploadedTemplate template : templates) {
+                    if (template == mainTemplate) {
+                        uploadedThemeVariables = template.getThemeVariables();
+                        if (template.getBaseThemeMode() != null) {
+                            baseThemeModeField.setValue(template.getBaseThemeMode());
+                        }
+                    } else {
+                        uploadedTemplates.add(template);
+                    }
+                }
             }
             updateTextArea();
         }
     }
 
     protected void updateTextArea() {
-        if (!uploadedThemeVariables.isEmpty()) {
+        if (!uploadedThemeVariables.isEmpty() || !uploadedTemplates.isEmpty()) {
             StringBuilder builder = new StringBuilder();
-            for (ModifiedThemeVariableDetails details : uploadedThemeVariables) {
-                builder.append(details.getName())
-                        .append(": ")
-                        .append(details.getValue())
-                        .append(";")
-                        .append("\n");
+            appendThemeVariables(builder, uploadedThemeVariables, "");
+            for (UploadedTemplate template : uploadedTemplates) {
+                if (builder.length() > 0) {
+                    builder.append("\n");
+                }
+
+                if (template.getTemplateName() != null) {
+                    builder.append(".helium.")
+                            .append(template.getBaseThemeMode().getName())
+                            .append(".")
+                            .append(template.getTemplateName());
+                } else {
+                    builder.append(".")
+                            .append(template.getBaseThemeMode().getName());
+                }
+                builder.append(" {\n");
+                appendThemeVariables(builder, template.getThemeVariables(), "  ");
+                builder.append("}\n");
             }
             textArea.setValue(builder.toString());
         } else {
@@ -97,13 +147,27 @@ public class UploadScreen extends Screen {
         updateApplyBtn();
     }
 
+    protected void appendThemeVariables(StringBuilder builder, List<ModifiedThemeVariableDetails> themeVariables,
+                                        String indent) {
+        for (ModifiedThemeVariableDetails details : themeVariables) {
+            builder.append(indent)
+                    .append(details.getName())
+                    .append(": ")
+                    .append(details.getValue())
+                    .append(";")
+                    .append("\n");
+        }
+    }
+
     protected void updateApplyBtn() {
-        applyBtn.setEnabled(!uploadedThemeVariables.isEmpty());
+        applyBtn.setEnabled(!uploadedThemeVariables.isEmpty() || !uploadedTemplates.isEmpty());
     }
 
     @Subscribe("applyBtn")
     protected void onApplyBtnClick(Button.ClickEvent event) {
         uploadedThemeVariables = themeVariablesManager.updateThemeVariableDetailsByTemplate(uploadedThemeVariables, baseThemeModeField.getValue());
+        uploadedTemplates.forEach(template ->
+                themeVariablesManager.updateThemeVariableDetailsByTemplate(template.getThemeVariables(), template.getParent()));
         close(StandardOutcome.COMMIT);
     }
 
@@ -0,0 +1,280 @@
+package io.jmix.editor.helium.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Trace of a single color change cascade: the update of dependent theme variables, the values set to
+ * the fields and the computed colors, with the timing of each operation.
+ * <p>
+ * The trace is bound to the UI thread that handles the change. Operations are recorded only while
+ * a trace is started, otherwise {@link #span(String, String, String)} returns a no-op span.
+ * <pre>{@code
+ *      try (CascadeTrace.Span span = CascadeTrace.span(CascadeTrace.DARKEN, name, value)) {
+ *          span.setResult(ThemeVariableUtils.darken(value, percent));
+ *      }
+ * }</pre>
+ */
+public class CascadeTrace {
+
+    public static final String UPDATE_CHILD_THEME_VARIABLES = "updateChildThemeVariables";
+    public static final String SET_COLOR_VALUE_BY_PARENT = "setColorValueByParent";
+    public static final String SET_THEME_VARIABLE = "setThemeVariable";
+    public static final String REMOVE_THEME_VARIABLE = "removeThemeVariable";
+    public static final String DARKEN = "darken";
+    public static final String LIGHTEN = "lighten";
+
+    protected static final ThreadLocal<CascadeTrace> CURRENT = new ThreadLocal<>();
+
+    protected static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    protected final String variable;
+    protected final String value;
+    protected final String template;
+    protected final Instant startedAt = Instant.now();
+    protected final long startNanos = System.nanoTime();
+    protected long durationNanos = -1;
+    protected int depth;
+    protected List<Entry> entries = new ArrayList<>();
+
+    protected CascadeTrace(String variable, @Nullable String value, @Nullable String template) {
+        this.variable = variable;
+        this.value = value;
+        this.template = template;
+    }
+
+    /**
+     * Starts a trace in the current thread.
+     *
+     * @param variable the changed theme variable name
+     * @param value    the new value
+     * @param template the current color template name
+     * @return the started trace
+     * @throws IllegalStateException if a trace is already started
+     */
+    public static CascadeTrace start(String variable, @Nullable String value, @Nullable String template) {
+        if (CURRENT.get() != null) {
+            throw new IllegalStateException("Cascade trace is already started");
+        }
+
+        CascadeTrace trace = new CascadeTrace(variable, value, template);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * @return the trace started in the current thread or {@code null}
+     */
+    @Nullable
+    public static CascadeTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Begins an operation in the trace started in the current thread.
+     *
+     * @param operation an operation name
+     * @param variable  a theme variable name
+     * @param value     an operation argument
+     * @return the span to be closed when the operation is done
+     */
+    public static Span span(String operation, String variable, @Nullable String value) {
+        CascadeTrace trace = CURRENT.get();
+        return trace != null
+                ? trace.begin(operation, variable, value)
+                : Span.NOOP;
+    }
+
+    /**
+     * Finishes the trace and unbinds it from the current thread.
+     */
+    public void finish() {
+        durationNanos = System.nanoTime() - startNanos;
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    public String getVariable() {
+        return variable;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public long getDurationMicros() {
+        return durationNanos / 1000;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the trace in JSON
+     */
+    public String toJson() {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(new Json(this));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to write cascade trace", e);
+        }
+    }
+
+    protected Span begin(String operation, String variable, @Nullable String value) {
+        Entry entry = new Entry(operation, variable, value, depth++, System.nanoTime() - startNanos);
+        entries.add(entry);
+        return new Span(this, entry);
+    }
+
+    protected void end(Entry entry) {
+        depth--;
+        entry.durationNanos = System.nanoTime() - startNanos - entry.startNanos;
+    }
+
+    /**
+     * Operation in progress. Closing the span records its duration.
+     */
+    public static class Span implements AutoCloseable {
+
+        protected static final Span NOOP = new Span(null, null);
+
+        protected final CascadeTrace trace;
+        protected final Entry entry;
+
+        protected Span(@Nullable CascadeTrace trace, @Nullable Entry entry) {
+            this.trace = trace;
+            this.entry = entry;
+        }
+
+        /**
+         * @param result the result of the operation, e.g. a computed color
+         */
+        public void setResult(@Nullable String result) {
+            if (entry != null) {
+                entry.result = result;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (trace != null) {
+                trace.end(entry);
+            }
+        }
+    }
+
+    /**
+     * Traced operation.
+     */
+    public static class Entry {
+
+        protected final String operation;
+        protected final String variable;
+        protected final String value;
+        protected final int depth;
+        protected final long startNanos;
+        protected long durationNanos = -1;
+        protected String result;
+
+        protected Entry(String operation, String variable, @Nullable String value, int depth, long startNanos) {
+            this.operation = operation;
+            this.variable = variable;
+            this.value = value;
+            this.depth = depth;
+            this.startNanos = startNanos;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getVariable() {
+            return variable;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getResult() {
+            return result;
+        }
+
+        /**
+         * @return the nesting level of the operation, {@code 0} for top-level operations
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the start of the operation relative to the start of the trace
+         */
+        public long getStartMicros() {
+            return startNanos / 1000;
+        }
+
+        public long getDurationMicros() {
+            return durationNanos / 1000;
+        }
+    }
+
+    /**
+     * JSON representation of a trace.
+     */
+    protected static class Json {
+
+        protected final CascadeTrace trace;
+
+        protected Json(CascadeTrace trace) {
+            this.trace = trace;
+        }
+
+        public String getVariable() {
+            return trace.getVariable();
+        }
+
+        public String getValue() {
+            return trace.getValue();
+        }
+
+        public String getTemplate() {
+            return trace.getTemplate();
+        }
+
+        public String getStartedAt() {
+            return trace.getStartedAt().toString();
+        }
+
+        public long getDurationMicros() {
+            return trace.getDurationMicros();
+        }
+
+        public long getVariableCount() {
+            return trace.entries.stream()
+                    .map(Entry::getVariable)
+                    .distinct()
+                    .count();
+        }
+
+        public List<Entry> getEntries() {
+            return trace.entries;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.jmix.editor.helium.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+
+/**
+ * Dependencies of the theme variables in a color template in the form evaluated by
+ * {@code theme-variable-field-connector.js}, so that the browser derives dependent colors without
+ * a server round trip:
+ * <pre>{@code
+ *      {
+ *          "children": {"--primary-color": ["--primary-color-shade-1", ...]},
+ *          "modifiers": {"--primary-color-shade-1": {"modifier": "d", "percent": 10, "commentDependence": false}},
+ *          "rgb": ["--primary-color", ...]
+ *      }
+ * }</pre>
+ */
+public class ClientDependencyGraph {
+
+    protected static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Builds the dependency graph of a color template.
+     *
+     * @param model    a theme model
+     * @param template a color template
+     * @return the graph in JSON
+     */
+    public static String toJson(ThemeModel model, Template template) {
+        Map<String, List<String>> children = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> modifiers = new HashMap<>();
+        List<String> rgb = new ArrayList<>();
+
+        for (ThemeVariable themeVariable : model.getThemeVariables()) {
+            if (themeVariable.isRgbUsed()) {
+                rgb.add(themeVariable.getName());
+            }
+
+            ThemeVariableDetails details = themeVariable.getThemeVariableDetails(template);
+            if (details == null || details.getParentThemeVariable() == null) {
+                continue;
+            }
+
+            children.computeIfAbsent(details.getParentThemeVariable().getName(), name -> new ArrayList<>())
+                    .add(themeVariable.getName());
+
+            Map<String, Object> modifier = new HashMap<>();
+            modifier.put("modifier", details.getColorModifier());
+            modifier.put("percent", details.getColorModifierPercent());
+            modifier.put("commentDependence", details.isCommentDependence());
+            modifiers.put(themeVariable.getName(), modifier);
+        }
+
+        Map<String, Object> graph = new LinkedHashMap<>();
+        graph.put("children", children);
+        graph.put("modifiers", modifiers);
+        graph.put("rgb", rgb);
+        try {
+            return OBJECT_MAPPER.writeValueAsString(graph);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to write dependency graph", e);
+        }
+    }
+}
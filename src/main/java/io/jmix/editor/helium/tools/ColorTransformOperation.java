@@ -0,0 +1,11 @@
+package io.jmix.editor.helium.tools;
+
+/**
+ * Operations of {@link ThemeColorTransform}.
+ */
+public enum ColorTransformOperation {
+    ROTATE_HUE,
+    SCALE_SATURATION,
+    SCALE_LIGHTNESS,
+    TINT
+}
@@ -0,0 +1,41 @@
+package io.jmix.editor.helium.tools;
+
+/**
+ * Color template defined by the user. The template inherits from a base theme mode or from a template of
+ * the theme and stores only the values the user has changed. The other values are resolved through the parent
+ * templates, so the template values are never copied.
+ * <p>
+ * The template belongs to the session that created it.
+ */
+public class CustomTemplate extends Template {
+
+    protected final ThemeVariableOverrides overrides;
+
+    /**
+     * @param name      a template name
+     * @param parent    a base theme mode or a template of the theme
+     * @param overrides the values changed by the user, used by the template without copying
+     */
+    public CustomTemplate(String name, Template parent, ThemeVariableOverrides overrides) {
+        super(name, parent);
+        this.overrides = overrides;
+    }
+
+    /**
+     * @return the values changed by the user, changes of the returned overrides change the template
+     */
+    public ThemeVariableOverrides getOverrides() {
+        return overrides;
+    }
+
+    /**
+     * @return the base theme mode the template inherits from
+     */
+    public Template getBaseThemeMode() {
+        Template template = parent;
+        while (template.getParent() != null) {
+            template = template.getParent();
+        }
+        return template;
+    }
+}
@@ -0,0 +1,188 @@
+package io.jmix.editor.helium.tools;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Micrometer meters of the editor operations. The meters are exposed by the {@code metrics}
+ * and {@code prometheus} actuator endpoints.
+ * <p>
+ * Timers of user operations publish the 0.5, 0.95 and 0.99 percentiles and a percentile histogram,
+ * so that the latency can be aggregated over all application instances.
+ * <p>
+ * The meters are registered once per name and tag values and then taken from a cache, as they are recorded
+ * on every change made by the user.
+ */
+@Component("helium_EditorMetrics")
+public class EditorMetrics {
+
+    public static final String COLOR_CHANGE_TIMER = "helium.editor.color.change";
+    public static final String TEMPLATE_SWITCH_TIMER = "helium.editor.template.switch";
+    public static final String CHILDREN_UPDATE_TIMER = "helium.editor.children.update";
+    public static final String CHILDREN_UPDATE_SIZE = "helium.editor.children.update.size";
+    public static final String EXPORT_TIMER = "helium.editor.export";
+    public static final String EXPORT_SIZE = "helium.editor.export.size";
+    public static final String PARSE_TIMER = "helium.editor.parse";
+    public static final String PARSE_SIZE = "helium.editor.parse.size";
+    public static final String JAVASCRIPT_SIZE = "helium.editor.javascript.size";
+
+    public static final String TEMPLATE_TAG = "template";
+    public static final String MODULE_TAG = "module";
+    public static final String SOURCE_TAG = "source";
+
+    public static final String PARSE_SOURCE_THEME = "theme";
+    public static final String PARSE_SOURCE_UPLOAD = "upload";
+    public static final String JAVASCRIPT_SOURCE_FIELD = "field";
+    public static final String JAVASCRIPT_SOURCE_SCREEN = "screen";
+
+    protected static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    @Autowired
+    protected MeterRegistry meterRegistry;
+
+    protected final Map<List<String>, Timer> timers = new ConcurrentHashMap<>();
+    protected final Map<List<String>, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * @return a sample to be stopped by one of the record methods
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records a color change made by the user including the update of the dependent variables.
+     *
+     * @param sample   a sample started before the change
+     * @param template the current color template
+     * @param module   the module of the changed theme variable
+     */
+    public void recordColorChange(Timer.Sample sample, Template template, String module) {
+        sample.stop(getUserOperationTimer(COLOR_CHANGE_TIMER, "Time to apply a color change",
+                TEMPLATE_TAG, getTemplateName(template), MODULE_TAG, String.valueOf(module)));
+    }
+
+    /**
+     * Records a switch to another color template or base theme mode.
+     *
+     * @param sample   a sample started before the switch
+     * @param template the new color template
+     */
+    public void recordTemplateSwitch(Timer.Sample sample, Template template) {
+        sample.stop(getUserOperationTimer(TEMPLATE_SWITCH_TIMER, "Time to switch a color template",
+                TEMPLATE_TAG, getTemplateName(template)));
+    }
+
+    /**
+     * Records the propagation of a changed value to the dependent theme variables.
+     *
+     * @param sample        a sample started before the propagation
+     * @param template      the current color template
+     * @param module        the module of the changed theme variable
+     * @param childrenCount the number of updated dependent theme variables
+     */
+    public void recordChildrenUpdate(Timer.Sample sample, Template template, String module, int childrenCount) {
+        String templateName = getTemplateName(template);
+        String moduleName = String.valueOf(module);
+
+        sample.stop(getTimer(CHILDREN_UPDATE_TIMER, "Time to update dependent theme variables",
+                TEMPLATE_TAG, templateName, MODULE_TAG, moduleName));
+        getSummary(CHILDREN_UPDATE_SIZE, "Number of dependent theme variables updated by a change", "variables",
+                TEMPLATE_TAG, templateName, MODULE_TAG, moduleName)
+                .record(childrenCount);
+    }
+
+    /**
+     * Records the generation of the downloaded theme variables.
+     *
+     * @param sample        a sample started before the generation
+     * @param template      the base theme mode
+     * @param variableCount the number of exported theme variables
+     */
+    public void recordExport(Timer.Sample sample, Template template, int variableCount) {
+        String templateName = getTemplateName(template);
+
+        sample.stop(getTimer(EXPORT_TIMER, "Time to generate the downloaded theme variables",
+                TEMPLATE_TAG, templateName));
+        getSummary(EXPORT_SIZE, "Number of exported theme variables", "variables",
+                TEMPLATE_TAG, templateName)
+                .record(variableCount);
+    }
+
+    /**
+     * Records parsing of a theme file or an uploaded file.
+     *
+     * @param sample        a sample started before parsing
+     * @param source        {@link #PARSE_SOURCE_THEME} or {@link #PARSE_SOURCE_UPLOAD}
+     * @param variableCount the number of parsed theme variables
+     */
+    public void recordParse(Timer.Sample sample, String source, int variableCount) {
+        sample.stop(getTimer(PARSE_TIMER, "Time to parse theme variables", SOURCE_TAG, source));
+        getSummary(PARSE_SIZE, "Number of parsed theme variables", "variables", SOURCE_TAG, source)
+                .record(variableCount);
+    }
+
+    /**
+     * Records a JavaScript execution sent to the client. The size is the length of the script
+     * in characters, the scripts are ASCII except for quoted values.
+     *
+     * @param source {@link #JAVASCRIPT_SOURCE_FIELD} or {@link #JAVASCRIPT_SOURCE_SCREEN}
+     * @param script an executed script
+     */
+    public void recordJavaScriptExecution(String source, String script) {
+        getSummary(JAVASCRIPT_SIZE, "Length of JavaScript executions sent to the client", "characters",
+                SOURCE_TAG, source)
+                .record(script.length());
+    }
+
+    protected Timer getUserOperationTimer(String name, String description, String... tags) {
+        return timers.computeIfAbsent(getMeterKey(name, tags), key -> Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    protected Timer getTimer(String name, String description, String... tags) {
+        return timers.computeIfAbsent(getMeterKey(name, tags), key -> Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(meterRegistry));
+    }
+
+    protected DistributionSummary getSummary(String name, String description, String baseUnit, String... tags) {
+        return summaries.computeIfAbsent(getMeterKey(name, tags), key -> DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(baseUnit)
+                .tags(tags)
+                .register(meterRegistry));
+    }
+
+    /**
+     * @param name a meter name
+     * @param tags tag keys and values
+     * @return a key of the cached meter
+     */
+    protected List<String> getMeterKey(String name, String... tags) {
+        List<String> key = new ArrayList<>(tags.length + 1);
+        key.add(name);
+        key.addAll(Arrays.asList(tags));
+        return key;
+    }
+
+    protected String getTemplateName(Template template) {
+        return template != null
+                ? template.getName()
+                : "none";
+    }
+}
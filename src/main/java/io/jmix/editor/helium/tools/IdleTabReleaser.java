@@ -0,0 +1,116 @@
+package io.jmix.editor.helium.tools;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Keeps the contents of the tabs that are built on the first selection and releases the contents of the tabs
+ * that have not been selected for longer than a timeout.
+ * <p>
+ * The releaser does not depend on the UI: the owner reports the selected tab, checks the idle tabs periodically,
+ * e.g. by a timer while {@link #hasLeftTabs()} is {@code true}, and removes the released contents from the layout.
+ *
+ * @param <T> the type of the tab contents
+ */
+public class IdleTabReleaser<T> {
+
+    protected final Duration timeout;
+
+    protected final Map<String, T> contents = new HashMap<>();
+
+    /**
+     * The time each tab with the built content was last left at.
+     */
+    protected final Map<String, Long> leaveTimes = new HashMap<>();
+
+    protected String selectedTabName;
+
+    /**
+     * @param timeout time after which the content of a tab that is not selected is released,
+     *                zero or negative disables releasing
+     */
+    public IdleTabReleaser(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return whether the contents are released
+     */
+    public boolean isEnabled() {
+        return !timeout.isZero() && !timeout.isNegative();
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @Nullable
+    public String getSelectedTabName() {
+        return selectedTabName;
+    }
+
+    /**
+     * Selects a tab. The previously selected tab is left at the given time.
+     *
+     * @param tabName a tab name or {@code null} if no tab is selected
+     * @param now     the current time in milliseconds
+     */
+    public void select(@Nullable String tabName, long now) {
+        if (selectedTabName != null && contents.containsKey(selectedTabName)) {
+            leaveTimes.put(selectedTabName, now);
+        }
+
+        selectedTabName = tabName;
+        if (tabName != null) {
+            leaveTimes.remove(tabName);
+        }
+    }
+
+    /**
+     * @param tabName a tab name
+     * @return the built content of the tab or {@code null} if the content is not built or is released
+     */
+    @Nullable
+    public T getContent(String tabName) {
+        return contents.get(tabName);
+    }
+
+    /**
+     * @param tabName a tab name, the content is built for the selected tab
+     * @param content the built content of the tab
+     */
+    public void putContent(String tabName, T content) {
+        contents.put(tabName, content);
+    }
+
+    /**
+     * @return whether there are tabs with the built content that are not selected
+     */
+    public boolean hasLeftTabs() {
+        return !leaveTimes.isEmpty();
+    }
+
+    /**
+     * Releases the contents of the tabs that have been left longer than the timeout ago.
+     *
+     * @param now the current time in milliseconds
+     * @return the released contents by tab name
+     */
+    public Map<String, T> releaseIdleTabs(long now) {
+        if (!isEnabled() || leaveTimes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, T> releasedContents = new HashMap<>();
+        Iterator<Map.Entry<String, Long>> iterator = leaveTimes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (now - entry.getValue() >= timeout.toMillis()) {
+                releasedContents.put(entry.getKey(), contents.remove(entry.getKey()));
+                iterator.remove();
+            }
+        }
+        return releasedContents;
+    }
+}
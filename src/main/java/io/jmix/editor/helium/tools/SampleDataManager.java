@@ -0,0 +1,221 @@
+package io.jmix.editor.helium.tools;
+
+import io.jmix.core.Metadata;
+import io.jmix.editor.helium.HeliumEditorProperties;
+import io.jmix.editor.helium.entity.Directory;
+import io.jmix.editor.helium.entity.User;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Sample data for the component samples. The data is created once and shared by all UI sessions,
+ * so the returned lists and entities must not be modified. The samples that edit entities use
+ * the per-session copies returned by {@link #copyUsers()}.
+ */
+@Component("helium_SampleDataManager")
+public class SampleDataManager {
+
+    /**
+     * The number of directories in the default data set. Larger data sets are filled with generated users.
+     */
+    public static final int DEFAULT_SAMPLE_DATA_SIZE = 10;
+
+    /**
+     * The number of children of each generated directory in a synthetic page.
+     */
+    protected static final int SYNTHETIC_DIRECTORY_FAN_OUT = 5;
+
+    @Autowired
+    protected Metadata metadata;
+    @Autowired
+    protected HeliumEditorProperties heliumEditorProperties;
+
+    protected volatile SampleData sampleData;
+
+    /**
+     * @return the list of sample users
+     */
+    public List<User> getUsers() {
+        return getSampleData().users;
+    }
+
+    /**
+     * Creates copies of the sample users for the samples that edit them. The copies belong to the calling
+     * session, so the shared users are never changed.
+     *
+     * @return the list of new users with the values of the sample users
+     */
+    public List<User> copyUsers() {
+        List<User> users = getUsers();
+        List<User> copies = new ArrayList<>(users.size());
+        for (User user : users) {
+            copies.add(createUser(user.getName(), user.getUsername(), Boolean.TRUE.equals(user.getActive())));
+        }
+        return copies;
+    }
+
+    /**
+     * @return the list of sample directories, each directory is a child of one of the first directories
+     */
+    public List<Directory> getDirectories() {
+        return getSampleData().directories;
+    }
+
+    /**
+     * @return the list of sample options
+     */
+    public List<String> getOptions() {
+        return getSampleData().options;
+    }
+
+    /**
+     * Searches sample users by name.
+     *
+     * @param searchString a part of the user name
+     * @return found users
+     */
+    public List<User> searchUsers(String searchString) {
+        return getUsers().stream()
+                .filter(user -> StringUtils.containsIgnoreCase(user.getName(), searchString))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates a page of synthetic users. The users are generated from their index and are not retained.
+     *
+     * @param firstResult the index of the first user
+     * @param maxResults  the maximum number of users
+     * @param totalCount  the size of the synthetic data set
+     * @return the list of users
+     */
+    public List<User> loadSyntheticUsers(int firstResult, int maxResults, int totalCount) {
+        int lastResult = getLastResult(firstResult, maxResults, totalCount);
+
+        List<User> users = new ArrayList<>(Math.max(lastResult - firstResult, 0));
+        for (int i = firstResult; i < lastResult; i++) {
+            users.add(createUser("User " + i, "user" + i, i % 3 != 0));
+        }
+        return users;
+    }
+
+    /**
+     * Creates a page of synthetic directories. The directories form a tree where each directory has
+     * up to {@link #SYNTHETIC_DIRECTORY_FAN_OUT} children. A directory whose parent is not in the page
+     * is returned as a root.
+     *
+     * @param firstResult the index of the first directory
+     * @param maxResults  the maximum number of directories
+     * @param totalCount  the size of the synthetic data set
+     * @return the list of directories
+     */
+    public List<Directory> loadSyntheticDirectories(int firstResult, int maxResults, int totalCount) {
+        int lastResult = getLastResult(firstResult, maxResults, totalCount);
+
+        List<Directory> directories = new ArrayList<>(Math.max(lastResult - firstResult, 0));
+        for (int i = firstResult; i < lastResult; i++) {
+            int parentIndex = (i - 1) / SYNTHETIC_DIRECTORY_FAN_OUT;
+            Directory parent = i > 0 && parentIndex >= firstResult
+                    ? directories.get(parentIndex - firstResult)
+                    : null;
+            directories.add(createDirectory(i, parent));
+        }
+        return directories;
+    }
+
+    protected int getLastResult(int firstResult, int maxResults, int totalCount) {
+        return maxResults > 0
+                ? (int) Math.min((long) firstResult + maxResults, totalCount)
+                : totalCount;
+    }
+
+    protected SampleData getSampleData() {
+        SampleData data = sampleData;
+        if (data == null) {
+            synchronized (this) {
+                data = sampleData;
+                if (data == null) {
+                    data = createSampleData(Math.max(heliumEditorProperties.getSampleDataSize(), 0));
+                    sampleData = data;
+                }
+            }
+        }
+        return data;
+    }
+
+    protected SampleData createSampleData(int size) {
+        return new SampleData(
+                Collections.unmodifiableList(generateUsers(size)),
+                Collections.unmodifiableList(generateDirectories(size)),
+                Collections.unmodifiableList(Arrays.asList("Option 1", "Option 2", "Option 3")));
+    }
+
+    protected List<User> generateUsers(int size) {
+        List<User> users = new ArrayList<>(Math.max(size, DEFAULT_SAMPLE_DATA_SIZE));
+        users.add(createUser("Romeo Montague", "romeo", true));
+        users.add(createUser("Juliet Capulet", "juliet", true));
+        users.add(createUser("Dave Paris", "daveParis", false));
+        users.add(createUser("Ted Montague", "tedMontague", false));
+        users.add(createUser("Caroline Montague", "carolinMontague", true));
+        users.add(createUser("Fulgencio Capulet", "fulgencio", true));
+        users.add(createUser("Gloria Capulet", "gloriaCapulet", false));
+
+        if (size > DEFAULT_SAMPLE_DATA_SIZE) {
+            for (int i = users.size(); i < size; i++) {
+                users.add(createUser("User " + i, "user" + i, i % 3 != 0));
+            }
+        }
+        return users;
+    }
+
+    protected List<Directory> generateDirectories(int size) {
+        List<Directory> directories = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Directory parent = null;
+            if (i > 0) {
+                // the default directories form a chain, the rest are spread over it
+                parent = i < DEFAULT_SAMPLE_DATA_SIZE
+                        ? directories.get(i - 1)
+                        : directories.get(i % DEFAULT_SAMPLE_DATA_SIZE);
+            }
+            directories.add(createDirectory(i, parent));
+        }
+        return directories;
+    }
+
+    protected User createUser(String name, String login, boolean active) {
+        User user = metadata.create(User.class);
+        user.setName(name);
+        user.setUsername(login);
+        user.setActive(active);
+        return user;
+    }
+
+    protected Directory createDirectory(int index, Directory parent) {
+        Directory group = metadata.create(Directory.class);
+        group.setName("directory " + index);
+        if (parent != null) {
+            group.setParent(parent);
+        }
+        return group;
+    }
+
+    protected static class SampleData {
+
+        protected final List<User> users;
+        protected final List<Directory> directories;
+        protected final List<String> options;
+
+        protected SampleData(List<User> users, List<Directory> directories, List<String> options) {
+            this.users = users;
+            this.directories = directories;
+            this.options = options;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.jmix.editor.helium.tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Memory measurements of an editor UI session, broken down by the main parts of the editor.
+ * <p>
+ * The editor panel and the sample preview are measured as the growth of the used heap after a full garbage
+ * collection before and after they are built. The parts are referenced by the screen when the heap is measured
+ * the second time, so the growth is their retained size. The measurement is disturbed by other sessions that
+ * are opened or closed at the same time and by a JVM that ignores {@link System#gc()}, so it is meant for a
+ * test server. The model overlay is the estimated retained size of the overridden values.
+ */
+public class SessionFootprint {
+
+    public static final long UNKNOWN = -1;
+
+    protected final long editorPanelRetainedBytes;
+    protected final long samplePreviewRetainedBytes;
+    protected final long modelOverlayEstimatedBytes;
+
+    public SessionFootprint(long editorPanelRetainedBytes, long samplePreviewRetainedBytes,
+                            long modelOverlayEstimatedBytes) {
+        this.editorPanelRetainedBytes = editorPanelRetainedBytes;
+        this.samplePreviewRetainedBytes = samplePreviewRetainedBytes;
+        this.modelOverlayEstimatedBytes = modelOverlayEstimatedBytes;
+    }
+
+    /**
+     * @return bytes retained by the theme variable fields of the settings panel or {@link #UNKNOWN}
+     */
+    public long getEditorPanelRetainedBytes() {
+        return editorPanelRetainedBytes;
+    }
+
+    /**
+     * @return bytes retained by the component samples including the built preview tabs or {@link #UNKNOWN}
+     */
+    public long getSamplePreviewRetainedBytes() {
+        return samplePreviewRetainedBytes;
+    }
+
+    /**
+     * @return the estimated bytes retained by the overridden theme variable values
+     */
+    public long getModelOverlayEstimatedBytes() {
+        return modelOverlayEstimatedBytes;
+    }
+
+    /**
+     * Runs a full garbage collection and returns the used heap.
+     *
+     * @return used heap bytes
+     */
+    public static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Returns the growth of the used heap since the given measurement. The objects created since then
+     * must be referenced for the growth to be their retained size.
+     *
+     * @param startUsedHeapBytes the result of {@link #usedHeapAfterGc()} or {@link #UNKNOWN} if the heap is not measured
+     * @return retained bytes, zero if the heap has shrunk because of other sessions, or {@link #UNKNOWN}
+     */
+    public static long retainedBytesSince(long startUsedHeapBytes) {
+        if (startUsedHeapBytes == UNKNOWN) {
+            return UNKNOWN;
+        }
+        return Math.max(usedHeapAfterGc() - startUsedHeapBytes, 0);
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far. The allocations include the garbage,
+     * so they show the load on the garbage collector rather than the footprint.
+     *
+     * @return allocated bytes or {@link #UNKNOWN} if the JVM does not support allocation measurement
+     */
+    public static long currentThreadAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported()
+                    && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread since the given measurement.
+     *
+     * @param startAllocatedBytes the result of {@link #currentThreadAllocatedBytes()}
+     * @return allocated bytes or {@link #UNKNOWN}
+     */
+    public static long allocatedBytesSince(long startAllocatedBytes) {
+        if (startAllocatedBytes == UNKNOWN) {
+            return UNKNOWN;
+        }
+
+        long allocatedBytes = currentThreadAllocatedBytes();
+        return allocatedBytes == UNKNOWN
+                ? UNKNOWN
+                : allocatedBytes - startAllocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionFootprint{" +
+                "editorPanelRetained=" + formatBytes(editorPanelRetainedBytes) +
+                ", samplePreviewRetained=" + formatBytes(samplePreviewRetainedBytes) +
+                ", modelOverlayEstimated=" + formatBytes(modelOverlayEstimatedBytes) +
+                '}';
+    }
+
+    protected String formatBytes(long bytes) {
+        if (bytes == UNKNOWN) {
+            return "unknown";
+        }
+        return bytes >= 1024 * 1024
+                ? String.format("%.1f MB", bytes / (1024d * 1024d))
+                : String.format("%.1f KB", bytes / 1024d);
+    }
+}
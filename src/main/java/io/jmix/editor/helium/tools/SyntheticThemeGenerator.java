@@ -0,0 +1,261 @@
+package io.jmix.editor.helium.tools;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.jmix.editor.helium.components.themevariablefield.ThemeVariableField.RGB_POSTFIX;
+
+/**
+ * Generates synthetic themes in the Helium format for scale testing.
+ * <p>
+ * The generated theme contains:
+ * <ul>
+ *     <li>the light variables in the {@code :root} block, grouped by modules</li>
+ *     <li>a {@code &.<mode>} block for each additional base theme mode</li>
+ *     <li>{@code .helium.<mode>.<template>} blocks for the color templates</li>
+ * </ul>
+ * Variables of a module form chains: the first variable of a chain has a color value and each next one
+ * refers to the previous one with {@code var()}. Chain heads may have a {@code // (--parent) (d10%)}
+ * annotation and {@code _rgb} companions.
+ * <p>
+ * Example:
+ * <pre>{@code
+ *      ThemeVariablesManager manager = ...;
+ *      SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+ *      generator.setModuleCount(50);
+ *      generator.setVarChainDepth(3);
+ *      manager.parseThemeVariables(new BufferedReader(new StringReader(generator.generate())));
+ * }</pre>
+ */
+public class SyntheticThemeGenerator {
+
+    protected static final String[] MODULE_NAMES = {"Basic", "Common"};
+    protected static final String INDENT = "  ";
+
+    protected int moduleCount = 5;
+    protected int variablesPerModule = 50;
+    protected List<String> baseThemeModes = Collections.singletonList("dark");
+    protected int templatesPerThemeMode = 1;
+    protected int varChainDepth = 1;
+    protected int rgbInterval = 4;
+    protected int annotationInterval = 2;
+
+    public int getModuleCount() {
+        return moduleCount;
+    }
+
+    public void setModuleCount(int moduleCount) {
+        this.moduleCount = moduleCount;
+    }
+
+    public int getVariablesPerModule() {
+        return variablesPerModule;
+    }
+
+    public void setVariablesPerModule(int variablesPerModule) {
+        this.variablesPerModule = variablesPerModule;
+    }
+
+    /**
+     * @return the base theme modes besides the light one, each of them overrides all variables
+     */
+    public List<String> getBaseThemeModes() {
+        return baseThemeModes;
+    }
+
+    public void setBaseThemeModes(List<String> baseThemeModes) {
+        this.baseThemeModes = baseThemeModes;
+    }
+
+    /**
+     * @return the number of color templates of each base theme mode including the light one
+     */
+    public int getTemplatesPerThemeMode() {
+        return templatesPerThemeMode;
+    }
+
+    public void setTemplatesPerThemeMode(int templatesPerThemeMode) {
+        this.templatesPerThemeMode = templatesPerThemeMode;
+    }
+
+    /**
+     * @return the number of {@code var()} references following each chain head, {@code 0} for no references
+     */
+    public int getVarChainDepth() {
+        return varChainDepth;
+    }
+
+    public void setVarChainDepth(int varChainDepth) {
+        this.varChainDepth = varChainDepth;
+    }
+
+    /**
+     * @return each n-th chain head has an {@code _rgb} companion, {@code 0} for no companions
+     */
+    public int getRgbInterval() {
+        return rgbInterval;
+    }
+
+    public void setRgbInterval(int rgbInterval) {
+        this.rgbInterval = rgbInterval;
+    }
+
+    /**
+     * @return each n-th chain head has a parent annotation, {@code 0} for no annotations
+     */
+    public int getAnnotationInterval() {
+        return annotationInterval;
+    }
+
+    public void setAnnotationInterval(int annotationInterval) {
+        this.annotationInterval = annotationInterval;
+    }
+
+    /**
+     * @return the number of generated variables without {@code _rgb} companions
+     */
+    public int getVariableCount() {
+        return moduleCount * variablesPerModule;
+    }
+
+    /**
+     * @return the names of the generated color templates
+     */
+    public List<String> getTemplateNames() {
+        List<String> templateNames = new ArrayList<>();
+        templateNames.add(Templates.LIGHT);
+        templateNames.addAll(baseThemeModes);
+        for (String baseThemeMode : getAllBaseThemeModes()) {
+            for (int i = 0; i < templatesPerThemeMode; i++) {
+                templateNames.add(getTemplateName(baseThemeMode, i));
+            }
+        }
+        return templateNames;
+    }
+
+    /**
+     * @return the generated theme text
+     */
+    public String generate() {
+        StringBuilder builder = new StringBuilder(getVariableCount() * 64 * (2 + baseThemeModes.size()));
+        try {
+            write(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the generated theme.
+     *
+     * @param writer a writer
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(Writer writer) throws IOException {
+        write((Appendable) writer);
+        writer.flush();
+    }
+
+    protected void write(Appendable out) throws IOException {
+        out.append(":root {\n");
+        appendVariables(out, INDENT, 0, false);
+        for (int i = 0; i < baseThemeModes.size(); i++) {
+            out.append('\n').append(INDENT).append("&.").append(baseThemeModes.get(i)).append(" {\n");
+            appendVariables(out, INDENT + INDENT, i + 1, false);
+            out.append(INDENT).append("}\n");
+        }
+        out.append("}\n");
+
+        int seed = baseThemeModes.size() + 1;
+        for (String baseThemeMode : getAllBaseThemeModes()) {
+            for (int i = 0; i < templatesPerThemeMode; i++) {
+                out.append("\n.helium.").append(baseThemeMode).append('.')
+                        .append(getTemplateName(baseThemeMode, i)).append(" {\n");
+                appendVariables(out, INDENT, seed++, true);
+                out.append("}\n");
+            }
+        }
+    }
+
+    /**
+     * Appends the variables of all modules.
+     *
+     * @param out        an output
+     * @param indent     an indent of the lines
+     * @param seed       a seed of the generated colors
+     * @param chainHeads whether only chain heads are appended
+     * @throws IOException if an I/O error occurs
+     */
+    protected void appendVariables(Appendable out, String indent, int seed, boolean chainHeads) throws IOException {
+        for (int module = 0; module < moduleCount; module++) {
+            if (module > 0) {
+                out.append('\n');
+            }
+            out.append(indent).append("/* ").append(getModuleName(module)).append(" */\n");
+
+            for (int i = 0; i < variablesPerModule; i++) {
+                int chainIndex = i % (varChainDepth + 1);
+                if (chainIndex > 0) {
+                    if (!chainHeads) {
+                        out.append(indent).append(getVariableName(module, i))
+                                .append(": var(").append(getVariableName(module, i - 1)).append(");\n");
+                    }
+                    continue;
+                }
+
+                int chainHead = i / (varChainDepth + 1);
+                String color = getColor(module * variablesPerModule + i, seed);
+                out.append(indent).append(getVariableName(module, i)).append(": ").append(color).append(';');
+                if (chainHead > 0 && annotationInterval > 0 && chainHead % annotationInterval == 0) {
+                    out.append("      // (").append(getVariableName(module, i - varChainDepth - 1)).append(") (")
+                            .append(chainHead % (2 * annotationInterval) == 0 ? "d" : "l")
+                            .append(String.valueOf(chainHead % 3 * 5 + 5)).append("%)");
+                }
+                out.append('\n');
+
+                if (rgbInterval > 0 && chainHead % rgbInterval == 0) {
+                    out.append(indent).append(getVariableName(module, i)).append(RGB_POSTFIX).append(": ")
+                            .append(ThemeVariableUtils.convertHexToRGB(color)).append(";\n");
+                }
+            }
+        }
+    }
+
+    public String getModuleName(int module) {
+        return module < MODULE_NAMES.length
+                ? MODULE_NAMES[module]
+                : "Module" + module;
+    }
+
+    public String getVariableName(int module, int index) {
+        return "--m" + module + "-v" + index + "-color";
+    }
+
+    protected List<String> getAllBaseThemeModes() {
+        List<String> allBaseThemeModes = new ArrayList<>();
+        allBaseThemeModes.add(Templates.LIGHT);
+        allBaseThemeModes.addAll(baseThemeModes);
+        return allBaseThemeModes;
+    }
+
+    protected String getTemplateName(String baseThemeMode, int index) {
+        return baseThemeMode + "Template" + index;
+    }
+
+    /**
+     * Returns a deterministic color for the given variable and seed.
+     *
+     * @param index a variable index
+     * @param seed  a seed
+     * @return a color in the {@code #RRGGBB} format
+     */
+    protected String getColor(int index, int seed) {
+        long hash = (index + 1) * 2654435761L + seed * 40503L;
+        return String.format("#%06X", (hash ^ (hash >>> 16)) & 0xFFFFFF);
+    }
+}
@@ -1,33 +1,35 @@
 package io.jmix.editor.helium.tools;
 
+import javax.annotation.Nullable;
+
 /**
- * Color template
+ * Color template. Templates are immutable, so the templates of a published {@link ThemeModel} can be shared
+ * by all sessions and by the next snapshots.
  */
 public class Template {
 
-    protected String name;
-    protected Template parent;
+    protected final String name;
+    protected final Template parent;
 
-    public Template() {
+    public Template(String name) {
+        this(name, null);
     }
 
-    public Template(String name) {
+    /**
+     * @param name   a template name
+     * @param parent a template the template inherits from or {@code null} for a base theme mode
+     */
+    public Template(String name, @Nullable Template parent) {
         this.name = name;
+        this.parent = parent;
     }
 
     public String getName() {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
+    @Nullable
     public Template getParent() {
         return parent;
     }
-
-    public void setParent(Template parent) {
-        this.parent = parent;
-    }
 }
@@ -5,5 +5,6 @@ package io.jmix.editor.helium.tools;
  */
 public final class Templates {
     public static final String LIGHT = "light";
+    public static final String DARK = "dark";
     public static final String CUSTOM = "custom";
 }
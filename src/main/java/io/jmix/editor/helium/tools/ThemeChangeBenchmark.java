@@ -0,0 +1,145 @@
+package io.jmix.editor.helium.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the cost of a scripted sequence of theme changes: server-side handling time, JavaScript sent
+ * to the client and client-side style recalculation time.
+ */
+public class ThemeChangeBenchmark {
+
+    protected List<Step> steps = new ArrayList<>();
+    protected Step currentStep;
+    protected int reportedSteps;
+
+    /**
+     * Starts a new step. JavaScript executions are recorded into it until {@link #finishStep()}.
+     *
+     * @param name a step name
+     * @return the step id used to report the client-side time
+     */
+    public String startStep(String name) {
+        currentStep = new Step(String.valueOf(steps.size()), name);
+        steps.add(currentStep);
+        currentStep.startNanos = System.nanoTime();
+        return currentStep.id;
+    }
+
+    public void finishStep() {
+        if (currentStep != null) {
+            currentStep.serverNanos = System.nanoTime() - currentStep.startNanos;
+            currentStep = null;
+        }
+    }
+
+    /**
+     * Records a JavaScript execution in the current step, if any.
+     *
+     * @param script an executed script
+     */
+    public void recordJavaScriptExecution(String script) {
+        if (currentStep != null) {
+            currentStep.javaScriptCount++;
+            currentStep.javaScriptBytes += script.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+
+    /**
+     * Records the style recalculation time reported by the client.
+     *
+     * @param stepId   a step id
+     * @param duration recalculation time in milliseconds
+     */
+    public void recordStyleRecalculation(String stepId, double duration) {
+        for (Step step : steps) {
+            if (step.id.equals(stepId) && step.clientMillis < 0) {
+                step.clientMillis = duration;
+                reportedSteps++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if all steps are finished and reported by the client
+     */
+    public boolean isComplete() {
+        return currentStep == null && reportedSteps == steps.size();
+    }
+
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @return a plain text table with the results of each step and the totals
+     */
+    public String getSummary() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-40s %10s %8s %10s %10s%n", "Step", "Server ms", "JS", "JS bytes", "Client ms"));
+
+        long totalServerNanos = 0;
+        int totalJavaScriptCount = 0;
+        long totalJavaScriptBytes = 0;
+        double totalClientMillis = 0;
+        for (Step step : steps) {
+            builder.append(String.format("%-40s %10.2f %8d %10d %10s%n",
+                    step.name.length() > 40 ? step.name.substring(0, 40) : step.name,
+                    step.serverNanos / 1_000_000d,
+                    step.javaScriptCount,
+                    step.javaScriptBytes,
+                    step.clientMillis < 0 ? "-" : String.format("%.2f", step.clientMillis)));
+
+            totalServerNanos += step.serverNanos;
+            totalJavaScriptCount += step.javaScriptCount;
+            totalJavaScriptBytes += step.javaScriptBytes;
+            totalClientMillis += Math.max(step.clientMillis, 0);
+        }
+
+        builder.append(String.format("%-40s %10.2f %8d %10d %10.2f%n", "Total",
+                totalServerNanos / 1_000_000d, totalJavaScriptCount, totalJavaScriptBytes, totalClientMillis));
+        return builder.toString();
+    }
+
+    public static class Step {
+
+        protected final String id;
+        protected final String name;
+        protected long startNanos;
+        protected long serverNanos;
+        protected int javaScriptCount;
+        protected long javaScriptBytes;
+        protected double clientMillis = -1;
+
+        protected Step(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getServerNanos() {
+            return serverNanos;
+        }
+
+        public int getJavaScriptCount() {
+            return javaScriptCount;
+        }
+
+        public long getJavaScriptBytes() {
+            return javaScriptBytes;
+        }
+
+        /**
+         * @return client-side style recalculation time in milliseconds or {@code -1} if it is not reported
+         */
+        public double getClientMillis() {
+            return clientMillis;
+        }
+    }
+}
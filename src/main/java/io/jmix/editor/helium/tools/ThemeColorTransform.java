@@ -0,0 +1,195 @@
+package io.jmix.editor.helium.tools;
+
+import javax.annotation.Nullable;
+
+/**
+ * Color transformation applied to many colors at once, e.g. to re-brand a theme.
+ * <p>
+ * The transformation works on colors packed by {@link ThemeVariableUtils#packColor(String)} in place, in one
+ * pass without creating colors or strings per value. Hue, saturation and lightness are changed in the HSL model
+ * without rounding the components, see {@link ThemeVariableUtils#calculateHslFromPackedColor(int, double[])},
+ * so the other components keep their values and a transformation that changes nothing keeps the colors.
+ * Tinting mixes the RGB components with the tint color. The {@code transparent} and undefined colors are not changed.
+ */
+public class ThemeColorTransform {
+
+    protected final ColorTransformOperation operation;
+    protected final double amount;
+    protected final int tintColor;
+
+    protected ThemeColorTransform(ColorTransformOperation operation, double amount, int tintColor) {
+        this.operation = operation;
+        this.amount = amount;
+        this.tintColor = tintColor;
+    }
+
+    /**
+     * @param degrees degrees added to the hue
+     * @return the transformation
+     */
+    public static ThemeColorTransform rotateHue(int degrees) {
+        return new ThemeColorTransform(ColorTransformOperation.ROTATE_HUE, degrees, 0);
+    }
+
+    /**
+     * @param factor a factor the saturation is multiplied by
+     * @return the transformation
+     */
+    public static ThemeColorTransform scaleSaturation(double factor) {
+        return new ThemeColorTransform(ColorTransformOperation.SCALE_SATURATION, factor, 0);
+    }
+
+    /**
+     * @param factor a factor the lightness is multiplied by
+     * @return the transformation
+     */
+    public static ThemeColorTransform scaleLightness(double factor) {
+        return new ThemeColorTransform(ColorTransformOperation.SCALE_LIGHTNESS, factor, 0);
+    }
+
+    /**
+     * @param packedColor a packed tint color
+     * @param ratio       the share of the tint color in the result, from 0 to 1
+     * @return the transformation
+     */
+    public static ThemeColorTransform tint(int packedColor, double ratio) {
+        return new ThemeColorTransform(ColorTransformOperation.TINT, Math.max(0, Math.min(1, ratio)), packedColor);
+    }
+
+    /**
+     * Creates a transformation chosen by the user. The amount is in degrees for the hue rotation and in percent
+     * for the other operations, e.g. {@code -10} scales the lightness by 0.9 and {@code 30} mixes in 30% of the tint.
+     *
+     * @param operation an operation
+     * @param amount    the amount of the operation
+     * @param tintColor a tint color used by {@link ColorTransformOperation#TINT}, see {@link #packTintColor(String)}
+     * @return the transformation
+     */
+    public static ThemeColorTransform create(ColorTransformOperation operation, int amount,
+                                             @Nullable String tintColor) {
+        switch (operation) {
+            case ROTATE_HUE:
+                return rotateHue(amount);
+            case SCALE_SATURATION:
+                return scaleSaturation(1 + amount * 0.01);
+            case SCALE_LIGHTNESS:
+                return scaleLightness(1 + amount * 0.01);
+            case TINT:
+                return tint(packTintColor(tintColor), amount * 0.01);
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+    }
+
+    /**
+     * Packs a tint color entered by the user, with or without the leading {@code #}.
+     *
+     * @param color a color value
+     * @return the packed color or {@link ThemeVariableUtils#PACKED_UNDEFINED_COLOR} if the value is not a color
+     */
+    public static int packTintColor(@Nullable String color) {
+        if (color == null) {
+            return ThemeVariableUtils.PACKED_UNDEFINED_COLOR;
+        }
+        return ThemeVariableUtils.packColor(color.startsWith("#") ? color : "#" + color);
+    }
+
+    public ColorTransformOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return whether the transformation changes no color, e.g. the hue is rotated by 0 degrees
+     */
+    public boolean isIdentity() {
+        switch (operation) {
+            case ROTATE_HUE:
+                return amount % 360 == 0;
+            case SCALE_SATURATION:
+            case SCALE_LIGHTNESS:
+                return amount == 1;
+            case TINT:
+                return amount == 0;
+            default:
+                throw new IllegalStateException("Unsupported operation: " + operation);
+        }
+    }
+
+    /**
+     * Transforms packed colors in place.
+     *
+     * @param packedColors packed colors
+     */
+    public void apply(int[] packedColors) {
+        apply(packedColors, 0, packedColors.length);
+    }
+
+    /**
+     * Transforms a range of packed colors in place.
+     *
+     * @param packedColors packed colors
+     * @param from         the first index, inclusive
+     * @param to           the last index, exclusive
+     */
+    public void apply(int[] packedColors, int from, int to) {
+        if (isIdentity()) {
+            return;
+        }
+
+        double[] hsl = new double[3];
+        for (int i = from; i < to; i++) {
+            packedColors[i] = apply(packedColors[i], hsl);
+        }
+    }
+
+    /**
+     * @param packedColor a packed color
+     * @return the transformed packed color
+     */
+    public int apply(int packedColor) {
+        return isIdentity() ? packedColor : apply(packedColor, new double[3]);
+    }
+
+    protected int apply(int packedColor, double[] hsl) {
+        if (packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                || packedColor == ThemeVariableUtils.PACKED_TRANSPARENT_COLOR) {
+            return packedColor;
+        }
+
+        if (operation == ColorTransformOperation.TINT) {
+            return mix(packedColor >> 16, tintColor >> 16) << 16
+                    | mix(packedColor >> 8, tintColor >> 8) << 8
+                    | mix(packedColor, tintColor);
+        }
+
+        ThemeVariableUtils.calculateHslFromPackedColor(packedColor, hsl);
+        switch (operation) {
+            case ROTATE_HUE:
+                if (hsl[1] == 0) {
+                    // the hue of a gray color is not defined
+                    return packedColor;
+                }
+                hsl[0] = ((hsl[0] + amount) % 360 + 360) % 360;
+                break;
+            case SCALE_SATURATION:
+                hsl[1] = scale(hsl[1]);
+                break;
+            case SCALE_LIGHTNESS:
+                hsl[2] = scale(hsl[2]);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported operation: " + operation);
+        }
+        return ThemeVariableUtils.packHsl(hsl);
+    }
+
+    protected double scale(double value) {
+        return Math.max(0, Math.min(1, value * amount));
+    }
+
+    protected int mix(int component, int tintComponent) {
+        int from = component & 0xFF;
+        int to = tintComponent & 0xFF;
+        return (int) Math.round(from + (to - from) * amount);
+    }
+}
@@ -0,0 +1,185 @@
+package io.jmix.editor.helium.tools;
+
+import java.util.List;
+
+/**
+ * Derives a dark color template from a light one, e.g. the {@code .helium.dark.<template>} block
+ * from the {@code .helium.light.<template>} block.
+ * <p>
+ * A value of the light template is mapped relative to the values of the base theme modes: the deviation
+ * of its lightness and chroma from the light base value is applied to the dark base value, the hue is kept.
+ * So a value equal to the light base value becomes the dark base value, and a value lighter or darker than
+ * the light base value becomes lighter or darker than the dark base value in the same proportion.
+ * Only the values set in the light template are mapped, on the calling thread, as the template is derived
+ * again on every change made in the UI. A mapping is a few HSL conversions, so splitting it between threads
+ * costs more than it saves, the derivation time is measured by {@code DarkModeDerivationBenchmark}.
+ * Then the theme variables annotated with a color modifier of a mapped parent are derived by the rules
+ * of the dark base theme mode, see {@link ThemePaletteGenerator}.
+ * <p>
+ * The base values and the annotated parents are computed once per snapshot, see
+ * {@link ThemeModel#getDarkModeDeriver()}, so a template can be derived again on every change of the light template.
+ */
+public class ThemeDarkModeDeriver {
+
+    protected final ThemeModel model;
+    protected final Template lightThemeMode;
+    protected final Template darkThemeMode;
+
+    protected final int[] lightBaseColors;
+    protected final int[] darkBaseColors;
+
+    /**
+     * Ordinals of the annotated parents in the dark base theme mode, {@code -1} if a theme variable is
+     * not derived with a color modifier.
+     */
+    protected final int[] annotatedParentOrdinals;
+
+    public ThemeDarkModeDeriver(ThemeModel model, Template lightThemeMode, Template darkThemeMode) {
+        this.model = model;
+        this.lightThemeMode = lightThemeMode;
+        this.darkThemeMode = darkThemeMode;
+
+        ThemeVariableSearchIndex searchIndex = model.getSearchIndex();
+        lightBaseColors = searchIndex.getTemplateColors(lightThemeMode);
+        darkBaseColors = searchIndex.getTemplateColors(darkThemeMode);
+
+        List<ThemeVariable> themeVariables = model.getThemeVariables();
+        annotatedParentOrdinals = new int[themeVariables.size()];
+        for (ThemeVariable themeVariable : themeVariables) {
+            int ordinal = themeVariable.getOrdinal();
+
+            ThemeVariableDetails details = themeVariable.getThemeVariableDetails(darkThemeMode);
+            annotatedParentOrdinals[ordinal] = details != null
+                    && details.isCommentDependence()
+                    && details.getParentThemeVariable() != null
+                    ? details.getParentThemeVariable().getOrdinal()
+                    : -1;
+        }
+    }
+
+    public Template getLightThemeMode() {
+        return lightThemeMode;
+    }
+
+    public Template getDarkThemeMode() {
+        return darkThemeMode;
+    }
+
+    /**
+     * Returns the values declared by a template of the theme, a value defined with {@code var()}
+     * is taken from the parent theme variable.
+     *
+     * @param template a template of the theme
+     * @return the values of the template
+     */
+    public ThemeVariableOverrides getTemplateValues(Template template) {
+        ThemeVariableOverrides values = new ThemeVariableOverrides();
+        if (template.getParent() == null) {
+            return values;
+        }
+
+        int[] colors = model.getSearchIndex().getTemplateColors(template);
+        for (ThemeVariable themeVariable : model.getThemeVariables()) {
+            int ordinal = themeVariable.getOrdinal();
+            if (colors[ordinal] != ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                    && themeVariable.hasColorTemplate(template)) {
+                values.putPacked(ordinal, colors[ordinal]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Derives the values of a dark template.
+     *
+     * @param lightValues the values of a light template that differ from the light base theme mode
+     * @return the values of the dark template
+     */
+    public ThemeVariableOverrides derive(ThemeVariableOverrides lightValues) {
+        int[] hsl = new int[3];
+        ThemeVariableOverrides rootValues = new ThemeVariableOverrides();
+        lightValues.ordinals().forEach(ordinal -> {
+            int parentOrdinal = annotatedParentOrdinals[ordinal];
+            if (parentOrdinal >= 0 && lightValues.contains(parentOrdinal)) {
+                // derived from the mapped parent by the rules of the dark base theme mode
+                return;
+            }
+
+            int color = lightValues.getPacked(ordinal);
+            if (color != ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+                rootValues.putPacked(ordinal,
+                        mapColor(color, lightBaseColors[ordinal], darkBaseColors[ordinal], hsl));
+            } else {
+                rootValues.put(ordinal, lightValues.get(ordinal));
+            }
+        });
+        return model.getPaletteGenerator(darkThemeMode).generate(rootValues);
+    }
+
+    /**
+     * Derives a dark template, see {@link #derive(ThemeVariableOverrides)}.
+     *
+     * @param name        a template name
+     * @param lightValues the values of a light template that differ from the light base theme mode
+     * @return the dark template
+     */
+    public CustomTemplate deriveTemplate(String name, ThemeVariableOverrides lightValues) {
+        return new CustomTemplate(name, darkThemeMode, derive(lightValues));
+    }
+
+    protected int mapColor(int color, int lightBaseColor, int darkBaseColor, int[] hsl) {
+        if (color == lightBaseColor && isColor(darkBaseColor)) {
+            return darkBaseColor;
+        }
+        if (color == ThemeVariableUtils.PACKED_TRANSPARENT_COLOR) {
+            return color;
+        }
+
+        ThemeVariableUtils.calculateHslFromPackedColor(color, hsl);
+        float lightness = hsl[2] / 100f;
+        float chroma = getChroma(hsl[1] / 100f, lightness);
+
+        float mappedLightness;
+        float mappedChroma;
+        if (isColor(lightBaseColor) && isColor(darkBaseColor)) {
+            ThemeVariableUtils.calculateHslFromPackedColor(lightBaseColor, hsl);
+            float lightBaseLightness = hsl[2] / 100f;
+            float lightBaseChroma = getChroma(hsl[1] / 100f, lightBaseLightness);
+            ThemeVariableUtils.calculateHslFromPackedColor(darkBaseColor, hsl);
+            float darkBaseLightness = hsl[2] / 100f;
+            float darkBaseChroma = getChroma(hsl[1] / 100f, darkBaseLightness);
+
+            mappedLightness = lightness >= lightBaseLightness
+                    ? darkBaseLightness + scale(lightness - lightBaseLightness,
+                    1 - lightBaseLightness, 1 - darkBaseLightness)
+                    : darkBaseLightness - scale(lightBaseLightness - lightness,
+                    lightBaseLightness, darkBaseLightness);
+            mappedChroma = chroma - lightBaseChroma + darkBaseChroma;
+        } else {
+            // no base values to map relative to, the lightness is inverted
+            mappedLightness = 1 - lightness;
+            mappedChroma = chroma;
+        }
+
+        ThemeVariableUtils.calculateHslFromPackedColor(color, hsl);
+        float maxChroma = 1 - Math.abs(2 * mappedLightness - 1);
+        hsl[1] = maxChroma > 0
+                ? Math.round(Math.max(0, Math.min(1, mappedChroma / maxChroma)) * 100)
+                : 0;
+        hsl[2] = Math.round(Math.max(0, Math.min(1, mappedLightness)) * 100);
+        return ThemeVariableUtils.packHsl(hsl);
+    }
+
+    protected static float scale(float deviation, float lightRange, float darkRange) {
+        return lightRange > 0 ? deviation * darkRange / lightRange : 0;
+    }
+
+    protected static float getChroma(float saturation, float lightness) {
+        return (1 - Math.abs(2 * lightness - 1)) * saturation;
+    }
+
+    protected static boolean isColor(int packedColor) {
+        return packedColor != ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                && packedColor != ThemeVariableUtils.PACKED_TRANSPARENT_COLOR;
+    }
+}
@@ -0,0 +1,333 @@
+package io.jmix.editor.helium.tools;
+
+import io.jmix.core.SaveContext;
+import io.jmix.core.UnconstrainedDataManager;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.editor.helium.HeliumEditorProperties;
+import io.jmix.editor.helium.entity.ThemeDraft;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Stores theme drafts of the editor sessions.
+ * <p>
+ * Saves are written behind: the latest draft of each session and template is kept in memory and all
+ * pending drafts are saved in one transaction after {@link HeliumEditorProperties#getDraftSaveDelay()}.
+ * A draft is loaded in one query, pending drafts are returned without querying the database.
+ * If saving fails, the pending drafts are kept and saved again after the same delay.
+ * Each saved draft also becomes a version of the theme, see {@link ThemeVersionManager}, and is added
+ * to {@link ThemeImpactIndex}.
+ * <p>
+ * Drafts not changed for {@link HeliumEditorProperties#getDraftRetention()} are deleted periodically.
+ */
+@Component("helium_ThemeDraftManager")
+public class ThemeDraftManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ThemeDraftManager.class);
+
+    protected static final Duration RETENTION_CHECK_INTERVAL = Duration.ofHours(1);
+    protected static final int DELETE_BATCH_SIZE = 500;
+
+    @Autowired
+    protected UnconstrainedDataManager dataManager;
+    @Autowired
+    protected SystemAuthenticator systemAuthenticator;
+    @Autowired
+    protected HeliumEditorProperties heliumEditorProperties;
+    @Autowired
+    protected ThemeVersionManager themeVersionManager;
+    @Autowired
+    protected ThemeImpactIndex themeImpactIndex;
+
+    protected final Map<String, Draft> pendingDrafts = new ConcurrentHashMap<>();
+    protected final AtomicBoolean flushScheduled = new AtomicBoolean();
+    protected ScheduledExecutorService executor;
+
+    @PostConstruct
+    protected void init() {
+        if (isEnabled()) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "helium-draft-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            Duration retention = heliumEditorProperties.getDraftRetention();
+            if (retention != null && !retention.isZero() && !retention.isNegative()) {
+                executor.scheduleWithFixedDelay(this::deleteExpiredScheduled, RETENTION_CHECK_INTERVAL.toMillis(),
+                        RETENTION_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @PreDestroy
+    protected void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            flush();
+        }
+    }
+
+    /**
+     * @return whether drafts are saved
+     */
+    public boolean isEnabled() {
+        Duration delay = heliumEditorProperties.getDraftSaveDelay();
+        return delay != null && !delay.isZero() && !delay.isNegative();
+    }
+
+    /**
+     * Schedules saving of a draft. A draft scheduled earlier for the same key and template
+     * and not saved yet is replaced.
+     *
+     * @param draft a draft
+     */
+    public void scheduleSave(Draft draft) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        pendingDrafts.put(getPendingKey(draft.getDraftKey(), draft.getTemplateName()), draft);
+        scheduleFlush();
+    }
+
+    protected void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::flushScheduled,
+                    heliumEditorProperties.getDraftSaveDelay().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Loads the most recently changed draft of the given key.
+     *
+     * @param draftKey a draft key
+     * @return the draft or {@code null} if there is no draft
+     */
+    @Nullable
+    public Draft loadLatest(String draftKey) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Optional<Draft> pendingDraft = pendingDrafts.values().stream()
+                .filter(draft -> draft.getDraftKey().equals(draftKey))
+                .max(Comparator.comparing(Draft::getUpdatedAt));
+        if (pendingDraft.isPresent()) {
+            return pendingDraft.get();
+        }
+
+        return dataManager.load(ThemeDraft.class)
+                .query("select e from helium_ThemeDraft e where e.draftKey = :draftKey order by e.updatedAt desc")
+                .parameter("draftKey", draftKey)
+                .maxResults(1)
+                .optional()
+                .map(Draft::new)
+                .orElse(null);
+    }
+
+    /**
+     * Saves all pending drafts in one transaction.
+     */
+    public void flush() {
+        if (pendingDrafts.isEmpty()) {
+            return;
+        }
+
+        Map<String, Draft> drafts = new HashMap<>(pendingDrafts);
+        systemAuthenticator.runWithSystem(() -> save(drafts.values()));
+
+        // drafts scheduled while saving are kept for the next flush
+        drafts.forEach(pendingDrafts::remove);
+    }
+
+    protected void flushScheduled() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Unable to save {} theme drafts, retrying", pendingDrafts.size(), e);
+            // the drafts stay pending until they are saved
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Deletes the drafts that are not changed for {@link HeliumEditorProperties#getDraftRetention()}
+     * together with their version history.
+     *
+     * @return the number of deleted drafts
+     */
+    public int deleteExpired() {
+        Date expiredBefore = new Date(System.currentTimeMillis()
+                - heliumEditorProperties.getDraftRetention().toMillis());
+
+        int deleted = systemAuthenticator.withSystem(() -> {
+            int count = 0;
+            List<ThemeDraft> drafts;
+            do {
+                drafts = dataManager.load(ThemeDraft.class)
+                        .query("select e from helium_ThemeDraft e where e.updatedAt < :expiredBefore")
+                        .parameter("expiredBefore", expiredBefore)
+                        .maxResults(DELETE_BATCH_SIZE)
+                        .list();
+                if (!drafts.isEmpty()) {
+                    SaveContext saveContext = new SaveContext();
+                    drafts.forEach(saveContext::removing);
+                    dataManager.save(saveContext);
+                    count += drafts.size();
+
+                    themeVersionManager.deleteHistory(drafts.stream()
+                            .map(draft -> ThemeVersionManager.getThemeKey(draft.getDraftKey(), draft.getTemplateName()))
+                            .collect(Collectors.toList()));
+                }
+            } while (drafts.size() == DELETE_BATCH_SIZE);
+            return count;
+        });
+
+        themeImpactIndex.removeExpired(expiredBefore);
+
+        log.debug("Deleted {} expired theme drafts", deleted);
+        return deleted;
+    }
+
+    protected void deleteExpiredScheduled() {
+        try {
+            deleteExpired();
+        } catch (RuntimeException e) {
+            log.error("Unable to delete expired theme drafts", e);
+        }
+    }
+
+    protected void save(Collection<Draft> drafts) {
+        Set<String> draftKeys = drafts.stream()
+                .map(Draft::getDraftKey)
+                .collect(Collectors.toSet());
+        Map<String, ThemeDraft> storedDrafts = dataManager.load(ThemeDraft.class)
+                .query("select e from helium_ThemeDraft e where e.draftKey in :draftKeys")
+                .parameter("draftKeys", draftKeys)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(draft -> getPendingKey(draft.getDraftKey(), draft.getTemplateName()),
+                        Function.identity()));
+
+        SaveContext saveContext = new SaveContext();
+        for (Draft draft : drafts) {
+            ThemeDraft themeDraft = storedDrafts.get(getPendingKey(draft.getDraftKey(), draft.getTemplateName()));
+            if (themeDraft == null) {
+                themeDraft = dataManager.create(ThemeDraft.class);
+                themeDraft.setDraftKey(draft.getDraftKey());
+                themeDraft.setTemplateName(draft.getTemplateName());
+            }
+            themeDraft.setBaseThemeMode(draft.getBaseThemeMode());
+            themeDraft.setModelChecksum(draft.getModelChecksum());
+            themeDraft.setOverrides(draft.getOverrides());
+            themeDraft.setDerivedOverrides(draft.getDerivedOverrides());
+            themeDraft.setUpdatedAt(draft.getUpdatedAt());
+            saveContext.saving(themeDraft);
+        }
+        dataManager.save(saveContext);
+
+        log.debug("Saved {} theme drafts", drafts.size());
+
+        themeVersionManager.saveVersions(drafts);
+        themeImpactIndex.update(drafts);
+    }
+
+    protected String getPendingKey(String draftKey, String templateName) {
+        return draftKey + '/' + templateName;
+    }
+
+    /**
+     * Theme variables changed in a session, see {@link ThemeDraft}.
+     */
+    public static class Draft {
+
+        protected final String draftKey;
+        protected final String baseThemeMode;
+        protected final String templateName;
+        protected final int modelChecksum;
+        protected final byte[] overrides;
+        protected final byte[] derivedOverrides;
+        protected final Date updatedAt;
+
+        public Draft(String draftKey, String baseThemeMode, String templateName, int modelChecksum,
+                     ThemeVariableOverrides overrides, ThemeVariableOverrides derivedOverrides) {
+            this.draftKey = draftKey;
+            this.baseThemeMode = baseThemeMode;
+            this.templateName = templateName;
+            this.modelChecksum = modelChecksum;
+            this.overrides = overrides.toByteArray();
+            this.derivedOverrides = derivedOverrides.toByteArray();
+            this.updatedAt = new Date();
+        }
+
+        protected Draft(ThemeDraft themeDraft) {
+            this.draftKey = themeDraft.getDraftKey();
+            this.baseThemeMode = themeDraft.getBaseThemeMode();
+            this.templateName = themeDraft.getTemplateName();
+            this.modelChecksum = themeDraft.getModelChecksum() != null ? themeDraft.getModelChecksum() : 0;
+            this.overrides = themeDraft.getOverrides();
+            this.derivedOverrides = themeDraft.getDerivedOverrides();
+            this.updatedAt = themeDraft.getUpdatedAt();
+        }
+
+        public String getDraftKey() {
+            return draftKey;
+        }
+
+        public String getBaseThemeMode() {
+            return baseThemeMode;
+        }
+
+        public String getTemplateName() {
+            return templateName;
+        }
+
+        public int getModelChecksum() {
+            return modelChecksum;
+        }
+
+        public byte[] getOverrides() {
+            return overrides;
+        }
+
+        public byte[] getDerivedOverrides() {
+            return derivedOverrides;
+        }
+
+        public Date getUpdatedAt() {
+            return updatedAt;
+        }
+
+        /**
+         * @return the values set by the user
+         */
+        public ThemeVariableOverrides getThemeVariableOverrides() {
+            return overrides != null
+                    ? ThemeVariableOverrides.fromByteArray(overrides)
+                    : new ThemeVariableOverrides();
+        }
+
+        /**
+         * @return the values of the dependent theme variables
+         */
+        public ThemeVariableOverrides getDerivedThemeVariableOverrides() {
+            return derivedOverrides != null
+                    ? ThemeVariableOverrides.fromByteArray(derivedOverrides)
+                    : new ThemeVariableOverrides();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.jmix.editor.helium.tools;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Undo and redo history of the theme variable changes of a session.
+ * <p>
+ * An edit is one changed value: the theme variable ordinal, whether the value is set by the user or taken from
+ * a color template, the old and the new packed colors and the template. The edits caused by one user action,
+ * e.g. a color change with its dependent values or an upload, form a step that is undone and redone as a whole.
+ * <p>
+ * The edits are kept in parallel arrays used as a ring buffer, so the history takes a fixed amount of memory.
+ * When the buffer is full, the oldest steps are dropped. A step larger than the whole buffer is not recorded.
+ * Values that cannot be packed are kept aside.
+ */
+public class ThemeEditHistory {
+
+    /**
+     * Packed value of a theme variable that is not overridden.
+     */
+    protected static final int ABSENT = -2;
+
+    protected static final int STEP_START_FLAG = 1 << 30;
+    protected static final int BASE_THEME_MODE_FLAG = 1 << 29;
+    protected static final int ORDINAL_MASK = BASE_THEME_MODE_FLAG - 1;
+
+    protected final int capacity;
+
+    /**
+     * Ordinals combined with {@link #STEP_START_FLAG} and {@link #BASE_THEME_MODE_FLAG}.
+     */
+    protected final int[] ordinals;
+    protected final int[] oldColors;
+    protected final int[] newColors;
+    protected final short[] templates;
+
+    /**
+     * Values that cannot be packed by slot, the old value under {@code slot * 2}, the new one under {@code slot * 2 + 1}.
+     */
+    protected Map<Integer, String> rawValues;
+
+    /**
+     * Absolute positions: the oldest kept edit, the first undone edit and the end of the recorded edits.
+     */
+    protected long start;
+    protected long cursor;
+    protected long end;
+
+    protected boolean stepStarted;
+    protected boolean stepDropped;
+
+    /**
+     * @param capacity the maximum number of kept edits
+     */
+    public ThemeEditHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.ordinals = new int[capacity];
+        this.oldColors = new int[capacity];
+        this.newColors = new int[capacity];
+        this.templates = new short[capacity];
+    }
+
+    /**
+     * Starts a new step. The edits recorded until the next call are undone together.
+     */
+    public void beginStep() {
+        stepStarted = true;
+        stepDropped = false;
+    }
+
+    /**
+     * Records an edit of the current step. The edits that are undone and not redone are discarded.
+     *
+     * @param ordinal         a theme variable ordinal
+     * @param isBaseThemeMode {@code true} if the value is set by the user, {@code false} if it is taken from
+     *                        a color template
+     * @param oldValue        the value before the edit or {@code null} if it was not overridden
+     * @param newValue        the value after the edit or {@code null} if it is not overridden anymore
+     * @param template        the index of the current template
+     */
+    public void record(int ordinal, boolean isBaseThemeMode, @Nullable String oldValue, @Nullable String newValue,
+                       int template) {
+        if (stepDropped || (!stepStarted && cursor == start)) {
+            // the step does not fit into the buffer or there is no step to add the edit to
+            return;
+        }
+
+        end = cursor;
+        if (end - start == capacity) {
+            dropOldestStep();
+            if (stepDropped) {
+                return;
+            }
+        }
+
+        int slot = slot(end);
+        removeRawValues(slot);
+        ordinals[slot] = ordinal
+                | (isBaseThemeMode ? BASE_THEME_MODE_FLAG : 0)
+                | (stepStarted ? STEP_START_FLAG : 0);
+        oldColors[slot] = pack(slot * 2, oldValue);
+        newColors[slot] = pack(slot * 2 + 1, newValue);
+        templates[slot] = (short) template;
+
+        stepStarted = false;
+        end++;
+        cursor = end;
+    }
+
+    /**
+     * Undoes the last step: passes the old values of its edits to the consumer in reverse order.
+     *
+     * @param template the index of the current template, a step recorded for another template is not undone
+     * @param consumer a consumer of the values to apply
+     * @return {@code true} if a step is undone
+     */
+    public boolean undo(int template, EditConsumer consumer) {
+        if (!canUndo(template)) {
+            return false;
+        }
+
+        long position = cursor;
+        do {
+            position--;
+            int slot = slot(position);
+            consumer.accept(ordinals[slot] & ORDINAL_MASK, (ordinals[slot] & BASE_THEME_MODE_FLAG) != 0,
+                    unpack(slot * 2, oldColors[slot]));
+        } while ((ordinals[slot(position)] & STEP_START_FLAG) == 0);
+
+        cursor = position;
+        return true;
+    }
+
+    /**
+     * Redoes the last undone step: passes the new values of its edits to the consumer in the recorded order.
+     *
+     * @param template the index of the current template, a step recorded for another template is not redone
+     * @param consumer a consumer of the values to apply
+     * @return {@code true} if a step is redone
+     */
+    public boolean redo(int template, EditConsumer consumer) {
+        if (!canRedo(template)) {
+            return false;
+        }
+
+        long position = cursor;
+        do {
+            int slot = slot(position);
+            consumer.accept(ordinals[slot] & ORDINAL_MASK, (ordinals[slot] & BASE_THEME_MODE_FLAG) != 0,
+                    unpack(slot * 2 + 1, newColors[slot]));
+            position++;
+        } while (position < end && (ordinals[slot(position)] & STEP_START_FLAG) == 0);
+
+        cursor = position;
+        return true;
+    }
+
+    public boolean canUndo(int template) {
+        return cursor > start && templates[slot(cursor - 1)] == template;
+    }
+
+    public boolean canRedo(int template) {
+        return cursor < end && templates[slot(cursor)] == template;
+    }
+
+    /**
+     * @return the number of kept edits including the undone ones
+     */
+    public int size() {
+        return (int) (end - start);
+    }
+
+    public void clear() {
+        start = cursor = end = 0;
+        rawValues = null;
+        stepStarted = false;
+        stepDropped = false;
+    }
+
+    protected void dropOldestStep() {
+        do {
+            removeRawValues(slot(start));
+            start++;
+        } while (start < end && (ordinals[slot(start)] & STEP_START_FLAG) == 0);
+
+        if (start == end && !stepStarted) {
+            // the oldest step was the current one
+            stepDropped = true;
+        }
+    }
+
+    protected int slot(long position) {
+        return (int) (position % capacity);
+    }
+
+    protected int pack(int key, @Nullable String value) {
+        if (value == null) {
+            return ABSENT;
+        }
+
+        int packedColor = ThemeVariableUtils.packColor(value);
+        if (packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+            if (rawValues == null) {
+                rawValues = new HashMap<>();
+            }
+            rawValues.put(key, value);
+        }
+        return packedColor;
+    }
+
+    @Nullable
+    protected String unpack(int key, int packedColor) {
+        if (packedColor == ABSENT) {
+            return null;
+        }
+
+        return packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                ? rawValues.get(key)
+                : ThemeVariableUtils.unpackColor(packedColor);
+    }
+
+    protected void removeRawValues(int slot) {
+        if (rawValues != null) {
+            rawValues.remove(slot * 2);
+            rawValues.remove(slot * 2 + 1);
+        }
+    }
+
+    /**
+     * Consumer of the values applied by {@link #undo(int, EditConsumer)} and {@link #redo(int, EditConsumer)}.
+     */
+    @FunctionalInterface
+    public interface EditConsumer {
+
+        /**
+         * @param ordinal         a theme variable ordinal
+         * @param isBaseThemeMode whether the value is set by the user
+         * @param value           the value to apply or {@code null} if the theme variable is not overridden
+         */
+        void accept(int ordinal, boolean isBaseThemeMode, @Nullable String value);
+    }
+}
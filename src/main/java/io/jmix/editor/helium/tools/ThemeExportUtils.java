@@ -0,0 +1,150 @@
+package io.jmix.editor.helium.tools;
+
+import io.jmix.editor.helium.components.themevariablefield.ThemeVariableField;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for generating the text of the downloaded theme variables.
+ */
+public class ThemeExportUtils {
+
+    public static final String BASIC_MODULE_NAME = "Basic";
+    public static final String COMMON_MODULE_NAME = "Common";
+
+    /**
+     * Orders theme variables by module and name. Basic module goes first, Common module goes second.
+     */
+    public static final Comparator<ModifiedThemeVariableDetails> MODULE_ORDER =
+            Comparator.comparing(ModifiedThemeVariableDetails::getModule, (module1, module2) -> {
+                if (COMMON_MODULE_NAME.equals(module1) && !COMMON_MODULE_NAME.equals(module2)) {
+                    return BASIC_MODULE_NAME.equals(module2)
+                            ? 1
+                            : -1;
+                }
+
+                if (COMMON_MODULE_NAME.equals(module2) && !COMMON_MODULE_NAME.equals(module1)) {
+                    return BASIC_MODULE_NAME.equals(module1)
+                            ? -1
+                            : 1;
+                }
+
+                return module1.compareTo(module2);
+            }).thenComparing(ModifiedThemeVariableDetails::getName);
+
+    /**
+     * Sorts theme variable details in the export order.
+     *
+     * @param themeVariableDetailsList a list of theme variable details
+     * @return a new sorted list
+     * @see #MODULE_ORDER
+     */
+    public static List<ModifiedThemeVariableDetails> sort(List<ModifiedThemeVariableDetails> themeVariableDetailsList) {
+        return themeVariableDetailsList.stream()
+                .sorted(MODULE_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Adds the details of the overridden theme variables and their {@code _rgb} companions to the list.
+     *
+     * @param model                      a theme model the ordinals belong to
+     * @param overrides                  overridden values
+     * @param modifiedThemeVariablesList a list to add the details to
+     */
+    public static void collectModifiedThemeVariables(ThemeModel model, ThemeVariableOverrides overrides,
+                                                     List<ModifiedThemeVariableDetails> modifiedThemeVariablesList) {
+        overrides.ordinals().forEach(ordinal -> {
+            ThemeVariable themeVariable = model.getThemeVariable(ordinal);
+            String value = overrides.get(ordinal);
+            modifiedThemeVariablesList.add(
+                    new ModifiedThemeVariableDetails(themeVariable.getName(), themeVariable.getModule(), value));
+
+            if (themeVariable.isRgbUsed()) {
+                String rgbValue = ThemeVariableUtils.convertHexToRGB(value);
+                if (rgbValue != null) {
+                    modifiedThemeVariablesList.add(new ModifiedThemeVariableDetails(
+                            themeVariable.getName() + ThemeVariableField.RGB_POSTFIX, themeVariable.getModule(), rgbValue));
+                }
+            }
+        });
+    }
+
+    /**
+     * Generates theme variable declarations grouped by module. Variables of a base theme mode that is not
+     * the default one are wrapped into the base theme mode selector.
+     *
+     * @param baseThemeMode            a base theme mode name
+     * @param defaultThemeMode         whether the base theme mode is the default one
+     * @param themeVariableDetailsList a list of theme variable details sorted by module
+     * @return generated text
+     */
+    public static String generateText(String baseThemeMode, boolean defaultThemeMode,
+                                      List<ModifiedThemeVariableDetails> themeVariableDetailsList) {
+        StringBuilder builder = new StringBuilder();
+        if (!defaultThemeMode) {
+            builder.append(".")
+                    .append(baseThemeMode)
+                    .append(" {\n");
+        }
+
+        appendThemeVariables(builder, themeVariableDetailsList, defaultThemeMode ? "" : "  ");
+
+        if (!defaultThemeMode) {
+            builder.append("}");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Generates the declarations of a color template block, e.g. a generated template,
+     * grouped by module.
+     *
+     * @param baseThemeMode            a base theme mode name
+     * @param templateName             a template name
+     * @param themeVariableDetailsList a list of theme variable details sorted by module
+     * @return generated text
+     */
+    public static String generateTemplateText(String baseThemeMode, String templateName,
+                                              List<ModifiedThemeVariableDetails> themeVariableDetailsList) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(".helium.")
+                .append(baseThemeMode)
+                .append(".")
+                .append(templateName)
+                .append(" {\n");
+        appendThemeVariables(builder, themeVariableDetailsList, "  ");
+        builder.append("}");
+        return builder.toString();
+    }
+
+    protected static void appendThemeVariables(StringBuilder builder,
+                                               List<ModifiedThemeVariableDetails> themeVariableDetailsList,
+                                               String indent) {
+        String module = null;
+        boolean firstModule = true;
+        for (ModifiedThemeVariableDetails details : themeVariableDetailsList) {
+            if (!details.getModule().equals(module)) {
+                if (firstModule) {
+                    firstModule = false;
+                } else {
+                    builder.append("\n");
+                }
+
+                module = details.getModule();
+                builder.append("  /* ")
+                        .append(module)
+                        .append(" */")
+                        .append("\n");
+            }
+
+            builder.append(indent)
+                    .append(details.getName())
+                    .append(": ")
+                    .append(details.getValue())
+                    .append(";\n");
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package io.jmix.editor.helium.tools;
+
+import io.jmix.core.UnconstrainedDataManager;
+import io.jmix.editor.helium.entity.ThemeDraft;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Inverted index from theme variable names to the saved themes that override them.
+ * <p>
+ * A theme is the latest saved draft of a draft key and template, see {@link ThemeVersionManager#getThemeKey}.
+ * The index is built from the stored drafts on the first query and then maintained incrementally as drafts
+ * are saved by {@link ThemeDraftManager}. The drafts are loaded without holding the index lock, the drafts
+ * saved meanwhile are applied to the loaded index. Impact queries read only the entries of the queried
+ * theme variable and of the theme variables that depend on it through {@code var()} and color modifier chains.
+ * <p>
+ * Only the drafts saved for the current theme model are indexed.
+ */
+@Component("helium_ThemeImpactIndex")
+public class ThemeImpactIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ThemeImpactIndex.class);
+
+    @Autowired
+    protected UnconstrainedDataManager dataManager;
+    @Autowired
+    protected ThemeVariablesManager themeVariablesManager;
+
+    /**
+     * The index of the current model, {@code null} until the index is loaded.
+     */
+    protected volatile Index index;
+
+    /**
+     * Drafts saved while the index is loaded, {@code null} if the index is not being loaded.
+     */
+    protected List<ThemeDraftManager.Draft> draftsSavedOnLoad;
+    protected Date expiredOnLoad;
+
+    protected final Object loadLock = new Object();
+
+    /**
+     * Updates the index with saved drafts. A draft replaces the indexed theme of the same key
+     * if it is newer than the indexed one.
+     *
+     * @param drafts saved drafts
+     */
+    public synchronized void update(Collection<ThemeDraftManager.Draft> drafts) {
+        if (draftsSavedOnLoad != null) {
+            draftsSavedOnLoad.addAll(drafts);
+        }
+        if (isLoaded()) {
+            index.update(drafts);
+        }
+        // otherwise the drafts are already stored and are indexed on load
+    }
+
+    /**
+     * Removes the themes that are not changed since the given time, as their drafts are deleted.
+     *
+     * @param expiredBefore the time the drafts are deleted before
+     */
+    public synchronized void removeExpired(Date expiredBefore) {
+        if (draftsSavedOnLoad != null
+                && (expiredOnLoad == null || expiredOnLoad.before(expiredBefore))) {
+            expiredOnLoad = expiredBefore;
+        }
+        if (isLoaded()) {
+            index.removeExpired(expiredBefore);
+        }
+    }
+
+    /**
+     * @param variableName a theme variable name
+     * @return overridden values of the theme variable by theme key
+     */
+    public Map<String, String> getOverrides(String variableName) {
+        ensureLoaded();
+        synchronized (this) {
+            return Collections.unmodifiableMap(new HashMap<>(
+                    index.overridesByVariable.getOrDefault(variableName, Collections.emptyMap())));
+        }
+    }
+
+    /**
+     * Finds the themes affected by a change of the default value of a theme variable: the themes that override
+     * the theme variable itself and the themes that override theme variables depending on it.
+     *
+     * @param variableName a theme variable name
+     * @return affected themes, each with the overridden theme variable; for a dependent theme variable
+     * {@link ModifiedThemeVariableDetails#getParentVariableName()} is its parent in the dependency chain
+     */
+    public List<Impact> findImpact(String variableName) {
+        ensureLoaded();
+        synchronized (this) {
+            return index.findImpact(variableName);
+        }
+    }
+
+    /**
+     * @return the number of indexed themes
+     */
+    public int getThemeCount() {
+        ensureLoaded();
+        synchronized (this) {
+            return index.themes.size();
+        }
+    }
+
+    protected boolean isLoaded() {
+        Index index = this.index;
+        return index != null && index.model == themeVariablesManager.getModel();
+    }
+
+    protected void ensureLoaded() {
+        if (isLoaded()) {
+            return;
+        }
+
+        synchronized (loadLock) {
+            if (isLoaded()) {
+                return;
+            }
+
+            ThemeModel model = themeVariablesManager.getModel();
+            synchronized (this) {
+                draftsSavedOnLoad = new ArrayList<>();
+                expiredOnLoad = null;
+            }
+
+            List<ThemeDraftManager.Draft> drafts;
+            try {
+                drafts = loadDrafts(model);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    draftsSavedOnLoad = null;
+                    expiredOnLoad = null;
+                }
+                throw e;
+            }
+
+            Index loadedIndex = new Index(model);
+            loadedIndex.update(drafts);
+
+            synchronized (this) {
+                loadedIndex.update(draftsSavedOnLoad);
+                if (expiredOnLoad != null) {
+                    loadedIndex.removeExpired(expiredOnLoad);
+                }
+                draftsSavedOnLoad = null;
+                expiredOnLoad = null;
+                index = loadedIndex;
+            }
+            log.debug("Theme impact index is loaded with {} themes", loadedIndex.themes.size());
+        }
+    }
+
+    /**
+     * Loads the stored drafts saved for a theme model.
+     */
+    protected List<ThemeDraftManager.Draft> loadDrafts(ThemeModel model) {
+        List<ThemeDraft> drafts = dataManager.load(ThemeDraft.class)
+                .query("select e from helium_ThemeDraft e where e.modelChecksum = :modelChecksum")
+                .parameter("modelChecksum", model.getChecksum())
+                .list();
+
+        List<ThemeDraftManager.Draft> result = new ArrayList<>(drafts.size());
+        for (ThemeDraft draft : drafts) {
+            result.add(new ThemeDraftManager.Draft(draft));
+        }
+        return result;
+    }
+
+    /**
+     * Index of the themes saved for a theme model.
+     */
+    protected static class Index {
+
+        protected final ThemeModel model;
+
+        /**
+         * Overridden values by theme variable name and theme key.
+         */
+        protected final Map<String, Map<String, String>> overridesByVariable = new HashMap<>();
+
+        protected final Map<String, IndexedTheme> themes = new HashMap<>();
+
+        /**
+         * Names of the theme variables that have the given parent in any template.
+         */
+        protected final Map<String, List<String>> childrenByParent;
+
+        protected Index(ThemeModel model) {
+            this.model = model;
+            this.childrenByParent = buildChildrenByParent(model);
+        }
+
+        protected void update(Collection<ThemeDraftManager.Draft> drafts) {
+            for (ThemeDraftManager.Draft draft : drafts) {
+                if (draft.getModelChecksum() == model.getChecksum()) {
+                    index(ThemeVersionManager.getThemeKey(draft.getDraftKey(), draft.getTemplateName()),
+                            draft.getUpdatedAt(),
+                            draft.getThemeVariableOverrides(), draft.getDerivedThemeVariableOverrides());
+                }
+            }
+        }
+
+        protected void removeExpired(Date expiredBefore) {
+            themes.entrySet().removeIf(entry -> {
+                if (!entry.getValue().updatedAt.before(expiredBefore)) {
+                    return false;
+                }
+                removeOverrides(entry.getKey(), entry.getValue());
+                return true;
+            });
+        }
+
+        protected List<Impact> findImpact(String variableName) {
+            List<Impact> impacts = new ArrayList<>();
+            Set<String> visited = new HashSet<>();
+            Deque<String[]> queue = new ArrayDeque<>();
+            queue.add(new String[]{variableName, null});
+            while (!queue.isEmpty()) {
+                String[] entry = queue.poll();
+                String name = entry[0];
+                if (!visited.add(name)) {
+                    continue;
+                }
+
+                ThemeVariable themeVariable = model.getThemeVariable(name);
+                Map<String, String> overrides = overridesByVariable.get(name);
+                if (themeVariable != null && overrides != null) {
+                    overrides.forEach((themeKey, value) -> {
+                        ModifiedThemeVariableDetails details =
+                                new ModifiedThemeVariableDetails(name, themeVariable.getModule(), value);
+                        details.setParentVariableName(entry[1]);
+                        impacts.add(new Impact(themeKey, details));
+                    });
+                }
+
+                for (String child : childrenByParent.getOrDefault(name, Collections.emptyList())) {
+                    queue.add(new String[]{child, name});
+                }
+            }
+            return impacts;
+        }
+
+        protected void index(String themeKey, Date updatedAt, ThemeVariableOverrides overrides,
+                             ThemeVariableOverrides derivedOverrides) {
+            IndexedTheme indexedTheme = themes.get(themeKey);
+            if (indexedTheme != null) {
+                if (indexedTheme.updatedAt.after(updatedAt)) {
+                    return;
+                }
+
+                removeOverrides(themeKey, indexedTheme);
+            }
+
+            ThemeVariableOverrides values = new ThemeVariableOverrides();
+            values.putAll(overrides);
+            values.putAll(derivedOverrides);
+
+            List<String> variableNames = new ArrayList<>(values.size());
+            values.ordinals().forEach(ordinal -> {
+                String name = model.getThemeVariable(ordinal).getName();
+                variableNames.add(name);
+                overridesByVariable.computeIfAbsent(name, key -> new HashMap<>())
+                        .put(themeKey, values.get(ordinal));
+            });
+            themes.put(themeKey, new IndexedTheme(updatedAt, variableNames));
+        }
+
+        protected void removeOverrides(String themeKey, IndexedTheme indexedTheme) {
+            for (String name : indexedTheme.variableNames) {
+                Map<String, String> overriddenValues = overridesByVariable.get(name);
+                overriddenValues.remove(themeKey);
+                if (overriddenValues.isEmpty()) {
+                    overridesByVariable.remove(name);
+                }
+            }
+        }
+
+        protected static Map<String, List<String>> buildChildrenByParent(ThemeModel model) {
+            Map<String, List<String>> children = new HashMap<>();
+            for (ThemeVariable themeVariable : model.getThemeVariables()) {
+                Set<String> parents = new HashSet<>();
+                for (ThemeVariableDetails details : themeVariable.getDetailsMap().values()) {
+                    if (details.getParentThemeVariable() != null) {
+                        parents.add(details.getParentThemeVariable().getName());
+                    }
+                }
+                for (String parent : parents) {
+                    children.computeIfAbsent(parent, key -> new ArrayList<>()).add(themeVariable.getName());
+                }
+            }
+            return children;
+        }
+    }
+
+    protected static class IndexedTheme {
+
+        protected final Date updatedAt;
+        protected final List<String> variableNames;
+
+        protected IndexedTheme(Date updatedAt, List<String> variableNames) {
+            this.updatedAt = updatedAt;
+            this.variableNames = variableNames;
+        }
+    }
+
+    /**
+     * Theme affected by a change of a theme variable.
+     */
+    public static class Impact {
+
+        protected final String themeKey;
+        protected final ModifiedThemeVariableDetails overriddenThemeVariable;
+
+        public Impact(String themeKey, ModifiedThemeVariableDetails overriddenThemeVariable) {
+            this.themeKey = themeKey;
+            this.overriddenThemeVariable = overriddenThemeVariable;
+        }
+
+        public String getThemeKey() {
+            return themeKey;
+        }
+
+        /**
+         * @return the theme variable overridden in the theme and its value
+         */
+        public ModifiedThemeVariableDetails getOverriddenThemeVariable() {
+            return overriddenThemeVariable;
+        }
+    }
+}
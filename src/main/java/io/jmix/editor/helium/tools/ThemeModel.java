@@ -0,0 +1,239 @@
+package io.jmix.editor.helium.tools;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable snapshot of the parsed theme variables and color templates.
+ * <p>
+ * A snapshot is published by {@link ThemeVariablesManager} through a volatile reference and is never
+ * modified afterwards, so it can be read by any number of UI sessions without locking. Theme variables
+ * are copied with unmodifiable details when the snapshot is created, so the manager can go on parsing into its
+ * own theme variables. Templates are immutable and are shared with the manager. A reload builds new theme variables and templates and
+ * publishes a new snapshot, sessions keep the snapshot they were opened with.
+ */
+public class ThemeModel {
+
+    public static final ThemeModel EMPTY = new ThemeModel(Collections.emptyList(), Collections.emptyList());
+
+    protected final List<ThemeVariable> themeVariables;
+    protected final Map<String, ThemeVariable> themeVariablesByName;
+    protected final List<Template> templates;
+    protected final int checksum;
+    protected final Map<String, String> clientDependencyGraphs = new ConcurrentHashMap<>();
+    protected final Map<String, ThemePaletteGenerator> paletteGenerators = new ConcurrentHashMap<>();
+    protected volatile ThemeVariableSearchIndex searchIndex;
+    protected volatile ThemeDarkModeDeriver darkModeDeriver;
+
+    public ThemeModel(List<ThemeVariable> themeVariables, List<Template> templates) {
+        Map<ThemeVariable, ThemeVariable> frozenVariables = new IdentityHashMap<>(themeVariables.size() * 2);
+        List<ThemeVariable> frozenList = new ArrayList<>(themeVariables.size());
+        for (ThemeVariable themeVariable : themeVariables) {
+            ThemeVariable frozenVariable = themeVariable.copy();
+            frozenVariables.put(themeVariable, frozenVariable);
+            frozenList.add(frozenVariable);
+        }
+
+        Map<String, ThemeVariable> byName = new HashMap<>(themeVariables.size() * 2);
+        int hash = 1;
+        for (ThemeVariable themeVariable : themeVariables) {
+            ThemeVariable frozenVariable = frozenVariables.get(themeVariable);
+            frozenVariable.freeze(themeVariable, frozenVariables);
+            byName.put(frozenVariable.getName(), frozenVariable);
+            hash = 31 * hash + frozenVariable.getName().hashCode();
+        }
+        this.checksum = hash;
+
+        this.themeVariables = Collections.unmodifiableList(frozenList);
+        this.themeVariablesByName = Collections.unmodifiableMap(byName);
+        this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+    }
+
+    /**
+     * @return the unmodifiable list of theme variables ordered by ordinal
+     */
+    public List<ThemeVariable> getThemeVariables() {
+        return themeVariables;
+    }
+
+    /**
+     * @param ordinal a theme variable ordinal
+     * @return a theme variable
+     */
+    public ThemeVariable getThemeVariable(int ordinal) {
+        return themeVariables.get(ordinal);
+    }
+
+    /**
+     * @param name a theme variable name
+     * @return a theme variable or {@code null} if not found
+     */
+    @Nullable
+    public ThemeVariable getThemeVariable(String name) {
+        return themeVariablesByName.get(name);
+    }
+
+    /**
+     * Returns the checksum of theme variable names in ordinal order. Data addressed by ordinals,
+     * e.g. stored drafts, can be applied only to a model with the same checksum.
+     *
+     * @return the checksum
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return the unmodifiable list of color templates
+     */
+    public List<Template> getTemplates() {
+        return templates;
+    }
+
+    /**
+     * @param name a color template name
+     * @return a color template or {@code null} if not found
+     */
+    @Nullable
+    public Template getTemplate(String name) {
+        for (Template template : templates) {
+            if (template.getName().equals(name)) {
+                return template;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the dependency graph of a color template evaluated by the browser. The graph is built
+     * once per snapshot.
+     *
+     * @param template a color template
+     * @return the graph in JSON
+     * @see ClientDependencyGraph
+     */
+    public String getClientDependencyGraph(Template template) {
+        return clientDependencyGraphs.computeIfAbsent(template.getName(),
+                name -> ClientDependencyGraph.toJson(this, template));
+    }
+
+    /**
+     * Returns the palette generator of a template of the theme. The generator is built once per snapshot.
+     *
+     * @param template a base theme mode or a template of the theme
+     * @return the palette generator
+     */
+    public ThemePaletteGenerator getPaletteGenerator(Template template) {
+        return paletteGenerators.computeIfAbsent(template.getName(),
+                name -> new ThemePaletteGenerator(this, template));
+    }
+
+    /**
+     * Returns the deriver of dark templates from light ones. The deriver is built once per snapshot
+     * on the first call.
+     *
+     * @return the deriver or {@code null} if the theme has no light or dark base theme mode
+     */
+    @Nullable
+    public ThemeDarkModeDeriver getDarkModeDeriver() {
+        ThemeDarkModeDeriver deriver = darkModeDeriver;
+        if (deriver == null) {
+            Template lightThemeMode = getTemplate(Templates.LIGHT);
+            Template darkThemeMode = getTemplate(Templates.DARK);
+            if (lightThemeMode == null || darkThemeMode == null) {
+                return null;
+            }
+
+            synchronized (this) {
+                deriver = darkModeDeriver;
+                if (deriver == null) {
+                    deriver = new ThemeDarkModeDeriver(this, lightThemeMode, darkThemeMode);
+                    darkModeDeriver = deriver;
+                }
+            }
+        }
+        return deriver;
+    }
+
+    /**
+     * Returns the search index of the theme variables. The index is built once per snapshot on the first call.
+     *
+     * @return the search index
+     */
+    public ThemeVariableSearchIndex getSearchIndex() {
+        ThemeVariableSearchIndex index = searchIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = searchIndex;
+                if (index == null) {
+                    index = new ThemeVariableSearchIndex(this);
+                    searchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns theme variables that depend on the given theme variable in the given template,
+     * directly or through other theme variables.
+     *
+     * @param variableName a parent theme variable name
+     * @param template     a template
+     * @return the list of dependent theme variables
+     */
+    public List<ThemeVariable> getChildThemeVariables(String variableName, Template template) {
+        List<ThemeVariable> childrenThemeVariables = new ArrayList<>();
+        for (ThemeVariable themeVariable : themeVariables) {
+            ThemeVariableDetails themeVariableDetails = themeVariable.getThemeVariableDetails(template);
+
+            if (themeVariableDetails != null) {
+                ThemeVariable parentThemeVariable = themeVariableDetails.getParentThemeVariable();
+                if (parentThemeVariable != null
+                        && variableName.equals(parentThemeVariable.getName())) {
+                    childrenThemeVariables.add(themeVariable);
+                    childrenThemeVariables.addAll(getChildThemeVariables(themeVariable.getName(), template));
+                }
+            }
+        }
+        return childrenThemeVariables;
+    }
+
+    /**
+     * Visits the theme variables that depend on the given theme variable in the given template, a parent before
+     * its children, and passes each of them the value of its immediate parent: the given value to the children
+     * and the value derived by {@link ThemeVariableDetails#deriveValue(String)} to the deeper theme variables.
+     * A theme variable defined with {@code var()} passes on the value of its parent. This is the same rule as
+     * {@link ThemePaletteGenerator#derive(ThemeVariableOverrides, BitSet)} and the dependency graph evaluated
+     * by the browser.
+     *
+     * @param variableName a parent theme variable name
+     * @param value        a new value of the parent or {@code null} if the parent is reset,
+     *                     then all dependent theme variables get {@code null}
+     * @param template     a template
+     * @param visitor      a visitor of a dependent theme variable and the value of its immediate parent
+     * @return the number of visited theme variables
+     */
+    public int visitChildThemeVariables(String variableName, @Nullable String value, Template template,
+                                        BiConsumer<ThemeVariable, String> visitor) {
+        int count = 0;
+        for (ThemeVariable themeVariable : themeVariables) {
+            ThemeVariableDetails themeVariableDetails = themeVariable.getThemeVariableDetails(template);
+
+            if (themeVariableDetails != null) {
+                ThemeVariable parentThemeVariable = themeVariableDetails.getParentThemeVariable();
+                if (parentThemeVariable != null
+                        && variableName.equals(parentThemeVariable.getName())) {
+                    visitor.accept(themeVariable, value);
+
+                    String derivedValue = value != null ? themeVariableDetails.deriveValue(value) : null;
+                    count += 1 + visitChildThemeVariables(themeVariable.getName(),
+                            derivedValue != null ? derivedValue : value, template, visitor);
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,200 @@
+package io.jmix.editor.helium.tools;
+
+import java.util.*;
+
+/**
+ * Generates the values of a color template from a few root colors, e.g. the brand colors of a new theme.
+ * <p>
+ * The values of the other theme variables are derived from the root colors by the rules of the theme:
+ * a theme variable annotated with a parent and a color modifier, e.g. {@code // (--primary-color) (d10%)},
+ * is darkened or lightened from the value of the parent, a theme variable annotated without a modifier copies
+ * the value of the parent. Values defined with {@code var()} follow their parents in the browser and are not
+ * generated, but the theme variables annotated with them are derived from the values of their parents.
+ * The theme variables that do not depend on the root colors keep the values of the parent template.
+ * <p>
+ * The derivation order is computed once for a theme template, see {@link ThemeModel#getPaletteGenerator(Template)},
+ * so generating a template only walks the dependent theme variables in packed colors.
+ */
+public class ThemePaletteGenerator {
+
+    protected static final byte VAR = 0;
+    protected static final byte COPY = 1;
+    protected static final byte DARKEN = 2;
+    protected static final byte LIGHTEN = 3;
+
+    protected final ThemeModel model;
+    protected final Template template;
+
+    /**
+     * Ordinals of the dependent theme variables, a parent goes before its children.
+     */
+    protected final int[] ordinals;
+    protected final int[] parentOrdinals;
+    protected final byte[] operations;
+    protected final int[] percents;
+
+    /**
+     * @param model    a theme model
+     * @param template a base theme mode or a template of the theme the generated templates inherit from
+     */
+    public ThemePaletteGenerator(ThemeModel model, Template template) {
+        this.model = model;
+        this.template = template;
+
+        List<ThemeVariable> themeVariables = model.getThemeVariables();
+        int[] parents = new int[themeVariables.size()];
+        Arrays.fill(parents, -1);
+        for (ThemeVariable themeVariable : themeVariables) {
+            ThemeVariableDetails details = themeVariable.getThemeVariableDetails(template);
+            if (details != null && details.getParentThemeVariable() != null) {
+                parents[themeVariable.getOrdinal()] = details.getParentThemeVariable().getOrdinal();
+            }
+        }
+
+        int[] order = new int[themeVariables.size()];
+        int size = 0;
+        // 0 - not visited, 1 - being visited, 2 - added
+        byte[] states = new byte[themeVariables.size()];
+        for (int ordinal = 0; ordinal < parents.length; ordinal++) {
+            size = addDependent(ordinal, parents, states, order, size);
+        }
+
+        ordinals = Arrays.copyOf(order, size);
+        parentOrdinals = new int[size];
+        operations = new byte[size];
+        percents = new int[size];
+        for (int i = 0; i < size; i++) {
+            ThemeVariableDetails details = model.getThemeVariable(ordinals[i]).getThemeVariableDetails(template);
+            parentOrdinals[i] = parents[ordinals[i]];
+
+            // the same rules as ThemeVariableDetails#deriveValue in packed colors
+            Integer percent = details.getColorModifierPercent();
+            if (percent != null) {
+                operations[i] = details.isDarkened() ? DARKEN : LIGHTEN;
+                percents[i] = percent;
+            } else {
+                operations[i] = details.isCommentDependence() ? COPY : VAR;
+            }
+        }
+    }
+
+    protected int addDependent(int ordinal, int[] parents, byte[] states, int[] order, int size) {
+        if (parents[ordinal] < 0 || states[ordinal] != 0) {
+            return size;
+        }
+
+        states[ordinal] = 1;
+        size = addDependent(parents[ordinal], parents, states, order, size);
+        states[ordinal] = 2;
+        order[size] = ordinal;
+        return size + 1;
+    }
+
+    /**
+     * @return the template the generated templates inherit from
+     */
+    public Template getTemplate() {
+        return template;
+    }
+
+    /**
+     * Generates the values of the root colors and of the theme variables derived from them.
+     *
+     * @param rootColors color values in the {@code #RRGGBB} or {@code transparent} format by theme variable name
+     * @return the generated values
+     * @throws IllegalArgumentException if a theme variable is not found or a value is not a color
+     */
+    public ThemeVariableOverrides generate(Map<String, String> rootColors) {
+        ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+        rootColors.forEach((name, value) -> {
+            ThemeVariable themeVariable = model.getThemeVariable(name);
+            if (themeVariable == null) {
+                throw new IllegalArgumentException("Theme variable is not found: " + name);
+            }
+
+            int color = ThemeVariableUtils.packColor(value);
+            if (color == ThemeVariableUtils.PACKED_UNDEFINED_COLOR && value != null && !value.startsWith("#")) {
+                color = ThemeVariableUtils.packColor("#" + value);
+            }
+            if (color == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+                throw new IllegalArgumentException("Invalid color of " + name + ": " + value);
+            }
+            overrides.putPacked(themeVariable.getOrdinal(), color);
+        });
+        return generate(overrides);
+    }
+
+    /**
+     * Generates the values of the root colors and of the theme variables derived from them.
+     * A root value that is not a packed color is copied, the theme variables depending on it are not derived.
+     *
+     * @param rootColors root values by ordinal
+     * @return the generated values
+     */
+    public ThemeVariableOverrides generate(ThemeVariableOverrides rootColors) {
+        BitSet roots = new BitSet(model.getThemeVariables().size());
+        rootColors.ordinals().forEach(roots::set);
+
+        ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+        overrides.putAll(rootColors);
+        overrides.putAll(derive(rootColors, roots));
+        return overrides;
+    }
+
+    /**
+     * Derives the theme variables that depend on changed colors, each from the value of its immediate parent
+     * in the dependency order. A fixed theme variable keeps its value and is not derived, so the theme variables
+     * that depend on it are derived only if it is changed.
+     *
+     * @param changedColors changed values by ordinal
+     * @param fixedOrdinals ordinals of the theme variables that are not derived, including the changed ones
+     * @return the derived values without the changed ones
+     */
+    public ThemeVariableOverrides derive(ThemeVariableOverrides changedColors, BitSet fixedOrdinals) {
+        int[] colors = new int[model.getThemeVariables().size()];
+        Arrays.fill(colors, ThemeVariableUtils.PACKED_UNDEFINED_COLOR);
+        changedColors.ordinals().forEach(ordinal -> colors[ordinal] = changedColors.getPacked(ordinal));
+
+        ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+        for (int i = 0; i < ordinals.length; i++) {
+            int ordinal = ordinals[i];
+            int parentColor = colors[parentOrdinals[i]];
+            if (fixedOrdinals.get(ordinal) || parentColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+                continue;
+            }
+
+            int color;
+            switch (operations[i]) {
+                case DARKEN:
+                    color = parentColor == ThemeVariableUtils.PACKED_TRANSPARENT_COLOR
+                            ? parentColor
+                            : ThemeVariableUtils.darken(parentColor, percents[i]);
+                    break;
+                case LIGHTEN:
+                    color = parentColor == ThemeVariableUtils.PACKED_TRANSPARENT_COLOR
+                            ? parentColor
+                            : ThemeVariableUtils.lighten(parentColor, percents[i]);
+                    break;
+                default:
+                    color = parentColor;
+            }
+
+            colors[ordinal] = color;
+            if (operations[i] != VAR) {
+                overrides.putPacked(ordinal, color);
+            }
+        }
+        return overrides;
+    }
+
+    /**
+     * Generates a color template from the root colors, see {@link #generate(Map)}.
+     *
+     * @param name       a template name
+     * @param rootColors color values in the {@code #RRGGBB} or {@code transparent} format by theme variable name
+     * @return the generated template
+     */
+    public CustomTemplate generateTemplate(String name, Map<String, String> rootColors) {
+        return new CustomTemplate(name, template, generate(rootColors));
+    }
+}
@@ -0,0 +1,315 @@
+package io.jmix.editor.helium.tools;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Values changed in an editor session and the operations on them that do not depend on the UI:
+ * <ul>
+ *     <li>the values changed by the user, see {@link #getUserValues()},</li>
+ *     <li>the values set by the current color template to the theme variables that are not changed by the user,
+ *     see {@link #getTemplateValues()},</li>
+ *     <li>the custom templates saved in the session and the active one, whose overrides are the values changed
+ *     by the user.</li>
+ * </ul>
+ * The owner shows the changed values and sends them to the client, e.g. the main screen.
+ */
+public class ThemeSessionValues {
+
+    protected final ThemeModel model;
+
+    protected ThemeVariableOverrides userValues = new ThemeVariableOverrides();
+    protected ThemeVariableOverrides templateValues = new ThemeVariableOverrides();
+
+    protected final List<CustomTemplate> customTemplates = new ArrayList<>();
+
+    /**
+     * The saved template being edited, {@code null} if a template of the theme is edited.
+     */
+    protected CustomTemplate activeCustomTemplate;
+
+    public ThemeSessionValues(ThemeModel model) {
+        this.model = model;
+    }
+
+    /**
+     * @return the values changed by the user, the overrides of the active custom template if there is one
+     */
+    public ThemeVariableOverrides getUserValues() {
+        return userValues;
+    }
+
+    /**
+     * @return the values set by the current color template to the theme variables not changed by the user
+     */
+    public ThemeVariableOverrides getTemplateValues() {
+        return templateValues;
+    }
+
+    /**
+     * @return color templates saved in the session
+     */
+    public List<CustomTemplate> getCustomTemplates() {
+        return customTemplates;
+    }
+
+    @Nullable
+    public CustomTemplate getActiveCustomTemplate() {
+        return activeCustomTemplate;
+    }
+
+    /**
+     * Sets a value changed by the user or by the color template.
+     *
+     * @param ordinal         a theme variable ordinal
+     * @param value           a value or {@code null} if the value is reset
+     * @param isBaseThemeMode {@code true} if the value is changed by the user
+     */
+    public void put(int ordinal, @Nullable String value, boolean isBaseThemeMode) {
+        if (value == null) {
+            userValues.remove(ordinal);
+            templateValues.remove(ordinal);
+        } else if (isBaseThemeMode) {
+            userValues.put(ordinal, value);
+            templateValues.remove(ordinal);
+        } else {
+            templateValues.put(ordinal, value);
+            userValues.remove(ordinal);
+        }
+    }
+
+    /**
+     * Removes all changed values. The overrides of the active custom template are removed too.
+     */
+    public void clear() {
+        userValues.clear();
+        templateValues.clear();
+    }
+
+    /**
+     * Replaces the changed values, e.g. by the values of a draft.
+     *
+     * @param userValues     the values changed by the user
+     * @param templateValues the values set by the color template
+     */
+    public void restore(ThemeVariableOverrides userValues, ThemeVariableOverrides templateValues) {
+        this.userValues = userValues;
+        this.templateValues = templateValues;
+    }
+
+    /**
+     * Returns the current packed color of a theme variable: changed by the user, set by the color template
+     * or declared by the template.
+     *
+     * @param ordinal        a theme variable ordinal
+     * @param templateColors the colors declared by the current template by ordinal,
+     *                       see {@link ThemeVariableSearchIndex#getTemplateColors(Template)}
+     * @return a packed color
+     */
+    public int getPacked(int ordinal, int[] templateColors) {
+        if (userValues.contains(ordinal)) {
+            return userValues.getPacked(ordinal);
+        }
+        return templateValues.contains(ordinal)
+                ? templateValues.getPacked(ordinal)
+                : templateColors[ordinal];
+    }
+
+    /**
+     * Saves the values changed by the user as a custom template inheriting from the given template and makes it
+     * active. The values changed in an unsaved custom template are moved to the new template, the values
+     * of a saved one are copied.
+     *
+     * @param name   a template name
+     * @param parent the current template
+     * @return the saved template
+     */
+    public CustomTemplate saveCustomTemplate(String name, Template parent) {
+        ThemeVariableOverrides overrides = userValues;
+        if (activeCustomTemplate != null) {
+            overrides = new ThemeVariableOverrides();
+            overrides.putAll(userValues);
+        }
+
+        CustomTemplate template = new CustomTemplate(name, parent, overrides);
+        customTemplates.add(template);
+        activeCustomTemplate = template;
+        userValues = overrides;
+        return template;
+    }
+
+    /**
+     * Switches to a saved custom template. The overrides of the template become the values changed by the user
+     * without copying. The owner switches to the parent template of the custom template before.
+     *
+     * @param template        a custom template
+     * @param currentTemplate the current template, the parent of the custom template
+     * @return the ordinals of the values changed in the previous or in the new template, their values
+     * in the template values are updated
+     */
+    public BitSet activateCustomTemplate(CustomTemplate template, Template currentTemplate) {
+        BitSet changedOrdinals = detachCustomTemplate();
+        template.getOverrides().ordinals().forEach(changedOrdinals::set);
+
+        activeCustomTemplate = template;
+        userValues = template.getOverrides();
+        updateTemplateValues(changedOrdinals, currentTemplate);
+        return changedOrdinals;
+    }
+
+    /**
+     * Stops using the overrides of the active custom template as the values changed by the user,
+     * the template keeps them. Without an active custom template the values changed by the user are removed.
+     *
+     * @return the ordinals of the removed values changed by the user
+     */
+    public BitSet detachCustomTemplate() {
+        BitSet ordinals = new BitSet();
+        userValues.ordinals().forEach(ordinals::set);
+
+        if (activeCustomTemplate != null) {
+            activeCustomTemplate = null;
+            userValues = new ThemeVariableOverrides();
+        } else {
+            userValues.clear();
+        }
+        return ordinals;
+    }
+
+    /**
+     * Updates the template values of theme variables whose values are changed by switching the values changed
+     * by the user. A value that is not changed by the user is taken from the current template, as on reset
+     * of a field.
+     *
+     * @param ordinals        the ordinals of theme variables
+     * @param currentTemplate the current template
+     */
+    public void updateTemplateValues(BitSet ordinals, Template currentTemplate) {
+        ordinals.stream().forEach(ordinal -> {
+            String colorTemplateValue = userValues.contains(ordinal)
+                    ? null
+                    : getColorTemplateValue(model.getThemeVariable(ordinal), currentTemplate);
+            if (colorTemplateValue != null) {
+                templateValues.put(ordinal, colorTemplateValue);
+            } else {
+                templateValues.remove(ordinal);
+            }
+        });
+    }
+
+    /**
+     * Undoes or redoes a step of the edit history. The step contains the dependent values too, so the values
+     * are put as they are, without deriving the dependent ones.
+     *
+     * @param editHistory the edit history of the session
+     * @param template    the index of the current template in the theme
+     * @param undo        {@code true} to undo the last step, {@code false} to redo the last undone step
+     * @return the ordinals of the changed values or {@code null} if there is no step to apply
+     */
+    @Nullable
+    public BitSet applyEditHistoryStep(ThemeEditHistory editHistory, int template, boolean undo) {
+        BitSet changedOrdinals = new BitSet();
+        ThemeEditHistory.EditConsumer consumer = (ordinal, isBaseThemeMode, value) -> {
+            ThemeVariableOverrides overrides = isBaseThemeMode
+                    ? userValues
+                    : templateValues;
+            if (value == null) {
+                overrides.remove(ordinal);
+            } else {
+                overrides.put(ordinal, value);
+            }
+            changedOrdinals.set(ordinal);
+        };
+
+        boolean applied = undo
+                ? editHistory.undo(template, consumer)
+                : editHistory.redo(template, consumer);
+        return applied ? changedOrdinals : null;
+    }
+
+    /**
+     * Transforms the current colors of the theme variables found by a search or of all theme variables.
+     * The colors are transformed as packed colors in one pass, the dependent theme variables that are not
+     * transformed themselves are derived in the dependency order, each from its immediate parent, see
+     * {@link ThemePaletteGenerator#derive(ThemeVariableOverrides, BitSet)}. The values are not changed.
+     *
+     * @param transform       a color transformation
+     * @param currentTemplate the current template
+     * @param searchResult    a search result or {@code null} to transform all theme variables
+     * @return the changed values, the transformed and the derived ones
+     */
+    public ThemeVariableOverrides transform(ThemeColorTransform transform, Template currentTemplate,
+                                            @Nullable ThemeVariableSearchIndex.Result searchResult) {
+        ThemeVariableOverrides changedValues = new ThemeVariableOverrides();
+        if (transform.isIdentity()) {
+            return changedValues;
+        }
+
+        List<ThemeVariable> themeVariables = model.getThemeVariables();
+        int[] templateColors = model.getSearchIndex().getTemplateColors(currentTemplate);
+
+        BitSet selectedOrdinals = new BitSet(themeVariables.size());
+        for (ThemeVariable themeVariable : themeVariables) {
+            int ordinal = themeVariable.getOrdinal();
+            if (searchResult == null || searchResult.matches(ordinal)) {
+                selectedOrdinals.set(ordinal);
+            }
+        }
+
+        int[] ordinals = selectedOrdinals.stream().toArray();
+        int[] colors = new int[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            colors[i] = getPacked(ordinals[i], templateColors);
+        }
+        int[] transformedColors = colors.clone();
+        transform.apply(transformedColors);
+
+        ThemeVariableOverrides changedColors = new ThemeVariableOverrides();
+        for (int i = 0; i < ordinals.length; i++) {
+            if (transformedColors[i] != colors[i]) {
+                changedColors.putPacked(ordinals[i], transformedColors[i]);
+            }
+        }
+        if (changedColors.isEmpty()) {
+            return changedValues;
+        }
+
+        // the dependent theme variables that are not transformed themselves follow their parents
+        changedValues.putAll(changedColors);
+        changedValues.putAll(model.getPaletteGenerator(currentTemplate).derive(changedColors, selectedOrdinals));
+        return changedValues;
+    }
+
+    /**
+     * Returns the value set by a template for a theme variable that is not changed by the user,
+     * the same as the value set on reset of a theme variable field.
+     *
+     * @param themeVariable   a theme variable
+     * @param currentTemplate the current template
+     * @return a color value or {@code null} if the value is taken from the base theme mode
+     */
+    @Nullable
+    public static String getColorTemplateValue(ThemeVariable themeVariable, Template currentTemplate) {
+        if (currentTemplate.getParent() == null
+                || !themeVariable.hasColorTemplate(currentTemplate)) {
+            return null;
+        }
+
+        ThemeVariableDetails details = themeVariable.getThemeVariableDetails(currentTemplate);
+        String value = details.getValue();
+        ThemeVariable parentThemeVariable = details.getParentThemeVariable();
+        if (parentThemeVariable != null
+                && !details.isCommentDependence()) {
+            ThemeVariableDetails parentDetails = parentThemeVariable.getThemeVariableDetails(currentTemplate);
+            if (parentDetails != null) {
+                value = parentDetails.getValue();
+            }
+        }
+
+        return ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(value)
+                ? value
+                : ThemeVariableUtils.getColorString(value);
+    }
+}
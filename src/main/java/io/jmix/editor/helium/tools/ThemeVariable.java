@@ -8,6 +8,7 @@ import java.util.Map;
  */
 public class ThemeVariable {
 
+    protected int ordinal = -1;
     protected String module;
     protected String name;
     protected boolean rgbUsed;
@@ -16,11 +17,22 @@ public class ThemeVariable {
     public ThemeVariable() {
     }
 
+    /**
+     * @return the position of the theme variable in the list of theme variables, or {@code -1} if it is not registered
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     public String getModule() {
         return module;
     }
 
-    public void setModule(String module) {
+    void setModule(String module) {
         this.module = module;
     }
 
@@ -28,7 +40,7 @@ public class ThemeVariable {
         return name;
     }
 
-    public void setName(String name) {
+    void setName(String name) {
         this.name = name;
     }
 
@@ -36,7 +48,7 @@ public class ThemeVariable {
         return rgbUsed;
     }
 
-    public void setRgbUsed(boolean rgbUsed) {
+    void setRgbUsed(boolean rgbUsed) {
         this.rgbUsed = rgbUsed;
     }
 
@@ -44,11 +56,11 @@ public class ThemeVariable {
         return detailsMap;
     }
 
-    public void setDetailsMap(Map<Template, ThemeVariableDetails> detailsMap) {
+    void setDetailsMap(Map<Template, ThemeVariableDetails> detailsMap) {
         this.detailsMap = detailsMap;
     }
 
-    public void setThemeVariableDetails(Template template, ThemeVariableDetails details) {
+    void setThemeVariableDetails(Template template, ThemeVariableDetails details) {
         if (template != null) {
             if (detailsMap.containsKey(template)) {
                 detailsMap.replace(template, details);
@@ -85,6 +97,38 @@ public class ThemeVariable {
                 .orElse(null);
     }
 
+    /**
+     * Creates a copy of the theme variable without details, see {@link #freeze(ThemeVariable, Map)}.
+     *
+     * @return a copy
+     */
+    protected ThemeVariable copy() {
+        ThemeVariable copy = new ThemeVariable();
+        copy.ordinal = ordinal;
+        copy.module = module;
+        copy.name = name;
+        copy.rgbUsed = rgbUsed;
+        return copy;
+    }
+
+    /**
+     * Sets the unmodifiable copies of the details of the source theme variable. Called on a copy when the theme
+     * variable is published in a {@link ThemeModel}, so the source can still be changed by the next parsing.
+     *
+     * @param source        the theme variable the copy is created from
+     * @param frozenParents the frozen copies by source theme variable, the parents in the details are replaced with them
+     */
+    protected void freeze(ThemeVariable source, Map<ThemeVariable, ThemeVariable> frozenParents) {
+        Map<Template, ThemeVariableDetails> frozenDetails = new HashMap<>(source.detailsMap.size() * 2);
+        source.detailsMap.forEach((template, details) -> {
+            ThemeVariable parent = details.getParentThemeVariable();
+            frozenDetails.put(template, details.copy(parent != null
+                    ? frozenParents.getOrDefault(parent, parent)
+                    : null));
+        });
+        detailsMap = Map.copyOf(frozenDetails);
+    }
+
     public boolean hasColorTemplate(Template template) {
         return detailsMap.keySet().stream()
                 .anyMatch(colorTemplate -> colorTemplate.equals(template));
@@ -1,5 +1,7 @@
 package io.jmix.editor.helium.tools;
 
+import javax.annotation.Nullable;
+
 /**
  * Theme variable details
  */
@@ -19,7 +21,7 @@ public class ThemeVariableDetails {
         return value;
     }
 
-    public void setValue(String value) {
+    void setValue(String value) {
         this.value = value;
     }
 
@@ -27,7 +29,7 @@ public class ThemeVariableDetails {
         return colorModifier;
     }
 
-    public void setColorModifier(String colorModifier) {
+    void setColorModifier(String colorModifier) {
         this.colorModifier = colorModifier;
     }
 
@@ -35,7 +37,7 @@ public class ThemeVariableDetails {
         return colorModifierValue;
     }
 
-    public void setColorModifierValue(String colorModifierValue) {
+    void setColorModifierValue(String colorModifierValue) {
         this.colorModifierValue = colorModifierValue;
     }
 
@@ -43,7 +45,7 @@ public class ThemeVariableDetails {
         return placeHolder;
     }
 
-    public void setPlaceHolder(String placeHolder) {
+    void setPlaceHolder(String placeHolder) {
         this.placeHolder = placeHolder;
     }
 
@@ -51,7 +53,7 @@ public class ThemeVariableDetails {
         return parentThemeVariable;
     }
 
-    public void setParentThemeVariable(ThemeVariable parentThemeVariable) {
+    void setParentThemeVariable(ThemeVariable parentThemeVariable) {
         this.parentThemeVariable = parentThemeVariable;
     }
 
@@ -59,7 +61,87 @@ public class ThemeVariableDetails {
         return commentDependence;
     }
 
-    public void setCommentDependence(boolean commentDependence) {
+    /**
+     * @return the percent of the color modifier, e.g. {@code 10} for {@code d10%}, or {@code null} if the value
+     * is not modified or the modifier is invalid
+     */
+    @Nullable
+    public Integer getColorModifierPercent() {
+        if (colorModifier == null || colorModifierValue == null) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(colorModifierValue.substring(0, colorModifierValue.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the value of the theme variable in a template. A value defined with {@code var()} is taken from
+     * the parent theme variable.
+     *
+     * @param template the template of the details
+     * @return a color value
+     */
+    public String getTemplateValue(Template template) {
+        if (parentThemeVariable != null && !commentDependence) {
+            ThemeVariableDetails parentDetails = parentThemeVariable.getThemeVariableDetails(template);
+            if (parentDetails != null) {
+                return parentDetails.getValue();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Derives the value of the theme variable from a new value of the parent theme variable. A theme variable
+     * annotated with a color modifier is darkened or lightened from the parent value, a theme variable annotated
+     * without a modifier copies it.
+     *
+     * @param parentValue a color value of the parent theme variable
+     * @return the derived value or {@code null} if the value follows the parent with {@code var()} in the browser
+     */
+    @Nullable
+    public String deriveValue(String parentValue) {
+        if ((colorModifier == null && commentDependence)
+                || ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(parentValue)) {
+            return parentValue;
+        }
+
+        Integer percent = getColorModifierPercent();
+        if (percent == null) {
+            return null;
+        }
+        return isDarkened()
+                ? ThemeVariableUtils.darken(parentValue, percent)
+                : ThemeVariableUtils.lighten(parentValue, percent);
+    }
+
+    /**
+     * @return whether the color modifier darkens the parent value
+     */
+    public boolean isDarkened() {
+        return "d".equals(colorModifier);
+    }
+
+    /**
+     * @param parentThemeVariable the parent theme variable of the copy
+     * @return a copy of the details with the given parent
+     */
+    protected ThemeVariableDetails copy(ThemeVariable parentThemeVariable) {
+        ThemeVariableDetails copy = new ThemeVariableDetails();
+        copy.value = value;
+        copy.colorModifier = colorModifier;
+        copy.colorModifierValue = colorModifierValue;
+        copy.placeHolder = placeHolder;
+        copy.parentThemeVariable = parentThemeVariable;
+        copy.commentDependence = commentDependence;
+        return copy;
+    }
+
+    void setCommentDependence(boolean commentDependence) {
         this.commentDependence = commentDependence;
     }
 }
@@ -0,0 +1,244 @@
+package io.jmix.editor.helium.tools;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Compact set of theme variable values overridden in a session.
+ * <p>
+ * Values are addressed by {@link ThemeVariable#getOrdinal()} and stored as packed colors,
+ * so the names and modules are not duplicated per session. {@code _rgb} companions are not
+ * stored, they are derived from the main value when needed.
+ */
+public class ThemeVariableOverrides {
+
+    protected static final int[] EMPTY_COLORS = new int[0];
+
+    protected BitSet ordinals = new BitSet();
+    protected int[] colors = EMPTY_COLORS;
+
+    /**
+     * Values that cannot be packed, created on demand.
+     */
+    protected Map<Integer, String> rawValues;
+
+    /**
+     * Sets the value of the theme variable with the given ordinal.
+     *
+     * @param ordinal a theme variable ordinal
+     * @param value   a color value
+     */
+    public void put(int ordinal, String value) {
+        int packedColor = ThemeVariableUtils.packColor(value);
+        if (packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+            if (rawValues == null) {
+                rawValues = new HashMap<>();
+            }
+            rawValues.put(ordinal, value);
+        } else if (rawValues != null) {
+            rawValues.remove(ordinal);
+        }
+
+        ensureCapacity(ordinal + 1);
+        colors[ordinal] = packedColor;
+        ordinals.set(ordinal);
+    }
+
+    /**
+     * Sets the packed value of the theme variable with the given ordinal.
+     *
+     * @param ordinal     a theme variable ordinal
+     * @param packedColor a packed color
+     */
+    public void putPacked(int ordinal, int packedColor) {
+        if (packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+            throw new IllegalArgumentException("Undefined packed color for ordinal " + ordinal);
+        }
+
+        if (rawValues != null) {
+            rawValues.remove(ordinal);
+        }
+
+        ensureCapacity(ordinal + 1);
+        colors[ordinal] = packedColor;
+        ordinals.set(ordinal);
+    }
+
+    /**
+     * Sets all values of the given overrides.
+     *
+     * @param overrides overrides to copy values from
+     */
+    public void putAll(ThemeVariableOverrides overrides) {
+        overrides.ordinals.stream().forEach(ordinal -> {
+            int packedColor = overrides.colors[ordinal];
+            if (packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+                put(ordinal, overrides.rawValues.get(ordinal));
+            } else {
+                putPacked(ordinal, packedColor);
+            }
+        });
+    }
+
+    /**
+     * @param ordinal a theme variable ordinal
+     * @return the value of the theme variable or {@code null} if it is not overridden
+     */
+    public String get(int ordinal) {
+        if (!ordinals.get(ordinal)) {
+            return null;
+        }
+
+        int packedColor = colors[ordinal];
+        return packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                ? rawValues.get(ordinal)
+                : ThemeVariableUtils.unpackColor(packedColor);
+    }
+
+    /**
+     * @param ordinal a theme variable ordinal
+     * @return the packed value of the theme variable or {@link ThemeVariableUtils#PACKED_UNDEFINED_COLOR}
+     */
+    public int getPacked(int ordinal) {
+        return ordinals.get(ordinal)
+                ? colors[ordinal]
+                : ThemeVariableUtils.PACKED_UNDEFINED_COLOR;
+    }
+
+    /**
+     * Removes the value of the theme variable with the given ordinal.
+     *
+     * @param ordinal a theme variable ordinal
+     * @return {@code true} if the value was overridden
+     */
+    public boolean remove(int ordinal) {
+        if (!ordinals.get(ordinal)) {
+            return false;
+        }
+
+        ordinals.clear(ordinal);
+        if (rawValues != null) {
+            rawValues.remove(ordinal);
+        }
+        return true;
+    }
+
+    /**
+     * @param ordinal   a theme variable ordinal
+     * @param overrides other overrides
+     * @return {@code true} if the theme variable has the same value in both overrides or is overridden in neither
+     */
+    public boolean hasSameValue(int ordinal, ThemeVariableOverrides overrides) {
+        if (contains(ordinal) != overrides.contains(ordinal)) {
+            return false;
+        }
+
+        int packedColor = getPacked(ordinal);
+        return packedColor == overrides.getPacked(ordinal)
+                && (packedColor != ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                || Objects.equals(get(ordinal), overrides.get(ordinal)));
+    }
+
+    public boolean contains(int ordinal) {
+        return ordinals.get(ordinal);
+    }
+
+    public boolean isEmpty() {
+        return ordinals.isEmpty();
+    }
+
+    public int size() {
+        return ordinals.cardinality();
+    }
+
+    public void clear() {
+        ordinals.clear();
+        colors = EMPTY_COLORS;
+        rawValues = null;
+    }
+
+    /**
+     * @return ordinals of the overridden theme variables in ascending order
+     */
+    public IntStream ordinals() {
+        return ordinals.stream();
+    }
+
+    /**
+     * Returns the approximate number of bytes retained by this object, assuming compressed oops.
+     *
+     * @return estimated size in bytes
+     */
+    public long estimateSize() {
+        long size = 16 + 16 + 16 + (long) colors.length * Integer.BYTES;
+        size += 24 + (long) ordinals.size() / Byte.SIZE;
+        if (rawValues != null) {
+            size += 48 + rawValues.size() * 32L;
+            for (String value : rawValues.values()) {
+                size += 40 + value.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Serializes the overrides: the number of values, then the ordinal and the packed color of each value.
+     * A value that cannot be packed is followed by the value itself.
+     *
+     * @return serialized overrides
+     * @see #fromByteArray(byte[])
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Integer.BYTES + size() * 2 * Integer.BYTES);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(size());
+            for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+                out.writeInt(ordinal);
+                out.writeInt(colors[ordinal]);
+                if (colors[ordinal] == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+                    out.writeUTF(rawValues.get(ordinal));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores overrides serialized by {@link #toByteArray()}.
+     *
+     * @param data serialized overrides
+     * @return the overrides
+     */
+    public static ThemeVariableOverrides fromByteArray(byte[] data) {
+        ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                int ordinal = in.readInt();
+                int packedColor = in.readInt();
+                if (packedColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR) {
+                    overrides.put(ordinal, in.readUTF());
+                } else {
+                    overrides.putPacked(ordinal, packedColor);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read theme variable overrides", e);
+        }
+        return overrides;
+    }
+
+    protected void ensureCapacity(int capacity) {
+        if (colors.length < capacity) {
+            int newLength = Math.max(capacity, Math.max(16, colors.length + (colors.length >> 1)));
+            colors = Arrays.copyOf(colors, newLength);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.jmix.editor.helium.tools;
+
+import java.io.*;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Difference between two {@link ThemeVariableOverrides}: the values that are set or changed and
+ * the ordinals of the values that are removed. A delta against empty overrides is a full snapshot.
+ */
+public class ThemeVariableOverridesDelta {
+
+    protected final ThemeVariableOverrides changed;
+    protected final BitSet removed;
+
+    public ThemeVariableOverridesDelta(ThemeVariableOverrides changed, BitSet removed) {
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    /**
+     * Computes the delta that turns the first overrides into the second ones.
+     *
+     * @param from initial overrides
+     * @param to   resulting overrides
+     * @return the delta
+     */
+    public static ThemeVariableOverridesDelta between(ThemeVariableOverrides from, ThemeVariableOverrides to) {
+        BitSet removed = new BitSet();
+        from.ordinals()
+                .filter(ordinal -> !to.contains(ordinal))
+                .forEach(removed::set);
+
+        ThemeVariableOverrides changed = new ThemeVariableOverrides();
+        to.ordinals()
+                .filter(ordinal -> !to.hasSameValue(ordinal, from))
+                .forEach(ordinal -> changed.put(ordinal, to.get(ordinal)));
+
+        return new ThemeVariableOverridesDelta(changed, removed);
+    }
+
+    /**
+     * Applies the delta to the given overrides.
+     *
+     * @param overrides overrides to be modified
+     */
+    public void apply(ThemeVariableOverrides overrides) {
+        removed.stream().forEach(overrides::remove);
+        overrides.putAll(changed);
+    }
+
+    public ThemeVariableOverrides getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return ordinals of the removed values in ascending order
+     */
+    public IntStream removedOrdinals() {
+        return removed.stream();
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Serializes the delta: the serialized changed values followed by the number of removed values
+     * and their ordinals.
+     *
+     * @return serialized delta
+     * @see #fromByteArray(byte[])
+     */
+    public byte[] toByteArray() {
+        byte[] changedBytes = changed.toByteArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                changedBytes.length + (2 + removed.cardinality()) * Integer.BYTES);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(changedBytes.length);
+            out.write(changedBytes);
+            out.writeInt(removed.cardinality());
+            for (int ordinal = removed.nextSetBit(0); ordinal >= 0; ordinal = removed.nextSetBit(ordinal + 1)) {
+                out.writeInt(ordinal);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores a delta serialized by {@link #toByteArray()}.
+     *
+     * @param data serialized delta
+     * @return the delta
+     */
+    public static ThemeVariableOverridesDelta fromByteArray(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte[] changedBytes = new byte[in.readInt()];
+            in.readFully(changedBytes);
+
+            BitSet removed = new BitSet();
+            int removedCount = in.readInt();
+            for (int i = 0; i < removedCount; i++) {
+                removed.set(in.readInt());
+            }
+            return new ThemeVariableOverridesDelta(ThemeVariableOverrides.fromByteArray(changedBytes), removed);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read theme variable overrides delta", e);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package io.jmix.editor.helium.tools;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Search index over the theme variables of a {@link ThemeModel}.
+ * <p>
+ * Each theme variable is indexed by a lower case text made of its name, its module and the names of its parent
+ * theme variables in all templates, so searching for a theme variable also finds the theme variables derived
+ * from it. Queries of {@link #NGRAM_LENGTH} or more characters are looked up in a trigram index and match
+ * any part of the text, shorter queries are looked up in a sorted term index and match the beginning of
+ * a name part, e.g. {@code pr} finds {@code --primary-color} and {@code --button-primary-color}.
+ * <p>
+ * Queries starting with {@code #} match the current values: a full {@code #RRGGBB} color finds the values
+ * within {@link #COLOR_DISTANCE} of it, a shorter query finds the values starting with it. The template values
+ * are packed once per template, the values overridden in a session are passed with the query.
+ * <p>
+ * The index is immutable and is shared by all sessions that use the model.
+ */
+public class ThemeVariableSearchIndex {
+
+    public static final int NGRAM_LENGTH = 3;
+
+    /**
+     * The maximum Euclidean distance in the RGB space between a color query and a matching value.
+     */
+    public static final int COLOR_DISTANCE = 32;
+
+    protected static final int[] NO_ORDINALS = new int[0];
+
+    protected final ThemeModel model;
+
+    /**
+     * Indexed texts by ordinal.
+     */
+    protected final String[] texts;
+    protected final Map<String, int[]> ordinalsByNgram;
+
+    /**
+     * Name parts in ascending order and the ordinals of their theme variables.
+     */
+    protected final String[] terms;
+    protected final int[] termOrdinals;
+
+    protected final Map<String, int[]> templateColors = new ConcurrentHashMap<>();
+
+    public ThemeVariableSearchIndex(ThemeModel model) {
+        this.model = model;
+
+        List<ThemeVariable> themeVariables = model.getThemeVariables();
+        texts = new String[themeVariables.size()];
+        Map<String, BitSet> ngrams = new HashMap<>();
+        List<Map.Entry<String, Integer>> termEntries = new ArrayList<>();
+
+        for (ThemeVariable themeVariable : themeVariables) {
+            int ordinal = themeVariable.getOrdinal();
+            String name = stripPrefix(themeVariable.getName().toLowerCase());
+
+            StringBuilder text = new StringBuilder(name)
+                    .append(' ')
+                    .append(themeVariable.getModule().toLowerCase());
+            Set<String> parents = new TreeSet<>();
+            for (ThemeVariableDetails details : themeVariable.getDetailsMap().values()) {
+                if (details.getParentThemeVariable() != null) {
+                    parents.add(stripPrefix(details.getParentThemeVariable().getName().toLowerCase()));
+                }
+            }
+            parents.forEach(parent -> text.append(' ').append(parent));
+            texts[ordinal] = text.toString();
+
+            for (int i = 0; i + NGRAM_LENGTH <= texts[ordinal].length(); i++) {
+                ngrams.computeIfAbsent(texts[ordinal].substring(i, i + NGRAM_LENGTH), key -> new BitSet())
+                        .set(ordinal);
+            }
+
+            termEntries.add(new AbstractMap.SimpleEntry<>(name, ordinal));
+            termEntries.add(new AbstractMap.SimpleEntry<>(themeVariable.getModule().toLowerCase(), ordinal));
+            int dash = name.indexOf('-');
+            while (dash >= 0) {
+                termEntries.add(new AbstractMap.SimpleEntry<>(name.substring(dash + 1), ordinal));
+                dash = name.indexOf('-', dash + 1);
+            }
+        }
+
+        ordinalsByNgram = new HashMap<>(ngrams.size() * 2);
+        ngrams.forEach((ngram, ordinals) -> ordinalsByNgram.put(ngram, ordinals.stream().toArray()));
+
+        termEntries.sort(Map.Entry.comparingByKey());
+        terms = new String[termEntries.size()];
+        termOrdinals = new int[termEntries.size()];
+        for (int i = 0; i < termEntries.size(); i++) {
+            terms[i] = termEntries.get(i).getKey();
+            termOrdinals[i] = termEntries.get(i).getValue();
+        }
+    }
+
+    /**
+     * Finds the theme variables matching a query.
+     *
+     * @param query     a query typed by the user
+     * @param template  the current template
+     * @param overrides the values overridden in the session, the first overrides containing a theme
+     *                  variable take precedence
+     * @param previous  the result of the previous query or {@code null}; if the new query extends
+     *                  the previous text query, only the previous matches are checked
+     * @return matching theme variables or {@code null} if the query is blank
+     */
+    @Nullable
+    public Result search(String query, Template template, List<ThemeVariableOverrides> overrides,
+                         @Nullable Result previous) {
+        String text = query.trim().toLowerCase();
+        if (text.isEmpty()) {
+            return null;
+        }
+
+        if (text.charAt(0) == '#') {
+            return new Result(text, searchColor(text, template, overrides));
+        }
+
+        text = stripPrefix(text);
+        if (text.length() < NGRAM_LENGTH) {
+            return new Result(text, searchTerms(text));
+        }
+
+        if (previous != null
+                && previous.query.length() >= NGRAM_LENGTH
+                && previous.query.charAt(0) != '#'
+                && text.startsWith(previous.query)) {
+            return new Result(text, filterTexts(text, previous.ordinals));
+        }
+        return new Result(text, searchNgrams(text));
+    }
+
+    protected BitSet searchTerms(String prefix) {
+        BitSet ordinals = new BitSet(texts.length);
+        int index = Arrays.binarySearch(terms, prefix);
+        for (int i = index >= 0 ? index : -index - 1; i < terms.length && terms[i].startsWith(prefix); i++) {
+            ordinals.set(termOrdinals[i]);
+        }
+        return ordinals;
+    }
+
+    protected BitSet searchNgrams(String text) {
+        // start with the rarest trigram, the matches of the other trigrams are verified on the text
+        int[] candidates = null;
+        for (int i = 0; i + NGRAM_LENGTH <= text.length(); i++) {
+            int[] ordinals = ordinalsByNgram.getOrDefault(text.substring(i, i + NGRAM_LENGTH), NO_ORDINALS);
+            if (candidates == null || ordinals.length < candidates.length) {
+                candidates = ordinals;
+            }
+        }
+
+        BitSet ordinals = new BitSet(texts.length);
+        for (int ordinal : candidates) {
+            if (texts[ordinal].contains(text)) {
+                ordinals.set(ordinal);
+            }
+        }
+        return ordinals;
+    }
+
+    protected BitSet filterTexts(String text, BitSet candidates) {
+        BitSet ordinals = new BitSet(texts.length);
+        candidates.stream()
+                .filter(ordinal -> texts[ordinal].contains(text))
+                .forEach(ordinals::set);
+        return ordinals;
+    }
+
+    protected BitSet searchColor(String query, Template template, List<ThemeVariableOverrides> overrides) {
+        int[] colors = getTemplateColors(template);
+        BitSet ordinals = new BitSet(texts.length);
+
+        int queryColor = ThemeVariableUtils.packColor(query);
+        String hexDigits = query.substring(1);
+        boolean prefixQuery = queryColor == ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                || queryColor == ThemeVariableUtils.PACKED_TRANSPARENT_COLOR;
+        if (prefixQuery && (hexDigits.length() > 6 || !hexDigits.chars().allMatch(c -> Character.digit(c, 16) >= 0))) {
+            return ordinals;
+        }
+        int prefixShift = (6 - hexDigits.length()) * 4;
+        int prefix = hexDigits.isEmpty() ? 0 : Integer.parseInt(hexDigits, 16);
+
+        for (int ordinal = 0; ordinal < colors.length; ordinal++) {
+            int color = colors[ordinal];
+            for (ThemeVariableOverrides values : overrides) {
+                if (values.contains(ordinal)) {
+                    color = values.getPacked(ordinal);
+                    break;
+                }
+            }
+
+            if (color == ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+                    || color == ThemeVariableUtils.PACKED_TRANSPARENT_COLOR) {
+                continue;
+            }
+
+            boolean matches = prefixQuery
+                    ? color >>> prefixShift == prefix
+                    : getColorDistanceSquared(color, queryColor) <= COLOR_DISTANCE * COLOR_DISTANCE;
+            if (matches) {
+                ordinals.set(ordinal);
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * Returns the packed values of the theme variables in a template, a value defined with {@code var()}
+     * is taken from the parent theme variable.
+     *
+     * @param template a template
+     * @return packed colors by ordinal, the array is shared and must not be modified
+     */
+    public int[] getTemplateColors(Template template) {
+        return templateColors.computeIfAbsent(template.getName(), name -> {
+            int[] colors = new int[texts.length];
+            for (ThemeVariable themeVariable : model.getThemeVariables()) {
+                ThemeVariableDetails details = themeVariable.getThemeVariableDetails(template);
+                String value = null;
+                if (details != null) {
+                    value = details.getValue();
+                    ThemeVariable parentThemeVariable = details.getParentThemeVariable();
+                    if (parentThemeVariable != null && !details.isCommentDependence()) {
+                        ThemeVariableDetails parentDetails = parentThemeVariable.getThemeVariableDetails(template);
+                        if (parentDetails != null) {
+                            value = parentDetails.getValue();
+                        }
+                    }
+                }
+                colors[themeVariable.getOrdinal()] = value != null
+                        ? ThemeVariableUtils.packColor(value)
+                        : ThemeVariableUtils.PACKED_UNDEFINED_COLOR;
+            }
+            return colors;
+        });
+    }
+
+    protected static int getColorDistanceSquared(int color, int otherColor) {
+        int red = ((color >> 16) & 0xFF) - ((otherColor >> 16) & 0xFF);
+        int green = ((color >> 8) & 0xFF) - ((otherColor >> 8) & 0xFF);
+        int blue = (color & 0xFF) - (otherColor & 0xFF);
+        return red * red + green * green + blue * blue;
+    }
+
+    protected static String stripPrefix(String name) {
+        return name.startsWith("--") ? name.substring(2) : name;
+    }
+
+    /**
+     * Theme variables matching a query.
+     */
+    public static class Result {
+
+        protected final String query;
+        protected final BitSet ordinals;
+
+        public Result(String query, BitSet ordinals) {
+            this.query = query;
+            this.ordinals = ordinals;
+        }
+
+        /**
+         * @return the normalized query
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        public boolean matches(int ordinal) {
+            return ordinals.get(ordinal);
+        }
+
+        public int size() {
+            return ordinals.cardinality();
+        }
+    }
+}
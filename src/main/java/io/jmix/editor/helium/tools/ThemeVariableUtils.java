@@ -11,6 +11,16 @@ import java.util.regex.Pattern;
  */
 public class ThemeVariableUtils {
 
+    /**
+     * Packed value of the {@code transparent} color. Lies outside the 24-bit RGB range.
+     */
+    public static final int PACKED_TRANSPARENT_COLOR = 0x1000000;
+
+    /**
+     * Returned by {@link #packColor(String)} if the value cannot be packed.
+     */
+    public static final int PACKED_UNDEFINED_COLOR = -1;
+
     /**
      * HEX color regexp. Intended to match the HEX color value.
      * <p>
@@ -33,11 +43,117 @@ public class ThemeVariableUtils {
      * @return the hsl color value
      */
     public static int[] calculateHslFromColor(Color color) {
-        int[] hsl = new int[3];
+        return calculateHsl(color.getRed(), color.getGreen(), color.getBlue(), new int[3]);
+    }
+
+    /**
+     * Calculates the hsl color value from a color packed by {@link #packColor(String)}, the same as
+     * {@link #calculateHslFromColor(Color)}.
+     *
+     * @param packedColor a packed RGB color
+     * @param hsl         an array the hsl color value is stored to
+     * @return the hsl color value
+     */
+    public static int[] calculateHslFromPackedColor(int packedColor, int[] hsl) {
+        return calculateHsl((packedColor >> 16) & 0xFF, (packedColor >> 8) & 0xFF, packedColor & 0xFF, hsl);
+    }
+
+    /**
+     * Converts the hsl color value to a packed RGB color, see {@link #packColor(String)}.
+     *
+     * @param hsl the hsl color value
+     * @return the packed color
+     */
+    public static int packHsl(int[] hsl) {
+        return Color.HSLtoRGB(hsl[0], hsl[1], hsl[2]) & 0xFFFFFF;
+    }
+
+    /**
+     * Calculates the hsl color value of a packed color without rounding the components: the hue in degrees
+     * from 0 to 360, the saturation and the lightness from 0 to 1. Unlike
+     * {@link #calculateHslFromPackedColor(int, int[])}, the color is restored exactly by {@link #packHsl(double[])}.
+     *
+     * @param packedColor a packed RGB color
+     * @param hsl         an array the hsl color value is stored to
+     * @return the hsl color value
+     */
+    public static double[] calculateHslFromPackedColor(int packedColor, double[] hsl) {
+        double r = ((packedColor >> 16) & 0xFF) / 255d;
+        double g = ((packedColor >> 8) & 0xFF) / 255d;
+        double b = (packedColor & 0xFF) / 255d;
+
+        double max = Math.max(Math.max(r, g), b);
+        double min = Math.min(Math.min(r, g), b);
+        double d = max - min;
+
+        double h = 0, s = 0;
+        double l = (max + min) / 2;
+        if (d > 0) {
+            s = l > 0.5 ? d / (2 - max - min) : d / (max + min);
+            if (max == r) {
+                h = (g - b) / d + (g < b ? 6 : 0);
+            } else if (max == g) {
+                h = (b - r) / d + 2;
+            } else {
+                h = (r - g) / d + 4;
+            }
+            h *= 60;
+        }
+
+        hsl[0] = h;
+        hsl[1] = s;
+        hsl[2] = l;
+        return hsl;
+    }
+
+    /**
+     * Converts the hsl color value calculated by {@link #calculateHslFromPackedColor(int, double[])}
+     * to a packed RGB color.
+     *
+     * @param hsl the hsl color value
+     * @return the packed color
+     */
+    public static int packHsl(double[] hsl) {
+        double h = hsl[0] / 360;
+        double s = hsl[1];
+        double l = hsl[2];
+        if (s == 0) {
+            int component = toComponent(l);
+            return component << 16 | component << 8 | component;
+        }
+
+        double q = l < 0.5 ? l * (1 + s) : l + s - l * s;
+        double p = 2 * l - q;
+        return toComponent(hueToRgb(p, q, h + 1d / 3)) << 16
+                | toComponent(hueToRgb(p, q, h)) << 8
+                | toComponent(hueToRgb(p, q, h - 1d / 3));
+    }
+
+    protected static double hueToRgb(double p, double q, double t) {
+        if (t < 0) {
+            t += 1;
+        } else if (t > 1) {
+            t -= 1;
+        }
+
+        if (t < 1d / 6) {
+            return p + (q - p) * 6 * t;
+        } else if (t < 1d / 2) {
+            return q;
+        } else if (t < 2d / 3) {
+            return p + (q - p) * (2d / 3 - t) * 6;
+        }
+        return p;
+    }
 
-        float r = color.getRed() / 255f;
-        float g = color.getGreen() / 255f;
-        float b = color.getBlue() / 255f;
+    protected static int toComponent(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value * 255)));
+    }
+
+    protected static int[] calculateHsl(int red, int green, int blue, int[] hsl) {
+        float r = red / 255f;
+        float g = green / 255f;
+        float b = blue / 255f;
 
         float max = Math.max(Math.max(r, g), b);
         float min = Math.min(Math.min(r, g), b);
@@ -93,6 +209,20 @@ public class ThemeVariableUtils {
         return new Color(rgb).getCSS().toUpperCase();
     }
 
+    /**
+     * Returns the packed color darker than given packed color by given percentage,
+     * the same as {@link #darken(String, int)}.
+     *
+     * @param packedColor a packed RGB color
+     * @param percent     percentage
+     * @return a computed packed color
+     */
+    public static int darken(int packedColor, int percent) {
+        int[] hsl = calculateHslFromPackedColor(packedColor, new int[3]);
+        hsl[2] = (int) (hsl[2] * (1 - percent * 0.01));
+        return packHsl(hsl);
+    }
+
     /**
      * Returns the color value in hex format lighter than given color value by given percentage.
      *
@@ -108,6 +238,20 @@ public class ThemeVariableUtils {
         return new Color(rgb).getCSS().toUpperCase();
     }
 
+    /**
+     * Returns the packed color lighter than given packed color by given percentage,
+     * the same as {@link #lighten(String, int)}.
+     *
+     * @param packedColor a packed RGB color
+     * @param percent     percentage
+     * @return a computed packed color
+     */
+    public static int lighten(int packedColor, int percent) {
+        int[] hsl = calculateHslFromPackedColor(packedColor, new int[3]);
+        hsl[2] = (int) (hsl[2] + (100 - hsl[2]) * percent * 0.01);
+        return packHsl(hsl);
+    }
+
     /**
      * Adds "#" character if necessary and then checks that the value is in the hex format.
      *
@@ -152,4 +296,58 @@ public class ThemeVariableUtils {
             return null;
         }
     }
+
+    /**
+     * Packs a color value in the {@code #RRGGBB} or {@code transparent} format into an int.
+     *
+     * @param value a color value
+     * @return the packed color or {@link #PACKED_UNDEFINED_COLOR} if the value has another format
+     */
+    public static int packColor(String value) {
+        if (value == null) {
+            return PACKED_UNDEFINED_COLOR;
+        }
+
+        if (ThemeVariablesManager.TRANSPARENT_COLOR_VALUE.equals(value)) {
+            return PACKED_TRANSPARENT_COLOR;
+        }
+
+        if (value.length() != 7 || value.charAt(0) != '#') {
+            return PACKED_UNDEFINED_COLOR;
+        }
+
+        int packed = 0;
+        for (int i = 1; i < 7; i++) {
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) {
+                return PACKED_UNDEFINED_COLOR;
+            }
+            packed = (packed << 4) | digit;
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a color value packed by {@link #packColor(String)}.
+     *
+     * @param packedColor a packed color
+     * @return the color value in the upper case {@code #RRGGBB} format or {@code transparent}
+     */
+    public static String unpackColor(int packedColor) {
+        if (packedColor == PACKED_TRANSPARENT_COLOR) {
+            return ThemeVariablesManager.TRANSPARENT_COLOR_VALUE;
+        }
+
+        if (packedColor == PACKED_UNDEFINED_COLOR) {
+            return null;
+        }
+
+        char[] chars = new char[7];
+        chars[0] = '#';
+        for (int i = 6; i > 0; i--) {
+            chars[i] = Character.toUpperCase(Character.forDigit(packedColor & 0xF, 16));
+            packedColor >>>= 4;
+        }
+        return new String(chars);
+    }
 }
@@ -1,6 +1,8 @@
 package io.jmix.editor.helium.tools;
 
 import io.jmix.editor.helium.HeliumEditorProperties;
+import io.jmix.editor.helium.jfr.ThemeParseEvent;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,12 +12,16 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -92,6 +98,25 @@ public class ThemeVariablesManager implements ApplicationContextAware {
      */
     protected static final Pattern COLOR_TEMPLATE_PATTERN = Pattern.compile("(?<=\\.helium\\.)(\\w*)\\.(\\w*)(?=\\s\\{)");
 
+    /**
+     * Base theme mode block regexp of downloaded themes. Intended to match the base theme mode of a block
+     * generated by {@link ThemeExportUtils#generateText(String, boolean, List)}.
+     * <p>
+     * Example:
+     * <pre>{@code
+     *      .dark {
+     * }</pre>
+     * <ul>
+     *     <li>{@code dark} - a base theme mode</li>
+     * </ul>
+     */
+    protected static final Pattern EXPORTED_BASE_THEME_MODE_PATTERN = Pattern.compile("^\\h*\\.(\\w+)(?=\\s\\{)");
+
+    /**
+     * Block end regexp. Intended to match a line closing a block.
+     */
+    protected static final Pattern BLOCK_END_PATTERN = Pattern.compile("^\\h*}");
+
     /**
      * The index of a base theme mode in {@code COLOR_TEMPLATE_PATTERN} pattern.
      */
@@ -199,15 +224,27 @@ public class ThemeVariablesManager implements ApplicationContextAware {
 
     @Autowired
     protected HeliumEditorProperties heliumEditorProperties;
+    @Autowired
+    protected EditorMetrics editorMetrics;
     protected ApplicationContext applicationContext;
 
     /**
-     * The list of theme variables.
+     * The published snapshot of theme variables and templates, read without locking.
+     */
+    protected volatile ThemeModel model = ThemeModel.EMPTY;
+
+    /**
+     * The list of theme variables being parsed. Only accessed by the writer holding the manager lock.
      */
     protected List<ThemeVariable> themeVariables = new ArrayList<>();
 
     /**
-     * The list of color templates.
+     * Theme variables being parsed by name.
+     */
+    protected Map<String, ThemeVariable> themeVariablesByName = new HashMap<>();
+
+    /**
+     * The list of color templates being parsed.
      */
     protected List<Template> templates = new ArrayList<>();
 
@@ -218,8 +255,22 @@ public class ThemeVariablesManager implements ApplicationContextAware {
 
     @PostConstruct
     public void init() {
+        reload();
+    }
+
+    /**
+     * Parses the theme files into new theme variables and templates and publishes them as a new
+     * {@link ThemeModel}. Sessions opened before keep reading the previous snapshot.
+     */
+    public synchronized void reload() {
+        themeVariables = new ArrayList<>();
+        themeVariablesByName = new HashMap<>();
+        templates = new ArrayList<>();
+        lightTemplate = new Template(Templates.LIGHT);
+
         initColorTemplates();
         initThemeVariables();
+        publish();
     }
 
     @Override
@@ -228,17 +279,37 @@ public class ThemeVariablesManager implements ApplicationContextAware {
     }
 
     /**
-     * @return the list of theme variables
+     * Returns the current snapshot. Sessions should keep the returned snapshot rather than read
+     * the manager each time, so that they see consistent theme variables and templates.
+     *
+     * @return the current theme model
+     */
+    public ThemeModel getModel() {
+        return model;
+    }
+
+    /**
+     * @return the unmodifiable list of theme variables of the current snapshot
      */
     public List<ThemeVariable> getThemeVariables() {
-        return themeVariables;
+        return model.getThemeVariables();
     }
 
     /**
-     * @return the list of color templates
+     * Returns the theme variable of the current snapshot by its ordinal.
+     *
+     * @param ordinal a theme variable ordinal
+     * @return a theme variable
+     */
+    public ThemeVariable getThemeVariable(int ordinal) {
+        return model.getThemeVariable(ordinal);
+    }
+
+    /**
+     * @return the unmodifiable list of color templates of the current snapshot
      */
     public List<Template> getTemplates() {
-        return templates;
+        return model.getTemplates();
     }
 
     /**
@@ -248,50 +319,252 @@ public class ThemeVariablesManager implements ApplicationContextAware {
      * @return a list of uploaded theme variable details
      */
     public List<ModifiedThemeVariableDetails> parseUploadedThemeVariables(BufferedReader reader) {
+        Timer.Sample sample = startMetricsSample();
+        ThemeModel model = this.model;
         List<ModifiedThemeVariableDetails> uploadedThemeVariables = new ArrayList<>();
 
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ModifiedThemeVariableDetails uploadedDetails = parseUploadedThemeVariable(model, line);
+                if (uploadedDetails != null) {
+                    ModifiedThemeVariableDetails details = getThemeVariableDetailsFromDetailsList(uploadedThemeVariables, uploadedDetails.getName());
+                    if (details == null) {
+                        uploadedThemeVariables.add(uploadedDetails);
+                    } else {
+                        details.setParentVariableName(uploadedDetails.getParentVariableName());
+                        details.setValue(uploadedDetails.getValue());
+                    }
+                }
+            }
+        } catch (
+                IOException e) {
+            log.error("Error parsing file with uploaded theme variables", e);
+        }
+
+        recordParse(sample, EditorMetrics.PARSE_SOURCE_UPLOAD, uploadedThemeVariables.size());
+        return uploadedThemeVariables;
+    }
+
+    /**
+     * Parses uploaded theme variable details grouped by the blocks they are declared in, in one pass over
+     * the reader. The declarations inside a {@code .helium.<mode>.<template> {} } block belong to the template,
+     * the declarations inside a {@code &.<mode> {} } or {@code .<mode> {} } block belong to the base theme mode
+     * and the other declarations belong to no base theme mode. Blocks of unknown base theme modes are ignored.
+     *
+     * @param reader reader
+     * @return uploaded templates in the order of their first blocks, each template is returned once
+     */
+    public List<UploadedTemplate> parseUploadedTemplates(BufferedReader reader) {
+        Timer.Sample sample = startMetricsSample();
+        ThemeModel model = this.model;
+        Map<String, UploadedTemplate> uploadedTemplates = new LinkedHashMap<>();
+        Map<UploadedTemplate, Map<String, ModifiedThemeVariableDetails>> uploadedThemeVariables = new HashMap<>();
+        int count = 0;
+
         try {
             String line;
             Matcher matcher;
+            UploadedTemplate uploadedTemplate = null;
+            boolean ignoredBlock = false;
 
             while ((line = reader.readLine()) != null) {
-                matcher = THEME_VARIABLE_PATTERN.matcher(line);
+                // a selector of an unknown base theme mode starts an ignored block,
+                // except the export selector that also matches wrappers such as .helium
+                boolean blockStart = false;
+                Template baseThemeMode = null;
+                String templateName = null;
+
+                matcher = COLOR_TEMPLATE_PATTERN.matcher(line);
                 if (matcher.find()) {
-                    String name = matcher.group(NAME_GROUP);
-                    String value = matcher.group(VALUE_GROUP);
-                    String parentVariableName = null;
-
-                    if (getThemeVariableByName(name) != null
-                            || (name.endsWith(RGB_POSTFIX)
-                            && getThemeVariableByName(name.substring(0, name.lastIndexOf(RGB_POSTFIX))) != null)) {
-                        ThemeVariable parentThemeVariable = loadParentThemeVariable(value);
-                        if (parentThemeVariable != null) {
-                            parentVariableName = parentThemeVariable.getName();
+                    blockStart = true;
+                    baseThemeMode = getBaseThemeMode(model, matcher.group(BASE_THEME_MODE_GROUP));
+                    templateName = matcher.group(COLOR_TEMPLATE_GROUP);
+                } else {
+                    matcher = BASE_THEME_MODE_PATTERN.matcher(line);
+                    if (matcher.find()) {
+                        blockStart = true;
+                        baseThemeMode = getBaseThemeMode(model, matcher.group());
+                    } else {
+                        matcher = EXPORTED_BASE_THEME_MODE_PATTERN.matcher(line);
+                        if (matcher.find()) {
+                            baseThemeMode = getBaseThemeMode(model, matcher.group(1));
+                            blockStart = baseThemeMode != null;
                         }
+                    }
+                }
 
-                        if (HEX_PATTERN.matcher(value).find()
-                                || RGB_PATTERN.matcher(value).find()
-                                || TRANSPARENT_COLOR_VALUE.equals(value)
-                                || parentThemeVariable != null) {
-                            ModifiedThemeVariableDetails details = getThemeVariableDetailsFromDetailsList(uploadedThemeVariables, name);
-                            if (details == null) {
-                                details = new ModifiedThemeVariableDetails();
-                                uploadedThemeVariables.add(details);
-                            }
+                if (blockStart) {
+                    ignoredBlock = baseThemeMode == null;
+                    if (baseThemeMode != null) {
+                        Template parent = baseThemeMode;
+                        String name = templateName;
+                        uploadedTemplate = uploadedTemplates.computeIfAbsent(parent.getName() + "." + name,
+                                key -> new UploadedTemplate(parent, name, getTemplate(model, parent, name), new ArrayList<>()));
+                    }
+                    continue;
+                }
 
-                            details.setName(name);
-                            details.setParentVariableName(parentVariableName);
-                            details.setValue(value);
-                        }
+                if (BLOCK_END_PATTERN.matcher(line).find()) {
+                    uploadedTemplate = null;
+                    ignoredBlock = false;
+                    continue;
+                }
+
+                ModifiedThemeVariableDetails details = ignoredBlock
+                        ? null
+                        : parseUploadedThemeVariable(model, line);
+                if (details != null) {
+                    if (uploadedTemplate == null) {
+                        uploadedTemplate = uploadedTemplates.computeIfAbsent("",
+                                key -> new UploadedTemplate(null, null, null, new ArrayList<>()));
+                    }
+
+                    Map<String, ModifiedThemeVariableDetails> declaredThemeVariables =
+                            uploadedThemeVariables.computeIfAbsent(uploadedTemplate, key -> new HashMap<>());
+                    ModifiedThemeVariableDetails previousDetails = declaredThemeVariables.get(details.getName());
+                    if (previousDetails != null) {
+                        previousDetails.setParentVariableName(details.getParentVariableName());
+                        previousDetails.setValue(details.getValue());
+                    } else {
+                        declaredThemeVariables.put(details.getName(), details);
+                        uploadedTemplate.getThemeVariables().add(details);
+                        count++;
                     }
                 }
             }
-        } catch (
-                IOException e) {
+        } catch (IOException e) {
             log.error("Error parsing file with uploaded theme variables", e);
         }
 
-        return uploadedThemeVariables;
+        recordParse(sample, EditorMetrics.PARSE_SOURCE_UPLOAD, count);
+
+        List<UploadedTemplate> result = new ArrayList<>();
+        uploadedTemplates.values().stream()
+                .filter(template -> !template.getThemeVariables().isEmpty())
+                .forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Parses an uploaded theme variable declaration of a theme variable of the model.
+     *
+     * @param model a theme model
+     * @param line  a line of an uploaded theme
+     * @return theme variable details or {@code null} if the line declares no known theme variable with a color value
+     */
+    @Nullable
+    protected ModifiedThemeVariableDetails parseUploadedThemeVariable(ThemeModel model, String line) {
+        Matcher matcher = THEME_VARIABLE_PATTERN.matcher(line);
+        if (!matcher.find()) {
+            return null;
+        }
+
+        String name = matcher.group(NAME_GROUP);
+        String value = matcher.group(VALUE_GROUP);
+        if (value == null
+                || (model.getThemeVariable(name) == null
+                && !(name.endsWith(RGB_POSTFIX)
+                && model.getThemeVariable(name.substring(0, name.lastIndexOf(RGB_POSTFIX))) != null))) {
+            return null;
+        }
+
+        String parentThemeVariableName = getParentThemeVariableName(value);
+        ThemeVariable parentThemeVariable = parentThemeVariableName != null
+                ? model.getThemeVariable(parentThemeVariableName)
+                : null;
+
+        if (HEX_PATTERN.matcher(value).find()
+                || RGB_PATTERN.matcher(value).find()
+                || TRANSPARENT_COLOR_VALUE.equals(value)
+                || parentThemeVariable != null) {
+            ModifiedThemeVariableDetails details = new ModifiedThemeVariableDetails();
+            details.setName(name);
+            details.setParentVariableName(parentThemeVariable != null ? parentThemeVariable.getName() : null);
+            details.setValue(value);
+            return details;
+        }
+        return null;
+    }
+
+    @Nullable
+    protected Template getBaseThemeMode(ThemeModel model, String name) {
+        Template template = model.getTemplate(name);
+        return template != null && template.getParent() == null
+                ? template
+                : null;
+    }
+
+    @Nullable
+    protected Template getTemplate(ThemeModel model, Template baseThemeMode, @Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+
+        return model.getTemplates().stream()
+                .filter(template -> baseThemeMode.equals(template.getParent())
+                        && template.getName().equals(name))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Returns theme variables that depend on the given theme variable in the given template,
+     * directly or through other theme variables.
+     *
+     * @param variableName a parent theme variable name
+     * @param template     a template
+     * @return the list of dependent theme variables
+     */
+    public List<ThemeVariable> getChildThemeVariables(String variableName, Template template) {
+        return model.getChildThemeVariables(variableName, template);
+    }
+
+    /**
+     * Generates a color template of the current snapshot from a few root colors, see {@link ThemePaletteGenerator}.
+     *
+     * @param parentName   the name of a base theme mode or of a template of the theme
+     * @param templateName the name of the generated template
+     * @param rootColors   color values by theme variable name
+     * @return the {@code .helium.<mode>.<template>} block with the generated values
+     */
+    public String generateTemplateText(String parentName, String templateName, Map<String, String> rootColors) {
+        ThemeModel model = this.model;
+        Template parent = model.getTemplate(parentName);
+        if (parent == null) {
+            throw new IllegalArgumentException("Template is not found: " + parentName);
+        }
+
+        CustomTemplate template = model.getPaletteGenerator(parent).generateTemplate(templateName, rootColors);
+        List<ModifiedThemeVariableDetails> themeVariableDetailsList = new ArrayList<>();
+        ThemeExportUtils.collectModifiedThemeVariables(model, template.getOverrides(), themeVariableDetailsList);
+        return ThemeExportUtils.generateTemplateText(template.getBaseThemeMode().getName(), templateName,
+                ThemeExportUtils.sort(themeVariableDetailsList));
+    }
+
+    /**
+     * Derives the dark variant of a light template of the current snapshot, see {@link ThemeDarkModeDeriver}.
+     *
+     * @param templateName the name of a template of the light base theme mode
+     * @return the {@code .helium.dark.<template>} block with the derived values
+     */
+    public String generateDarkTemplateText(String templateName) {
+        ThemeModel model = this.model;
+        ThemeDarkModeDeriver deriver = model.getDarkModeDeriver();
+        if (deriver == null) {
+            throw new IllegalStateException("Theme has no light and dark base theme modes");
+        }
+
+        Template template = model.getTemplate(templateName);
+        if (template == null || !deriver.getLightThemeMode().equals(template.getParent())) {
+            throw new IllegalArgumentException("Light template is not found: " + templateName);
+        }
+
+        ThemeVariableOverrides overrides = deriver.derive(deriver.getTemplateValues(template));
+        List<ModifiedThemeVariableDetails> themeVariableDetailsList = new ArrayList<>();
+        ThemeExportUtils.collectModifiedThemeVariables(model, overrides, themeVariableDetailsList);
+        return ThemeExportUtils.generateTemplateText(deriver.getDarkThemeMode().getName(), templateName,
+                ThemeExportUtils.sort(themeVariableDetailsList));
     }
 
     /**
@@ -306,7 +579,7 @@ public class ThemeVariablesManager implements ApplicationContextAware {
             themeVariableDetailsList.stream()
                     .filter(details -> details.getParentVariableName() != null)
                     .forEach(details -> {
-                        ThemeVariable themeVariable = getThemeVariableByName(details.getParentVariableName());
+                        ThemeVariable themeVariable = model.getThemeVariable(details.getParentVariableName());
                         ThemeVariableDetails variableDetails = themeVariable.getThemeVariableDetails(template);
                         if (variableDetails != null) {
                             details.setValue(variableDetails.getValue());
@@ -319,7 +592,7 @@ public class ThemeVariablesManager implements ApplicationContextAware {
     /**
      * Init color templates list.
      */
-    protected void initColorTemplates() {
+    protected synchronized void initColorTemplates() {
         templates.add(lightTemplate);
     }
 
@@ -327,31 +600,55 @@ public class ThemeVariablesManager implements ApplicationContextAware {
      * Theme variables file parsing.
      */
     protected void initThemeVariables() {
+        Timer.Sample sample = startMetricsSample();
         try {
             String themeVariablesFilePath = heliumEditorProperties.getThemeVariablesFilePath();
             if (themeVariablesFilePath == null) {
                 return;
             }
             Resource resource = applicationContext.getResource("classpath:" + themeVariablesFilePath);
-            parseThemeVariables(new BufferedReader(new FileReader(resource.getFile())));
+            parseThemeVariables(themeVariablesFilePath, new BufferedReader(new FileReader(resource.getFile())));
         } catch (IOException e) {
             log.error("File with theme variables not found", e);
         }
 
         try {
             Resource templates = applicationContext.getResource("classpath:" + TEMPLATES_FILE_NAME);
-            parseThemeVariables(new BufferedReader(new FileReader(templates.getFile())));
+            parseThemeVariables(TEMPLATES_FILE_NAME, new BufferedReader(new FileReader(templates.getFile())));
         } catch (IOException e) {
             log.error("File with templates not found", e);
         }
+
+        recordParse(sample, EditorMetrics.PARSE_SOURCE_THEME, themeVariables.size());
     }
 
     /**
-     * Parse theme variables from reader.
+     * Parses theme variables from reader into the theme variables and templates of the manager and publishes
+     * them as a new snapshot. Like {@link #reload()}, holds the manager lock while parsing and publishing.
      *
      * @param reader reader
      */
-    protected void parseThemeVariables(BufferedReader reader) {
+    protected synchronized void parseThemeVariables(BufferedReader reader) {
+        parseThemeVariables(null, reader);
+        publish();
+    }
+
+    /**
+     * Parse theme variables from reader without publishing them and emit {@link ThemeParseEvent}.
+     * Holds the manager lock, the caller publishes the parsed theme variables by {@link #publish()}
+     * while holding the lock as well.
+     *
+     * @param file   a file name used in the event
+     * @param reader reader
+     */
+    protected synchronized void parseThemeVariables(@Nullable String file, BufferedReader reader) {
+        ThemeParseEvent event = new ThemeParseEvent();
+        event.begin();
+
+        int variableCount = themeVariables.size();
+        int templateCount = templates.size();
+        int lines = 0;
+
         try {
             String line;
             String module = null;
@@ -359,6 +656,8 @@ public class ThemeVariablesManager implements ApplicationContextAware {
             Matcher matcher;
 
             while ((line = reader.readLine()) != null) {
+                lines++;
+
                 matcher = BASE_THEME_MODE_PATTERN.matcher(line);
                 if (matcher.find()) {
                     Template newTemplate = new Template(matcher.group());
@@ -371,8 +670,7 @@ public class ThemeVariablesManager implements ApplicationContextAware {
                     String baseThemeMode = matcher.group(BASE_THEME_MODE_GROUP);
                     String colorTemplateValue = matcher.group(COLOR_TEMPLATE_GROUP);
 
-                    Template newTemplate = new Template(colorTemplateValue);
-                    newTemplate.setParent(getColorTemplateByName(baseThemeMode));
+                    Template newTemplate = new Template(colorTemplateValue, getColorTemplateByName(baseThemeMode));
 
                     templates.add(newTemplate);
                     template = newTemplate;
@@ -460,7 +758,7 @@ public class ThemeVariablesManager implements ApplicationContextAware {
                                     themeVariable.setModule(module);
                                     themeVariable.setName(name);
                                     themeVariable.setThemeVariableDetails(template, details);
-                                    themeVariables.add(themeVariable);
+                                    addThemeVariable(themeVariable);
                                 }
                             }
                         }
@@ -470,6 +768,42 @@ public class ThemeVariablesManager implements ApplicationContextAware {
         } catch (IOException e) {
             log.error("Error parsing file with theme variables", e);
         }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.lines = lines;
+            event.variables = themeVariables.size() - variableCount;
+            event.templates = templates.size() - templateCount;
+            event.commit();
+        }
+    }
+
+    @Nullable
+    protected Timer.Sample startMetricsSample() {
+        // the manager may be created without the Spring context, e.g. in benchmarks
+        return editorMetrics != null
+                ? editorMetrics.start()
+                : null;
+    }
+
+    protected void recordParse(@Nullable Timer.Sample sample, String source, int variableCount) {
+        if (sample != null) {
+            editorMetrics.recordParse(sample, source, variableCount);
+        }
+    }
+
+    /**
+     * Publishes the parsed theme variables and templates as a new snapshot.
+     */
+    protected synchronized void publish() {
+        model = new ThemeModel(themeVariables, templates);
+    }
+
+    protected void addThemeVariable(ThemeVariable themeVariable) {
+        themeVariable.setOrdinal(themeVariables.size());
+        themeVariables.add(themeVariable);
+        themeVariablesByName.put(themeVariable.getName(), themeVariable);
     }
 
     protected boolean isModuleInWhitelist(String module) {
@@ -486,25 +820,35 @@ public class ThemeVariablesManager implements ApplicationContextAware {
      * @return a parent theme variable
      */
     protected ThemeVariable loadParentThemeVariable(String value) {
+        String dependentThemeVariableName = getParentThemeVariableName(value);
+        return dependentThemeVariableName != null
+                ? getThemeVariableByName(dependentThemeVariableName)
+                : null;
+    }
+
+    /**
+     * Returns the parent theme variable name if the value is in {@code var(parentThemeVariableName)} format.
+     *
+     * @param value a string containing parent theme variable name
+     * @return a parent theme variable name or {@code null}
+     */
+    @Nullable
+    protected String getParentThemeVariableName(String value) {
         if (value.contains("var")) {
-            String dependentThemeVariableName = value.substring(value.indexOf("(") + 1, value.indexOf(")"));
-            return getThemeVariableByName(dependentThemeVariableName);
+            return value.substring(value.indexOf("(") + 1, value.indexOf(")"));
         }
 
         return null;
     }
 
     /**
-     * Returns the theme variable by given name.
+     * Returns the theme variable being parsed by given name.
      *
      * @param variableName a theme variable name
      * @return a theme variable
      */
     protected ThemeVariable getThemeVariableByName(String variableName) {
-        return themeVariables.stream()
-                .filter(themeVariable -> variableName.equals(themeVariable.getName()))
-                .findFirst()
-                .orElse(null);
+        return themeVariablesByName.get(variableName);
     }
 
     /**
@@ -0,0 +1,479 @@
+package io.jmix.editor.helium.tools;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.jmix.core.SaveContext;
+import io.jmix.core.UnconstrainedDataManager;
+import io.jmix.editor.helium.HeliumEditorProperties;
+import io.jmix.editor.helium.entity.ThemeVersion;
+import io.jmix.editor.helium.entity.ThemeVersionChange;
+import io.jmix.ui.theme.ThemeVariantsManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Version history of the themes saved as drafts.
+ * <p>
+ * Each saved draft that changes the theme becomes a new version. A version is stored as a delta against
+ * the previous version, every {@link HeliumEditorProperties#getVersionSnapshotInterval()} versions as a
+ * snapshot against the base theme model, so a version is restored from at most that many deltas.
+ * Each changed theme variable is also recorded in an index by variable name, so two versions are
+ * compared by reading only the index entries of the theme variables changed between them. A snapshot
+ * records all its values in the index, so the index entries before it are not needed by the later versions.
+ * <p>
+ * The history is kept per draft and template, see {@link #getThemeKey(String, String)}. Only the latest
+ * {@link HeliumEditorProperties#getVersionHistorySize()} versions are kept, older versions are deleted up to
+ * the snapshot the kept versions are restored from.
+ * <p>
+ * Versions address theme variables by ordinals, so the history of a theme is kept per theme model.
+ * Only the versions saved for the current model can be restored and compared.
+ */
+@Component("helium_ThemeVersionManager")
+public class ThemeVersionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ThemeVersionManager.class);
+
+    protected static final int MAX_CACHED_HEADS = 1000;
+    protected static final int DELETE_BATCH_SIZE = 500;
+
+    @Autowired
+    protected UnconstrainedDataManager dataManager;
+    @Autowired
+    protected ThemeVariablesManager themeVariablesManager;
+    @Autowired
+    protected ThemeVariantsManager variantsManager;
+    @Autowired
+    protected HeliumEditorProperties heliumEditorProperties;
+
+    /**
+     * The latest versions of recently saved themes by theme key and model checksum.
+     */
+    protected final Cache<String, Head> heads = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_HEADS)
+            .build();
+
+    /**
+     * @param draftKey     a draft key
+     * @param templateName the name of the template the theme is edited with
+     * @return the key of the version history of the theme
+     */
+    public static String getThemeKey(String draftKey, @Nullable String templateName) {
+        return templateName != null ? draftKey + '/' + templateName : draftKey;
+    }
+
+    /**
+     * Saves a new version for each draft that differs from the latest version of its theme.
+     * The drafts of the same theme are saved in the order they were changed.
+     *
+     * @param drafts saved drafts
+     */
+    public synchronized void saveVersions(Collection<ThemeDraftManager.Draft> drafts) {
+        List<ThemeDraftManager.Draft> sortedDrafts = new ArrayList<>(drafts);
+        sortedDrafts.sort(Comparator.comparing(ThemeDraftManager.Draft::getUpdatedAt));
+
+        ThemeModel model = themeVariablesManager.getModel();
+        SaveContext saveContext = new SaveContext();
+        Map<String, Head> newHeads = new HashMap<>();
+        for (ThemeDraftManager.Draft draft : sortedDrafts) {
+            if (draft.getModelChecksum() != model.getChecksum()) {
+                continue;
+            }
+
+            String themeKey = getThemeKey(draft.getDraftKey(), draft.getTemplateName());
+            Head head = newHeads.containsKey(themeKey)
+                    ? newHeads.get(themeKey)
+                    : getHead(themeKey, model.getChecksum());
+
+            Head newHead = createVersion(model, themeKey, head, draft, saveContext);
+            if (newHead != null) {
+                newHeads.put(themeKey, newHead);
+            }
+        }
+
+        if (!newHeads.isEmpty()) {
+            dataManager.save(saveContext);
+            newHeads.forEach((themeKey, head) -> {
+                heads.put(getHeadKey(themeKey, model.getChecksum()), head);
+                pruneHistory(themeKey, model.getChecksum(), head.versionNumber);
+            });
+
+            log.debug("Saved {} theme versions", newHeads.size());
+        }
+    }
+
+    /**
+     * Deletes the version history of themes, e.g. of the deleted drafts.
+     *
+     * @param themeKeys theme keys
+     */
+    public synchronized void deleteHistory(Collection<String> themeKeys) {
+        if (themeKeys.isEmpty()) {
+            return;
+        }
+
+        removeAll(ThemeVersion.class,
+                "select e from helium_ThemeVersion e where e.themeKey in :themeKeys", themeKeys);
+        removeAll(ThemeVersionChange.class,
+                "select c from helium_ThemeVersionChange c where c.themeKey in :themeKeys", themeKeys);
+        heads.asMap().keySet().removeIf(headKey ->
+                themeKeys.contains(headKey.substring(0, headKey.lastIndexOf('/'))));
+    }
+
+    /**
+     * @param themeKey a theme key, see {@link #getThemeKey(String, String)}
+     * @return versions of the theme saved for the current theme model, the latest first
+     */
+    public List<ThemeVersion> getVersions(String themeKey) {
+        return dataManager.load(ThemeVersion.class)
+                .query("select e from helium_ThemeVersion e where e.themeKey = :themeKey " +
+                        "and e.modelChecksum = :modelChecksum order by e.versionNumber desc")
+                .parameter("themeKey", themeKey)
+                .parameter("modelChecksum", getModelChecksum())
+                .list();
+    }
+
+    /**
+     * Restores the values of a theme version.
+     *
+     * @param themeKey      a theme key
+     * @param versionNumber a version number
+     * @return the values of the theme variables changed in the theme
+     * @throws IllegalArgumentException if the version is not found
+     */
+    public ThemeVariableOverrides getValues(String themeKey, int versionNumber) {
+        return restore(loadDeltaChain(themeKey, getModelChecksum(), versionNumber));
+    }
+
+    /**
+     * Returns the value of a theme variable in a theme version using the index only.
+     *
+     * @param themeKey      a theme key
+     * @param variableName  a theme variable name
+     * @param versionNumber a version number
+     * @return the value or {@code null} if the theme variable is not changed in the version
+     */
+    @Nullable
+    public String getValue(String themeKey, String variableName, int versionNumber) {
+        return dataManager.load(ThemeVersionChange.class)
+                .query("select c from helium_ThemeVersionChange c where c.themeKey = :themeKey " +
+                        "and c.modelChecksum = :modelChecksum and c.variableName = :variableName " +
+                        "and c.versionNumber <= :versionNumber order by c.versionNumber desc")
+                .parameter("themeKey", themeKey)
+                .parameter("modelChecksum", getModelChecksum())
+                .parameter("variableName", variableName)
+                .parameter("versionNumber", versionNumber)
+                .maxResults(1)
+                .optional()
+                .map(ThemeVersionChange::getValue)
+                .orElse(null);
+    }
+
+    /**
+     * Compares two versions of a theme. Only the index entries of the theme variables changed between
+     * the versions are read, the versions themselves are not restored.
+     *
+     * @param themeKey    a theme key
+     * @param fromVersion the version number to compare
+     * @param toVersion   the version number to compare with
+     * @return differences ordered by theme variable ordinal
+     */
+    public List<Difference> diff(String themeKey, int fromVersion, int toVersion) {
+        int lower = Math.min(fromVersion, toVersion);
+        int upper = Math.max(fromVersion, toVersion);
+        if (lower == upper) {
+            return Collections.emptyList();
+        }
+
+        ThemeModel model = themeVariablesManager.getModel();
+        List<ThemeVersionChange> changes = dataManager.load(ThemeVersionChange.class)
+                .query("select c from helium_ThemeVersionChange c where c.themeKey = :themeKey " +
+                        "and c.modelChecksum = :modelChecksum and c.versionNumber <= :upper " +
+                        "and c.variableName in (select d.variableName from helium_ThemeVersionChange d " +
+                        "where d.themeKey = :themeKey and d.modelChecksum = :modelChecksum " +
+                        "and d.versionNumber > :lower and d.versionNumber <= :upper) " +
+                        "order by c.versionNumber")
+                .parameter("themeKey", themeKey)
+                .parameter("modelChecksum", model.getChecksum())
+                .parameter("lower", lower)
+                .parameter("upper", upper)
+                .list();
+
+        Map<String, String> lowerValues = new HashMap<>();
+        Map<String, String> upperValues = new HashMap<>();
+        for (ThemeVersionChange change : changes) {
+            if (change.getVersionNumber() <= lower) {
+                lowerValues.put(change.getVariableName(), change.getValue());
+            }
+            upperValues.put(change.getVariableName(), change.getValue());
+        }
+
+        List<Difference> differences = new ArrayList<>();
+        upperValues.forEach((variableName, upperValue) -> {
+            String lowerValue = lowerValues.get(variableName);
+            ThemeVariable themeVariable = model.getThemeVariable(variableName);
+            if (!Objects.equals(lowerValue, upperValue) && themeVariable != null) {
+                differences.add(fromVersion < toVersion
+                        ? new Difference(themeVariable, lowerValue, upperValue)
+                        : new Difference(themeVariable, upperValue, lowerValue));
+            }
+        });
+        differences.sort(Comparator.comparing(difference -> difference.getThemeVariable().getOrdinal()));
+        return differences;
+    }
+
+    /**
+     * Generates the downloaded text of a theme version.
+     *
+     * @param themeKey      a theme key
+     * @param versionNumber a version number
+     * @return generated text
+     * @see ThemeExportUtils#generateText(String, boolean, List)
+     */
+    public String generateDownloadText(String themeKey, int versionNumber) {
+        ThemeModel model = themeVariablesManager.getModel();
+        List<ThemeVersion> chain = loadDeltaChain(themeKey, model.getChecksum(), versionNumber);
+        ThemeVersion version = chain.get(chain.size() - 1);
+
+        List<ModifiedThemeVariableDetails> modifiedThemeVariablesList = new ArrayList<>();
+        ThemeExportUtils.collectModifiedThemeVariables(model, restore(chain), modifiedThemeVariablesList);
+
+        return ThemeExportUtils.generateText(version.getBaseThemeMode(),
+                variantsManager.getDefaultThemeMode().equals(version.getBaseThemeMode()),
+                ThemeExportUtils.sort(modifiedThemeVariablesList));
+    }
+
+    @Nullable
+    protected Head createVersion(ThemeModel model, String themeKey, @Nullable Head head,
+                                 ThemeDraftManager.Draft draft, SaveContext saveContext) {
+        ThemeVariableOverrides values = draft.getThemeVariableOverrides();
+        values.putAll(draft.getDerivedThemeVariableOverrides());
+
+        ThemeVariableOverridesDelta delta = ThemeVariableOverridesDelta.between(
+                head != null ? head.values : new ThemeVariableOverrides(), values);
+        if (head != null
+                && delta.isEmpty()
+                && Objects.equals(head.baseThemeMode, draft.getBaseThemeMode())
+                && Objects.equals(head.templateName, draft.getTemplateName())) {
+            return null;
+        }
+
+        int versionNumber = head != null ? head.versionNumber + 1 : 1;
+        int snapshotInterval = Math.max(heliumEditorProperties.getVersionSnapshotInterval(), 1);
+        boolean snapshot = (versionNumber - 1) % snapshotInterval == 0;
+
+        ThemeVersion version = dataManager.create(ThemeVersion.class);
+        version.setThemeKey(themeKey);
+        version.setModelChecksum(draft.getModelChecksum());
+        version.setVersionNumber(versionNumber);
+        version.setBaseThemeMode(draft.getBaseThemeMode());
+        version.setTemplateName(draft.getTemplateName());
+        version.setSnapshot(snapshot);
+        version.setData(snapshot
+                ? ThemeVariableOverridesDelta.between(new ThemeVariableOverrides(), values).toByteArray()
+                : delta.toByteArray());
+        version.setCreatedAt(draft.getUpdatedAt());
+        saveContext.saving(version);
+
+        ThemeVariableOverrides changedValues = snapshot ? values : delta.getChanged();
+        changedValues.ordinals().forEach(ordinal -> saveContext.saving(createChange(version,
+                model.getThemeVariable(ordinal).getName(), changedValues.get(ordinal))));
+        delta.removedOrdinals().forEach(ordinal -> saveContext.saving(createChange(version,
+                model.getThemeVariable(ordinal).getName(), null)));
+
+        return new Head(versionNumber, draft.getBaseThemeMode(), draft.getTemplateName(), values);
+    }
+
+    protected ThemeVersionChange createChange(ThemeVersion version, String variableName, @Nullable String value) {
+        ThemeVersionChange change = dataManager.create(ThemeVersionChange.class);
+        change.setThemeKey(version.getThemeKey());
+        change.setModelChecksum(version.getModelChecksum());
+        change.setVersionNumber(version.getVersionNumber());
+        change.setVariableName(variableName);
+        change.setValue(value);
+        return change;
+    }
+
+    /**
+     * Deletes the versions before the snapshot the latest {@link HeliumEditorProperties#getVersionHistorySize()}
+     * versions are restored from, together with their index entries.
+     */
+    protected void pruneHistory(String themeKey, int modelChecksum, int headVersionNumber) {
+        int historySize = heliumEditorProperties.getVersionHistorySize();
+        if (historySize <= 0 || headVersionNumber <= historySize) {
+            return;
+        }
+
+        List<ThemeVersion> versions = dataManager.load(ThemeVersion.class)
+                .query("select e from helium_ThemeVersion e where e.themeKey = :themeKey " +
+                        "and e.modelChecksum = :modelChecksum " +
+                        "and e.versionNumber < (select max(s.versionNumber) from helium_ThemeVersion s " +
+                        "where s.themeKey = :themeKey and s.modelChecksum = :modelChecksum " +
+                        "and s.snapshot = true and s.versionNumber <= :oldestKept)")
+                .parameter("themeKey", themeKey)
+                .parameter("modelChecksum", modelChecksum)
+                .parameter("oldestKept", headVersionNumber - historySize + 1)
+                .list();
+        if (versions.isEmpty()) {
+            return;
+        }
+
+        int snapshotNumber = versions.stream().mapToInt(ThemeVersion::getVersionNumber).max().getAsInt() + 1;
+        List<ThemeVersionChange> changes = dataManager.load(ThemeVersionChange.class)
+                .query("select c from helium_ThemeVersionChange c where c.themeKey = :themeKey " +
+                        "and c.modelChecksum = :modelChecksum and c.versionNumber < :snapshotNumber")
+                .parameter("themeKey", themeKey)
+                .parameter("modelChecksum", modelChecksum)
+                .parameter("snapshotNumber", snapshotNumber)
+                .list();
+
+        SaveContext saveContext = new SaveContext();
+        versions.forEach(saveContext::removing);
+        changes.forEach(saveContext::removing);
+        dataManager.save(saveContext);
+
+        log.debug("Deleted {} versions of theme '{}'", versions.size(), themeKey);
+    }
+
+    protected <E> void removeAll(Class<E> entityClass, String query, Collection<String> themeKeys) {
+        List<E> entities;
+        do {
+            entities = dataManager.load(entityClass)
+                    .query(query)
+                    .parameter("themeKeys", themeKeys)
+                    .maxResults(DELETE_BATCH_SIZE)
+                    .list();
+            if (!entities.isEmpty()) {
+                SaveContext saveContext = new SaveContext();
+                entities.forEach(saveContext::removing);
+                dataManager.save(saveContext);
+            }
+        } while (entities.size() == DELETE_BATCH_SIZE);
+    }
+
+    @Nullable
+    protected Head getHead(String themeKey, int modelChecksum) {
+        Head head = heads.getIfPresent(getHeadKey(themeKey, modelChecksum));
+        if (head != null) {
+            return head;
+        }
+
+        Integer versionNumber = dataManager.loadValue("select max(e.versionNumber) from helium_ThemeVersion e " +
+                        "where e.themeKey = :themeKey and e.modelChecksum = :modelChecksum", Integer.class)
+                .parameter("themeKey", themeKey)
+                .parameter("modelChecksum", modelChecksum)
+                .optional()
+                .orElse(null);
+        if (versionNumber == null) {
+            return null;
+        }
+
+        List<ThemeVersion> chain = loadDeltaChain(themeKey, modelChecksum, versionNumber);
+        ThemeVersion version = chain.get(chain.size() - 1);
+        return new Head(versionNumber, version.getBaseThemeMode(), version.getTemplateName(), restore(chain));
+    }
+
+    /**
+     * Loads the version with the given number, the nearest snapshot before it and the deltas in between
+     * in one query.
+     */
+    protected List<ThemeVersion> loadDeltaChain(String themeKey, int modelChecksum, int versionNumber) {
+        List<ThemeVersion> chain = dataManager.load(ThemeVersion.class)
+                .query("select e from helium_ThemeVersion e where e.themeKey = :themeKey " +
+                        "and e.modelChecksum = :modelChecksum and e.versionNumber <= :versionNumber " +
+                        "and e.versionNumber >= (select max(s.versionNumber) from helium_ThemeVersion s " +
+                        "where s.themeKey = :themeKey and s.modelChecksum = :modelChecksum " +
+                        "and s.snapshot = true and s.versionNumber <= :versionNumber) " +
+                        "order by e.versionNumber")
+                .parameter("themeKey", themeKey)
+                .parameter("modelChecksum", modelChecksum)
+                .parameter("versionNumber", versionNumber)
+                .list();
+
+        if (chain.isEmpty()
+                || chain.get(chain.size() - 1).getVersionNumber() != versionNumber) {
+            throw new IllegalArgumentException(
+                    String.format("Version %d of theme '%s' is not found", versionNumber, themeKey));
+        }
+        return chain;
+    }
+
+    protected ThemeVariableOverrides restore(List<ThemeVersion> chain) {
+        ThemeVariableOverrides values = new ThemeVariableOverrides();
+        for (ThemeVersion version : chain) {
+            ThemeVariableOverridesDelta.fromByteArray(version.getData()).apply(values);
+        }
+        return values;
+    }
+
+    protected int getModelChecksum() {
+        return themeVariablesManager.getModel().getChecksum();
+    }
+
+    protected String getHeadKey(String themeKey, int modelChecksum) {
+        return themeKey + '/' + modelChecksum;
+    }
+
+    /**
+     * The latest version of a theme.
+     */
+    protected static class Head {
+
+        protected final int versionNumber;
+        protected final String baseThemeMode;
+        protected final String templateName;
+        protected final ThemeVariableOverrides values;
+
+        protected Head(int versionNumber, String baseThemeMode, String templateName, ThemeVariableOverrides values) {
+            this.versionNumber = versionNumber;
+            this.baseThemeMode = baseThemeMode;
+            this.templateName = templateName;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Theme variable that has different values in two versions.
+     */
+    public static class Difference {
+
+        protected final ThemeVariable themeVariable;
+        protected final String oldValue;
+        protected final String newValue;
+
+        public Difference(ThemeVariable themeVariable, @Nullable String oldValue, @Nullable String newValue) {
+            this.themeVariable = themeVariable;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        public ThemeVariable getThemeVariable() {
+            return themeVariable;
+        }
+
+        /**
+         * @return the value in the compared version or {@code null} if the theme variable is not changed in it
+         */
+        @Nullable
+        public String getOldValue() {
+            return oldValue;
+        }
+
+        /**
+         * @return the value in the version compared with or {@code null} if the theme variable is not changed in it
+         */
+        @Nullable
+        public String getNewValue() {
+            return newValue;
+        }
+
+        @Override
+        public String toString() {
+            return themeVariable.getName() + ": " + oldValue + " -> " + newValue;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.jmix.editor.helium.tools;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Theme variables declared in one block of an uploaded theme file, see
+ * {@link ThemeVariablesManager#parseUploadedTemplates(java.io.BufferedReader)}.
+ */
+public class UploadedTemplate {
+
+    protected final Template baseThemeMode;
+    protected final String templateName;
+    protected final Template template;
+    protected final List<ModifiedThemeVariableDetails> themeVariables;
+
+    /**
+     * @param baseThemeMode  the base theme mode of the block or {@code null} for declarations outside of blocks
+     * @param templateName   the template name of a {@code .helium.<mode>.<template>} block or {@code null}
+     * @param template       the theme template with the name or {@code null} if the theme has no such template
+     * @param themeVariables the declared theme variables
+     */
+    public UploadedTemplate(@Nullable Template baseThemeMode, @Nullable String templateName,
+                            @Nullable Template template, List<ModifiedThemeVariableDetails> themeVariables) {
+        this.baseThemeMode = baseThemeMode;
+        this.templateName = templateName;
+        this.template = template;
+        this.themeVariables = themeVariables;
+    }
+
+    @Nullable
+    public Template getBaseThemeMode() {
+        return baseThemeMode;
+    }
+
+    @Nullable
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    @Nullable
+    public Template getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the template the declared values are applied to: the theme template, otherwise the base theme mode
+     */
+    @Nullable
+    public Template getParent() {
+        return template != null ? template : baseThemeMode;
+    }
+
+    public List<ModifiedThemeVariableDetails> getThemeVariables() {
+        return themeVariables;
+    }
+}
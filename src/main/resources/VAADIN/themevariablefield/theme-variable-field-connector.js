@@ -1,4 +1,189 @@
 io_jmix_editor_helium_components_themevariablefield_ThemeVariableField = function () {
+    var self = this;
+
+    if (!window.heliumDependencyGraphs) {
+        window.heliumDependencyGraphs = {};
+    }
+
+    function setProperties(variables) {
+        Array.from(document.getElementsByClassName('helium'))
+            .forEach(function (element) {
+                Object.keys(variables).forEach(function (variableName) {
+                    element.style.setProperty(variableName, variables[variableName])
+                });
+            });
+    }
+
+    // the same as ThemeVariableUtils#getColorString, only the full hex format is evaluated on the client
+    function normalizeColor(value) {
+        if (!value) {
+            return null;
+        }
+        if (value.charAt(0) !== '#') {
+            value = '#' + value;
+        }
+        return /^#[0-9A-Fa-f]{6}$/.test(value) ? value.toUpperCase() : null;
+    }
+
+    // Java float arithmetic and int casts, so the results match ThemeVariableUtils
+    var f = Math.fround;
+
+    function toInt(value) {
+        return isNaN(value) ? 0 : Math.trunc(value);
+    }
+
+    function parseColor(value) {
+        var match = /^#([0-9A-Fa-f]{6})$/.exec(value);
+        if (!match) {
+            return null;
+        }
+        var rgb = parseInt(match[1], 16);
+        return [(rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF];
+    }
+
+    // ThemeVariableUtils#calculateHslFromColor
+    function calculateHsl(rgb) {
+        var r = f(rgb[0] / 255), g = f(rgb[1] / 255), b = f(rgb[2] / 255);
+        var max = Math.max(r, g, b);
+        var min = Math.min(r, g, b);
+        var d = f(max - min);
+
+        var h = 0, s;
+        if (max === r) {
+            h = f(f(60 * f(g - b)) / d);
+        } else if (max === g) {
+            h = f(f(f(60 * f(b - r)) / d) + 120);
+        } else if (max === b) {
+            h = f(f(f(60 * f(r - g)) / d) + 240);
+        }
+
+        var l = f(f(max + min) / 2);
+        if (max === min) {
+            s = 0;
+        } else if (l < 0.5) {
+            s = f(d / f(2 * l));
+        } else {
+            s = f(d / f(2 - f(2 * l)));
+        }
+
+        var hsl = [toInt(f(f(h + 360) % 360)), toInt(f(s * 100)), toInt(f(l * 100))];
+        if (hsl[1] === 0) {
+            hsl[0] = 0;
+        }
+        return hsl;
+    }
+
+    function hslComponentToRgb(p, q, ratio) {
+        if (ratio < 0) {
+            ratio = f(ratio + 1);
+        } else if (ratio > 1) {
+            ratio = f(ratio - 1);
+        }
+
+        if (f(6 * ratio) < 1) {
+            return toInt(f(f(f(q + f(f(f(p - q) * 6) * ratio)) * 255) + 0.5));
+        } else if (f(2 * ratio) < 1) {
+            return toInt(f(f(p * 255) + 0.5));
+        } else if (f(3 * ratio) < 2) {
+            return toInt(f(f(f(q + f(f(f(p - q) * f(f(2 / 3) - ratio)) * 6)) * 255) + 0.5));
+        }
+        return toInt(f(f(q * 255) + 0.5));
+    }
+
+    // com.vaadin.shared.ui.colorpicker.Color#HSLtoRGB followed by Color#getCSS
+    function hslToCss(hsl) {
+        var hue = f(hsl[0] / 360), saturation = f(hsl[1] / 100), lightness = f(hsl[2] / 100);
+        var r, g, b;
+        if (saturation === 0) {
+            r = g = b = toInt(f(f(lightness * 255) + 0.5));
+        } else {
+            var p = lightness < 0.5
+                ? f(lightness * f(1 + saturation))
+                : f(f(lightness + saturation) - f(lightness * saturation));
+            var q = f(f(2 * lightness) - p);
+            r = hslComponentToRgb(p, q, f(hue + f(1 / 3)));
+            g = hslComponentToRgb(p, q, hue);
+            b = hslComponentToRgb(p, q, f(hue - f(1 / 3)));
+        }
+        return '#' + [r, g, b].map(function (component) {
+            return ('0' + component.toString(16)).slice(-2);
+        }).join('').toUpperCase();
+    }
+
+    function darken(value, percent) {
+        var rgb = parseColor(value);
+        if (!rgb) {
+            return null;
+        }
+        var hsl = calculateHsl(rgb);
+        hsl[2] = toInt(hsl[2] * (1 - percent * 0.01));
+        return hslToCss(hsl);
+    }
+
+    function lighten(value, percent) {
+        var rgb = parseColor(value);
+        if (!rgb) {
+            return null;
+        }
+        var hsl = calculateHsl(rgb);
+        hsl[2] = toInt(hsl[2] + (100 - hsl[2]) * percent * 0.01);
+        return hslToCss(hsl);
+    }
+
+    // the same as ThemeVariableDetails#deriveValue
+    function deriveColor(dependency, parentValue) {
+        if (!dependency) {
+            return null;
+        }
+        if ((dependency.modifier == null && dependency.commentDependence) || parentValue === 'transparent') {
+            return parentValue;
+        }
+        if (dependency.modifier != null && dependency.percent != null) {
+            return dependency.modifier === 'd'
+                ? darken(parentValue, dependency.percent)
+                : lighten(parentValue, dependency.percent);
+        }
+        return null;
+    }
+
+    function putValue(variables, graph, variableName, value) {
+        variables[variableName] = value;
+        if (graph && graph.rgbUsed[variableName]) {
+            var rgb = parseColor(value);
+            if (rgb) {
+                variables[variableName + '_rgb'] = rgb.join(', ');
+            }
+        }
+    }
+
+    // Sets the value and the values of all dependent theme variables. As on the server, see
+    // ThemeModel#visitChildThemeVariables, each dependent theme variable is derived from the value of its
+    // immediate parent, a theme variable defined with var() passes on the value of its parent.
+    function applyThemeVariable(variableName, value) {
+        var graph = window.heliumDependencyGraph;
+        var variables = {};
+        putValue(variables, graph, variableName, value);
+
+        if (graph) {
+            var visited = {};
+            var visit = function (name, parentValue) {
+                (graph.children[name] || []).forEach(function (child) {
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        var derivedValue = deriveColor(graph.modifiers[child], parentValue);
+                        if (derivedValue != null) {
+                            putValue(variables, graph, child, derivedValue);
+                        }
+                        visit(child, derivedValue != null ? derivedValue : parentValue);
+                    }
+                });
+            };
+            visit(variableName, value);
+        }
+
+        setProperties(variables);
+    }
+
     this.setThemeVariable = function (variableName, value) {
         Array.from(document.getElementsByClassName('helium'))
             .forEach(function (element) {
@@ -6,10 +191,113 @@ io_jmix_editor_helium_components_themevariablefield_ThemeVariableField = functio
             });
     }
 
+    this.setThemeVariables = function (variables) {
+        setProperties(variables);
+    };
+
+    this.applyThemeVariable = function (variableName, value) {
+        applyThemeVariable(variableName, value);
+    };
+
+    this.setDependencyGraph = function (templateName, graph) {
+        graph.rgbUsed = {};
+        graph.rgb.forEach(function (variableName) {
+            graph.rgbUsed[variableName] = true;
+        });
+        window.heliumDependencyGraphs[templateName] = graph;
+        window.heliumDependencyGraph = graph;
+    };
+
+    this.useDependencyGraph = function (templateName) {
+        window.heliumDependencyGraph = window.heliumDependencyGraphs[templateName];
+    };
+
     this.removeThemeVariable = function (variableName) {
         Array.from(document.getElementsByClassName('helium'))
             .forEach(function (element) {
                 element.style.removeProperty(variableName)
             });
     };
-};
\ No newline at end of file
+
+    this.removeThemeVariables = function (variableNames) {
+        Array.from(document.getElementsByClassName('helium'))
+            .forEach(function (element) {
+                variableNames.forEach(function (variableName) {
+                    element.style.removeProperty(variableName)
+                });
+            });
+    };
+
+    // Called on the connector the measurement is requested from, the time is reported to its own server side
+    this.measureStyleRecalculation = function (measurementId) {
+        var start = performance.now();
+        // reading the layout makes the browser apply pending style changes
+        document.body.getBoundingClientRect();
+        var duration = performance.now() - start;
+
+        if (typeof self.onStyleRecalculated === 'function') {
+            self.onStyleRecalculated(measurementId, duration);
+        }
+    };
+
+    // Called as a connector: previews the values typed into the field before they reach the server
+    if (typeof this.getElement === 'function') {
+        var connector = this;
+        this.onStateChange = function () {
+            var state = connector.getState().data;
+            if (!state || !state.name) {
+                return;
+            }
+
+            if (state.picker) {
+                updateColorInput(state);
+            }
+
+            var field = connector.getElement().closest('.theme-variable-field');
+            if (!field) {
+                return;
+            }
+
+            field.heliumVariableName = state.name;
+            if (!field.heliumPreviewListener) {
+                field.heliumPreviewListener = function (event) {
+                    if (!window.heliumDependencyGraph
+                        || !event.target.classList.contains('v-textfield')) {
+                        return;
+                    }
+                    var value = normalizeColor(event.target.value);
+                    if (value) {
+                        applyThemeVariable(field.heliumVariableName, value);
+                    }
+                };
+                field.addEventListener('change', field.heliumPreviewListener, true);
+            }
+        };
+
+        // The native color input previews intermediate colors on the client only
+        // and reports the color to the server when the picker is closed
+        var updateColorInput = function (state) {
+            var element = connector.getElement();
+            var input = element.heliumColorInput;
+            if (!input) {
+                input = document.createElement('input');
+                input.type = 'color';
+                input.className = 'theme-variable-picker';
+                input.addEventListener('input', function () {
+                    applyThemeVariable(element.heliumVariableName, input.value.toUpperCase());
+                });
+                input.addEventListener('change', function () {
+                    connector.onColorCommitted(input.value.toUpperCase());
+                });
+                element.appendChild(input);
+                element.heliumColorInput = input;
+            }
+
+            element.heliumVariableName = state.name;
+            var value = normalizeColor(state.value);
+            if (value && document.activeElement !== input) {
+                input.value = value.toLowerCase();
+            }
+        };
+    }
+};
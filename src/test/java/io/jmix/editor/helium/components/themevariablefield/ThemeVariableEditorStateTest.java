@@ -0,0 +1,176 @@
+package io.jmix.editor.helium.components.themevariablefield;
+
+import io.jmix.editor.helium.tools.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeVariableEditorStateTest {
+
+	SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+	ThemeModel model;
+	Template light;
+	RecordingView view = new RecordingView();
+
+	@BeforeEach
+	void setUp() {
+		// --m0-v3-color is annotated with (--m0-v0-color) (l10%)
+		generator.setModuleCount(1);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+		generator.setAnnotationInterval(1);
+		generator.setRgbInterval(0);
+
+		model = ThemeFixtures.createManager(generator).getModel();
+		light = model.getTemplates().get(0);
+	}
+
+	@Test
+	void userValueIsAppliedAndReset() {
+		ThemeVariable root = model.getThemeVariable(generator.getVariableName(0, 0));
+		ThemeVariableDetails details = root.getThemeVariableDetails(light);
+		ThemeVariableEditorState state = createState(root);
+
+		assertEquals(ThemeVariableUtils.getColorString(details.getValue()), view.colorValue);
+		assertEquals(details.getPlaceHolder(), view.value);
+		assertTrue(view.defaultValue);
+		assertTrue(view.applied.isEmpty());
+
+		state.setValue("#5440AC");
+		assertEquals("#5440AC", view.value);
+		assertFalse(view.defaultValue);
+		assertTrue(view.modified);
+		assertEquals("#5440AC", view.colorValue);
+		assertEquals(List.of("#5440AC true"), view.applied);
+		assertEquals(String.format(ThemeVariableEditorState.SET_THEME_VARIABLE_VOID, root.getName(), "#5440AC"),
+				view.scripts.get(0));
+
+		state.reset();
+		assertEquals(details.getPlaceHolder(), view.value);
+		assertTrue(view.defaultValue);
+		assertFalse(view.modified);
+		assertEquals("null true", view.applied.get(view.applied.size() - 1));
+		assertEquals(String.format(ThemeVariableEditorState.REMOVE_THEME_VARIABLE_VOID, root.getName()),
+				view.scripts.get(view.scripts.size() - 1));
+	}
+
+	@Test
+	void valueIsDerivedFromParent() {
+		ThemeVariable child = model.getThemeVariable(generator.getVariableName(0, 3));
+		ThemeVariableEditorState state = createState(child);
+
+		state.setColorValueByParent("#5440AC");
+		String lightened = ThemeVariableUtils.lighten("#5440AC", 10);
+		assertEquals(lightened, view.colorValue);
+		assertEquals(lightened, view.value);
+		assertEquals(lightened, state.getInputPrompt());
+		assertTrue(view.defaultValue);
+		assertFalse(view.modified);
+		assertEquals(lightened + " true", view.applied.get(view.applied.size() - 1));
+
+		// the parent is reset, so the template value is shown and the value is removed from the client
+		state.setColorValueByParent(null);
+		assertEquals(child.getThemeVariableDetails(light).getTemplateValue(light), view.colorValue);
+		assertEquals("null true", view.applied.get(view.applied.size() - 1));
+	}
+
+	@Test
+	void restoredValueIsNotApplied() {
+		ThemeVariableEditorState state = createState(model.getThemeVariable(generator.getVariableName(0, 0)));
+
+		state.restoreColorValue("#5440AC", true);
+		assertEquals("#5440AC", view.value);
+		assertEquals("#5440AC", view.colorValue);
+		assertTrue(view.modified);
+
+		state.restoreDefaultValue();
+		assertFalse(view.modified);
+		assertTrue(view.defaultValue);
+		assertTrue(view.scripts.isEmpty());
+		assertTrue(view.applied.isEmpty());
+	}
+
+	@Test
+	void cascadeAgreesWithPaletteGenerator() {
+		ThemeVariable root = model.getThemeVariable(generator.getVariableName(0, 0));
+		ThemeVariableEditorState[] states = new ThemeVariableEditorState[model.getThemeVariables().size()];
+		for (ThemeVariable themeVariable : model.getThemeVariables()) {
+			states[themeVariable.getOrdinal()] = new ThemeVariableEditorState(themeVariable, new RecordingView());
+			states[themeVariable.getOrdinal()].setColorValueByTemplate(light);
+		}
+
+		// the same walk as the main screen makes
+		int count = model.visitChildThemeVariables(root.getName(), "#5440AC", light,
+				(child, parentValue) -> states[child.getOrdinal()].setColorValueByParent(parentValue));
+
+		ThemeVariableOverrides generated = model.getPaletteGenerator(light)
+				.generate(Map.of(root.getName(), "#5440AC"));
+		// the other chain heads of the module and their var() references
+		assertEquals(8, count);
+		generated.ordinals().forEach(ordinal -> assertEquals(generated.get(ordinal), ordinal == root.getOrdinal()
+				? "#5440AC"
+				: states[ordinal].getColorValue()));
+
+		// --m0-v6-color is darkened from the lightened --m0-v3-color, not from --m0-v0-color
+		ThemeVariable grandchild = model.getThemeVariable(generator.getVariableName(0, 6));
+		assertEquals(ThemeVariableUtils.darken(ThemeVariableUtils.lighten("#5440AC", 10), 15),
+				states[grandchild.getOrdinal()].getColorValue());
+		// var() values follow the parent
+		assertEquals("#5440AC",
+				states[model.getThemeVariable(generator.getVariableName(0, 1)).getOrdinal()].getColorValue());
+	}
+
+	ThemeVariableEditorState createState(ThemeVariable themeVariable) {
+		ThemeVariableEditorState state = new ThemeVariableEditorState(themeVariable, view);
+		state.setColorValueByTemplate(light);
+		return state;
+	}
+
+	static class RecordingView implements ThemeVariableEditorState.View {
+
+		String value;
+		boolean defaultValue;
+		String inputPrompt;
+		String colorValue;
+		boolean modified;
+		List<String> scripts = new ArrayList<>();
+		List<String> applied = new ArrayList<>();
+
+		@Override
+		public void showValue(@Nullable String value, boolean defaultValue) {
+			this.value = value;
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public void showInputPrompt(@Nullable String inputPrompt) {
+			this.inputPrompt = inputPrompt;
+		}
+
+		@Override
+		public void showColorValue(@Nullable String colorValue) {
+			this.colorValue = colorValue;
+		}
+
+		@Override
+		public void showModified(boolean modified) {
+			this.modified = modified;
+		}
+
+		@Override
+		public void executeJavaScript(String script) {
+			scripts.add(script);
+		}
+
+		@Override
+		public void colorValueApplied(@Nullable String value, boolean isBaseThemeMode) {
+			applied.add(value + " " + isBaseThemeMode);
+		}
+	}
+}
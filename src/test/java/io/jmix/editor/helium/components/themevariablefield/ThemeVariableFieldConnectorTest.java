@@ -0,0 +1,145 @@
+package io.jmix.editor.helium.components.themevariablefield;
+
+import io.jmix.editor.helium.tools.*;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeVariableFieldConnectorTest {
+
+	static final String CONNECTOR = "/VAADIN/themevariablefield/theme-variable-field-connector.js";
+
+	Context context;
+	Value connector;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		context = Context.newBuilder("js")
+				.option("engine.WarnInterpreterOnly", "false")
+				.build();
+		// the connector sets the properties of the elements of the helium class, they are collected into one object
+		context.eval("js", "var window = {};\n"
+				+ "var properties = {};\n"
+				+ "var element = {style: {\n"
+				+ "    setProperty: function (name, value) { properties[name] = value; },\n"
+				+ "    removeProperty: function (name) { delete properties[name]; }\n"
+				+ "}};\n"
+				+ "var document = {getElementsByClassName: function () { return [element]; }};");
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream(CONNECTOR), StandardCharsets.UTF_8)) {
+			context.eval(Source.newBuilder("js", reader, "theme-variable-field-connector.js").build());
+		}
+		connector = context.eval("js", "new io_jmix_editor_helium_components_themevariablefield_ThemeVariableField()");
+	}
+
+	@AfterEach
+	void tearDown() {
+		context.close();
+	}
+
+	@Test
+	void cascadeAgreesWithServer() {
+		// --m0-v3-color is annotated with (--m0-v0-color) (l10%), --m0-v6-color with (--m0-v3-color) (d15%)
+		Map<String, String> expected = assertCascadeAgreesWithServer("#5440AC");
+		assertEquals(ThemeVariableUtils.darken(ThemeVariableUtils.lighten("#5440AC", 10), 15),
+				expected.get(generator().getVariableName(0, 6)));
+	}
+
+	@Test
+	void transparentIsPassedToDependents() {
+		Map<String, String> expected = assertCascadeAgreesWithServer(ThemeVariablesManager.TRANSPARENT_COLOR_VALUE);
+		assertEquals(ThemeVariablesManager.TRANSPARENT_COLOR_VALUE, expected.get(generator().getVariableName(0, 6)));
+	}
+
+	@Test
+	void derivedColorsAgreeWithServer() {
+		Random random = new Random(42);
+		List<String> colors = new ArrayList<>(List.of("#000000", "#FFFFFF", "#808080", "#FF0000", "#00FF00", "#0000FF"));
+		for (int i = 0; i < 20; i++) {
+			colors.add(ThemeVariableUtils.unpackColor(random.nextInt(0x1000000)));
+		}
+
+		for (int percent = 0; percent <= 100; percent++) {
+			setDependencyGraph("test", "{\"children\": {\"--color\": [\"--darker-color\", \"--lighter-color\"]},"
+					+ " \"modifiers\": {"
+					+ "\"--darker-color\": {\"modifier\": \"d\", \"percent\": " + percent + ", \"commentDependence\": true},"
+					+ "\"--lighter-color\": {\"modifier\": \"l\", \"percent\": " + percent + ", \"commentDependence\": true}},"
+					+ " \"rgb\": []}");
+			for (String color : colors) {
+				connector.invokeMember("applyThemeVariable", "--color", color);
+
+				Map<String, String> properties = getProperties();
+				assertEquals(ThemeVariableUtils.darken(color, percent), properties.get("--darker-color"),
+						color + " darkened by " + percent);
+				assertEquals(ThemeVariableUtils.lighten(color, percent), properties.get("--lighter-color"),
+						color + " lightened by " + percent);
+			}
+		}
+	}
+
+	@Test
+	void varReferencePassesParentValue() {
+		// --link-color: var(--color), --link-hover-color is annotated with (--link-color) (d10%)
+		setDependencyGraph("test", "{\"children\": {\"--color\": [\"--link-color\"], \"--link-color\": [\"--link-hover-color\"]},"
+				+ " \"modifiers\": {"
+				+ "\"--link-color\": {\"modifier\": null, \"percent\": null, \"commentDependence\": false},"
+				+ "\"--link-hover-color\": {\"modifier\": \"d\", \"percent\": 10, \"commentDependence\": true}},"
+				+ " \"rgb\": [\"--link-color\"]}");
+		connector.invokeMember("applyThemeVariable", "--color", "#5440AC");
+
+		// the theme variable defined with var() follows its parent in the browser and is not set
+		assertEquals(Map.of("--color", "#5440AC", "--link-hover-color", ThemeVariableUtils.darken("#5440AC", 10)),
+				getProperties());
+	}
+
+	Map<String, String> assertCascadeAgreesWithServer(String value) {
+		SyntheticThemeGenerator generator = generator();
+		ThemeModel model = ThemeFixtures.createManager(generator).getModel();
+		Template light = model.getTemplates().get(0);
+		String root = generator.getVariableName(0, 0);
+
+		setDependencyGraph(light.getName(), model.getClientDependencyGraph(light));
+		connector.invokeMember("applyThemeVariable", root, value);
+
+		ThemeVariableOverrides generated = model.getPaletteGenerator(light).generate(Map.of(root, value));
+		Map<String, String> expected = new HashMap<>();
+		generated.ordinals().forEach(ordinal -> expected.put(model.getThemeVariable(ordinal).getName(),
+				generated.get(ordinal)));
+		assertEquals(expected, getProperties());
+		return expected;
+	}
+
+	SyntheticThemeGenerator generator() {
+		SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(2);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+		generator.setAnnotationInterval(1);
+		generator.setRgbInterval(0);
+		return generator;
+	}
+
+	void setDependencyGraph(String templateName, String graph) {
+		Value json = context.getBindings("js").getMember("JSON");
+		connector.invokeMember("setDependencyGraph", templateName, json.invokeMember("parse", graph));
+	}
+
+	Map<String, String> getProperties() {
+		Value properties = context.getBindings("js").getMember("properties");
+		Map<String, String> values = new HashMap<>();
+		for (String name : properties.getMemberKeys()) {
+			values.put(name, properties.getMember(name).asString());
+		}
+		return values;
+	}
+}
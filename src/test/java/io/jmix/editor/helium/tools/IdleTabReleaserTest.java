@@ -0,0 +1,58 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdleTabReleaserTest {
+
+	@Test
+	void leftTabIsReleasedAfterTimeout() {
+		IdleTabReleaser<String> releaser = new IdleTabReleaser<>(Duration.ofMinutes(1));
+		releaser.select("basic", 0);
+		assertFalse(releaser.hasLeftTabs());
+
+		releaser.select("all", 1_000);
+		releaser.putContent("all", "fragment");
+		assertFalse(releaser.hasLeftTabs());
+
+		// the timer checks the tabs while the content is shown and after the tab is left
+		assertTrue(releaser.releaseIdleTabs(61_000).isEmpty());
+		releaser.select("basic", 10_000);
+		assertTrue(releaser.hasLeftTabs());
+		assertTrue(releaser.releaseIdleTabs(69_999).isEmpty());
+		assertEquals("fragment", releaser.getContent("all"));
+
+		assertEquals(Map.of("all", "fragment"), releaser.releaseIdleTabs(70_000));
+		assertNull(releaser.getContent("all"));
+		assertFalse(releaser.hasLeftTabs());
+	}
+
+	@Test
+	void selectedTabIsKept() {
+		IdleTabReleaser<String> releaser = new IdleTabReleaser<>(Duration.ofMinutes(1));
+		releaser.select("all", 0);
+		releaser.putContent("all", "fragment");
+
+		releaser.select("basic", 1_000);
+		releaser.select("all", 30_000);
+		assertFalse(releaser.hasLeftTabs());
+		assertTrue(releaser.releaseIdleTabs(120_000).isEmpty());
+		assertEquals("fragment", releaser.getContent("all"));
+	}
+
+	@Test
+	void zeroTimeoutKeepsContents() {
+		IdleTabReleaser<String> releaser = new IdleTabReleaser<>(Duration.ZERO);
+		releaser.select("all", 0);
+		releaser.putContent("all", "fragment");
+		releaser.select("basic", 1_000);
+
+		assertFalse(releaser.isEnabled());
+		assertTrue(releaser.releaseIdleTabs(Long.MAX_VALUE).isEmpty());
+		assertEquals("fragment", releaser.getContent("all"));
+	}
+}
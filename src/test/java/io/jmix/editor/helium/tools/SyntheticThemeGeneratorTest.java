@@ -0,0 +1,69 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticThemeGeneratorTest {
+
+	@Test
+	void generatedThemeIsParsed() {
+		SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(3);
+		generator.setVariablesPerModule(12);
+		generator.setBaseThemeModes(Arrays.asList("dark", "contrast"));
+		generator.setTemplatesPerThemeMode(2);
+		generator.setVarChainDepth(2);
+
+		ThemeVariablesManager manager = ThemeFixtures.createManager(generator);
+
+		assertEquals(generator.getVariableCount(), manager.getThemeVariables().size());
+		List<String> templateNames = manager.getTemplates().stream()
+				.map(Template::getName)
+				.collect(Collectors.toList());
+		assertEquals(generator.getTemplateNames(), templateNames);
+
+		Template lightTemplate = manager.getTemplates().get(0);
+		assertTrue(manager.getThemeVariableByName(generator.getVariableName(1, 0)).isRgbUsed());
+
+		ThemeVariable head = manager.getThemeVariableByName(generator.getVariableName(1, 6));
+		ThemeVariable reference = manager.getThemeVariableByName(generator.getVariableName(1, 8));
+		assertEquals(head.getThemeVariableDetails(lightTemplate).getValue(),
+				reference.getThemeVariableDetails(lightTemplate).getValue());
+		assertEquals(generator.getVariableName(1, 3),
+				head.getThemeVariableDetails(lightTemplate).getParentThemeVariable().getName());
+	}
+
+	@Test
+	void publishedModelIsNotChangedByNextParsing() {
+		SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(1);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+
+		ThemeVariablesManager manager = ThemeFixtures.createManager(generator);
+		ThemeModel model = manager.getModel();
+		Template lightTemplate = model.getTemplates().get(0);
+		String name = generator.getVariableName(0, 0);
+		ThemeVariable themeVariable = model.getThemeVariable(name);
+		String value = themeVariable.getThemeVariableDetails(lightTemplate).getValue();
+
+		assertThrows(UnsupportedOperationException.class,
+				() -> themeVariable.getDetailsMap().put(lightTemplate, new ThemeVariableDetails()));
+
+		assertDoesNotThrow(() -> manager.parseThemeVariables(ThemeFixtures.reader(
+				"/* Module */\n:root {\n  " + name + ": #000001;\n}\n")));
+		assertNotSame(model, manager.getModel());
+		assertEquals(value, themeVariable.getThemeVariableDetails(lightTemplate).getValue());
+		assertEquals("#000001", manager.getModel().getThemeVariable(name).getThemeVariableDetails(lightTemplate).getValue());
+
+		// the parents of the published details are the published theme variables
+		ThemeVariable child = model.getThemeVariable(generator.getVariableName(0, 3));
+		assertSame(model.getThemeVariable(child.getThemeVariableDetails(lightTemplate).getParentThemeVariable().getName()),
+				child.getThemeVariableDetails(lightTemplate).getParentThemeVariable());
+	}
+}
@@ -0,0 +1,116 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeColorTransformTest {
+
+	@Test
+	void hueRotationKeepsGrayAndSpecialColors() {
+		int[] colors = {
+				ThemeVariableUtils.packColor("#FF0000"),
+				ThemeVariableUtils.packColor("#808080"),
+				ThemeVariableUtils.PACKED_TRANSPARENT_COLOR,
+				ThemeVariableUtils.PACKED_UNDEFINED_COLOR
+		};
+		ThemeColorTransform.rotateHue(120).apply(colors);
+
+		assertEquals("#00FF00", ThemeVariableUtils.unpackColor(colors[0]));
+		assertEquals("#808080", ThemeVariableUtils.unpackColor(colors[1]));
+		assertEquals(ThemeVariableUtils.PACKED_TRANSPARENT_COLOR, colors[2]);
+		assertEquals(ThemeVariableUtils.PACKED_UNDEFINED_COLOR, colors[3]);
+	}
+
+	@Test
+	void identityTransformsKeepColors() {
+		int[] colors = randomColors();
+		for (ThemeColorTransform transform : List.of(
+				ThemeColorTransform.rotateHue(0),
+				ThemeColorTransform.scaleSaturation(1.0),
+				ThemeColorTransform.scaleLightness(1.0),
+				ThemeColorTransform.tint(ThemeVariableUtils.packColor("#FF0000"), 0))) {
+			assertTrue(transform.isIdentity());
+
+			int[] transformedColors = colors.clone();
+			transform.apply(transformedColors);
+			assertArrayEquals(colors, transformedColors);
+		}
+
+		// the full turn is not applied, and a color is restored from the HSL model exactly
+		assertTrue(ThemeColorTransform.rotateHue(360).isIdentity());
+		double[] hsl = new double[3];
+		for (int color : colors) {
+			assertEquals(color, ThemeVariableUtils.packHsl(ThemeVariableUtils.calculateHslFromPackedColor(color, hsl)));
+		}
+	}
+
+	@Test
+	void hueRotationKeepsSaturationAndLightness() {
+		int[] colors = randomColors();
+		int[] rotatedColors = colors.clone();
+		ThemeColorTransform.rotateHue(90).apply(rotatedColors);
+
+		for (int i = 0; i < colors.length; i++) {
+			double[] hsl = ThemeVariableUtils.calculateHslFromPackedColor(colors[i], new double[3]);
+			double[] rotatedHsl = ThemeVariableUtils.calculateHslFromPackedColor(rotatedColors[i], new double[3]);
+			assertEquals(hsl[1], rotatedHsl[1], 1e-9);
+			assertEquals(hsl[2], rotatedHsl[2], 1e-9);
+		}
+		assertEquals("#AC4062", ThemeVariableUtils.unpackColor(
+				ThemeColorTransform.rotateHue(90).apply(ThemeVariableUtils.packColor("#5440AC"))));
+	}
+
+	@Test
+	void lightnessIsScaled() {
+		int color = ThemeVariableUtils.packColor("#5440AC");
+		int[] colors = {color};
+		ThemeColorTransform.scaleLightness(0.9).apply(colors);
+
+		double[] hsl = ThemeVariableUtils.calculateHslFromPackedColor(color, new double[3]);
+		double[] scaledHsl = ThemeVariableUtils.calculateHslFromPackedColor(colors[0], new double[3]);
+		// the components are rounded to the RGB colors
+		assertEquals(hsl[0], scaledHsl[0], 1);
+		assertEquals(hsl[1], scaledHsl[1], 0.01);
+		assertEquals(hsl[2] * 0.9, scaledHsl[2], 0.005);
+	}
+
+	@Test
+	void tintMixesComponents() {
+		int[] colors = {ThemeVariableUtils.packColor("#000000"), ThemeVariableUtils.packColor("#FFFFFF")};
+		ThemeColorTransform.tint(ThemeVariableUtils.packColor("#FF0000"), 0.5).apply(colors);
+
+		assertEquals("#800000", ThemeVariableUtils.unpackColor(colors[0]));
+		assertEquals("#FF8080", ThemeVariableUtils.unpackColor(colors[1]));
+	}
+
+	@Test
+	void transformIsCreatedFromUserInput() {
+		int[] colors = randomColors();
+		int[] expectedColors = colors.clone();
+		ThemeColorTransform.scaleLightness(0.9).apply(expectedColors);
+		int[] transformedColors = colors.clone();
+		ThemeColorTransform.create(ColorTransformOperation.SCALE_LIGHTNESS, -10, null).apply(transformedColors);
+		assertArrayEquals(expectedColors, transformedColors);
+
+		ThemeColorTransform tint = ThemeColorTransform.create(ColorTransformOperation.TINT, 50, "FF0000");
+		assertEquals("#800000", ThemeVariableUtils.unpackColor(tint.apply(ThemeVariableUtils.packColor("#000000"))));
+		assertTrue(ThemeColorTransform.create(ColorTransformOperation.ROTATE_HUE, 360, null).isIdentity());
+
+		assertEquals(ThemeVariableUtils.packColor("#FF0000"), ThemeColorTransform.packTintColor("#FF0000"));
+		assertEquals(ThemeVariableUtils.PACKED_UNDEFINED_COLOR, ThemeColorTransform.packTintColor("red"));
+		assertEquals(ThemeVariableUtils.PACKED_UNDEFINED_COLOR, ThemeColorTransform.packTintColor(null));
+	}
+
+	int[] randomColors() {
+		Random random = new Random(42);
+		int[] colors = new int[1000];
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] = random.nextInt(0x1000000);
+		}
+		return colors;
+	}
+}
@@ -0,0 +1,70 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeDarkModeDeriverTest {
+
+	private SyntheticThemeGenerator generator;
+	private ThemeVariablesManager manager;
+	private ThemeModel model;
+	private ThemeDarkModeDeriver deriver;
+
+	@BeforeEach
+	void setUp() {
+		generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(2);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+		generator.setAnnotationInterval(1);
+
+		manager = ThemeFixtures.createManager(generator);
+
+		model = manager.getModel();
+		deriver = model.getDarkModeDeriver();
+	}
+
+	@Test
+	void annotatedVariablesFollowDarkRules() {
+		assertNotNull(deriver);
+		assertSame(deriver, model.getDarkModeDeriver());
+
+		Template lightTemplate = model.getTemplate("lightTemplate0");
+		ThemeVariableOverrides lightValues = deriver.getTemplateValues(lightTemplate);
+		assertEquals(6, lightValues.size());
+
+		ThemeVariableOverrides darkValues = deriver.derive(lightValues);
+		String root = darkValues.get(getOrdinal(0, 0));
+		assertNotNull(root);
+		// (l10%) and (d15%) annotations of the chain heads
+		String lightened = ThemeVariableUtils.lighten(root, 10);
+		assertEquals(lightened, darkValues.get(getOrdinal(0, 3)));
+		assertEquals(ThemeVariableUtils.darken(lightened, 15), darkValues.get(getOrdinal(0, 6)));
+
+		String text = manager.generateDarkTemplateText(lightTemplate.getName());
+		assertTrue(text.startsWith(".helium.dark.lightTemplate0 {\n"));
+	}
+
+	@Test
+	void lightnessIsMappedRelativeToBaseValues() {
+		int ordinal = getOrdinal(1, 0);
+		int lightBaseColor = model.getSearchIndex().getTemplateColors(deriver.getLightThemeMode())[ordinal];
+		int darkBaseColor = model.getSearchIndex().getTemplateColors(deriver.getDarkThemeMode())[ordinal];
+
+		ThemeVariableOverrides lightValues = new ThemeVariableOverrides();
+		lightValues.putPacked(ordinal, lightBaseColor);
+		assertEquals(darkBaseColor, deriver.derive(lightValues).getPacked(ordinal));
+
+		lightValues.putPacked(ordinal, ThemeVariableUtils.packColor("#FFFFFF"));
+		int derivedColor = deriver.derive(lightValues).getPacked(ordinal);
+		int[] hsl = ThemeVariableUtils.calculateHslFromPackedColor(derivedColor, new int[3]);
+		int[] darkBaseHsl = ThemeVariableUtils.calculateHslFromPackedColor(darkBaseColor, new int[3]);
+		assertTrue(hsl[2] >= darkBaseHsl[2]);
+	}
+
+	private int getOrdinal(int module, int index) {
+		return model.getThemeVariable(generator.getVariableName(module, index)).getOrdinal();
+	}
+}
@@ -0,0 +1,96 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeEditHistoryTest {
+
+	@Test
+	void stepIsUndoneAndRedoneAsWhole() {
+		ThemeEditHistory history = new ThemeEditHistory(10);
+		history.beginStep();
+		history.record(1, true, null, "#5440AC", 0);
+		history.record(2, true, "#000000", "#3A2B73", 0);
+		history.record(2, false, "#000000", null, 0);
+
+		List<String> applied = new ArrayList<>();
+		assertTrue(history.undo(0, (ordinal, isBaseThemeMode, value) ->
+				applied.add(ordinal + " " + isBaseThemeMode + " " + value)));
+		assertEquals(List.of("2 false #000000", "2 true #000000", "1 true null"), applied);
+		assertFalse(history.canUndo(0));
+
+		applied.clear();
+		assertTrue(history.redo(0, (ordinal, isBaseThemeMode, value) ->
+				applied.add(ordinal + " " + isBaseThemeMode + " " + value)));
+		assertEquals(List.of("1 true #5440AC", "2 true #3A2B73", "2 false null"), applied);
+		assertFalse(history.canRedo(0));
+	}
+
+	@Test
+	void newStepDiscardsUndoneSteps() {
+		ThemeEditHistory history = new ThemeEditHistory(10);
+		history.beginStep();
+		history.record(1, true, null, "#5440AC", 0);
+		history.undo(0, (ordinal, isBaseThemeMode, value) -> {
+		});
+
+		history.beginStep();
+		history.record(3, true, null, "rgba(0, 0, 0, 0.5)", 0);
+
+		assertFalse(history.canRedo(0));
+		assertEquals(1, history.size());
+
+		List<String> applied = new ArrayList<>();
+		history.undo(0, (ordinal, isBaseThemeMode, value) -> applied.add(ordinal + " " + value));
+		history.redo(0, (ordinal, isBaseThemeMode, value) -> applied.add(ordinal + " " + value));
+		assertEquals(List.of("3 null", "3 rgba(0, 0, 0, 0.5)"), applied);
+	}
+
+	@Test
+	void oldestStepsAreDroppedWhenFull() {
+		ThemeEditHistory history = new ThemeEditHistory(3);
+		history.beginStep();
+		history.record(1, true, null, "#000001", 0);
+		history.record(2, true, null, "#000002", 0);
+		history.beginStep();
+		history.record(3, true, null, "#000003", 0);
+		history.beginStep();
+		history.record(4, true, null, "#000004", 0);
+
+		assertEquals(2, history.size());
+
+		List<Integer> undone = new ArrayList<>();
+		while (history.undo(0, (ordinal, isBaseThemeMode, value) -> undone.add(ordinal))) {
+		}
+		assertEquals(List.of(4, 3), undone);
+	}
+
+	@Test
+	void stepLargerThanHistoryIsNotRecorded() {
+		ThemeEditHistory history = new ThemeEditHistory(2);
+		history.beginStep();
+		history.record(1, true, null, "#000001", 0);
+		history.beginStep();
+		history.record(2, true, null, "#000002", 0);
+		history.record(3, true, null, "#000003", 0);
+		history.record(4, true, null, "#000004", 0);
+
+		assertFalse(history.canUndo(0));
+		assertEquals(0, history.size());
+	}
+
+	@Test
+	void stepOfAnotherTemplateIsNotUndone() {
+		ThemeEditHistory history = new ThemeEditHistory(10);
+		history.beginStep();
+		history.record(1, true, null, "#5440AC", 1);
+
+		assertFalse(history.canUndo(0));
+		assertFalse(history.undo(0, (ordinal, isBaseThemeMode, value) -> fail()));
+		assertTrue(history.canUndo(1));
+	}
+}
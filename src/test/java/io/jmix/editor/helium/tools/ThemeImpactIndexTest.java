@@ -0,0 +1,112 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeImpactIndexTest {
+
+	SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+	ThemeModel model;
+	List<ThemeDraftManager.Draft> storedDrafts = new ArrayList<>();
+	ThemeImpactIndex index = new ThemeImpactIndex() {
+		@Override
+		protected List<ThemeDraftManager.Draft> loadDrafts(ThemeModel model) {
+			return storedDrafts;
+		}
+	};
+
+	@BeforeEach
+	void setUp() {
+		// --m0-v1-color and --m0-v2-color follow --m0-v0-color through var(), --m0-v3-color is lightened
+		// from --m0-v0-color, --m0-v6-color is darkened from --m0-v3-color
+		generator.setModuleCount(1);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+		generator.setAnnotationInterval(1);
+
+		index.themeVariablesManager = ThemeFixtures.createManager(generator);
+		model = index.themeVariablesManager.getModel();
+	}
+
+	@Test
+	void newerDraftReplacesIndexedTheme() {
+		storedDrafts.add(draft("a", "light", values(0, "#000001", 4, "#000002")));
+		storedDrafts.add(draft("b", "light", values(4, "#000003")));
+		assertEquals(2, index.getThemeCount());
+		assertEquals(Map.of(key("a"), "#000002", key("b"), "#000003"), index.getOverrides(name(4)));
+
+		index.update(List.of(draft("a", "light", values(0, "#000004"))));
+		assertEquals(Map.of(key("a"), "#000004"), index.getOverrides(name(0)));
+		// the theme variable is not overridden by the newer draft
+		assertEquals(Map.of(key("b"), "#000003"), index.getOverrides(name(4)));
+
+		// the templates of a draft key are separate themes
+		index.update(List.of(draft("a", "dark", values(0, "#000005"))));
+		assertEquals(3, index.getThemeCount());
+		assertEquals(Map.of(key("a"), "#000004", ThemeVersionManager.getThemeKey("a", "dark"), "#000005"),
+				index.getOverrides(name(0)));
+
+		index.removeExpired(new Date(Long.MAX_VALUE));
+		assertEquals(0, index.getThemeCount());
+		assertTrue(index.getOverrides(name(0)).isEmpty());
+	}
+
+	@Test
+	void impactFollowsVarAndModifierChains() {
+		storedDrafts.add(draft("a", "light", values(0, "#000001", 4, "#000002")));
+		storedDrafts.add(draft("b", "light", values(7, "#000003")));
+		storedDrafts.add(draft("c", "light", values(2, "#000004")));
+
+		assertEquals(List.of(
+				key("a") + " " + name(0) + " <- null",
+				key("c") + " " + name(2) + " <- " + name(1),
+				key("a") + " " + name(4) + " <- " + name(3),
+				key("b") + " " + name(7) + " <- " + name(6)
+		), impacts(name(0)));
+
+		assertEquals(List.of(key("b") + " " + name(7) + " <- " + name(6)), impacts(name(6)));
+		assertTrue(impacts(name(5)).isEmpty());
+	}
+
+	ThemeDraftManager.Draft draft(String draftKey, String templateName, ThemeVariableOverrides values) {
+		return new ThemeDraftManager.Draft(draftKey, "light", templateName, model.getChecksum(),
+				values, new ThemeVariableOverrides());
+	}
+
+	ThemeVariableOverrides values(Object... indexesAndValues) {
+		ThemeVariableOverrides values = new ThemeVariableOverrides();
+		for (int i = 0; i < indexesAndValues.length; i += 2) {
+			values.put(model.getThemeVariable(name((Integer) indexesAndValues[i])).getOrdinal(),
+					(String) indexesAndValues[i + 1]);
+		}
+		return values;
+	}
+
+	List<String> impacts(String variableName) {
+		return index.findImpact(variableName).stream()
+				.map(impact -> impact.getThemeKey() + " " + impact.getOverriddenThemeVariable().getName()
+						+ " <- " + impact.getOverriddenThemeVariable().getParentVariableName())
+				.sorted((first, second) -> Integer.compare(ordinal(first), ordinal(second)))
+				.collect(Collectors.toList());
+	}
+
+	int ordinal(String impact) {
+		return model.getThemeVariable(impact.split(" ")[1]).getOrdinal();
+	}
+
+	String name(int index) {
+		return generator.getVariableName(0, index);
+	}
+
+	String key(String draftKey) {
+		return ThemeVersionManager.getThemeKey(draftKey, "light");
+	}
+}
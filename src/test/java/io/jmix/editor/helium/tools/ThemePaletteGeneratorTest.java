@@ -0,0 +1,87 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemePaletteGeneratorTest {
+
+	@Test
+	void annotatedVariablesAreDerivedFromRootColors() {
+		SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(2);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+		generator.setAnnotationInterval(1);
+
+		ThemeVariablesManager manager = ThemeFixtures.createManager(generator);
+
+		ThemeModel model = manager.getModel();
+		Template light = manager.getTemplates().get(0);
+		ThemePaletteGenerator paletteGenerator = model.getPaletteGenerator(light);
+		assertSame(paletteGenerator, model.getPaletteGenerator(light));
+
+		String root = generator.getVariableName(0, 0);
+		ThemeVariableOverrides overrides = paletteGenerator.generate(Map.of(root, "5440ac"));
+
+		// --m0-v3-color is annotated with (--m0-v0-color) (l10%), --m0-v6-color with (--m0-v3-color) (d15%)
+		String lightened = ThemeVariableUtils.lighten("#5440AC", 10);
+		assertEquals("#5440AC", overrides.get(model.getThemeVariable(root).getOrdinal()));
+		assertEquals(lightened, overrides.get(model.getThemeVariable(generator.getVariableName(0, 3)).getOrdinal()));
+		assertEquals(ThemeVariableUtils.darken(lightened, 15),
+				overrides.get(model.getThemeVariable(generator.getVariableName(0, 6)).getOrdinal()));
+		// var() values follow the parents in the browser, other modules keep the template values
+		assertEquals(3, overrides.size());
+
+		String text = manager.generateTemplateText(light.getName(), "tenant", Map.of(root, "#5440AC"));
+		assertTrue(text.startsWith(".helium." + light.getName() + ".tenant {\n"));
+		assertTrue(text.contains("  " + generator.getVariableName(0, 6) + ": "
+				+ ThemeVariableUtils.darken(lightened, 15) + ";\n"));
+	}
+
+	@Test
+	void changedColorsAreDerivedAlongTheChain() {
+		SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(1);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+		generator.setAnnotationInterval(1);
+
+		ThemeModel model = ThemeFixtures.createManager(generator).getModel();
+		ThemePaletteGenerator paletteGenerator = model.getPaletteGenerator(model.getTemplates().get(0));
+		int root = model.getThemeVariable(generator.getVariableName(0, 0)).getOrdinal();
+		int child = model.getThemeVariable(generator.getVariableName(0, 3)).getOrdinal();
+		int grandchild = model.getThemeVariable(generator.getVariableName(0, 6)).getOrdinal();
+
+		ThemeVariableOverrides changedColors = new ThemeVariableOverrides();
+		changedColors.put(root, "#5440AC");
+		BitSet fixedOrdinals = new BitSet();
+		fixedOrdinals.set(root);
+
+		// --m0-v6-color is darkened from the lightened --m0-v3-color, not from --m0-v0-color
+		ThemeVariableOverrides derived = paletteGenerator.derive(changedColors, fixedOrdinals);
+		String lightened = ThemeVariableUtils.lighten("#5440AC", 10);
+		assertFalse(derived.contains(root));
+		assertEquals(lightened, derived.get(child));
+		assertEquals(ThemeVariableUtils.darken(lightened, 15), derived.get(grandchild));
+
+		// a fixed theme variable that is not changed stops the chain
+		fixedOrdinals.set(child);
+		derived = paletteGenerator.derive(changedColors, fixedOrdinals);
+		assertFalse(derived.contains(child));
+		assertFalse(derived.contains(grandchild));
+	}
+
+	@Test
+	void invalidRootColorIsRejected() {
+		ThemeModel model = new ThemeModel(Collections.emptyList(), Collections.emptyList());
+		ThemePaletteGenerator paletteGenerator = new ThemePaletteGenerator(model, new Template(Templates.LIGHT));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> paletteGenerator.generate(Map.of("--primary-color", "#5440AC")));
+	}
+}
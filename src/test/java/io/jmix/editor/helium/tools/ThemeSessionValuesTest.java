@@ -0,0 +1,134 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeSessionValuesTest {
+
+	private SyntheticThemeGenerator generator;
+	private ThemeModel model;
+	private Template light;
+	private ThemeSessionValues sessionValues;
+
+	@BeforeEach
+	void setUp() {
+		// --m0-v3-color is annotated with (--m0-v0-color) (l10%), --m0-v6-color with (--m0-v3-color) (d15%)
+		generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(2);
+		generator.setVariablesPerModule(9);
+		generator.setVarChainDepth(2);
+		generator.setAnnotationInterval(1);
+		generator.setRgbInterval(0);
+
+		model = ThemeFixtures.createManager(generator).getModel();
+		light = model.getTemplates().get(0);
+		sessionValues = new ThemeSessionValues(model);
+	}
+
+	@Test
+	void savedTemplateKeepsValuesAfterDetach() {
+		sessionValues.put(1, "#5440AC", true);
+		CustomTemplate template = sessionValues.saveCustomTemplate("brand", light);
+
+		// the unsaved values are moved to the template
+		assertSame(template, sessionValues.getActiveCustomTemplate());
+		assertSame(template.getOverrides(), sessionValues.getUserValues());
+		assertTrue(sessionValues.getCustomTemplates().contains(template));
+
+		BitSet detachedOrdinals = sessionValues.detachCustomTemplate();
+		assertEquals(BitSet.valueOf(new long[]{0b10}), detachedOrdinals);
+		assertNull(sessionValues.getActiveCustomTemplate());
+		assertTrue(sessionValues.getUserValues().isEmpty());
+		assertEquals("#5440AC", template.getOverrides().get(1));
+
+		// the values of a saved template are copied
+		sessionValues.activateCustomTemplate(template, light);
+		CustomTemplate copy = sessionValues.saveCustomTemplate("copy", light);
+		assertNotSame(template.getOverrides(), copy.getOverrides());
+		assertEquals("#5440AC", copy.getOverrides().get(1));
+	}
+
+	@Test
+	void activationSwitchesUserValues() {
+		Template lightTemplate = model.getTemplate("lightTemplate0");
+		assertNotNull(lightTemplate);
+		ThemeVariable templateVariable = model.getThemeVariables().stream()
+				.filter(themeVariable -> ThemeSessionValues.getColorTemplateValue(themeVariable, lightTemplate) != null)
+				.findFirst()
+				.orElseThrow();
+		int ordinal = templateVariable.getOrdinal();
+		int otherOrdinal = ordinal == 0 ? 1 : 0;
+
+		CustomTemplate first = createTemplate("first", lightTemplate, ordinal, "#5440AC");
+		CustomTemplate second = createTemplate("second", lightTemplate, otherOrdinal, "#2A8463");
+
+		BitSet changedOrdinals = sessionValues.activateCustomTemplate(first, lightTemplate);
+		assertEquals(1, changedOrdinals.cardinality());
+		assertSame(first.getOverrides(), sessionValues.getUserValues());
+		assertFalse(sessionValues.getTemplateValues().contains(ordinal));
+
+		changedOrdinals = sessionValues.activateCustomTemplate(second, lightTemplate);
+		assertTrue(changedOrdinals.get(ordinal));
+		assertTrue(changedOrdinals.get(otherOrdinal));
+		assertSame(second, sessionValues.getActiveCustomTemplate());
+		assertSame(second.getOverrides(), sessionValues.getUserValues());
+		// the value left by the first template is taken from the current template
+		assertEquals(ThemeSessionValues.getColorTemplateValue(templateVariable, lightTemplate),
+				sessionValues.getTemplateValues().get(ordinal));
+		assertEquals("#5440AC", first.getOverrides().get(ordinal));
+	}
+
+	@Test
+	void editHistoryStepIsApplied() {
+		ThemeEditHistory history = new ThemeEditHistory(10);
+		assertNull(sessionValues.applyEditHistoryStep(history, 0, true));
+
+		sessionValues.put(2, "#000000", false);
+		history.beginStep();
+		history.record(2, true, null, "#5440AC", 0);
+		history.record(2, false, "#000000", null, 0);
+		sessionValues.put(2, "#5440AC", true);
+
+		BitSet changedOrdinals = sessionValues.applyEditHistoryStep(history, 0, true);
+		assertEquals(BitSet.valueOf(new long[]{0b100}), changedOrdinals);
+		assertFalse(sessionValues.getUserValues().contains(2));
+		assertEquals("#000000", sessionValues.getTemplateValues().get(2));
+
+		assertNotNull(sessionValues.applyEditHistoryStep(history, 0, false));
+		assertEquals("#5440AC", sessionValues.getUserValues().get(2));
+		assertFalse(sessionValues.getTemplateValues().contains(2));
+	}
+
+	@Test
+	void transformDerivesDependentsOfSelectedValues() {
+		int root = model.getThemeVariable(generator.getVariableName(0, 0)).getOrdinal();
+		sessionValues.put(root, "#5440AC", true);
+
+		BitSet selectedOrdinals = new BitSet();
+		selectedOrdinals.set(root);
+		ThemeVariableSearchIndex.Result searchResult = new ThemeVariableSearchIndex.Result("m0-v0", selectedOrdinals);
+
+		assertTrue(sessionValues.transform(ThemeColorTransform.rotateHue(0), light, searchResult).isEmpty());
+
+		ThemeVariableOverrides changedValues = sessionValues.transform(ThemeColorTransform.rotateHue(90), light,
+				searchResult);
+		String lightened = ThemeVariableUtils.lighten("#AC4062", 10);
+		assertEquals("#AC4062", changedValues.get(root));
+		assertEquals(lightened, changedValues.get(model.getThemeVariable(generator.getVariableName(0, 3)).getOrdinal()));
+		assertEquals(ThemeVariableUtils.darken(lightened, 15),
+				changedValues.get(model.getThemeVariable(generator.getVariableName(0, 6)).getOrdinal()));
+
+		// the changed values are applied by the owner
+		assertEquals("#5440AC", sessionValues.getUserValues().get(root));
+	}
+
+	CustomTemplate createTemplate(String name, Template parent, int ordinal, String value) {
+		ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+		overrides.put(ordinal, value);
+		return new CustomTemplate(name, parent, overrides);
+	}
+}
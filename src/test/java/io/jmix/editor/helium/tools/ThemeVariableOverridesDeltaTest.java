@@ -0,0 +1,43 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeVariableOverridesDeltaTest {
+
+	@Test
+	void deltaTurnsOneVersionIntoAnother() {
+		ThemeVariableOverrides from = new ThemeVariableOverrides();
+		from.put(1, "#000000");
+		from.put(2, "#FFFFFF");
+		from.put(5, "rgba(0, 0, 0, 0.5)");
+
+		ThemeVariableOverrides to = new ThemeVariableOverrides();
+		to.put(2, "#FFFFFF");
+		to.put(5, "rgba(0, 0, 0, 0.25)");
+		to.put(9, "#0055A6");
+
+		ThemeVariableOverridesDelta delta = ThemeVariableOverridesDelta.fromByteArray(
+				ThemeVariableOverridesDelta.between(from, to).toByteArray());
+
+		assertArrayEquals(new int[]{5, 9}, delta.getChanged().ordinals().toArray());
+		assertArrayEquals(new int[]{1}, delta.removedOrdinals().toArray());
+
+		delta.apply(from);
+		assertArrayEquals(new int[]{2, 5, 9}, from.ordinals().toArray());
+		assertEquals("rgba(0, 0, 0, 0.25)", from.get(5));
+		assertEquals("#0055A6", from.get(9));
+	}
+
+	@Test
+	void sameOverridesGiveEmptyDelta() {
+		ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+		overrides.put(3, "#5440AC");
+
+		ThemeVariableOverrides copy = new ThemeVariableOverrides();
+		copy.putAll(overrides);
+
+		assertTrue(ThemeVariableOverridesDelta.between(overrides, copy).isEmpty());
+	}
+}
@@ -0,0 +1,48 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeVariableOverridesTest {
+
+	@Test
+	void packedValuesRoundTrip() {
+		ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+		overrides.put(3, "#5440AC");
+		overrides.put(0, ThemeVariablesManager.TRANSPARENT_COLOR_VALUE);
+		overrides.put(40, "#5440ac80");
+
+		assertEquals("#5440AC", overrides.get(3));
+		assertEquals(ThemeVariablesManager.TRANSPARENT_COLOR_VALUE, overrides.get(0));
+		assertEquals("#5440ac80", overrides.get(40));
+		assertNull(overrides.get(1));
+		assertArrayEquals(new int[]{0, 3, 40}, overrides.ordinals().toArray());
+	}
+
+	@Test
+	void removedValuesAreNotReturned() {
+		ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+		overrides.put(2, "#000000");
+
+		assertTrue(overrides.remove(2));
+		assertFalse(overrides.remove(2));
+		assertNull(overrides.get(2));
+		assertTrue(overrides.isEmpty());
+	}
+
+	@Test
+	void serializedValuesRoundTrip() {
+		ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+		overrides.put(7, "#0055A6");
+		overrides.put(1, ThemeVariablesManager.TRANSPARENT_COLOR_VALUE);
+		overrides.put(300, "rgba(0, 0, 0, 0.5)");
+
+		ThemeVariableOverrides restored = ThemeVariableOverrides.fromByteArray(overrides.toByteArray());
+
+		assertArrayEquals(new int[]{1, 7, 300}, restored.ordinals().toArray());
+		assertEquals("#0055A6", restored.get(7));
+		assertEquals(ThemeVariablesManager.TRANSPARENT_COLOR_VALUE, restored.get(1));
+		assertEquals("rgba(0, 0, 0, 0.5)", restored.get(300));
+	}
+}
@@ -0,0 +1,88 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeVariableSearchIndexTest {
+
+	private final Template light = new Template(Templates.LIGHT);
+
+	@Test
+	void textQueriesMatchNamesModulesAndParents() {
+		ThemeModel model = createModel();
+		ThemeVariableSearchIndex index = model.getSearchIndex();
+
+		ThemeVariableSearchIndex.Result prefix = search(index, "pr", null);
+		assertTrue(prefix.matches(0));
+		assertTrue(prefix.matches(1));
+		assertFalse(prefix.matches(2));
+
+		ThemeVariableSearchIndex.Result primary = search(index, "--primary", null);
+		assertEquals(2, primary.size());
+
+		ThemeVariableSearchIndex.Result button = search(index, "primary-color bu", primary);
+		assertEquals(1, button.size());
+		assertTrue(button.matches(1));
+
+		ThemeVariableSearchIndex.Result module = search(index, "common", null);
+		assertEquals(1, module.size());
+		assertTrue(module.matches(3));
+
+		assertNull(search(index, "  ", null));
+	}
+
+	@Test
+	void colorQueriesMatchCurrentValues() {
+		ThemeModel model = createModel();
+		ThemeVariableSearchIndex index = model.getSearchIndex();
+
+		ThemeVariableSearchIndex.Result close = search(index, "#5440AC", null);
+		assertTrue(close.matches(0));
+		assertTrue(close.matches(1));
+		assertFalse(close.matches(2));
+		assertTrue(close.matches(3));
+
+		ThemeVariableSearchIndex.Result prefix = search(index, "#00", null);
+		assertEquals(1, prefix.size());
+		assertTrue(prefix.matches(2));
+
+		ThemeVariableOverrides overrides = new ThemeVariableOverrides();
+		overrides.put(2, "#5440AD");
+		ThemeVariableSearchIndex.Result overridden = index.search("#5440ac", light,
+				Collections.singletonList(overrides), null);
+		assertTrue(overridden.matches(2));
+	}
+
+	private ThemeVariableSearchIndex.Result search(ThemeVariableSearchIndex index, String query,
+												   ThemeVariableSearchIndex.Result previous) {
+		return index.search(query, light, Collections.emptyList(), previous);
+	}
+
+	private ThemeModel createModel() {
+		ThemeVariable primary = createThemeVariable(0, "--primary-color", "Basic", "#5440AC", null);
+		ThemeVariable buttonPrimary = createThemeVariable(1, "--button-primary-color", "Button",
+				"var(--primary-color)", primary);
+		ThemeVariable text = createThemeVariable(2, "--text-color", "Basic", "#000000", null);
+		ThemeVariable focused = createThemeVariable(3, "--focused-color", "Common", "#5542AE", null);
+		return new ThemeModel(Arrays.asList(primary, buttonPrimary, text, focused),
+				Collections.singletonList(light));
+	}
+
+	private ThemeVariable createThemeVariable(int ordinal, String name, String module, String value,
+											  ThemeVariable parent) {
+		ThemeVariableDetails details = new ThemeVariableDetails();
+		details.setValue(value);
+		details.setParentThemeVariable(parent);
+
+		ThemeVariable themeVariable = new ThemeVariable();
+		themeVariable.setOrdinal(ordinal);
+		themeVariable.setName(name);
+		themeVariable.setModule(module);
+		themeVariable.setThemeVariableDetails(light, details);
+		return themeVariable;
+	}
+}
@@ -0,0 +1,64 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeVariablesManagerTest {
+
+	@Test
+	void snapshotIsNotChangedByLaterParsing() {
+		ThemeVariablesManager manager = ThemeFixtures.createManager(generator(1));
+		ThemeModel model = manager.getModel();
+		int variableCount = model.getThemeVariables().size();
+		List<Template> templates = List.copyOf(model.getTemplates());
+
+		manager.parseThemeVariables(ThemeFixtures.reader(generator(2).generate()));
+
+		assertNotSame(model, manager.getModel());
+		assertEquals(variableCount, model.getThemeVariables().size());
+		assertEquals(templates, model.getTemplates());
+		assertEquals(generator(2).getVariableCount(), manager.getModel().getThemeVariables().size());
+	}
+
+	@Test
+	void concurrentParsingPublishesConsistentSnapshot() throws Exception {
+		ThemeVariablesManager manager = ThemeFixtures.createManager();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int moduleCount = 1; moduleCount <= 8; moduleCount++) {
+				String theme = generator(moduleCount).generate();
+				futures.add(executor.submit(() -> manager.parseThemeVariables(ThemeFixtures.reader(theme))));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// each theme variable is registered once and its ordinal is its position
+		ThemeModel model = manager.getModel();
+		assertEquals(generator(8).getVariableCount(), model.getThemeVariables().size());
+		for (int ordinal = 0; ordinal < model.getThemeVariables().size(); ordinal++) {
+			ThemeVariable themeVariable = model.getThemeVariable(ordinal);
+			assertEquals(ordinal, themeVariable.getOrdinal());
+			assertSame(themeVariable, model.getThemeVariable(themeVariable.getName()));
+		}
+	}
+
+	SyntheticThemeGenerator generator(int moduleCount) {
+		SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(moduleCount);
+		generator.setVariablesPerModule(30);
+		generator.setVarChainDepth(2);
+		return generator;
+	}
+}
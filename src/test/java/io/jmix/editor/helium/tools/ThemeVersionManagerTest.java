@@ -0,0 +1,156 @@
+package io.jmix.editor.helium.tools;
+
+import io.jmix.editor.helium.entity.ThemeVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+		"helium.editor.draftSaveDelay=0s",
+		"helium.editor.versionSnapshotInterval=3",
+		"helium.editor.versionHistorySize=5"
+})
+class ThemeVersionManagerTest {
+
+	@Autowired
+	ThemeVersionManager themeVersionManager;
+	@Autowired
+	ThemeVariablesManager themeVariablesManager;
+
+	SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+	ThemeModel model;
+	String draftKey = UUID.randomUUID().toString();
+
+	@BeforeEach
+	void setUp() {
+		generator.setModuleCount(1);
+		generator.setVariablesPerModule(6);
+		if (themeVariablesManager.getModel().getThemeVariable(generator.getVariableName(0, 0)) == null) {
+			themeVariablesManager.parseThemeVariables(ThemeFixtures.reader(generator.generate()));
+		}
+		model = themeVariablesManager.getModel();
+	}
+
+	@Test
+	void versionsAreRestoredAndComparedAcrossSnapshot() {
+		String themeKey = ThemeVersionManager.getThemeKey(draftKey, "light");
+		ThemeVariableOverrides[] versions = {
+				values(0, "#000001"),
+				values(0, "#000001", 1, "#000002"),
+				values(1, "#000003"),
+				// version 4 is a snapshot
+				values(1, "#000003", 2, "#000004"),
+				values(2, "#000005")
+		};
+		for (ThemeVariableOverrides values : versions) {
+			save("light", values);
+		}
+
+		assertEquals(List.of(5, 4, 3, 2, 1), versionNumbers(themeKey));
+		for (int i = 0; i < versions.length; i++) {
+			assertValues(versions[i], themeVersionManager.getValues(themeKey, i + 1));
+		}
+
+		assertNull(themeVersionManager.getValue(themeKey, name(0), 4));
+		assertEquals("#000003", themeVersionManager.getValue(themeKey, name(1), 4));
+		assertEquals("#000002", themeVersionManager.getValue(themeKey, name(1), 2));
+		assertEquals("#000005", themeVersionManager.getValue(themeKey, name(2), 5));
+
+		assertEquals(List.of(
+				name(0) + ": #000001 -> null",
+				name(1) + ": #000002 -> null",
+				name(2) + ": null -> #000005"
+		), differences(themeKey, 2, 5));
+		assertEquals(List.of(
+				name(0) + ": null -> #000001",
+				name(1) + ": null -> #000002",
+				name(2) + ": #000005 -> null"
+		), differences(themeKey, 5, 2));
+		assertEquals(List.of(
+				name(1) + ": #000003 -> null",
+				name(2) + ": #000004 -> #000005"
+		), differences(themeKey, 4, 5));
+	}
+
+	@Test
+	void templatesHaveSeparateHistories() {
+		save("light", values(0, "#000001"));
+		save("dark", values(1, "#000002"));
+		save("light", values(0, "#000003"));
+
+		String lightKey = ThemeVersionManager.getThemeKey(draftKey, "light");
+		String darkKey = ThemeVersionManager.getThemeKey(draftKey, "dark");
+		assertEquals(List.of(2, 1), versionNumbers(lightKey));
+		assertEquals(List.of(1), versionNumbers(darkKey));
+		assertValues(values(0, "#000003"), themeVersionManager.getValues(lightKey, 2));
+		assertValues(values(1, "#000002"), themeVersionManager.getValues(darkKey, 1));
+
+		themeVersionManager.deleteHistory(List.of(lightKey));
+		assertTrue(themeVersionManager.getVersions(lightKey).isEmpty());
+		assertNull(themeVersionManager.getValue(lightKey, name(0), 2));
+		assertEquals(List.of(1), versionNumbers(darkKey));
+	}
+
+	@Test
+	void historyIsBoundedBySnapshots() {
+		String themeKey = ThemeVersionManager.getThemeKey(draftKey, "light");
+		for (int i = 1; i <= 12; i++) {
+			save("light", values(0, "#0000BB", 1, String.format("#%06X", i)));
+		}
+
+		// the latest 5 versions are restored from the snapshot 7
+		assertEquals(List.of(12, 11, 10, 9, 8, 7), versionNumbers(themeKey));
+		assertValues(values(0, "#0000BB", 1, "#00000C"), themeVersionManager.getValues(themeKey, 12));
+		assertValues(values(0, "#0000BB", 1, "#000008"), themeVersionManager.getValues(themeKey, 8));
+		assertThrows(IllegalArgumentException.class, () -> themeVersionManager.getValues(themeKey, 6));
+
+		// set in the deleted version 1, found by the index entry of the snapshot
+		assertEquals("#0000BB", themeVersionManager.getValue(themeKey, name(0), 12));
+		assertEquals(List.of(name(1) + ": #000007 -> #00000C"), differences(themeKey, 7, 12));
+	}
+
+	void save(String templateName, ThemeVariableOverrides values) {
+		themeVersionManager.saveVersions(List.of(new ThemeDraftManager.Draft(draftKey, "light", templateName,
+				model.getChecksum(), values, new ThemeVariableOverrides())));
+	}
+
+	ThemeVariableOverrides values(Object... indexesAndValues) {
+		ThemeVariableOverrides values = new ThemeVariableOverrides();
+		for (int i = 0; i < indexesAndValues.length; i += 2) {
+			values.put(ordinal((Integer) indexesAndValues[i]), (String) indexesAndValues[i + 1]);
+		}
+		return values;
+	}
+
+	String name(int index) {
+		return generator.getVariableName(0, index);
+	}
+
+	int ordinal(int index) {
+		return model.getThemeVariable(name(index)).getOrdinal();
+	}
+
+	List<Integer> versionNumbers(String themeKey) {
+		return themeVersionManager.getVersions(themeKey).stream()
+				.map(ThemeVersion::getVersionNumber)
+				.collect(Collectors.toList());
+	}
+
+	List<String> differences(String themeKey, int fromVersion, int toVersion) {
+		return themeVersionManager.diff(themeKey, fromVersion, toVersion).stream()
+				.map(ThemeVersionManager.Difference::toString)
+				.collect(Collectors.toList());
+	}
+
+	static void assertValues(ThemeVariableOverrides expected, ThemeVariableOverrides actual) {
+		assertArrayEquals(expected.ordinals().toArray(), actual.ordinals().toArray());
+		expected.ordinals().forEach(ordinal -> assertEquals(expected.get(ordinal), actual.get(ordinal)));
+	}
+}
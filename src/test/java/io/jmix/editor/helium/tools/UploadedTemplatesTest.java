@@ -0,0 +1,59 @@
+package io.jmix.editor.helium.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadedTemplatesTest {
+
+	@Test
+	void declarationsAreGroupedByBlock() {
+		SyntheticThemeGenerator generator = new SyntheticThemeGenerator();
+		generator.setModuleCount(2);
+		generator.setVariablesPerModule(6);
+		generator.setBaseThemeModes(Collections.singletonList("dark"));
+		generator.setTemplatesPerThemeMode(1);
+		generator.setVarChainDepth(2);
+
+		String theme = generator.generate();
+		ThemeVariablesManager manager = ThemeFixtures.createManager(theme);
+
+		String variableName = generator.getVariableName(0, 0);
+		String upload = theme
+				+ "\n.dark {\n  " + variableName + ": #5440AC;\n}\n"
+				+ "\n.helium.contrast.unknown {\n  " + variableName + ": #000001;\n}\n";
+		List<UploadedTemplate> templates = manager.parseUploadedTemplates(ThemeFixtures.reader(upload));
+
+		List<String> templateNames = generator.getTemplateNames();
+		assertEquals(4, templates.size());
+
+		UploadedTemplate rootTemplate = templates.get(0);
+		assertNull(rootTemplate.getBaseThemeMode());
+		assertEquals(manager.getThemeVariableByName(variableName).getThemeVariableDetails(manager.getTemplates().get(0)).getValue(),
+				getValue(rootTemplate, variableName));
+		assertEquals(rootTemplate.getThemeVariables().size(),
+				rootTemplate.getThemeVariables().stream().map(ModifiedThemeVariableDetails::getName).distinct().count());
+
+		UploadedTemplate darkTemplate = templates.get(1);
+		assertEquals("dark", darkTemplate.getBaseThemeMode().getName());
+		assertNull(darkTemplate.getTemplateName());
+		assertEquals("#5440AC", getValue(darkTemplate, variableName));
+
+		UploadedTemplate colorTemplate = templates.get(3);
+		assertEquals("dark", colorTemplate.getBaseThemeMode().getName());
+		assertEquals(templateNames.get(3), colorTemplate.getTemplateName());
+		assertSame(manager.getTemplates().get(3), colorTemplate.getTemplate());
+		assertSame(colorTemplate.getTemplate(), colorTemplate.getParent());
+	}
+
+	private static String getValue(UploadedTemplate template, String name) {
+		return template.getThemeVariables().stream()
+				.filter(details -> details.getName().equals(name))
+				.map(ModifiedThemeVariableDetails::getValue)
+				.findFirst()
+				.orElse(null);
+	}
+}
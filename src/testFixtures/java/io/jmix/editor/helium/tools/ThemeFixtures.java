@@ -0,0 +1,62 @@
+package io.jmix.editor.helium.tools;
+
+import io.jmix.editor.helium.HeliumEditorProperties;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Creates theme variables managers without the Spring context for the tests, the benchmarks and the load test.
+ */
+public class ThemeFixtures {
+
+    public static final int VERSION_SNAPSHOT_INTERVAL = 20;
+    public static final int VERSION_HISTORY_SIZE = 200;
+    public static final int EDIT_HISTORY_SIZE = 1000;
+
+    /**
+     * Creates the editor properties with the default values. Drafts, tracing and the browser side features
+     * are disabled, the theme file is not read from the classpath.
+     *
+     * @return properties
+     */
+    public static HeliumEditorProperties createProperties() {
+        return new HeliumEditorProperties(Collections.singleton("TokenList"), null, Duration.ZERO,
+                SampleDataManager.DEFAULT_SAMPLE_DATA_SIZE, 0, false, false, false, Duration.ZERO, Duration.ZERO,
+                VERSION_SNAPSHOT_INTERVAL, VERSION_HISTORY_SIZE, false, false, false, EDIT_HISTORY_SIZE);
+    }
+
+    /**
+     * @return a manager with the color templates and without theme variables
+     */
+    public static ThemeVariablesManager createManager() {
+        ThemeVariablesManager manager = new ThemeVariablesManager();
+        manager.heliumEditorProperties = createProperties();
+        manager.initColorTemplates();
+        return manager;
+    }
+
+    /**
+     * @param theme the text of a theme file
+     * @return a manager with the theme variables of the theme
+     */
+    public static ThemeVariablesManager createManager(String theme) {
+        ThemeVariablesManager manager = createManager();
+        manager.parseThemeVariables(reader(theme));
+        return manager;
+    }
+
+    /**
+     * @param generator a generator of a synthetic theme
+     * @return a manager with the theme variables of the generated theme
+     */
+    public static ThemeVariablesManager createManager(SyntheticThemeGenerator generator) {
+        return createManager(generator.generate());
+    }
+
+    public static BufferedReader reader(String text) {
+        return new BufferedReader(new StringReader(text));
+    }
+}